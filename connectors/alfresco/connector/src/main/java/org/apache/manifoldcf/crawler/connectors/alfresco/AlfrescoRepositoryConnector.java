@@ -89,6 +89,9 @@ public class AlfrescoRepositoryConnector extends BaseRepositoryConnector {
 
   protected static final String RELATIONSHIP_CHILD = "child";
 
+  /** The number of documents whose nodes are fetched together */
+  protected static final int MAX_DOCUMENTS_PER_REQUEST = 20;
+
   // Tabs
   
   /** The Lucene Query label for the configuration tab of the job settings */
@@ -398,7 +401,8 @@ public class AlfrescoRepositoryConnector extends BaseRepositoryConnector {
    */
   @Override
   public int getMaxDocumentRequest() {
-    return 1;
+    // Node metadata for a whole batch is fetched with a single request in getDocumentVersions()
+    return MAX_DOCUMENTS_PER_REQUEST;
   }
 
   /**
@@ -890,21 +894,40 @@ public class AlfrescoRepositoryConnector extends BaseRepositoryConnector {
       DocumentSpecification spec) throws ManifoldCFException,
       ServiceInterruption {
     String[] rval = new String[documentIdentifiers.length];
-    int i = 0;
-    while (i < rval.length){
-      String nodeReference = documentIdentifiers[i];
-      String uuid = NodeUtils.getUuidFromNodeReference(nodeReference);
-      
-      Reference reference = new Reference();
-      reference.setStore(SearchUtils.STORE);
-      reference.setUuid(uuid);
-      
+    
+    // Ask for the whole set of nodes at once
+    Reference[] references = new Reference[documentIdentifiers.length];
+    for (int i = 0; i < documentIdentifiers.length; i++) {
+      references[i] = new Reference();
+      references[i].setStore(SearchUtils.STORE);
+      references[i].setUuid(NodeUtils.getUuidFromNodeReference(documentIdentifiers[i]));
+    }
+    Map<String,Node> nodes = new HashMap<String,Node>();
+    if (references.length > 1) {
       Predicate predicate = new Predicate();
       predicate.setStore(SearchUtils.STORE);
-      predicate.setNodes(new Reference[]{reference});
-      
-      Node node = NodeUtils.get(username, password, session, predicate);
-      if(node.getProperties()!=null){
+      predicate.setNodes(references);
+      Node[] resultNodes = NodeUtils.getAll(username, password, session, predicate);
+      if (resultNodes != null) {
+        for (Node node : resultNodes) {
+          if (node != null && node.getReference() != null)
+            nodes.put(node.getReference().getUuid(), node);
+        }
+      }
+    }
+    
+    int i = 0;
+    while (i < rval.length){
+      String uuid = references[i].getUuid();
+      Node node = nodes.get(uuid);
+      if (node == null) {
+        // Not part of the batch answer (the batch request fails as a whole if any node is gone), so ask for it alone
+        Predicate predicate = new Predicate();
+        predicate.setStore(SearchUtils.STORE);
+        predicate.setNodes(new Reference[]{references[i]});
+        node = NodeUtils.get(username, password, session, predicate);
+      }
+      if(node!=null && node.getProperties()!=null){
         NamedValue[] properties = node.getProperties();
         boolean isDocument = ContentModelUtils.isDocument(properties);
         if(isDocument){
@@ -76,6 +76,35 @@ public class NodeUtils {
     }
   }
   
+  /**
+   * Retrieve all the contents required in the predicate object with a single request
+   * 
+   * @param username
+   * @param password
+   * @param session
+   * @param predicate
+   * @return the Node object instances of the contents, or null if the request failed
+   */
+  public static Node[] getAll(String username, String password, AuthenticationDetails session, Predicate predicate){
+    Node[] resultNodes = null;
+    try {
+      AuthenticationUtils.startSession(username, password);
+      session = AuthenticationUtils.getAuthenticationDetails();
+      resultNodes = WebServiceFactory.getRepositoryService().get(predicate);
+    } catch (RepositoryFault e) {
+      // A single missing node fails the whole request, so this is not necessarily an error
+      Logging.connectors.debug(
+          "Alfresco: RepositoryFault during getting "+predicate.getNodes().length+" nodes: " + e.getMessage(), e);
+    } catch (RemoteException e) {
+      Logging.connectors.warn(
+          "Alfresco: Remote exception error during getting "+predicate.getNodes().length+" nodes: " + e.getMessage(), e);
+    } finally {
+      AuthenticationUtils.endSession();
+      session = null;
+    }
+    return resultNodes;
+  }
+  
   /**
    * 
    * @param aspects
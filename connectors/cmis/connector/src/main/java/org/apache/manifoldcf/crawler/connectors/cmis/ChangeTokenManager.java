@@ -0,0 +1,190 @@
+/* $Id$ */
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.manifoldcf.crawler.connectors.cmis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.manifoldcf.core.interfaces.ColumnDescription;
+import org.apache.manifoldcf.core.interfaces.IDBInterface;
+import org.apache.manifoldcf.core.interfaces.IResultRow;
+import org.apache.manifoldcf.core.interfaces.IResultSet;
+import org.apache.manifoldcf.core.interfaces.IThreadContext;
+import org.apache.manifoldcf.core.interfaces.ManifoldCFException;
+
+/**
+ * This class manages the database table in which the CMIS connector remembers
+ * repository change log tokens between seeding passes.
+ *
+ * A job's seeding passes cover adjacent time ranges: the end time of one pass
+ * is the start time of the next.  Each token is therefore recorded against the
+ * job, the repository and the end time of the seeding pass that noted it, and the
+ * next pass of the same job finds it again by its own start time.  Jobs that crawl
+ * the same repository never see each other's tokens.
+ *
+ * <br><br>
+ * <b>cmischangetokens</b>
+ * <table border="1" cellpadding="3" cellspacing="0">
+ * <tr class="TableHeadingColor">
+ * <th>Field</th><th>Type</th><th>Description&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;</th>
+ * <tr><td>jobid</td><td>BIGINT</td><td></td></tr>
+ * <tr><td>repositorykey</td><td>VARCHAR(40)</td><td></td></tr>
+ * <tr><td>seedingtime</td><td>BIGINT</td><td></td></tr>
+ * <tr><td>changetoken</td><td>LONGTEXT</td><td></td></tr>
+ * </table>
+ * <br><br>
+ *
+ */
+public class ChangeTokenManager extends org.apache.manifoldcf.core.database.BaseTable {
+
+  // Database fields
+  protected final static String jobIDField = "jobid";
+  protected final static String repositoryKeyField = "repositorykey";
+  protected final static String seedingTimeField = "seedingtime";
+  protected final static String changeTokenField = "changetoken";
+
+  /** A job's tokens this much older than its newest one are discarded.
+   * They can only be left over from passes that failed before consuming them. */
+  protected final static long TOKEN_RETENTION_INTERVAL = 90L * 24L * 60L * 60L * 1000L;
+
+  /** Constructor.  Note that one token manager handle is only useful within a specific thread context,
+   * so the calling connector object logic must recreate the handle whenever the thread context changes.
+   *@param tc is the thread context.
+   *@param database is the database handle.
+   */
+  public ChangeTokenManager(IThreadContext tc, IDBInterface database)
+    throws ManifoldCFException {
+    super(database,"cmischangetokens");
+  }
+
+  /** Install the manager.
+   */
+  public void install()
+    throws ManifoldCFException {
+    // Standard practice: outer loop, no transactions
+    while (true) {
+      Map existing = getTableSchema(null,null);
+      if (existing == null) {
+        // Install the table.
+        HashMap map = new HashMap();
+        map.put(jobIDField,new ColumnDescription("BIGINT",false,false,null,null,false));
+        map.put(repositoryKeyField,new ColumnDescription("VARCHAR(40)",false,false,null,null,false));
+        map.put(seedingTimeField,new ColumnDescription("BIGINT",false,false,null,null,false));
+        map.put(changeTokenField,new ColumnDescription("LONGTEXT",false,false,null,null,false));
+        performCreate(map,null);
+
+        ArrayList list = new ArrayList();
+        list.add(jobIDField);
+        list.add(repositoryKeyField);
+        list.add(seedingTimeField);
+        addTableIndex(false,list);
+      } else {
+        // Tokens recorded before they were kept per job can't be attributed to a job; drop them,
+        // which costs each job one complete crawl
+        if (existing.get(jobIDField) == null) {
+          performDrop(null);
+          continue;
+        }
+      }
+      break;
+    }
+  }
+
+  /** Uninstall the manager.
+   */
+  public void deinstall()
+    throws ManifoldCFException {
+    performDrop(null);
+  }
+
+  /** Find the change token recorded by a job's seeding pass that ended at a given time.
+   *@param jobID is the identifier of the job.
+   *@param repositoryKey is the key describing the repository.
+   *@param seedingTime is the end time of the previous seeding pass.
+   *@return the token, or null if none was recorded.
+   */
+  public String readToken(Long jobID, String repositoryKey, long seedingTime)
+    throws ManifoldCFException {
+    ArrayList list = new ArrayList();
+    list.add(jobID);
+    list.add(repositoryKey);
+    list.add(new Long(seedingTime));
+    IResultSet set = performQuery("SELECT "+changeTokenField+" FROM "+getTableName()+" WHERE "+
+      jobIDField+"=? AND "+repositoryKeyField+"=? AND "+seedingTimeField+"=?",list,null,null);
+    if (set.getRowCount() == 0)
+      return null;
+    IResultRow row = set.getRow(0);
+    return (String)row.getValue(changeTokenField);
+  }
+
+  /** Record the change token noted by a job's seeding pass, and discard the job's tokens that are
+   * too old to be useful.
+   *@param jobID is the identifier of the job.
+   *@param repositoryKey is the key describing the repository.
+   *@param seedingTime is the end time of the current seeding pass.
+   *@param changeToken is the repository's latest change token as of the start of the pass.
+   */
+  public void writeToken(Long jobID, String repositoryKey, long seedingTime, String changeToken)
+    throws ManifoldCFException {
+    beginTransaction();
+    try {
+      ArrayList list = new ArrayList();
+      list.add(jobID);
+      list.add(repositoryKey);
+      list.add(new Long(seedingTime));
+      performDelete("WHERE "+jobIDField+"=? AND "+repositoryKeyField+"=? AND "+seedingTimeField+"=?",list,null);
+
+      list.clear();
+      list.add(jobID);
+      list.add(new Long(seedingTime - TOKEN_RETENTION_INTERVAL));
+      performDelete("WHERE "+jobIDField+"=? AND "+seedingTimeField+"<?",list,null);
+
+      HashMap map = new HashMap();
+      map.put(jobIDField,jobID);
+      map.put(repositoryKeyField,repositoryKey);
+      map.put(seedingTimeField,new Long(seedingTime));
+      map.put(changeTokenField,changeToken);
+      performInsert(map,null);
+    } catch (ManifoldCFException e) {
+      signalRollback();
+      throw e;
+    } catch (Error e) {
+      signalRollback();
+      throw e;
+    } finally {
+      endTransaction();
+    }
+  }
+
+  /** Remove a token that has been consumed.
+   *@param jobID is the identifier of the job.
+   *@param repositoryKey is the key describing the repository.
+   *@param seedingTime is the seeding time the token was recorded under.
+   */
+  public void deleteToken(Long jobID, String repositoryKey, long seedingTime)
+    throws ManifoldCFException {
+    ArrayList list = new ArrayList();
+    list.add(jobID);
+    list.add(repositoryKey);
+    list.add(new Long(seedingTime));
+    performDelete("WHERE "+jobIDField+"=? AND "+repositoryKeyField+"=? AND "+seedingTimeField+"=?",list,null);
+  }
+
+}
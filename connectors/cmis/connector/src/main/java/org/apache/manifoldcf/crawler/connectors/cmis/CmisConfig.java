@@ -49,6 +49,9 @@ public class CmisConfig {
   /** CMIS protocol binding */
   public static final String BINDING_PARAM = "binding";
   
+  /** Seed incremental crawls from the repository change log */
+  public static final String CHANGE_LOG_PARAM = "changeLog";
+  
   /** CMIS Query */
   public static final String CMIS_QUERY_PARAM = "cmisQuery";
   
@@ -63,5 +66,6 @@ public class CmisConfig {
   public static final String REPOSITORY_ID_DEFAULT_VALUE = StringUtils.EMPTY;
   public static final String BINDING_ATOM_VALUE = "atom";
   public static final String BINDING_WS_VALUE = "ws";
+  public static final String CHANGE_LOG_DEFAULT_VALUE = "false";
   
 }
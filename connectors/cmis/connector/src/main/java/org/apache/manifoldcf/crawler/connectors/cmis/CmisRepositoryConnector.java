@@ -26,16 +26,22 @@ import java.math.BigInteger;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
+import org.apache.chemistry.opencmis.client.api.ChangeEvent;
+import org.apache.chemistry.opencmis.client.api.ChangeEvents;
 import org.apache.chemistry.opencmis.client.api.CmisObject;
 import org.apache.chemistry.opencmis.client.api.Document;
 import org.apache.chemistry.opencmis.client.api.Folder;
 import org.apache.chemistry.opencmis.client.api.ItemIterable;
+import org.apache.chemistry.opencmis.client.api.OperationContext;
 import org.apache.chemistry.opencmis.client.api.Property;
 import org.apache.chemistry.opencmis.client.api.QueryResult;
 import org.apache.chemistry.opencmis.client.api.Repository;
@@ -44,15 +50,27 @@ import org.apache.chemistry.opencmis.client.api.SessionFactory;
 import org.apache.chemistry.opencmis.client.runtime.SessionFactoryImpl;
 import org.apache.chemistry.opencmis.commons.PropertyIds;
 import org.apache.chemistry.opencmis.commons.SessionParameter;
+import org.apache.chemistry.opencmis.commons.data.RepositoryInfo;
 import org.apache.chemistry.opencmis.commons.enums.BindingType;
+import org.apache.chemistry.opencmis.commons.enums.CapabilityChanges;
+import org.apache.chemistry.opencmis.commons.enums.CapabilityQuery;
+import org.apache.chemistry.opencmis.commons.enums.IncludeRelationships;
 import org.apache.chemistry.opencmis.commons.enums.PropertyType;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisBaseException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisConnectionException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisConstraintException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisInvalidArgumentException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisNotSupportedException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisObjectNotFoundException;
 import org.apache.chemistry.opencmis.commons.exceptions.CmisPermissionDeniedException;
+import org.apache.chemistry.opencmis.commons.exceptions.CmisRuntimeException;
 import org.apache.chemistry.opencmis.commons.impl.Constants;
 import org.apache.commons.lang.StringUtils;
 import org.apache.manifoldcf.agents.interfaces.RepositoryDocument;
 import org.apache.manifoldcf.agents.interfaces.ServiceInterruption;
 import org.apache.manifoldcf.core.interfaces.ConfigParams;
+import org.apache.manifoldcf.core.interfaces.DBInterfaceFactory;
+import org.apache.manifoldcf.core.interfaces.IDBInterface;
 import org.apache.manifoldcf.core.interfaces.IHTTPOutput;
 import org.apache.manifoldcf.core.interfaces.IPostParameters;
 import org.apache.manifoldcf.core.interfaces.IThreadContext;
@@ -63,6 +81,7 @@ import org.apache.manifoldcf.crawler.interfaces.DocumentSpecification;
 import org.apache.manifoldcf.crawler.interfaces.IProcessActivity;
 import org.apache.manifoldcf.crawler.interfaces.ISeedingActivity;
 import org.apache.manifoldcf.crawler.system.Logging;
+import org.apache.manifoldcf.crawler.system.ManifoldCF;
 
 /**
  * This is the "repository connector" for a CMIS-compliant repository.
@@ -139,6 +158,28 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
   protected static final long timeToRelease = 300000L;
   protected long lastSessionFetch = -1L;
 
+  /** Maximum number of documents handed to us at once; version checks are batched up to this size */
+  protected static final int MAX_DOCUMENTS_PER_REQUEST = 20;
+
+  /** Maximum number of change events to fetch per change log request */
+  protected static final long CHANGE_LOG_PAGE_SIZE = 1000L;
+
+  /** True if incremental crawls should be seeded from the repository change log */
+  protected boolean changeLog = false;
+
+  /** Change token manager; only valid within the current thread context */
+  protected ChangeTokenManager changeTokenManager = null;
+
+  /** The change token the upcoming seeding pass will read the change log from, or null if the pass
+   * has to enumerate everything.  Decided by getConnectorModel(spec,startTime,jobMode). */
+  protected String seedingToken = null;
+
+  /** The job seedingToken was decided for */
+  protected Long seedingTokenJobID = null;
+
+  /** The seeding start time seedingToken was decided for */
+  protected long seedingTokenStartTime = -1L;
+
   /**
    * Constructor
    */
@@ -146,6 +187,102 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
     super();
   }
 
+  /** Install the connector.
+   * This method is called to initialize persistent storage for the connector, such as database tables etc.
+   * It is called when the connector is registered.
+   *@param threadContext is the current thread context.
+   */
+  @Override
+  public void install(IThreadContext threadContext)
+    throws ManifoldCFException {
+    IDBInterface mainDatabase = DBInterfaceFactory.make(threadContext,
+      ManifoldCF.getMasterDatabaseName(),
+      ManifoldCF.getMasterDatabaseUsername(),
+      ManifoldCF.getMasterDatabasePassword());
+
+    ChangeTokenManager tm = new ChangeTokenManager(threadContext,mainDatabase);
+    mainDatabase.beginTransaction();
+    try {
+      tm.install();
+    } catch (ManifoldCFException e) {
+      mainDatabase.signalRollback();
+      throw e;
+    } catch (Error e) {
+      mainDatabase.signalRollback();
+      throw e;
+    } finally {
+      mainDatabase.endTransaction();
+    }
+  }
+
+  /** Uninstall the connector.
+   * This method is called to remove persistent storage for the connector, such as database tables etc.
+   * It is called when the connector is deregistered.
+   *@param threadContext is the current thread context.
+   */
+  @Override
+  public void deinstall(IThreadContext threadContext)
+    throws ManifoldCFException {
+    IDBInterface mainDatabase = DBInterfaceFactory.make(threadContext,
+      ManifoldCF.getMasterDatabaseName(),
+      ManifoldCF.getMasterDatabaseUsername(),
+      ManifoldCF.getMasterDatabasePassword());
+
+    ChangeTokenManager tm = new ChangeTokenManager(threadContext,mainDatabase);
+    mainDatabase.beginTransaction();
+    try {
+      tm.deinstall();
+    } catch (ManifoldCFException e) {
+      mainDatabase.signalRollback();
+      throw e;
+    } catch (Error e) {
+      mainDatabase.signalRollback();
+      throw e;
+    } finally {
+      mainDatabase.endTransaction();
+    }
+  }
+
+  /** Clear out any state information specific to a given thread.
+   * This method is called when this object is returned to the connection pool.
+   */
+  @Override
+  public void clearThreadContext() {
+    super.clearThreadContext();
+    changeTokenManager = null;
+    seedingToken = null;
+    seedingTokenStartTime = -1L;
+  }
+
+  /** Return the connector model.  Whether a pass can be seeded from the change log is only known
+   * once the repository has been asked, so the general answer is a complete crawl.
+   *@return the model.
+   */
+  @Override
+  public int getConnectorModel() {
+    return MODEL_ALL;
+  }
+
+  /** Return the model for a specific seeding pass.  Only a pass that will be seeded from the
+   * change log reports deletions explicitly; every other pass enumerates everything, and the
+   * framework must then remove whatever was not seen.
+   *@param jobID is the identifier of the job being seeded.
+   *@param spec is the document specification of the job.
+   *@param startTime is the seeding start time.
+   *@param jobMode is an integer describing how the job is being run, whether continuous or once-only.
+   *@return the model.
+   */
+  @Override
+  public int getConnectorModel(Long jobID, DocumentSpecification spec, long startTime, int jobMode)
+      throws ManifoldCFException {
+    seedingToken = findSeedingToken(jobID, spec, startTime);
+    seedingTokenJobID = jobID;
+    seedingTokenStartTime = startTime;
+    if (seedingToken != null)
+      return MODEL_ADD_CHANGE_DELETE;
+    return MODEL_ALL;
+  }
+
   /** 
    * Return the list of activities that this connector supports (i.e. writes into the log).
    * @return the list.
@@ -339,6 +476,9 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
     path = null;
     binding = null;
     repositoryId = null;
+    changeLog = false;
+    seedingToken = null;
+    seedingTokenStartTime = -1L;
 
   }
 
@@ -364,6 +504,7 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
     binding = params.getParameter(CmisConfig.BINDING_PARAM);
     if (StringUtils.isNotEmpty(params.getParameter(CmisConfig.REPOSITORY_ID_PARAM)))
       repositoryId = params.getParameter(CmisConfig.REPOSITORY_ID_PARAM);
+    changeLog = "true".equals(params.getParameter(CmisConfig.CHANGE_LOG_PARAM));
   }
 
   /** Test the connection.  Returns a string describing the connection integrity.
@@ -634,17 +775,121 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
 
     getSession();
 
-    String cmisQuery = StringUtils.EMPTY;
+    String cmisQuery = getCmisQuery(spec);
+
+    Long jobID = activities.getJobID();
+    String startToken;
+    if (seedingTokenStartTime == startTime && jobID.equals(seedingTokenJobID))
+      startToken = seedingToken;
+    else
+      startToken = findSeedingToken(jobID, spec, startTime);
+    seedingToken = null;
+    seedingTokenJobID = null;
+    seedingTokenStartTime = -1L;
+
+    if (startToken != null) {
+      // The framework was told this pass reports deletions, so it must not silently turn into a partial enumeration
+      RepositoryInfo repositoryInfo = getLatestRepositoryInfo();
+      String repositoryKey = getRepositoryKey(repositoryInfo);
+      ChangeTokenManager tm = getChangeTokenManager();
+      if (!seedFromChangeLog(activities, startToken)) {
+        // Forget the token, so that the retry is a complete crawl
+        tm.deleteToken(jobID, repositoryKey, startTime);
+        throw new ServiceInterruption("CMIS: Change log could not be read; retrying as a complete crawl",
+          System.currentTimeMillis() + 60000L);
+      }
+      tm.writeToken(jobID, repositoryKey, endTime, repositoryInfo.getLatestChangeLogToken());
+      tm.deleteToken(jobID, repositoryKey, startTime);
+      return;
+    }
+
+    // Note where the change log stands before enumerating, so that the next pass can start from there
+    String latestToken = null;
+    String repositoryKey = null;
+    if (changeLog) {
+      RepositoryInfo repositoryInfo = getLatestRepositoryInfo();
+      if (hasChangeLog(repositoryInfo)) {
+        latestToken = repositoryInfo.getLatestChangeLogToken();
+        repositoryKey = getRepositoryKey(repositoryInfo);
+      } else
+        Logging.connectors.warn("CMIS: Repository does not expose a change log; seeding all documents");
+    }
+
+    seedAll(activities, cmisQuery);
+
+    if (latestToken != null) {
+      ChangeTokenManager tm = getChangeTokenManager();
+      tm.writeToken(jobID, repositoryKey, endTime, latestToken);
+      if (startTime != 0L)
+        tm.deleteToken(jobID, repositoryKey, startTime);
+    }
+  }
+
+  /** Decide whether a seeding pass can be driven by the change log.  This requires a token saved
+   * by the same job's previous pass that the repository still accepts.  Jobs that use a CMIS query are always
+   * enumerated, because an object can stop matching the query without appearing in the log.
+   *@return the token to read the change log from, or null if everything must be enumerated.
+   */
+  protected String findSeedingToken(Long jobID, DocumentSpecification spec, long startTime)
+      throws ManifoldCFException {
+    if (!changeLog || startTime == 0L || StringUtils.isNotEmpty(getCmisQuery(spec)))
+      return null;
+    try {
+      getSession();
+      RepositoryInfo repositoryInfo = getLatestRepositoryInfo();
+      if (!hasChangeLog(repositoryInfo))
+        return null;
+      String startToken = getChangeTokenManager().readToken(jobID, getRepositoryKey(repositoryInfo), startTime);
+      if (startToken == null)
+        return null;
+      // Make sure the repository still knows the token before promising the framework a change-only pass
+      session.getContentChanges(startToken, false, 1L);
+      return startToken;
+    } catch (ServiceInterruption e) {
+      Logging.connectors.warn("CMIS: Could not check the change log; seeding all documents: " + e.getMessage(), e);
+      return null;
+    } catch (CmisBaseException e) {
+      Logging.connectors.warn("CMIS: Change log not usable; seeding all documents: " + e.getMessage(), e);
+      return null;
+    }
+  }
+
+  /** Find the CMIS query of a job, or the empty string if the job crawls from the root folder.
+   */
+  protected static String getCmisQuery(DocumentSpecification spec) {
     int i = 0;
     while (i < spec.getChildCount()) {
       SpecificationNode sn = spec.getChild(i);
       if (sn.getType().equals(JOB_STARTPOINT_NODE_TYPE)) {
-        cmisQuery = sn.getAttributeValue(CmisConfig.CMIS_QUERY_PARAM);
-        break;
+        String cmisQuery = sn.getAttributeValue(CmisConfig.CMIS_QUERY_PARAM);
+        return (cmisQuery == null)?StringUtils.EMPTY:cmisQuery;
       }
       i++;
     }
+    return StringUtils.EMPTY;
+  }
+
+  /** Fetch the repository info directly from the binding, since the session's copy
+   * carries the change token as of when the session was created.
+   */
+  protected RepositoryInfo getLatestRepositoryInfo() {
+    return session.getBinding().getRepositoryService()
+        .getRepositoryInfo(session.getRepositoryInfo().getId(), null);
+  }
+
+  /** Check whether a repository maintains a change log that covers object changes and deletions.
+   */
+  protected static boolean hasChangeLog(RepositoryInfo repositoryInfo) {
+    CapabilityChanges changesCapability = (repositoryInfo.getCapabilities() == null)?null:
+        repositoryInfo.getCapabilities().getChangesCapability();
+    return repositoryInfo.getLatestChangeLogToken() != null && changesCapability != null &&
+        changesCapability != CapabilityChanges.NONE;
+  }
 
+  /** Seed everything the job describes: either the children of the root folder, or the query results.
+   */
+  protected void seedAll(ISeedingActivity activities, String cmisQuery)
+      throws ManifoldCFException {
     if (StringUtils.isEmpty(cmisQuery)) {
       // get root Documents from the CMIS Repository
       ItemIterable<CmisObject> cmisObjects = session.getRootFolder()
@@ -653,13 +898,74 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
         activities.addSeedDocument(cmisObject.getId());
       }
     } else {
-      ItemIterable<QueryResult> results = session.query(cmisQuery, false);
-      for (QueryResult result : results) {
-        String id = result.getPropertyValueById(PropertyIds.OBJECT_ID);
-        activities.addSeedDocument(id);
+      seedFromQuery(activities, cmisQuery);
+    }
+  }
+
+  /** Seed the results of the job's CMIS query.
+   */
+  protected void seedFromQuery(ISeedingActivity activities, String cmisQuery)
+      throws ManifoldCFException {
+    ItemIterable<QueryResult> results = session.query(cmisQuery, false);
+    for (QueryResult result : results) {
+      String id = result.getPropertyValueById(PropertyIds.OBJECT_ID);
+      activities.addSeedDocument(id);
+    }
+  }
+
+  /** Seed the objects mentioned in the change log since a given token.
+   *@param activities is the seeding activity.
+   *@param changeToken is the token to start from.
+   *@return false if the log could not be read from the given token, in which case a full seeding is required.
+   */
+  protected boolean seedFromChangeLog(ISeedingActivity activities, String changeToken)
+      throws ManifoldCFException {
+    try {
+      while (true) {
+        ChangeEvents changeEvents = session.getContentChanges(changeToken, false, CHANGE_LOG_PAGE_SIZE);
+        for (ChangeEvent changeEvent : changeEvents.getChangeEvents()) {
+          String objectId = changeEvent.getObjectId();
+          if (objectId == null)
+            continue;
+          activities.addSeedDocument(objectId);
+        }
+        String nextToken = changeEvents.getLatestChangeLogToken();
+        if (!changeEvents.getHasMoreItems() || nextToken == null || nextToken.equals(changeToken))
+          return true;
+        changeToken = nextToken;
       }
+    } catch (CmisNotSupportedException e) {
+      Logging.connectors.warn("CMIS: Change log not supported; seeding all documents: " + e.getMessage(), e);
+      return false;
+    } catch (CmisInvalidArgumentException e) {
+      // The token is no longer known to the repository, e.g. because the log was truncated
+      Logging.connectors.warn("CMIS: Change log token rejected; seeding all documents: " + e.getMessage(), e);
+      return false;
+    } catch (CmisConstraintException e) {
+      Logging.connectors.warn("CMIS: Change log token rejected; seeding all documents: " + e.getMessage(), e);
+      return false;
     }
+  }
 
+  /** Build the key under which change tokens for this connection's repository are kept.
+   */
+  protected String getRepositoryKey(RepositoryInfo repositoryInfo)
+      throws ManifoldCFException {
+    return ManifoldCF.hash(protocol + "://" + server + ":" + port + path + "|" + repositoryInfo.getId());
+  }
+
+  /** Get the change token manager for the current thread context.
+   */
+  protected ChangeTokenManager getChangeTokenManager()
+      throws ManifoldCFException {
+    if (changeTokenManager == null) {
+      IDBInterface databaseHandle = DBInterfaceFactory.make(currentContext,
+        ManifoldCF.getMasterDatabaseName(),
+        ManifoldCF.getMasterDatabaseUsername(),
+        ManifoldCF.getMasterDatabasePassword());
+      changeTokenManager = new ChangeTokenManager(currentContext, databaseHandle);
+    }
+    return changeTokenManager;
   }
 
   /** 
@@ -668,7 +974,7 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
    */
   @Override
   public int getMaxDocumentRequest() {
-    return 1;
+    return MAX_DOCUMENTS_PER_REQUEST;
   }
 
   /**
@@ -708,6 +1014,7 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
     String path = parameters.getParameter(CmisConfig.PATH_PARAM);
     String repositoryId = parameters.getParameter(CmisConfig.REPOSITORY_ID_PARAM);
     String binding = parameters.getParameter(CmisConfig.BINDING_PARAM);
+    String changeLog = parameters.getParameter(CmisConfig.CHANGE_LOG_PARAM);
       
     if(username == null)
       username = StringUtils.EMPTY;
@@ -725,6 +1032,8 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
       repositoryId = StringUtils.EMPTY;
     if(binding == null)
       binding = CmisConfig.BINDING_ATOM_VALUE;
+    if(changeLog == null)
+      changeLog = CmisConfig.CHANGE_LOG_DEFAULT_VALUE;
       
     newMap.put(CmisConfig.USERNAME_PARAM, username);
     newMap.put(CmisConfig.PASSWORD_PARAM, password);
@@ -734,6 +1043,7 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
     newMap.put(CmisConfig.PATH_PARAM, path);
     newMap.put(CmisConfig.REPOSITORY_ID_PARAM, repositoryId);
     newMap.put(CmisConfig.BINDING_PARAM, binding);
+    newMap.put(CmisConfig.CHANGE_LOG_PARAM, changeLog);
   }
   
   /**
@@ -879,6 +1189,11 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
       parameters.setParameter(CmisConfig.REPOSITORY_ID_PARAM, repositoryId);
     }
 
+    String changeLog = variableContext.getParameter(CmisConfig.CHANGE_LOG_PARAM);
+    if (changeLog != null) {
+      parameters.setParameter(CmisConfig.CHANGE_LOG_PARAM, changeLog);
+    }
+
     return null;
   }
 
@@ -1231,9 +1546,32 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
     getSession();
     
     String[] rval = new String[documentIdentifiers.length];
+
+    // First, try to get the version labels of all the documents with a single query
+    Map<String,String> versionLabels = getVersionLabels(documentIdentifiers);
+
+    OperationContext versionContext = null;
     int i = 0;
     while (i < rval.length){
-      CmisObject cmisObject = session.getObject(documentIdentifiers[i]);
+      String versionLabel = versionLabels.get(documentIdentifiers[i]);
+      if (versionLabel != null) {
+        rval[i] = versionLabel;
+        i++;
+        continue;
+      }
+
+      // Folders, and anything the query didn't find, are looked up one at a time
+      if (versionContext == null)
+        versionContext = getVersionOperationContext();
+      CmisObject cmisObject;
+      try {
+        cmisObject = session.getObject(documentIdentifiers[i], versionContext);
+      } catch (CmisObjectNotFoundException e) {
+        // The object is gone
+        rval[i] = null;
+        i++;
+        continue;
+      }
       if (cmisObject.getBaseType().getId().equals(CMIS_DOCUMENT_BASE_TYPE)) {
         Document document = (Document) cmisObject;
         
@@ -1253,4 +1591,91 @@ public class CmisRepositoryConnector extends BaseRepositoryConnector {
     }
     return rval;
   }
+
+  /** Look up the version labels of a set of documents using one query.
+   * Identifiers that are not found (folders, non-current versions, deleted documents, or documents
+   * without a version label) are simply left out of the result.
+   *@param documentIdentifiers are the object identifiers.
+   *@return a map from object identifier to non-empty version label.
+   */
+  protected Map<String,String> getVersionLabels(String[] documentIdentifiers) {
+    Map<String,String> rval = new HashMap<String,String>();
+    if (documentIdentifiers.length < 2)
+      return rval;
+    RepositoryInfo repositoryInfo = session.getRepositoryInfo();
+    if (repositoryInfo.getCapabilities() == null ||
+      repositoryInfo.getCapabilities().getQueryCapability() == null ||
+      repositoryInfo.getCapabilities().getQueryCapability() == CapabilityQuery.NONE)
+      return rval;
+
+    Set<String> requested = new HashSet<String>();
+    StringBuilder sb = new StringBuilder("SELECT ");
+    sb.append(PropertyIds.OBJECT_ID).append(",").append(PropertyIds.VERSION_LABEL)
+      .append(" FROM ").append(CMIS_DOCUMENT_BASE_TYPE)
+      .append(" WHERE ").append(PropertyIds.OBJECT_ID).append(" IN (");
+    int i = 0;
+    while (i < documentIdentifiers.length) {
+      if (i > 0)
+        sb.append(",");
+      sb.append("'").append(escapeQueryString(documentIdentifiers[i])).append("'");
+      requested.add(documentIdentifiers[i]);
+      i++;
+    }
+    sb.append(")");
+
+    try {
+      ItemIterable<QueryResult> results = session.query(sb.toString(), false);
+      for (QueryResult result : results) {
+        String id = result.getPropertyValueById(PropertyIds.OBJECT_ID);
+        String versionLabel = result.getPropertyValueById(PropertyIds.VERSION_LABEL);
+        if (id != null && requested.contains(id) && StringUtils.isNotEmpty(versionLabel))
+          rval.put(id, versionLabel);
+      }
+    } catch (CmisInvalidArgumentException e) {
+      // Repository doesn't accept this kind of query; fall back to individual lookups
+      Logging.connectors.debug("CMIS: Batched version query rejected: " + e.getMessage());
+      rval.clear();
+    } catch (CmisNotSupportedException e) {
+      Logging.connectors.debug("CMIS: Batched version query not supported: " + e.getMessage());
+      rval.clear();
+    } catch (CmisRuntimeException e) {
+      Logging.connectors.debug("CMIS: Batched version query failed: " + e.getMessage());
+      rval.clear();
+    }
+    return rval;
+  }
+
+  /** Build an operation context that fetches only what is needed to compute a version string.
+   */
+  protected OperationContext getVersionOperationContext() {
+    Set<String> filter = new HashSet<String>();
+    filter.add(PropertyIds.OBJECT_ID);
+    filter.add(PropertyIds.BASE_TYPE_ID);
+    filter.add(PropertyIds.OBJECT_TYPE_ID);
+    filter.add(PropertyIds.VERSION_LABEL);
+    OperationContext context = session.createOperationContext();
+    context.setFilter(filter);
+    context.setIncludeAcls(false);
+    context.setIncludeAllowableActions(false);
+    context.setIncludePolicies(false);
+    context.setIncludeRelationships(IncludeRelationships.NONE);
+    context.setRenditionFilterString("cmis:none");
+    context.setIncludePathSegments(false);
+    context.setCacheEnabled(false);
+    return context;
+  }
+
+  /** Escape a value for use inside a quoted CMIS query string literal.
+   */
+  protected static String escapeQueryString(String value) {
+    StringBuilder sb = new StringBuilder();
+    int i = 0;
+    while (i < value.length()) {
+      char x = value.charAt(i++);
+      if (x == '\\' || x == '\'')
+        sb.append('\\');
+      sb.append(x);
+    }
+    return sb.toString();
+  }
 }
@@ -1436,8 +1436,8 @@ public class FilenetConnector extends org.apache.manifoldcf.crawler.connectors.B
   @Override
   public int getMaxDocumentRequest()
   {
-    // 1 at a time, since this connector does not deal with documents en masse, but one at a time.
-    return 1;
+    // The RMI server is asked about each document separately; batching just spares framework transactions
+    return 10;
   }
 
   // UI support methods.
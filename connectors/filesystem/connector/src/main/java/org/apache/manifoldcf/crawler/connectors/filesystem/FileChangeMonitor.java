@@ -0,0 +1,343 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.filesystem;
+
+import org.apache.manifoldcf.crawler.system.Logging;
+import java.util.*;
+import java.io.*;
+
+/** This class watches a set of directory trees for files and directories being created, modified,
+* or deleted, and keeps a log of the paths involved, so that continuous jobs can seed just those paths
+* rather than rescanning.
+*
+* The monitor keeps the attributes of everything under its roots in memory, and a background thread
+* compares them against the file system at a fixed interval.  Each log entry is stamped with the time
+* the change was seen, so that any number of jobs watching the same roots can each ask for what changed
+* since their own last seeding, even while a check is under way.  When the log cannot answer for the
+* whole interval a job asks about (because the monitor started after it, or old entries were dropped to
+* bound the log), the job must scan instead.  Trees with more paths than the monitor is willing to hold
+* are not watched at all.
+*
+* Monitors are shared by all connector instances, and are found by their set of roots.  A monitor
+* that nobody has asked about for a long time stops itself.
+*/
+public class FileChangeMonitor
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Maximum number of log entries kept by one monitor */
+  protected final static int MAX_LOG_SIZE = 100000;
+  /** Maximum number of paths one monitor keeps attributes for */
+  protected final static int MAX_SNAPSHOT_SIZE = 1000000;
+  /** A monitor not asked about for this long shuts down */
+  protected final static long IDLE_TIME = 24L * 60L * 60000L;
+
+  /** Running monitors, keyed by their roots */
+  protected final static Map<String,FileChangeMonitor> monitors = new HashMap<String,FileChangeMonitor>();
+
+  /** The key of this monitor in the map */
+  protected final String key;
+  /** Canonical root paths */
+  protected final String[] roots;
+  /** Time between checks */
+  protected final long interval;
+  /** Maximum number of paths to keep attributes for */
+  protected final int maxPaths;
+  /** The thread doing the checking */
+  protected final MonitorThread thread;
+
+  // The following are all protected by synchronizing on this object.
+  /** Change log, oldest first */
+  protected final LinkedList<ChangeRecord> log = new LinkedList<ChangeRecord>();
+  /** Changes before this time may be missing from the log; Long.MAX_VALUE until the first check is complete */
+  protected long horizon = Long.MAX_VALUE;
+  /** Last time anyone asked for changes */
+  protected long lastAccessTime;
+  /** Set when the monitor has shut down */
+  protected boolean stopped = false;
+  /** Time the monitor gave up because the trees were too large, or -1L */
+  protected long overflowTime = -1L;
+
+  /** Find the running monitor for a set of roots, starting one if there is none.
+  *@param roots are the canonical root paths.
+  *@param interval is the time between checks, in milliseconds; used only if a monitor must be started.
+  *@return the monitor.
+  */
+  public static FileChangeMonitor findMonitor(String[] roots, long interval)
+  {
+    String[] sortedRoots = (String[])roots.clone();
+    java.util.Arrays.sort(sortedRoots);
+    StringBuilder sb = new StringBuilder();
+    for (String root : sortedRoots)
+    {
+      sb.append(root).append("\n");
+    }
+    String key = sb.toString();
+    synchronized (monitors)
+    {
+      FileChangeMonitor rval = monitors.get(key);
+      // A monitor that gave up on trees too large stays around, so that they are not walked in vain on every
+      // seeding; after a while, try again
+      if (rval != null && rval.isOverflowExpired())
+      {
+        monitors.remove(key);
+        rval = null;
+      }
+      if (rval == null)
+      {
+        rval = new FileChangeMonitor(key,sortedRoots,interval,MAX_SNAPSHOT_SIZE);
+        monitors.put(key,rval);
+        rval.thread.start();
+      }
+      return rval;
+    }
+  }
+
+  /** Constructor.
+  */
+  protected FileChangeMonitor(String key, String[] roots, long interval, int maxPaths)
+  {
+    this.key = key;
+    this.roots = roots;
+    this.interval = interval;
+    this.maxPaths = maxPaths;
+    this.lastAccessTime = System.currentTimeMillis();
+    this.thread = new MonitorThread();
+  }
+
+  /** Get the paths that changed at or after a given time.
+  *@param startTime is the time of interest.
+  *@return the canonical paths of created, modified, or deleted files and directories, or null if the log
+  * cannot account for everything since startTime.
+  */
+  public synchronized Set<String> getChangedPaths(long startTime)
+  {
+    lastAccessTime = System.currentTimeMillis();
+    if (stopped || startTime < horizon)
+      return null;
+    Set<String> rval = new LinkedHashSet<String>();
+    // Walk backwards from the newest entry, since the caller normally wants only recent ones
+    ListIterator<ChangeRecord> iter = log.listIterator(log.size());
+    while (iter.hasPrevious())
+    {
+      ChangeRecord record = iter.previous();
+      if (record.time < startTime)
+        break;
+      rval.add(record.path);
+    }
+    return rval;
+  }
+
+  /** Check whether this monitor gave up on its trees long enough ago to try again.
+  */
+  protected synchronized boolean isOverflowExpired()
+  {
+    return overflowTime != -1L && System.currentTimeMillis() - overflowTime >= IDLE_TIME;
+  }
+
+  /** Note a change, as of now.
+  */
+  protected synchronized void noteChange(String path)
+  {
+    log.add(new ChangeRecord(System.currentTimeMillis(),path));
+    while (log.size() > MAX_LOG_SIZE)
+    {
+      ChangeRecord record = log.removeFirst();
+      // Anything up to and including this time may no longer be complete
+      horizon = record.time + 1L;
+    }
+  }
+
+  /** Note that a check has finished.
+  *@return false if the monitor should shut down.
+  */
+  protected boolean noteCheckDone()
+  {
+    synchronized (monitors)
+    {
+      synchronized (this)
+      {
+        // The first check only learns what is there, so a change made during it, to a path it had not reached
+        // yet, is never reported.  Changes made once it is over will be caught.
+        if (horizon == Long.MAX_VALUE)
+          horizon = System.currentTimeMillis();
+        if (System.currentTimeMillis() - lastAccessTime < IDLE_TIME)
+          return true;
+        stopped = true;
+        monitors.remove(key);
+        return false;
+      }
+    }
+  }
+
+  /** Note that the trees hold too many paths to watch.
+  */
+  protected synchronized void noteOverflow()
+  {
+    overflowTime = System.currentTimeMillis();
+    stopped = true;
+  }
+
+  /** Thread that does the periodic checking */
+  protected class MonitorThread extends Thread
+  {
+    /** What we know about each path, keyed by the path as listed */
+    protected Map<String,PathState> snapshot = new HashMap<String,PathState>();
+
+    public MonitorThread()
+    {
+      super();
+      setDaemon(true);
+      setName("Filesystem change monitor");
+    }
+
+    public void run()
+    {
+      try
+      {
+        boolean firstCheck = true;
+        while (true)
+        {
+          Map<String,PathState> newSnapshot = new HashMap<String,PathState>(snapshot.size());
+          Set<String> visited = new HashSet<String>();
+          for (String root : roots)
+          {
+            if (!checkPath(new File(root),root,newSnapshot,visited,firstCheck))
+            {
+              Logging.connectors.warn("Filesystem: More than "+maxPaths+" paths under "+Arrays.toString(roots)+
+                "; not watching them for changes");
+              snapshot = null;
+              noteOverflow();
+              return;
+            }
+          }
+          // Whatever is left in the old snapshot is gone
+          if (!firstCheck)
+          {
+            for (PathState state : snapshot.values())
+            {
+              noteChange(state.canonicalPath);
+            }
+          }
+          snapshot = newSnapshot;
+          firstCheck = false;
+          if (!noteCheckDone())
+            return;
+          Thread.sleep(interval);
+        }
+      }
+      catch (InterruptedException e)
+      {
+        // Shut down
+      }
+      catch (Throwable e)
+      {
+        Logging.connectors.error("Filesystem change monitor stopping due to error: "+e.getMessage(),e);
+      }
+      finally
+      {
+        synchronized (monitors)
+        {
+          synchronized (FileChangeMonitor.this)
+          {
+            stopped = true;
+            if (overflowTime == -1L && monitors.get(key) == FileChangeMonitor.this)
+              monitors.remove(key);
+          }
+        }
+      }
+    }
+
+    /** Check one path, and everything under it if it is a directory.
+    *@return false if there were more paths than the monitor will keep.
+    */
+    protected boolean checkPath(File file, String canonicalPath, Map<String,PathState> newSnapshot, Set<String> visited,
+      boolean firstCheck)
+      throws IOException
+    {
+      if (newSnapshot.size() >= maxPaths)
+        return false;
+      String path = file.getPath();
+      PathState oldState = snapshot.remove(path);
+      boolean isDirectory = file.isDirectory();
+      long lastModified = file.lastModified();
+      long length = isDirectory?0L:file.length();
+      if (lastModified == 0L && !file.exists())
+      {
+        // Vanished since it was listed; put the old state back so it is reported as deleted
+        if (oldState != null)
+          snapshot.put(path,oldState);
+        return true;
+      }
+      if (canonicalPath == null)
+      {
+        canonicalPath = (oldState != null)?oldState.canonicalPath:file.getCanonicalPath();
+        // Usually the same as the listed path, and there is no need to hold that twice
+        if (canonicalPath.equals(path))
+          canonicalPath = path;
+      }
+      newSnapshot.put(path,new PathState(canonicalPath,lastModified,length));
+      if (!firstCheck && (oldState == null || oldState.lastModified != lastModified || oldState.length != length))
+        noteChange(canonicalPath);
+
+      if (isDirectory && visited.add(canonicalPath))
+      {
+        File[] files = file.listFiles();
+        if (files != null)
+        {
+          for (File f : files)
+          {
+            if (!checkPath(f,null,newSnapshot,visited,firstCheck))
+              return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  /** What we know about a path */
+  protected static class PathState
+  {
+    public final String canonicalPath;
+    public final long lastModified;
+    public final long length;
+
+    public PathState(String canonicalPath, long lastModified, long length)
+    {
+      this.canonicalPath = canonicalPath;
+      this.lastModified = lastModified;
+      this.length = length;
+    }
+  }
+
+  /** One log entry */
+  protected static class ChangeRecord
+  {
+    public final long time;
+    public final String path;
+
+    public ChangeRecord(long time, String path)
+    {
+      this.time = time;
+      this.path = path;
+    }
+  }
+
+}
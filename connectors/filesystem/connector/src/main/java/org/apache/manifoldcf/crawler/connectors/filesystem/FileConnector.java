@@ -23,6 +23,8 @@ import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.crawler.system.Logging;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.io.*;
 
 /** This is the "repository connector" for a file system.  It's a relative of the share crawler, and should have
@@ -43,9 +45,35 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
 
   // Parameters that this connector cares about
   // public final static String ROOTDIRECTORY = "rootdirectory";
+  /** Whether crawls after the first one should only look at what changed */
+  public final static String INCREMENTAL = "incremental";
+  /** The number of threads walking directory trees during incremental seeding */
+  public final static String WALKERTHREADS = "walkerthreads";
+  /** Whether continuous jobs should seed from a change monitor rather than by scanning */
+  public final static String WATCH = "watch";
+  /** Seconds between checks by the change monitor */
+  public final static String WATCHINTERVAL = "watchinterval";
+
+  /** Default number of directory walker threads */
+  protected final static int DEFAULT_WALKER_THREADS = 4;
+  /** Default seconds between change monitor checks */
+  protected final static int DEFAULT_WATCH_INTERVAL = 60;
+  /** Modification times this close to the last seeding time are considered changed, to allow for clock
+  * differences between this machine and file servers */
+  protected final static long MODIFICATION_SLACK = 5L * 60000L;
 
   // Local data
   // protected File rootDirectory = null;
+  protected boolean incremental = false;
+  protected int walkerThreads = DEFAULT_WALKER_THREADS;
+  protected boolean watch = false;
+  protected int watchInterval = DEFAULT_WATCH_INTERVAL;
+
+  /** The changed files the upcoming incremental seeding pass will seed, or null if the pass must crawl
+  * everything.  Found by getConnectorModel(spec,startTime,jobMode). */
+  protected List<String> seedingPaths = null;
+  /** The seeding start time seedingPaths was found for */
+  protected long seedingPathsStartTime = -1L;
 
   /** Constructor.
   */
@@ -53,6 +81,99 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
   {
   }
 
+  /** Connect.
+  *@param configParams is the set of configuration parameters, which
+  * in this case describe the crawling mode.
+  */
+  @Override
+  public void connect(ConfigParams configParams)
+  {
+    super.connect(configParams);
+    incremental = "true".equals(configParams.getParameter(INCREMENTAL));
+    walkerThreads = DEFAULT_WALKER_THREADS;
+    String threads = configParams.getParameter(WALKERTHREADS);
+    if (threads != null)
+    {
+      try
+      {
+        walkerThreads = Integer.parseInt(threads);
+      }
+      catch (NumberFormatException e)
+      {
+        Logging.connectors.warn("Filesystem: Bad walker thread count '"+threads+"'; using default");
+      }
+      if (walkerThreads < 1)
+        walkerThreads = 1;
+    }
+    watch = "true".equals(configParams.getParameter(WATCH));
+    watchInterval = DEFAULT_WATCH_INTERVAL;
+    String interval = configParams.getParameter(WATCHINTERVAL);
+    if (interval != null)
+    {
+      try
+      {
+        watchInterval = Integer.parseInt(interval);
+      }
+      catch (NumberFormatException e)
+      {
+        Logging.connectors.warn("Filesystem: Bad change check interval '"+interval+"'; using default");
+      }
+      if (watchInterval < 1)
+        watchInterval = 1;
+    }
+  }
+
+  /** Close the connection.
+  */
+  @Override
+  public void disconnect()
+    throws ManifoldCFException
+  {
+    incremental = false;
+    walkerThreads = DEFAULT_WALKER_THREADS;
+    watch = false;
+    watchInterval = DEFAULT_WATCH_INTERVAL;
+    seedingPaths = null;
+    seedingPathsStartTime = -1L;
+    super.disconnect();
+  }
+
+  /** Tell the world what model this connector uses for getDocumentIdentifiers().
+  * Whether an incremental pass is possible is only known once the trees have been walked, so the
+  * general answer is a complete crawl.
+  *@return the model type value.
+  */
+  @Override
+  public int getConnectorModel()
+  {
+    return MODEL_ALL;
+  }
+
+  /** Tell the framework what model a specific seeding pass will use.
+  * In incremental mode, a once-only job's pass after the first one walks the trees first.  If no
+  * directory was modified since the last seeding, nothing can have been added, removed or renamed,
+  * and only the modified files are seeded.  Otherwise the pass is a complete crawl, so that the
+  * framework removes whatever is gone, including whole subtrees.  Continuous jobs never remove
+  * unreached documents, so for them the walk is left to seeding.
+  *@param jobID is the identifier of the job being seeded.
+  *@param spec is the document specification of the job.
+  *@param startTime is the seeding start time that will be passed to addSeedDocuments().
+  *@param jobMode is an integer describing how the job is being run, whether continuous or once-only.
+  *@return the model type value.
+  */
+  @Override
+  public int getConnectorModel(Long jobID, DocumentSpecification spec, long startTime, int jobMode)
+    throws ManifoldCFException
+  {
+    if (!incremental || startTime == 0L)
+      return MODEL_ALL;
+    if (jobMode == JOBMODE_CONTINUOUS)
+      return MODEL_ADD_CHANGE;
+    seedingPaths = findChangedFiles(spec,startTime - MODIFICATION_SLACK);
+    seedingPathsStartTime = startTime;
+    return (seedingPaths == null)?MODEL_ALL:MODEL_ADD_CHANGE;
+  }
+
   /** Return the list of relationship types that this connector recognizes.
   *@return the list.
   */
@@ -131,6 +252,123 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
   }
 
 
+  /** Queue "seed" documents.
+  * When the connection is set to watch for changes, continuous jobs seed just the paths that a change
+  * monitor saw being created, modified, or deleted since the last seeding.  Deleted paths are seeded too;
+  * they are found to be missing when versioned, and removed.  Whenever the monitor cannot account for the
+  * whole time range (on the first seeding after it starts, or if it had to drop changes), the usual scan
+  * is done instead.
+  * Other incremental passes seed what the walk found modified: for once-only jobs just the modified files,
+  * as decided by getConnectorModel(spec,startTime,jobMode), and for continuous jobs the modified files and
+  * directories.
+  *@param activities is the interface this method should use to perform whatever framework actions are desired.
+  *@param spec is a document specification (that comes from the job).
+  *@param startTime is the beginning of the time range to consider, inclusive.
+  *@param endTime is the end of the time range to consider, exclusive.
+  *@param jobMode is an integer describing how the job is being run, whether continuous or once-only.
+  */
+  @Override
+  public void addSeedDocuments(ISeedingActivity activities, DocumentSpecification spec,
+    long startTime, long endTime, int jobMode)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    if (watch && jobMode == JOBMODE_CONTINUOUS)
+    {
+      String[] startPoints = getStartPoints(spec);
+      FileChangeMonitor monitor = FileChangeMonitor.findMonitor(startPoints,(long)watchInterval * 1000L);
+      if (startTime > 0L)
+      {
+        Set<String> changedPaths = monitor.getChangedPaths(startTime);
+        if (changedPaths != null)
+        {
+          for (String path : changedPaths)
+          {
+            if (checkChangedPath(path,startPoints,spec))
+              activities.addSeedDocument(path);
+          }
+          return;
+        }
+        if (Logging.connectors.isDebugEnabled())
+          Logging.connectors.debug("Filesystem: Change monitor does not cover seeding start time "+startTime+"; scanning instead");
+      }
+    }
+
+    if (incremental && startTime > 0L)
+    {
+      if (jobMode == JOBMODE_CONTINUOUS)
+      {
+        IDocumentIdentifierStream ids = new ChangedPathStream(spec,startTime - MODIFICATION_SLACK,walkerThreads);
+        try
+        {
+          while (true)
+          {
+            String id = ids.getNextIdentifier();
+            if (id == null)
+              break;
+            activities.addSeedDocument(id);
+          }
+        }
+        finally
+        {
+          ids.close();
+        }
+        return;
+      }
+
+      List<String> changedPaths;
+      if (seedingPathsStartTime == startTime)
+        changedPaths = seedingPaths;
+      else
+        changedPaths = findChangedFiles(spec,startTime - MODIFICATION_SLACK);
+      seedingPaths = null;
+      seedingPathsStartTime = -1L;
+      if (changedPaths != null)
+      {
+        for (String path : changedPaths)
+        {
+          activities.addSeedDocument(path);
+        }
+        return;
+      }
+    }
+    super.addSeedDocuments(activities,spec,startTime,endTime,jobMode);
+  }
+
+  /** Walk the trees under the start points, looking for files modified since a given time.
+  *@param spec is the document specification.
+  *@param changedSince is the time to compare modification times against.
+  *@return the canonical paths of the modified files, or null if a directory was modified or a start point
+  * is gone, in which case the trees must be crawled completely.
+  */
+  protected List<String> findChangedFiles(DocumentSpecification spec, long changedSince)
+    throws ManifoldCFException
+  {
+    List<String> rval = new ArrayList<String>();
+    ChangedPathStream ids = new ChangedPathStream(spec,changedSince,walkerThreads);
+    try
+    {
+      while (!ids.isStructureChanged())
+      {
+        String id = ids.getNextIdentifier();
+        if (id == null)
+          return rval;
+        rval.add(id);
+      }
+    }
+    catch (ServiceInterruption e)
+    {
+      // The walk itself never asks for a retry
+      throw new ManifoldCFException(e.getMessage(),e);
+    }
+    finally
+    {
+      ids.close();
+    }
+    if (Logging.connectors.isDebugEnabled())
+      Logging.connectors.debug("Filesystem: Directories changed since "+changedSince+"; crawling everything");
+    return null;
+  }
+
   /** Get document versions given an array of document identifiers.
   * This method is called for EVERY document that is considered. It is therefore important to perform
   * as little work as possible here.
@@ -167,6 +405,15 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
           long lastModified = file.lastModified();
           rval[i] = new Long(lastModified).toString();
 
+          if (incremental)
+          {
+            // Also include a digest of the directory's listing, since a modification time alone can miss
+            // changes that happen within its resolution
+            String[] names = file.list();
+            if (names != null)
+              rval[i] = rval[i] + ":" + digestListing(names);
+          }
+
           // Signal that we don't have any versioning.
           // rval[i] = "";
         }
@@ -239,6 +486,8 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
                     activities.addDocumentReference(canonicalPath,documentIdentifier,RELATIONSHIP_CHILD);
                 }
               }
+              if (incremental)
+                activities.recordDocument(documentIdentifier,versions[i]);
             }
             catch (IOException e)
             {
@@ -309,6 +558,25 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
     }
   }
 
+  /** Compute a digest of a directory listing, independent of the order of the names.
+  *@param names is the listing; it is sorted in place.
+  *@return the digest.
+  */
+  protected static String digestListing(String[] names)
+    throws ManifoldCFException
+  {
+    java.util.Arrays.sort(names);
+    java.security.MessageDigest digest = org.apache.manifoldcf.crawler.system.ManifoldCF.startHash();
+    int i = 0;
+    while (i < names.length)
+    {
+      // Names cannot contain a null character, so it separates them unambiguously
+      org.apache.manifoldcf.crawler.system.ManifoldCF.addToHash(digest,names[i++]);
+      org.apache.manifoldcf.crawler.system.ManifoldCF.addToHash(digest,"\u0000");
+    }
+    return org.apache.manifoldcf.crawler.system.ManifoldCF.getHashValue(digest);
+  }
+
   protected final static Map<String,String> mimeMap;
   static {
     mimeMap = new HashMap<String,String>();
@@ -351,14 +619,47 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
   *@param tabsArray is an array of tab names.  Add to this array any tab names that are specific to the connector.
   */
   @Override
-  public void outputConfigurationHeader(IThreadContext threadContext, IHTTPOutput out, ConfigParams parameters, List<String> tabsArray)
+  public void outputConfigurationHeader(IThreadContext threadContext, IHTTPOutput out, Locale locale, ConfigParams parameters, List<String> tabsArray)
     throws ManifoldCFException, IOException
   {
+    tabsArray.add(Messages.getString(locale,"FileConnector.Crawling"));
+
     out.print(
 "<script type=\"text/javascript\">\n"+
 "<!--\n"+
+"function checkConfig()\n"+
+"{\n"+
+"  if (editconnection.walkerthreads.value != \"\" && !isInteger(editconnection.walkerthreads.value))\n"+
+"  {\n"+
+"    alert(\""+Messages.getBodyJavascriptString(locale,"FileConnector.WalkerThreadsMustBeAnInteger")+"\");\n"+
+"    editconnection.walkerthreads.focus();\n"+
+"    return false;\n"+
+"  }\n"+
+"  if (editconnection.watchinterval.value != \"\" && !isInteger(editconnection.watchinterval.value))\n"+
+"  {\n"+
+"    alert(\""+Messages.getBodyJavascriptString(locale,"FileConnector.WatchIntervalMustBeAnInteger")+"\");\n"+
+"    editconnection.watchinterval.focus();\n"+
+"    return false;\n"+
+"  }\n"+
+"  return true;\n"+
+"}\n"+
+"\n"+
 "function checkConfigForSave()\n"+
 "{\n"+
+"  if (editconnection.walkerthreads.value == \"\" || !isInteger(editconnection.walkerthreads.value) || parseInt(editconnection.walkerthreads.value) < 1)\n"+
+"  {\n"+
+"    alert(\""+Messages.getBodyJavascriptString(locale,"FileConnector.WalkerThreadsMustBeAPositiveInteger")+"\");\n"+
+"    SelectTab(\""+Messages.getBodyJavascriptString(locale,"FileConnector.Crawling")+"\");\n"+
+"    editconnection.walkerthreads.focus();\n"+
+"    return false;\n"+
+"  }\n"+
+"  if (editconnection.watchinterval.value == \"\" || !isInteger(editconnection.watchinterval.value) || parseInt(editconnection.watchinterval.value) < 1)\n"+
+"  {\n"+
+"    alert(\""+Messages.getBodyJavascriptString(locale,"FileConnector.WatchIntervalMustBeAPositiveInteger")+"\");\n"+
+"    SelectTab(\""+Messages.getBodyJavascriptString(locale,"FileConnector.Crawling")+"\");\n"+
+"    editconnection.watchinterval.focus();\n"+
+"    return false;\n"+
+"  }\n"+
 "  return true;\n"+
 "}\n"+
 "\n"+
@@ -376,9 +677,64 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
   *@param parameters are the configuration parameters, as they currently exist, for this connection being configured.
   *@param tabName is the current tab name.
   */
-  public void outputConfigurationBody(IThreadContext threadContext, IHTTPOutput out, ConfigParams parameters, String tabName)
+  @Override
+  public void outputConfigurationBody(IThreadContext threadContext, IHTTPOutput out, Locale locale, ConfigParams parameters, String tabName)
     throws ManifoldCFException, IOException
   {
+    String incrementalValue = parameters.getParameter(INCREMENTAL);
+    if (incrementalValue == null)
+      incrementalValue = "false";
+    String walkerThreadsValue = parameters.getParameter(WALKERTHREADS);
+    if (walkerThreadsValue == null)
+      walkerThreadsValue = Integer.toString(DEFAULT_WALKER_THREADS);
+    String watchValue = parameters.getParameter(WATCH);
+    if (watchValue == null)
+      watchValue = "false";
+    String watchIntervalValue = parameters.getParameter(WATCHINTERVAL);
+    if (watchIntervalValue == null)
+      watchIntervalValue = Integer.toString(DEFAULT_WATCH_INTERVAL);
+
+    // "Crawling" tab
+    if (tabName.equals(Messages.getString(locale,"FileConnector.Crawling")))
+    {
+      out.print(
+"<table class=\"displaytable\">\n"+
+"  <tr><td class=\"separator\" colspan=\"2\"><hr/></td></tr>\n"+
+"  <tr>\n"+
+"    <td class=\"description\"><nobr>" + Messages.getBodyString(locale,"FileConnector.IncrementalCrawling") + "</nobr></td><td class=\"value\">\n"+
+"      <select name=\"incremental\" size=\"2\">\n"+
+"        <option value=\"false\" "+(incrementalValue.equals("false")?"selected=\"selected\"":"")+">"+Messages.getBodyString(locale,"FileConnector.No")+"</option>\n"+
+"        <option value=\"true\" "+(incrementalValue.equals("true")?"selected=\"selected\"":"")+">"+Messages.getBodyString(locale,"FileConnector.Yes")+"</option>\n"+
+"      </select>\n"+
+"    </td>\n"+
+"  </tr>\n"+
+"  <tr>\n"+
+"    <td class=\"description\"><nobr>" + Messages.getBodyString(locale,"FileConnector.WalkerThreads") + "</nobr></td><td class=\"value\"><input type=\"text\" size=\"5\" name=\"walkerthreads\" value=\""+org.apache.manifoldcf.ui.util.Encoder.attributeEscape(walkerThreadsValue)+"\"/></td>\n"+
+"  </tr>\n"+
+"  <tr><td class=\"separator\" colspan=\"2\"><hr/></td></tr>\n"+
+"  <tr>\n"+
+"    <td class=\"description\"><nobr>" + Messages.getBodyString(locale,"FileConnector.WatchForChanges") + "</nobr></td><td class=\"value\">\n"+
+"      <select name=\"watch\" size=\"2\">\n"+
+"        <option value=\"false\" "+(watchValue.equals("false")?"selected=\"selected\"":"")+">"+Messages.getBodyString(locale,"FileConnector.No")+"</option>\n"+
+"        <option value=\"true\" "+(watchValue.equals("true")?"selected=\"selected\"":"")+">"+Messages.getBodyString(locale,"FileConnector.Yes")+"</option>\n"+
+"      </select>\n"+
+"    </td>\n"+
+"  </tr>\n"+
+"  <tr>\n"+
+"    <td class=\"description\"><nobr>" + Messages.getBodyString(locale,"FileConnector.WatchInterval") + "</nobr></td><td class=\"value\"><input type=\"text\" size=\"5\" name=\"watchinterval\" value=\""+org.apache.manifoldcf.ui.util.Encoder.attributeEscape(watchIntervalValue)+"\"/></td>\n"+
+"  </tr>\n"+
+"</table>\n"
+      );
+    }
+    else
+    {
+      out.print(
+"<input type=\"hidden\" name=\"incremental\" value=\""+incrementalValue+"\"/>\n"+
+"<input type=\"hidden\" name=\"walkerthreads\" value=\""+org.apache.manifoldcf.ui.util.Encoder.attributeEscape(walkerThreadsValue)+"\"/>\n"+
+"<input type=\"hidden\" name=\"watch\" value=\""+watchValue+"\"/>\n"+
+"<input type=\"hidden\" name=\"watchinterval\" value=\""+org.apache.manifoldcf.ui.util.Encoder.attributeEscape(watchIntervalValue)+"\"/>\n"
+      );
+    }
   }
   
   /** Process a configuration post.
@@ -391,9 +747,21 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
   *@return null if all is well, or a string error message if there is an error that should prevent saving of the connection (and cause a redirection to an error page).
   */
   @Override
-  public String processConfigurationPost(IThreadContext threadContext, IPostParameters variableContext, ConfigParams parameters)
+  public String processConfigurationPost(IThreadContext threadContext, IPostParameters variableContext, Locale locale, ConfigParams parameters)
     throws ManifoldCFException
   {
+    String incrementalValue = variableContext.getParameter("incremental");
+    if (incrementalValue != null)
+      parameters.setParameter(INCREMENTAL,incrementalValue);
+    String walkerThreadsValue = variableContext.getParameter("walkerthreads");
+    if (walkerThreadsValue != null)
+      parameters.setParameter(WALKERTHREADS,walkerThreadsValue);
+    String watchValue = variableContext.getParameter("watch");
+    if (watchValue != null)
+      parameters.setParameter(WATCH,watchValue);
+    String watchIntervalValue = variableContext.getParameter("watchinterval");
+    if (watchIntervalValue != null)
+      parameters.setParameter(WATCHINTERVAL,watchIntervalValue);
     return null;
   }
   
@@ -405,9 +773,37 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
   *@param parameters are the configuration parameters, as they currently exist, for this connection being configured.
   */
   @Override
-  public void viewConfiguration(IThreadContext threadContext, IHTTPOutput out, ConfigParams parameters)
+  public void viewConfiguration(IThreadContext threadContext, IHTTPOutput out, Locale locale, ConfigParams parameters)
     throws ManifoldCFException, IOException
   {
+    String incrementalValue = parameters.getParameter(INCREMENTAL);
+    String walkerThreadsValue = parameters.getParameter(WALKERTHREADS);
+    if (walkerThreadsValue == null)
+      walkerThreadsValue = Integer.toString(DEFAULT_WALKER_THREADS);
+    String watchValue = parameters.getParameter(WATCH);
+    String watchIntervalValue = parameters.getParameter(WATCHINTERVAL);
+    if (watchIntervalValue == null)
+      watchIntervalValue = Integer.toString(DEFAULT_WATCH_INTERVAL);
+    out.print(
+"<table class=\"displaytable\">\n"+
+"  <tr>\n"+
+"    <td class=\"description\"><nobr>" + Messages.getBodyString(locale,"FileConnector.IncrementalCrawling") + "</nobr></td>\n"+
+"    <td class=\"value\">"+("true".equals(incrementalValue)?Messages.getBodyString(locale,"FileConnector.Yes"):Messages.getBodyString(locale,"FileConnector.No"))+"</td>\n"+
+"  </tr>\n"+
+"  <tr>\n"+
+"    <td class=\"description\"><nobr>" + Messages.getBodyString(locale,"FileConnector.WalkerThreads") + "</nobr></td>\n"+
+"    <td class=\"value\">"+org.apache.manifoldcf.ui.util.Encoder.bodyEscape(walkerThreadsValue)+"</td>\n"+
+"  </tr>\n"+
+"  <tr>\n"+
+"    <td class=\"description\"><nobr>" + Messages.getBodyString(locale,"FileConnector.WatchForChanges") + "</nobr></td>\n"+
+"    <td class=\"value\">"+("true".equals(watchValue)?Messages.getBodyString(locale,"FileConnector.Yes"):Messages.getBodyString(locale,"FileConnector.No"))+"</td>\n"+
+"  </tr>\n"+
+"  <tr>\n"+
+"    <td class=\"description\"><nobr>" + Messages.getBodyString(locale,"FileConnector.WatchInterval") + "</nobr></td>\n"+
+"    <td class=\"value\">"+org.apache.manifoldcf.ui.util.Encoder.bodyEscape(watchIntervalValue)+"</td>\n"+
+"  </tr>\n"+
+"</table>\n"
+    );
   }
   
   /** Output the specification header section.
@@ -876,11 +1272,6 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
   protected static boolean checkInclude(File file, String fileName, DocumentSpecification documentSpecification)
     throws ManifoldCFException
   {
-    if (Logging.connectors.isDebugEnabled())
-    {
-      Logging.connectors.debug("Checking whether to include file '"+fileName+"'");
-    }
-
     try
     {
       String pathPart;
@@ -895,7 +1286,32 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
         pathPart = file.getParentFile().getCanonicalPath();
         filePart = file.getName();
       }
+      return checkInclude(fileName,pathPart,filePart,documentSpecification);
+    }
+    catch (IOException e)
+    {
+      throw new ManifoldCFException("IO Error",e);
+    }
+  }
 
+  /** Check if a file or directory should be included, given a document specification, when the
+  * caller already knows whether it is a directory and what its canonical parent is.
+  *@param fileName is the canonical file name.
+  *@param pathPart is the canonical directory name; for a file, this is the canonical name of its parent.
+  *@param filePart is the file's name within its directory, or null for a directory.
+  *@param documentSpecification is the specification.
+  *@return true if it should be included.
+  */
+  protected static boolean checkInclude(String fileName, String pathPart, String filePart, DocumentSpecification documentSpecification)
+    throws ManifoldCFException
+  {
+    if (Logging.connectors.isDebugEnabled())
+    {
+      Logging.connectors.debug("Checking whether to include file '"+fileName+"'");
+    }
+
+    try
+    {
       // Scan until we match a startpoint
       int i = 0;
       while (i < documentSpecification.getChildCount())
@@ -973,6 +1389,75 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
     }
   }
 
+  /** Get the canonical start points of a document specification.
+  *@param documentSpecification is the specification.
+  *@return the canonical paths of the start points.
+  */
+  protected static String[] getStartPoints(DocumentSpecification documentSpecification)
+    throws ManifoldCFException
+  {
+    try
+    {
+      List<String> rval = new ArrayList<String>();
+      int i = 0;
+      while (i < documentSpecification.getChildCount())
+      {
+        SpecificationNode sn = documentSpecification.getChild(i++);
+        if (sn.getType().equals("startpoint"))
+          rval.add(new File(sn.getAttributeValue("path")).getCanonicalPath());
+      }
+      return rval.toArray(new String[0]);
+    }
+    catch (IOException e)
+    {
+      throw new ManifoldCFException("Could not get a canonical path",e);
+    }
+  }
+
+  /** Check if a path reported by the change monitor should be seeded.  A path that still exists must be
+  * included, and so must every directory between it and its start point, just as if it had been reached
+  * by crawling.  A path that no longer exists is seeded as long as it is under a start point, so that it
+  * gets removed if it had been crawled.
+  *@param fileName is the canonical path.
+  *@param startPoints are the canonical start points.
+  *@param documentSpecification is the specification.
+  *@return true if the path should be seeded.
+  */
+  protected static boolean checkChangedPath(String fileName, String[] startPoints, DocumentSpecification documentSpecification)
+    throws ManifoldCFException
+  {
+    // Start points are seeded no matter what
+    if (isStartPoint(fileName,startPoints))
+      return true;
+    File file = new File(fileName);
+    boolean exists = file.exists();
+    if (exists && !checkInclude(file,fileName,documentSpecification))
+      return false;
+    File parent = file.getParentFile();
+    while (parent != null)
+    {
+      String parentName = parent.getPath();
+      if (isStartPoint(parentName,startPoints))
+        return true;
+      if (exists && !checkInclude(parentName,parentName,null,documentSpecification))
+        return false;
+      parent = parent.getParentFile();
+    }
+    return false;
+  }
+
+  /** Check if a canonical path is one of the start points.
+  */
+  protected static boolean isStartPoint(String fileName, String[] startPoints)
+  {
+    for (String startPoint : startPoints)
+    {
+      if (startPoint.equals(fileName))
+        return true;
+    }
+    return false;
+  }
+
   /** Check if a file should be ingested, given a document specification.  It is presumed that
   * documents that do not pass checkInclude() will be checked with this method.
   *@param file is the file.
@@ -1154,4 +1639,254 @@ public class FileConnector extends org.apache.manifoldcf.crawler.connectors.Base
 
   }
 
+  /** Document identifier stream for incremental seeding.  Walks the trees under the start points with
+  * several threads at once, since on network file systems the time goes into waiting on directory
+  * listings and attribute reads rather than into the CPU.  Every included file and directory is looked
+  * at, because changing a file does not change the modification time of its directory, but only the
+  * ones modified since the given time are returned, so unchanged parts of the tree never reach the
+  * job queue.
+  */
+  protected static class ChangedPathStream implements IDocumentIdentifierStream
+  {
+    /** Marks the end of the results.  Compared by identity. */
+    protected final static String END_MARKER = new String("");
+    /** Maximum number of identifiers waiting to be picked up */
+    protected final static int RESULT_QUEUE_SIZE = 1000;
+
+    protected final DocumentSpecification spec;
+    protected final long changedSince;
+    /** Canonical paths of the directories waiting to be listed */
+    protected final LinkedBlockingQueue<String> directories = new LinkedBlockingQueue<String>();
+    /** Identifiers found so far, waiting to be picked up */
+    protected final ArrayBlockingQueue<String> results = new ArrayBlockingQueue<String>(RESULT_QUEUE_SIZE);
+    /** Directories queued or being listed; the walk is over when this reaches zero */
+    protected final AtomicInteger outstanding = new AtomicInteger(0);
+    /** Directories already walked, so that symbolic links cannot cause loops */
+    protected final ConcurrentHashMap<String,String> visited = new ConcurrentHashMap<String,String>();
+    protected final WalkerThread[] walkers;
+    protected volatile boolean aborted = false;
+    protected volatile Throwable exception = null;
+    /** Set once a modified directory or a missing start point has been seen */
+    protected volatile boolean structureChanged = false;
+    protected boolean finished = false;
+
+    public ChangedPathStream(DocumentSpecification spec, long changedSince, int threadCount)
+      throws ManifoldCFException
+    {
+      this.spec = spec;
+      this.changedSince = changedSince;
+      try
+      {
+        int i = 0;
+        while (i < spec.getChildCount())
+        {
+          SpecificationNode n = spec.getChild(i++);
+          if (n.getType().equals("startpoint"))
+          {
+            File root = new File(n.getAttributeValue("path"));
+            String canonicalPath = root.getCanonicalPath();
+            if (!root.exists())
+              structureChanged = true;
+            else if (root.lastModified() >= changedSince)
+            {
+              if (root.isDirectory())
+                structureChanged = true;
+              results.add(canonicalPath);
+            }
+            if (root.isDirectory() && visited.putIfAbsent(canonicalPath,canonicalPath) == null)
+            {
+              outstanding.incrementAndGet();
+              directories.add(canonicalPath);
+            }
+          }
+        }
+      }
+      catch (IllegalStateException e)
+      {
+        throw new ManifoldCFException("Too many start points",e);
+      }
+      catch (IOException e)
+      {
+        throw new ManifoldCFException("Could not get a canonical path",e);
+      }
+
+      walkers = new WalkerThread[threadCount];
+      if (outstanding.get() == 0)
+      {
+        results.add(END_MARKER);
+        return;
+      }
+      int i = 0;
+      while (i < walkers.length)
+      {
+        walkers[i] = new WalkerThread();
+        walkers[i].start();
+        i++;
+      }
+    }
+
+    /** Get the next identifier.
+    *@return the next document identifier, or null if there are no more.
+    */
+    public String getNextIdentifier()
+      throws ManifoldCFException, ServiceInterruption
+    {
+      if (finished)
+        return null;
+      try
+      {
+        while (true)
+        {
+          Throwable thr = exception;
+          if (thr != null)
+          {
+            if (thr instanceof ManifoldCFException)
+              throw (ManifoldCFException)thr;
+            if (thr instanceof IOException)
+              throw new ManifoldCFException("IO Error: "+thr.getMessage(),thr);
+            if (thr instanceof RuntimeException)
+              throw (RuntimeException)thr;
+            throw (Error)thr;
+          }
+          String rval = results.poll(1000L,TimeUnit.MILLISECONDS);
+          if (rval == null)
+            continue;
+          if (rval == END_MARKER)
+          {
+            finished = true;
+            return null;
+          }
+          if (Logging.connectors.isDebugEnabled())
+            Logging.connectors.debug("Changed path = '"+rval+"'");
+          return rval;
+        }
+      }
+      catch (InterruptedException e)
+      {
+        throw new ManifoldCFException("Interrupted",e,ManifoldCFException.INTERRUPTED);
+      }
+    }
+
+    /** Close the stream.
+    */
+    public void close()
+      throws ManifoldCFException
+    {
+      aborted = true;
+      int i = 0;
+      while (i < walkers.length)
+      {
+        WalkerThread t = walkers[i++];
+        if (t == null)
+          continue;
+        t.interrupt();
+        try
+        {
+          t.join();
+        }
+        catch (InterruptedException e)
+        {
+          throw new ManifoldCFException("Interrupted",e,ManifoldCFException.INTERRUPTED);
+        }
+      }
+    }
+
+    /** List one directory, queuing its subdirectories and reporting whatever changed.
+    *@param directoryPath is the canonical path of the directory.
+    */
+    protected void walkDirectory(String directoryPath)
+      throws ManifoldCFException, IOException, InterruptedException
+    {
+      File[] files = new File(directoryPath).listFiles();
+      if (files == null)
+        return;
+      int i = 0;
+      while (i < files.length && !aborted)
+      {
+        File f = files[i++];
+        String canonicalPath = f.getCanonicalPath();
+        boolean isDirectory = f.isDirectory();
+        if (!checkInclude(canonicalPath,isDirectory?canonicalPath:directoryPath,isDirectory?null:f.getName(),spec))
+          continue;
+        if (isDirectory && visited.putIfAbsent(canonicalPath,canonicalPath) == null)
+        {
+          outstanding.incrementAndGet();
+          directories.put(canonicalPath);
+        }
+        if (f.lastModified() >= changedSince)
+        {
+          if (isDirectory)
+            structureChanged = true;
+          addResult(canonicalPath);
+        }
+      }
+    }
+
+    /** Check whether the walk has seen a modified directory or a missing start point so far.
+    * A directory's modification time changes when entries are added, removed, or renamed.
+    */
+    public boolean isStructureChanged()
+    {
+      return structureChanged;
+    }
+
+    /** Hand an identifier to the reader, waiting for room if necessary. */
+    protected void addResult(String identifier)
+      throws InterruptedException
+    {
+      while (!aborted)
+      {
+        if (results.offer(identifier,1000L,TimeUnit.MILLISECONDS))
+          return;
+      }
+    }
+
+    /** Thread that lists directories until there are none left */
+    protected class WalkerThread extends Thread
+    {
+      public WalkerThread()
+      {
+        super();
+        setDaemon(true);
+        setName("Filesystem directory walker");
+      }
+
+      public void run()
+      {
+        try
+        {
+          while (!aborted)
+          {
+            String directoryPath = directories.poll(1000L,TimeUnit.MILLISECONDS);
+            if (directoryPath == null)
+            {
+              if (outstanding.get() == 0)
+                return;
+              continue;
+            }
+            try
+            {
+              walkDirectory(directoryPath);
+            }
+            finally
+            {
+              if (outstanding.decrementAndGet() == 0)
+                addResult(END_MARKER);
+            }
+          }
+        }
+        catch (InterruptedException e)
+        {
+          // Stream is being closed
+        }
+        catch (Throwable e)
+        {
+          exception = e;
+          aborted = true;
+        }
+      }
+    }
+
+  }
+
 }
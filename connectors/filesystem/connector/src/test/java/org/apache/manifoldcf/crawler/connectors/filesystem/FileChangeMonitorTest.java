@@ -0,0 +1,168 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.filesystem;
+
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Tests for the change monitor */
+public class FileChangeMonitorTest
+{
+  protected File testArea;
+  protected FileChangeMonitor monitor = null;
+
+  @BeforeClass
+  public static void setupLogging()
+  {
+    // The monitor logs through the connectors logger, which is normally set up along with the rest of ManifoldCF
+    if (org.apache.manifoldcf.crawler.system.Logging.connectors == null)
+    {
+      org.apache.manifoldcf.crawler.system.Logging.connectors = org.apache.log4j.Logger.getLogger("org.apache.manifoldcf.connectors");
+      org.apache.manifoldcf.crawler.system.Logging.connectors.setLevel(org.apache.log4j.Level.WARN);
+    }
+  }
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    testArea = File.createTempFile("filechangemonitor",null).getCanonicalFile();
+    testArea.delete();
+    testArea.mkdir();
+    FileConnectorTest.createFile(new File(testArea,"test1.txt"),"This is a test file");
+    new File(testArea,"testdir").mkdir();
+    FileConnectorTest.createFile(new File(testArea,"testdir/test2.txt"),"This is another test file");
+  }
+
+  @After
+  public void tearDown()
+    throws Exception
+  {
+    if (monitor != null)
+    {
+      monitor.thread.interrupt();
+      monitor.thread.join();
+    }
+    FileConnectorTest.removeDirectory(testArea);
+  }
+
+  @Test
+  public void reportsCreateModifyDelete()
+    throws Exception
+  {
+    startMonitor(1000000);
+    long startTime = waitFirstCheck();
+
+    File added = new File(testArea,"testdir/test3.txt");
+    FileConnectorTest.createFile(added,"Added file");
+    File removed = new File(testArea,"test1.txt");
+    removed.delete();
+
+    Set<String> changed = waitChange(startTime,added.getCanonicalPath());
+    waitChange(startTime,removed.getCanonicalPath());
+    assertFalse(changed.contains(new File(testArea,"testdir/test2.txt").getCanonicalPath()));
+
+    // Asking from a later time leaves the earlier changes out
+    long laterTime = System.currentTimeMillis() + 1L;
+    Thread.sleep(10L);
+    File modified = new File(testArea,"testdir/test2.txt");
+    FileConnectorTest.createFile(modified,"Modified contents, and longer than before");
+    changed = waitChange(laterTime,modified.getCanonicalPath());
+    assertFalse(changed.contains(added.getCanonicalPath()));
+  }
+
+  @Test
+  public void changesAreStampedWhenSeen()
+    throws Exception
+  {
+    startMonitor(1000000);
+    waitFirstCheck();
+    // A caller that asks in the middle of a check must still get what the rest of the check finds
+    long askTime = System.currentTimeMillis();
+    Thread.sleep(10L);
+    monitor.noteChange("/some/path");
+    Set<String> changed = monitor.getChangedPaths(askTime);
+    assertNotNull(changed);
+    assertTrue(changed.contains("/some/path"));
+  }
+
+  @Test
+  public void noAnswerBeforeFirstCheck()
+    throws Exception
+  {
+    monitor = new FileChangeMonitor("test",new String[]{testArea.toString()},50L,1000000);
+    assertNull(monitor.getChangedPaths(0L));
+    monitor.thread.start();
+    long startTime = waitFirstCheck();
+    assertNull(monitor.getChangedPaths(startTime - 60000L));
+  }
+
+  @Test
+  public void tooManyPathsStopsWatching()
+    throws Exception
+  {
+    startMonitor(3);
+    monitor.thread.join(10000L);
+    assertFalse(monitor.thread.isAlive());
+    assertNull(monitor.getChangedPaths(System.currentTimeMillis()));
+    assertFalse(monitor.isOverflowExpired());
+  }
+
+  protected void startMonitor(int maxPaths)
+  {
+    monitor = new FileChangeMonitor("test",new String[]{testArea.toString()},50L,maxPaths);
+    monitor.thread.start();
+  }
+
+  /** Wait until the monitor can answer, and return a time it can answer from. */
+  protected long waitFirstCheck()
+    throws Exception
+  {
+    long deadline = System.currentTimeMillis() + 10000L;
+    while (System.currentTimeMillis() < deadline)
+    {
+      long now = System.currentTimeMillis();
+      if (monitor.getChangedPaths(now) != null)
+        return now;
+      Thread.sleep(10L);
+    }
+    fail("Monitor never completed its first check");
+    return -1L;
+  }
+
+  /** Wait until a path shows up among the changes since a given time. */
+  protected Set<String> waitChange(long startTime, String path)
+    throws Exception
+  {
+    long deadline = System.currentTimeMillis() + 10000L;
+    while (System.currentTimeMillis() < deadline)
+    {
+      Set<String> changed = monitor.getChangedPaths(startTime);
+      assertNotNull(changed);
+      if (changed.contains(path))
+        return changed;
+      Thread.sleep(10L);
+    }
+    fail("Change to "+path+" never reported");
+    return null;
+  }
+
+}
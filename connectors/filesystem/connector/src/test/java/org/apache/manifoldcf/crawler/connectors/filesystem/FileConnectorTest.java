@@ -0,0 +1,201 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.filesystem;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Tests for incremental seeding and directory versioning */
+public class FileConnectorTest
+{
+  protected File testArea;
+  protected FileConnector connector;
+  protected DocumentSpecification spec;
+  protected long oldTime;
+
+  @BeforeClass
+  public static void setupLogging()
+  {
+    // The connector logs through the connectors logger, which is normally set up along with the rest of ManifoldCF
+    if (org.apache.manifoldcf.crawler.system.Logging.connectors == null)
+    {
+      org.apache.manifoldcf.crawler.system.Logging.connectors = org.apache.log4j.Logger.getLogger("org.apache.manifoldcf.connectors");
+      org.apache.manifoldcf.crawler.system.Logging.connectors.setLevel(org.apache.log4j.Level.WARN);
+    }
+  }
+
+  @Before
+  public void setUp()
+    throws Exception
+  {
+    testArea = File.createTempFile("fileconnector",null).getCanonicalFile();
+    testArea.delete();
+    testArea.mkdir();
+    createFile(new File(testArea,"test1.txt"),"This is a test file");
+    new File(testArea,"testdir").mkdir();
+    createFile(new File(testArea,"testdir/test2.txt"),"This is another test file");
+
+    // Make everything look long unchanged
+    oldTime = System.currentTimeMillis() - 3600000L;
+    setModified(testArea,oldTime);
+
+    ConfigParams params = new ConfigParams();
+    params.setParameter(FileConnector.INCREMENTAL,"true");
+    params.setParameter(FileConnector.WALKERTHREADS,"2");
+    connector = new FileConnector();
+    connector.connect(params);
+
+    spec = new DocumentSpecification();
+    SpecificationNode sn = new SpecificationNode("startpoint");
+    sn.setAttribute("path",testArea.toString());
+    SpecificationNode n = new SpecificationNode("include");
+    n.setAttribute("type","file");
+    n.setAttribute("match","*");
+    sn.addChild(sn.getChildCount(),n);
+    n = new SpecificationNode("include");
+    n.setAttribute("type","directory");
+    n.setAttribute("match","*");
+    sn.addChild(sn.getChildCount(),n);
+    spec.addChild(spec.getChildCount(),sn);
+  }
+
+  @After
+  public void tearDown()
+    throws Exception
+  {
+    connector.disconnect();
+    removeDirectory(testArea);
+  }
+
+  @Test
+  public void modifiedFilesOnly()
+    throws Exception
+  {
+    File test2 = new File(testArea,"testdir/test2.txt");
+    test2.setLastModified(System.currentTimeMillis());
+    List<String> changed = connector.findChangedFiles(spec,oldTime + 60000L);
+    assertNotNull(changed);
+    assertEquals(1,changed.size());
+    assertEquals(test2.getCanonicalPath(),changed.get(0));
+    assertEquals(connector.MODEL_ADD_CHANGE,connector.getConnectorModel(new Long(1L),spec,oldTime + 60000L + FileConnector.MODIFICATION_SLACK,connector.JOBMODE_ONCEONLY));
+  }
+
+  @Test
+  public void removedSubtreeForcesCompleteCrawl()
+    throws Exception
+  {
+    new File(testArea,"testdir/test2.txt").delete();
+    new File(testArea,"testdir").delete();
+    assertNull(connector.findChangedFiles(spec,oldTime + 60000L));
+    assertEquals(connector.MODEL_ALL,connector.getConnectorModel(new Long(1L),spec,oldTime + 60000L + FileConnector.MODIFICATION_SLACK,connector.JOBMODE_ONCEONLY));
+  }
+
+  @Test
+  public void missingStartPointForcesCompleteCrawl()
+    throws Exception
+  {
+    removeDirectory(testArea);
+    assertNull(connector.findChangedFiles(spec,oldTime + 60000L));
+  }
+
+  @Test
+  public void firstCrawlIsComplete()
+    throws Exception
+  {
+    assertEquals(connector.MODEL_ALL,connector.getConnectorModel(new Long(1L),spec,0L,connector.JOBMODE_ONCEONLY));
+    assertEquals(connector.MODEL_ALL,connector.getConnectorModel());
+  }
+
+  @Test
+  public void directoryVersionUsesDigest()
+    throws Exception
+  {
+    File testDir = new File(testArea,"testdir");
+    String[] ids = new String[]{testDir.getCanonicalPath()};
+    String version1 = connector.getDocumentVersions(ids,new String[]{null},null,spec,connector.JOBMODE_ONCEONLY,true)[0];
+    assertTrue(version1.startsWith(Long.toString(testDir.lastModified())+":"));
+
+    // Many more entries, but the same modification time: the version changes, and does not grow
+    int i = 0;
+    while (i < 100)
+    {
+      createFile(new File(testDir,"added"+i+".txt"),"Added file");
+      i++;
+    }
+    testDir.setLastModified(oldTime);
+    String version2 = connector.getDocumentVersions(ids,new String[]{version1},null,spec,connector.JOBMODE_ONCEONLY,true)[0];
+    assertFalse(version1.equals(version2));
+    assertEquals(version1.length(),version2.length());
+
+    // An unchanged listing gives the same version
+    assertEquals(version2,connector.getDocumentVersions(ids,new String[]{version2},null,spec,connector.JOBMODE_ONCEONLY,true)[0]);
+  }
+
+  protected static void setModified(File f, long time)
+  {
+    File[] files = f.listFiles();
+    if (files != null)
+    {
+      int i = 0;
+      while (i < files.length)
+      {
+        setModified(files[i++],time);
+      }
+    }
+    f.setLastModified(time);
+  }
+
+  protected static void createFile(File f, String contents)
+    throws IOException
+  {
+    OutputStream os = new FileOutputStream(f);
+    try
+    {
+      os.write(contents.getBytes("utf-8"));
+    }
+    finally
+    {
+      os.close();
+    }
+  }
+
+  protected static void removeDirectory(File f)
+  {
+    File[] files = f.listFiles();
+    if (files != null)
+    {
+      int i = 0;
+      while (i < files.length)
+      {
+        File subfile = files[i++];
+        if (subfile.isDirectory())
+          removeDirectory(subfile);
+        else
+          subfile.delete();
+      }
+    }
+    f.delete();
+  }
+
+}
@@ -0,0 +1,61 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.agents.output.nullconnector;
+
+/** Parameters and defaults for the null output connector's load simulation.
+* With the defaults, the connector accepts every document immediately.
+*/
+public class NullConfig
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  // Configuration parameters
+
+  /** Mean simulated ingestion latency, in milliseconds */
+  public static final String PARAM_LATENCY = "latency";
+  /** How the latency is distributed around the mean; one of the LATENCY_* values */
+  public static final String PARAM_LATENCYDISTRIBUTION = "latencydistribution";
+  /** Maximum documents per second accepted, across all connections with the same configuration; 0 for no limit */
+  public static final String PARAM_MAXRATE = "maxrate";
+  /** Percentage of documents that cause a service interruption, so that they are retried */
+  public static final String PARAM_INTERRUPTIONRATE = "interruptionrate";
+  /** Percentage of documents that are permanently rejected */
+  public static final String PARAM_REJECTIONRATE = "rejectionrate";
+  /** "true" if the document's content stream should be read to the end and counted */
+  public static final String PARAM_READCONTENT = "readcontent";
+
+  // Latency distributions
+
+  /** Every request takes exactly the mean latency */
+  public static final String LATENCY_FIXED = "fixed";
+  /** Latency is uniformly distributed between zero and twice the mean */
+  public static final String LATENCY_UNIFORM = "uniform";
+  /** Latency is exponentially distributed, which gives a long tail */
+  public static final String LATENCY_EXPONENTIAL = "exponential";
+
+  // Defaults
+
+  public static final String LATENCY_DEFAULT = "0";
+  public static final String LATENCYDISTRIBUTION_DEFAULT = LATENCY_FIXED;
+  public static final String MAXRATE_DEFAULT = "0";
+  public static final String INTERRUPTIONRATE_DEFAULT = "0";
+  public static final String REJECTIONRATE_DEFAULT = "0";
+  public static final String READCONTENT_DEFAULT = "false";
+
+}
@@ -21,9 +21,16 @@ package org.apache.manifoldcf.agents.output.nullconnector;
 import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.agents.interfaces.*;
 
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
+import org.apache.manifoldcf.core.system.ManifoldCF;
+
 import java.util.*;
+import java.io.*;
 
 /** This is a null output connector.  It eats all output and simply logs the events.
+* For capacity testing, it can also be configured to simulate a slow or unreliable output
+* data store: per-document latency, a maximum ingestion rate, transient interruptions, and
+* rejections.  With the default configuration all of these are disabled.
 */
 public class NullConnector extends org.apache.manifoldcf.agents.output.BaseOutputConnector
 {
@@ -36,6 +43,25 @@ public class NullConnector extends org.apache.manifoldcf.agents.output.BaseOutpu
   /** Document removal activity */
   public final static String REMOVE_ACTIVITY = "document deletion";
 
+  /** How long a simulated service interruption asks the framework to wait before retrying */
+  protected final static long INTERRUPTION_RETRY_INTERVAL = 10000L;
+
+  /** Rate throttles, keyed by configuration, so that all connection instances with the same
+  * configuration share the same simulated capacity. */
+  protected final static Map<String,RateThrottle> throttles = new HashMap<String,RateThrottle>();
+
+  /** Random number source for latencies and failures */
+  protected final static Random random = new Random();
+
+  // Parsed configuration; only valid once the session has been set up
+  protected boolean sessionSetup = false;
+  protected long latency = 0L;
+  protected String latencyDistribution = null;
+  protected double interruptionRate = 0.0;
+  protected double rejectionRate = 0.0;
+  protected boolean readContent = false;
+  protected RateThrottle throttle = null;
+
   /** Constructor.
   */
   public NullConnector()
@@ -68,6 +94,8 @@ public class NullConnector extends org.apache.manifoldcf.agents.output.BaseOutpu
   public void disconnect()
     throws ManifoldCFException
   {
+    sessionSetup = false;
+    throttle = null;
     super.disconnect();
   }
 
@@ -75,6 +103,45 @@ public class NullConnector extends org.apache.manifoldcf.agents.output.BaseOutpu
   protected void getSession()
     throws ManifoldCFException, ServiceInterruption
   {
+    if (sessionSetup)
+      return;
+
+    latencyDistribution = getParameter(params,NullConfig.PARAM_LATENCYDISTRIBUTION,NullConfig.LATENCYDISTRIBUTION_DEFAULT);
+    if (!latencyDistribution.equals(NullConfig.LATENCY_FIXED) &&
+      !latencyDistribution.equals(NullConfig.LATENCY_UNIFORM) &&
+      !latencyDistribution.equals(NullConfig.LATENCY_EXPONENTIAL))
+      throw new ManifoldCFException("Unknown latency distribution: '"+latencyDistribution+"'");
+    readContent = getParameter(params,NullConfig.PARAM_READCONTENT,NullConfig.READCONTENT_DEFAULT).equals("true");
+    int maxRate;
+    try
+    {
+      latency = Long.parseLong(getParameter(params,NullConfig.PARAM_LATENCY,NullConfig.LATENCY_DEFAULT));
+      maxRate = Integer.parseInt(getParameter(params,NullConfig.PARAM_MAXRATE,NullConfig.MAXRATE_DEFAULT));
+      interruptionRate = Double.parseDouble(getParameter(params,NullConfig.PARAM_INTERRUPTIONRATE,NullConfig.INTERRUPTIONRATE_DEFAULT));
+      rejectionRate = Double.parseDouble(getParameter(params,NullConfig.PARAM_REJECTIONRATE,NullConfig.REJECTIONRATE_DEFAULT));
+    }
+    catch (NumberFormatException e)
+    {
+      throw new ManifoldCFException("Latency, maximum rate, interruption rate, and rejection rate must be numbers: "+e.getMessage(),e);
+    }
+
+    if (maxRate > 0)
+    {
+      String throttleKey = params.toXML();
+      synchronized (throttles)
+      {
+        throttle = throttles.get(throttleKey);
+        if (throttle == null)
+        {
+          throttle = new RateThrottle(maxRate);
+          throttles.put(throttleKey,throttle);
+        }
+      }
+    }
+    else
+      throttle = null;
+
+    sessionSetup = true;
   }
 
   /** Test the connection.  Returns a string describing the connection integrity.
@@ -133,7 +200,22 @@ public class NullConnector extends org.apache.manifoldcf.agents.output.BaseOutpu
   {
     // Establish a session
     getSession();
-    activities.recordActivity(null,INGEST_ACTIVITY,new Long(document.getBinaryLength()),documentURI,"OK",null);
+    simulateRequest();
+
+    long length = document.getBinaryLength();
+    if (readContent)
+      length = readStream(document.getBinaryStream());
+    MetricsRegistry.getCounter("nulloutput.bytes").increment(length);
+
+    if (rejectionRate > 0.0 && random.nextDouble() * 100.0 < rejectionRate)
+    {
+      MetricsRegistry.getCounter("nulloutput.documents","result","rejected").increment();
+      activities.recordActivity(null,INGEST_ACTIVITY,new Long(length),documentURI,"REJECTED","Simulated rejection");
+      return DOCUMENTSTATUS_REJECTED;
+    }
+
+    MetricsRegistry.getCounter("nulloutput.documents","result","accepted").increment();
+    activities.recordActivity(null,INGEST_ACTIVITY,new Long(length),documentURI,"OK",null);
     return DOCUMENTSTATUS_ACCEPTED;
   }
 
@@ -150,8 +232,229 @@ public class NullConnector extends org.apache.manifoldcf.agents.output.BaseOutpu
   {
     // Establish a session
     getSession();
+    simulateRequest();
+    MetricsRegistry.getCounter("nulloutput.documents","result","removed").increment();
     activities.recordActivity(null,REMOVE_ACTIVITY,null,documentURI,"OK",null);
   }
 
+  /** Output the configuration header section.
+  * This method is called in the head section of the connector's configuration page.  Its purpose is to add the required tabs to the list, and to output any
+  * javascript methods that might be needed by the configuration editing HTML.
+  *@param threadContext is the local thread context.
+  *@param out is the output to which any HTML should be sent.
+  *@param parameters are the configuration parameters, as they currently exist, for this connection being configured.
+  *@param tabsArray is an array of tab names.  Add to this array any tab names that are specific to the connector.
+  */
+  @Override
+  public void outputConfigurationHeader(IThreadContext threadContext, IHTTPOutput out, Locale locale, ConfigParams parameters, List<String> tabsArray)
+    throws ManifoldCFException, IOException
+  {
+    tabsArray.add(Messages.getString(locale,"NullConnector.Simulation"));
+    Messages.outputResourceWithVelocity(out,locale,"editConfiguration.js",null);
+  }
+
+  /** Output the configuration body section.
+  * This method is called in the body section of the connector's configuration page.  Its purpose is to present the required form elements for editing.
+  * The coder can presume that the HTML that is output from this configuration will be within appropriate <html>, <body>, and <form> tags.  The name of the
+  * form is "editconnection".
+  *@param threadContext is the local thread context.
+  *@param out is the output to which any HTML should be sent.
+  *@param parameters are the configuration parameters, as they currently exist, for this connection being configured.
+  *@param tabName is the current tab name.
+  */
+  @Override
+  public void outputConfigurationBody(IThreadContext threadContext, IHTTPOutput out, Locale locale, ConfigParams parameters, String tabName)
+    throws ManifoldCFException, IOException
+  {
+    Map<String,Object> velocityContext = new HashMap<String,Object>();
+    velocityContext.put("TabName",tabName);
+    fillInSimulationTab(velocityContext,parameters);
+    Messages.outputResourceWithVelocity(out,locale,"editConfiguration_Simulation.html",velocityContext);
+  }
+
+  protected static void fillInSimulationTab(Map<String,Object> velocityContext, ConfigParams parameters)
+  {
+    velocityContext.put("LATENCY",getParameter(parameters,NullConfig.PARAM_LATENCY,NullConfig.LATENCY_DEFAULT));
+    velocityContext.put("LATENCYDISTRIBUTION",getParameter(parameters,NullConfig.PARAM_LATENCYDISTRIBUTION,NullConfig.LATENCYDISTRIBUTION_DEFAULT));
+    velocityContext.put("MAXRATE",getParameter(parameters,NullConfig.PARAM_MAXRATE,NullConfig.MAXRATE_DEFAULT));
+    velocityContext.put("INTERRUPTIONRATE",getParameter(parameters,NullConfig.PARAM_INTERRUPTIONRATE,NullConfig.INTERRUPTIONRATE_DEFAULT));
+    velocityContext.put("REJECTIONRATE",getParameter(parameters,NullConfig.PARAM_REJECTIONRATE,NullConfig.REJECTIONRATE_DEFAULT));
+    velocityContext.put("READCONTENT",getParameter(parameters,NullConfig.PARAM_READCONTENT,NullConfig.READCONTENT_DEFAULT));
+  }
+
+  /** Process a configuration post.
+  * This method is called at the start of the connector's configuration page, whenever there is a possibility that form data for a connection has been
+  * posted.  Its purpose is to gather form information and modify the configuration parameters accordingly.
+  * The name of the posted form is "editconnection".
+  *@param threadContext is the local thread context.
+  *@param variableContext is the set of variables available from the post, including binary file post information.
+  *@param parameters are the configuration parameters, as they currently exist, for this connection being configured.
+  *@return null if all is well, or a string error message if there is an error that should prevent saving of the connection (and cause a redirection to an error page).
+  */
+  @Override
+  public String processConfigurationPost(IThreadContext threadContext, IPostParameters variableContext, Locale locale, ConfigParams parameters)
+    throws ManifoldCFException
+  {
+    String latency = variableContext.getParameter("latency");
+    if (latency != null)
+      parameters.setParameter(NullConfig.PARAM_LATENCY,latency);
+    String latencyDistribution = variableContext.getParameter("latencydistribution");
+    if (latencyDistribution != null)
+      parameters.setParameter(NullConfig.PARAM_LATENCYDISTRIBUTION,latencyDistribution);
+    String maxRate = variableContext.getParameter("maxrate");
+    if (maxRate != null)
+      parameters.setParameter(NullConfig.PARAM_MAXRATE,maxRate);
+    String interruptionRate = variableContext.getParameter("interruptionrate");
+    if (interruptionRate != null)
+      parameters.setParameter(NullConfig.PARAM_INTERRUPTIONRATE,interruptionRate);
+    String rejectionRate = variableContext.getParameter("rejectionrate");
+    if (rejectionRate != null)
+      parameters.setParameter(NullConfig.PARAM_REJECTIONRATE,rejectionRate);
+    String readContentPresent = variableContext.getParameter("readcontent_present");
+    if (readContentPresent != null)
+    {
+      String readContent = variableContext.getParameter("readcontent");
+      parameters.setParameter(NullConfig.PARAM_READCONTENT,(readContent == null)?"false":readContent);
+    }
+    return null;
+  }
+
+  /** View configuration.
+  * This method is called in the body section of the connector's view configuration page.  Its purpose is to present the connection information to the user.
+  * The coder can presume that the HTML that is output from this configuration will be within appropriate <html> and <body> tags.
+  *@param threadContext is the local thread context.
+  *@param out is the output to which any HTML should be sent.
+  *@param parameters are the configuration parameters, as they currently exist, for this connection being configured.
+  */
+  @Override
+  public void viewConfiguration(IThreadContext threadContext, IHTTPOutput out, Locale locale, ConfigParams parameters)
+    throws ManifoldCFException, IOException
+  {
+    Map<String,Object> velocityContext = new HashMap<String,Object>();
+    fillInSimulationTab(velocityContext,parameters);
+    Messages.outputResourceWithVelocity(out,locale,"viewConfiguration.html",velocityContext);
+  }
+
+  // Protected methods
+
+  /** Read a configuration parameter, substituting a default if it is not set.
+  */
+  protected static String getParameter(ConfigParams parameters, String name, String defaultValue)
+  {
+    String value = parameters.getParameter(name);
+    if (value == null || value.length() == 0)
+      return defaultValue;
+    return value;
+  }
+
+  /** Simulate the cost of one request to the output data store: wait for the rate
+  * throttle, sleep for the configured latency, and possibly fail transiently.
+  */
+  protected void simulateRequest()
+    throws ManifoldCFException, ServiceInterruption
+  {
+    try
+    {
+      if (throttle != null)
+        throttle.obtainPermit();
+      long delay = computeLatency();
+      if (delay > 0L)
+      {
+        MetricsRegistry.getHistogram("nulloutput.latency").record(delay);
+        ManifoldCF.sleep(delay);
+      }
+    }
+    catch (InterruptedException e)
+    {
+      throw new ManifoldCFException(e.getMessage(),e,ManifoldCFException.INTERRUPTED);
+    }
+
+    if (interruptionRate > 0.0 && random.nextDouble() * 100.0 < interruptionRate)
+    {
+      MetricsRegistry.getCounter("nulloutput.documents","result","interrupted").increment();
+      long currentTime = System.currentTimeMillis();
+      throw new ServiceInterruption("Simulated service interruption",null,
+        currentTime + INTERRUPTION_RETRY_INTERVAL,-1L,-1,false);
+    }
+  }
+
+  /** Pick a latency for one request, according to the configured distribution.
+  *@return the latency in milliseconds.
+  */
+  protected long computeLatency()
+  {
+    if (latency <= 0L)
+      return 0L;
+    if (latencyDistribution.equals(NullConfig.LATENCY_UNIFORM))
+      return (long)(random.nextDouble() * 2.0 * (double)latency);
+    if (latencyDistribution.equals(NullConfig.LATENCY_EXPONENTIAL))
+      return (long)(-Math.log(1.0 - random.nextDouble()) * (double)latency);
+    return latency;
+  }
+
+  /** Read a document's content to the end, as a real output connector would.
+  *@return the number of bytes read.
+  */
+  protected static long readStream(InputStream is)
+    throws ManifoldCFException
+  {
+    try
+    {
+      byte[] buffer = new byte[65536];
+      long total = 0L;
+      while (true)
+      {
+        int amt = is.read(buffer);
+        if (amt == -1)
+          break;
+        total += (long)amt;
+      }
+      return total;
+    }
+    catch (InterruptedIOException e)
+    {
+      throw new ManifoldCFException(e.getMessage(),e,ManifoldCFException.INTERRUPTED);
+    }
+    catch (IOException e)
+    {
+      throw new ManifoldCFException("IO error reading document content: "+e.getMessage(),e);
+    }
+  }
+
+  /** Limits the rate at which requests are admitted.  Callers that arrive too early
+  * are held until their slot comes up, which is how a saturated output data store
+  * pushes back on the crawler.
+  */
+  protected static class RateThrottle
+  {
+    /** Minimum interval between permits, in milliseconds */
+    protected final double interval;
+    /** Time at which the next permit may be granted */
+    protected double nextPermitTime = 0.0;
+
+    public RateThrottle(int maxRate)
+    {
+      interval = 1000.0 / (double)maxRate;
+    }
+
+    /** Wait until this caller is permitted to proceed.
+    */
+    public void obtainPermit()
+      throws InterruptedException
+    {
+      long waitTime;
+      synchronized (this)
+      {
+        double currentTime = (double)System.currentTimeMillis();
+        if (nextPermitTime < currentTime)
+          nextPermitTime = currentTime;
+        waitTime = (long)(nextPermitTime - currentTime);
+        nextPermitTime += interval;
+      }
+      if (waitTime > 0L)
+        ManifoldCF.sleep(waitTime);
+    }
+  }
+
 
 }
@@ -0,0 +1,68 @@
+<!--
+ Licensed to the Apache Software Foundation (ASF) under one or more
+ contributor license agreements.  See the NOTICE file distributed with
+ this work for additional information regarding copyright ownership.
+ The ASF licenses this file to You under the Apache License, Version 2.0
+ (the "License"); you may not use this file except in compliance with
+ the License.  You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+-->
+
+<script type="text/javascript">
+<!--
+function checkConfig()
+{
+  if (editconnection.latency.value != "" && !isInteger(editconnection.latency.value))
+  {
+    alert("$Encoder.bodyJavascriptEscape($ResourceBundle.getString('NullConnector.LatencyMustBeAnInteger'))");
+    editconnection.latency.focus();
+    return false;
+  }
+  if (editconnection.maxrate.value != "" && !isInteger(editconnection.maxrate.value))
+  {
+    alert("$Encoder.bodyJavascriptEscape($ResourceBundle.getString('NullConnector.MaximumRateMustBeAnInteger'))");
+    editconnection.maxrate.focus();
+    return false;
+  }
+  if (editconnection.interruptionrate.value != "" && !isPercentage(editconnection.interruptionrate.value))
+  {
+    alert("$Encoder.bodyJavascriptEscape($ResourceBundle.getString('NullConnector.InterruptionRateMustBeAPercentage'))");
+    editconnection.interruptionrate.focus();
+    return false;
+  }
+  if (editconnection.rejectionrate.value != "" && !isPercentage(editconnection.rejectionrate.value))
+  {
+    alert("$Encoder.bodyJavascriptEscape($ResourceBundle.getString('NullConnector.RejectionRateMustBeAPercentage'))");
+    editconnection.rejectionrate.focus();
+    return false;
+  }
+  return true;
+}
+
+function checkConfigForSave()
+{
+  if (!checkConfig())
+  {
+    SelectTab("$Encoder.bodyJavascriptEscape($ResourceBundle.getString('NullConnector.Simulation'))");
+    return false;
+  }
+  return true;
+}
+
+function isPercentage(value)
+{
+  var number = parseFloat(value);
+  if (isNaN(number) || number < 0 || number > 100)
+    return false;
+  return true;
+}
+
+//-->
+</script>
@@ -0,0 +1,297 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.agents.output.nullconnector;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Check the null output connector's load simulation: the latency distributions, the rate
+* throttle, and the injected interruption and rejection ratios.  The random checks use bounds
+* many standard deviations wide, so they do not fail by chance.
+*/
+public class NullConnectorTest
+{
+  protected final static int SAMPLES = 20000;
+
+  @Test
+  public void fixedLatency()
+    throws Exception
+  {
+    NullConnector connector = makeConnector("50",NullConfig.LATENCY_FIXED,"0","0","0");
+    int i = 0;
+    while (i < 1000)
+    {
+      assertEquals(50L,connector.computeLatency());
+      i++;
+    }
+  }
+
+  @Test
+  public void noLatency()
+    throws Exception
+  {
+    NullConnector connector = makeConnector("0",NullConfig.LATENCY_EXPONENTIAL,"0","0","0");
+    assertEquals(0L,connector.computeLatency());
+  }
+
+  @Test
+  public void uniformLatency()
+    throws Exception
+  {
+    NullConnector connector = makeConnector("100",NullConfig.LATENCY_UNIFORM,"0","0","0");
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    long sum = 0L;
+    int i = 0;
+    while (i < SAMPLES)
+    {
+      long latency = connector.computeLatency();
+      // Between zero and twice the mean
+      assertTrue(latency >= 0L && latency < 200L);
+      min = Math.min(min,latency);
+      max = Math.max(max,latency);
+      sum += latency;
+      i++;
+    }
+    // The whole range gets used
+    assertTrue(min < 5L);
+    assertTrue(max >= 195L);
+    assertEquals(100.0,(double)sum / (double)SAMPLES,5.0);
+  }
+
+  @Test
+  public void exponentialLatency()
+    throws Exception
+  {
+    NullConnector connector = makeConnector("100",NullConfig.LATENCY_EXPONENTIAL,"0","0","0");
+    long sum = 0L;
+    int longTail = 0;
+    int i = 0;
+    while (i < SAMPLES)
+    {
+      long latency = connector.computeLatency();
+      assertTrue(latency >= 0L);
+      if (latency > 300L)
+        longTail++;
+      sum += latency;
+      i++;
+    }
+    // Rounding down takes about half a millisecond off the mean
+    assertEquals(99.5,(double)sum / (double)SAMPLES,5.0);
+    // About e^-3 (5%) of the requests take more than three times the mean
+    assertEquals(0.0498 * SAMPLES,(double)longTail,0.01 * SAMPLES);
+  }
+
+  @Test
+  public void badDistribution()
+    throws Exception
+  {
+    try
+    {
+      makeConnector("10","normal","0","0","0");
+      fail("Expected the distribution to be rejected");
+    }
+    catch (ManifoldCFException e)
+    {
+    }
+  }
+
+  @Test
+  public void throttlePacing()
+    throws Exception
+  {
+    // 100 per second is one every 10ms; the first permit is immediate
+    NullConnector.RateThrottle throttle = new NullConnector.RateThrottle(100);
+    long startTime = System.currentTimeMillis();
+    int i = 0;
+    while (i < 21)
+    {
+      throttle.obtainPermit();
+      i++;
+    }
+    long elapsed = System.currentTimeMillis() - startTime;
+    assertTrue("Took "+elapsed+" ms",elapsed >= 190L);
+    assertTrue("Took "+elapsed+" ms",elapsed < 2000L);
+  }
+
+  @Test
+  public void throttleSharedByThreads()
+    throws Exception
+  {
+    // Four threads taking ten permits each at 200 per second can't finish before 39 intervals of 5ms
+    final NullConnector.RateThrottle throttle = new NullConnector.RateThrottle(200);
+    Thread[] threads = new Thread[4];
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    long startTime = System.currentTimeMillis();
+    int i = 0;
+    while (i < threads.length)
+    {
+      threads[i] = new Thread()
+      {
+        public void run()
+        {
+          try
+          {
+            int j = 0;
+            while (j < 10)
+            {
+              throttle.obtainPermit();
+              j++;
+            }
+          }
+          catch (Throwable e)
+          {
+            errors.add(e);
+          }
+        }
+      };
+      threads[i++].start();
+    }
+    i = 0;
+    while (i < threads.length)
+    {
+      threads[i++].join();
+    }
+    long elapsed = System.currentTimeMillis() - startTime;
+    assertEquals(0,errors.size());
+    assertTrue("Took "+elapsed+" ms",elapsed >= 190L);
+    assertTrue("Took "+elapsed+" ms",elapsed < 2000L);
+  }
+
+  @Test
+  public void throttleSharedByConnections()
+    throws Exception
+  {
+    NullConnector first = makeConnector("0",NullConfig.LATENCY_FIXED,"37","0","0");
+    NullConnector second = makeConnector("0",NullConfig.LATENCY_FIXED,"37","0","0");
+    NullConnector other = makeConnector("0",NullConfig.LATENCY_FIXED,"38","0","0");
+    NullConnector unlimited = makeConnector("0",NullConfig.LATENCY_FIXED,"0","0","0");
+    assertNotNull(first.throttle);
+    assertSame(first.throttle,second.throttle);
+    assertNotSame(first.throttle,other.throttle);
+    assertNull(unlimited.throttle);
+  }
+
+  @Test
+  public void interruptionRatio()
+    throws Exception
+  {
+    assertEquals(0,countInterruptions(makeConnector("0",NullConfig.LATENCY_FIXED,"0","0","0")));
+    assertEquals(SAMPLES,countInterruptions(makeConnector("0",NullConfig.LATENCY_FIXED,"0","100","0")));
+    // 10%: a standard deviation is about 42
+    assertEquals(0.1 * SAMPLES,(double)countInterruptions(makeConnector("0",NullConfig.LATENCY_FIXED,"0","10","0")),300.0);
+  }
+
+  @Test
+  public void rejectionRatio()
+    throws Exception
+  {
+    assertEquals(0,countRejections(makeConnector("0",NullConfig.LATENCY_FIXED,"0","0","0")));
+    assertEquals(SAMPLES,countRejections(makeConnector("0",NullConfig.LATENCY_FIXED,"0","0","100")));
+    // 25%: a standard deviation is about 61
+    assertEquals(0.25 * SAMPLES,(double)countRejections(makeConnector("0",NullConfig.LATENCY_FIXED,"0","0","25")),400.0);
+  }
+
+  protected static NullConnector makeConnector(String latency, String latencyDistribution, String maxRate,
+    String interruptionRate, String rejectionRate)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    ConfigParams params = new ConfigParams();
+    params.setParameter(NullConfig.PARAM_LATENCY,latency);
+    params.setParameter(NullConfig.PARAM_LATENCYDISTRIBUTION,latencyDistribution);
+    params.setParameter(NullConfig.PARAM_MAXRATE,maxRate);
+    params.setParameter(NullConfig.PARAM_INTERRUPTIONRATE,interruptionRate);
+    params.setParameter(NullConfig.PARAM_REJECTIONRATE,rejectionRate);
+    NullConnector connector = new NullConnector();
+    connector.connect(params);
+    connector.getSession();
+    return connector;
+  }
+
+  protected static int countInterruptions(NullConnector connector)
+    throws ManifoldCFException
+  {
+    int rval = 0;
+    int i = 0;
+    while (i < SAMPLES)
+    {
+      try
+      {
+        connector.simulateRequest();
+      }
+      catch (ServiceInterruption e)
+      {
+        // The framework is asked to retry later, not to give up
+        assertFalse(e.isAbortOnFail());
+        rval++;
+      }
+      i++;
+    }
+    return rval;
+  }
+
+  protected static int countRejections(NullConnector connector)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    RecordingActivity activity = new RecordingActivity();
+    int rval = 0;
+    int i = 0;
+    while (i < SAMPLES)
+    {
+      RepositoryDocument document = new RepositoryDocument();
+      document.setBinary(new ByteArrayInputStream(new byte[0]),0L);
+      int status = connector.addOrReplaceDocument("http://localhost/"+i,"",document,null,activity);
+      if (status == NullConnector.DOCUMENTSTATUS_REJECTED)
+        rval++;
+      else
+        assertEquals(NullConnector.DOCUMENTSTATUS_ACCEPTED,status);
+      i++;
+    }
+    // Every rejection is recorded as such in the history
+    assertEquals(rval,activity.rejectedCount);
+    return rval;
+  }
+
+  /** Activity sink that counts the rejections recorded against it.
+  */
+  protected static class RecordingActivity implements IOutputAddActivity
+  {
+    public int rejectedCount = 0;
+
+    public String qualifyAccessToken(String authorityNameString, String accessToken)
+      throws ManifoldCFException
+    {
+      return accessToken;
+    }
+
+    public void recordActivity(Long startTime, String activityType, Long dataSize,
+      String entityURI, String resultCode, String resultDescription)
+      throws ManifoldCFException
+    {
+      if ("REJECTED".equals(resultCode))
+        rejectedCount++;
+    }
+  }
+
+}
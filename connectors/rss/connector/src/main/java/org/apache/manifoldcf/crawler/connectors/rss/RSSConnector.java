@@ -1169,6 +1169,15 @@ public class RSSConnector extends org.apache.manifoldcf.crawler.connectors.BaseR
           }
         }
       }
+      catch (ServiceInterruption e)
+      {
+        // An interruption for one feed or host should not hold up the rest of the set, unless the job itself is going away.
+        if (e.jobInactiveAbort())
+          throw e;
+        cache.deleteData(urlValue);
+        activities.noteDocumentServiceInterruption(urlValue,e);
+        rval[i] = null;
+      }
       finally
       {
         int j = 0;
@@ -5507,8 +5516,8 @@ public class RSSConnector extends org.apache.manifoldcf.crawler.connectors.BaseR
   */
   public int getMaxDocumentRequest()
   {
-    // RSS and the web in general do not batch well.  Multiple chunks have no advantage over one-at-a-time requests.
-    return 1;
+    // Small, because every fetched feed or article stays cached until the whole batch is done
+    return 10;
   }
 
   // Protected methods and classes
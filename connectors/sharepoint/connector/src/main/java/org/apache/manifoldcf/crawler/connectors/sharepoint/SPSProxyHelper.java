@@ -1939,6 +1939,210 @@ public class SPSProxyHelper {
     }
   }
 
+  /**
+  * Gets the field values of several documents in the same list or library, using a single GetListItems call.
+  * @param fieldNames
+  * @param site
+  * @param docLibrary is the list/library GUID
+  * @param docIds are the document paths, as passed to getFieldValues()
+  * @return a map from document path to the field values of that document, or null if the list/library cannot be
+  * read this way.  Documents that were not found are left out of the map.
+  */
+  public Map<String,Map<String,String>> getFieldValues( ArrayList fieldNames, String site, String docLibrary, List<String> docIds )
+    throws ManifoldCFException, ServiceInterruption
+  {
+    long currentTime;
+    try
+    {
+      if ( site.compareTo("/") == 0 ) site = ""; // root case
+
+      // Match the returned items to the documents by FileRef
+      Map<String,String> fileRefMap = new HashMap<String,String>();
+      List<String> fileRefs = new ArrayList<String>();
+      for (String docId : docIds)
+      {
+        String sitePlusDocId = serverLocation + site + "/" + docId;
+        if (sitePlusDocId.startsWith("/"))
+          sitePlusDocId = sitePlusDocId.substring(1);
+        fileRefMap.put(sitePlusDocId,docId);
+        fileRefs.add(sitePlusDocId);
+      }
+
+      ArrayList viewFieldNames = new ArrayList(fieldNames);
+      if (!viewFieldNames.contains("FileRef"))
+        viewFieldNames.add("FileRef");
+
+      GetListItemsQuery q = buildMatchAnyQuery("FileRef","Text",fileRefs);
+      GetListItemsViewFields viewFields = buildViewFields(viewFieldNames);
+
+      GetListItemsResponseGetListItemsResult items = getListItems(site, docLibrary, q, viewFields, Integer.toString(fileRefs.size()));
+      if (items == null)
+        return new HashMap<String,Map<String,String>>();
+
+      MessageElement[] list = items.get_any();
+
+      if (Logging.connectors.isDebugEnabled()){
+        Logging.connectors.debug("SharePoint: getListItems for "+Integer.toString(fileRefs.size())+" documents in library '"+docLibrary+"' xml response: '" + list[0].toString() + "'");
+      }
+
+      return parseFieldValues(list[0].toString(),fieldNames,fileRefMap);
+    }
+    catch (java.net.MalformedURLException e)
+    {
+      throw new ManifoldCFException("Bad SharePoint url: "+e.getMessage(),e);
+    }
+    catch (javax.xml.rpc.ServiceException e)
+    {
+      if (Logging.connectors.isDebugEnabled())
+        Logging.connectors.debug("SharePoint: Got a service exception getting field values for site "+site+" library "+docLibrary+" - retrying",e);
+      currentTime = System.currentTimeMillis();
+      throw new ServiceInterruption("Service exception: "+e.getMessage(), e, currentTime + 300000L,
+        currentTime + 12 * 60 * 60000L,-1,true);
+    }
+    catch (org.apache.axis.AxisFault e)
+    {
+      if (e.getFaultCode().equals(new javax.xml.namespace.QName("http://xml.apache.org/axis/","HTTP")))
+      {
+        org.w3c.dom.Element elem = e.lookupFaultDetail(new javax.xml.namespace.QName("http://xml.apache.org/axis/","HttpErrorCode"));
+        if (elem != null)
+        {
+          elem.normalize();
+          String httpErrorCode = elem.getFirstChild().getNodeValue().trim();
+          if (httpErrorCode.equals("404"))
+            return null;
+          else if (httpErrorCode.equals("403"))
+            throw new ManifoldCFException("Remote procedure exception: "+e.getMessage(),e);
+          else if (httpErrorCode.equals("401"))
+          {
+            if (Logging.connectors.isDebugEnabled())
+              Logging.connectors.debug("SharePoint: Crawl user does not have sufficient privileges to get field values for site "+site+" library "+docLibrary+" - skipping",e);
+            return null;
+          }
+          throw new ManifoldCFException("Unexpected http error code "+httpErrorCode+" accessing SharePoint at "+baseUrl+site+": "+e.getMessage(),e);
+        }
+        throw new ManifoldCFException("Unknown http error occurred: "+e.getMessage(),e);
+      }
+
+      if (e.getFaultCode().equals(new javax.xml.namespace.QName("http://schemas.xmlsoap.org/soap/envelope/","Server")))
+      {
+        org.w3c.dom.Element elem = e.lookupFaultDetail(new javax.xml.namespace.QName("http://schemas.microsoft.com/sharepoint/soap/","errorcode"));
+        if (elem != null)
+        {
+          // The list is gone, or SharePoint would not run the query (it can be too big for some servers).  Either
+          // way, the documents are looked up one at a time, which gives the authoritative answer.
+          if (Logging.connectors.isDebugEnabled())
+          {
+            elem.normalize();
+            String sharepointErrorCode = elem.getFirstChild().getNodeValue().trim();
+            Logging.connectors.debug("SharePoint: Getting field values for "+Integer.toString(docIds.size())+" documents in site "+site+" library "+docLibrary+" failed with SharePoint error code "+sharepointErrorCode+" - fetching them individually",e);
+          }
+          return null;
+        }
+      }
+
+      if (e.getFaultCode().equals(new javax.xml.namespace.QName("http://schemas.xmlsoap.org/soap/envelope/","Server.userException")))
+      {
+        String exceptionName = e.getFaultString();
+        if (exceptionName.equals("java.lang.InterruptedException"))
+          throw new ManifoldCFException("Interrupted",ManifoldCFException.INTERRUPTED);
+      }
+
+      // I don't know if this is what you get when the library is missing, but here's hoping.
+      if (e.getMessage().indexOf("List does not exist") != -1)
+        return null;
+
+      if (Logging.connectors.isDebugEnabled())
+        Logging.connectors.debug("SharePoint: Got a remote exception getting field values for site "+site+" library "+docLibrary+" - retrying",e);
+      currentTime = System.currentTimeMillis();
+      throw new ServiceInterruption("Remote procedure exception: "+e.getMessage(), e, currentTime + 300000L,
+        currentTime + 3 * 60 * 60000L,-1,false);
+    }
+    catch (java.rmi.RemoteException e)
+    {
+      throw new ManifoldCFException("Unexpected remote exception occurred: "+e.getMessage(),e);
+    }
+  }
+
+  /** Make a GetListItems call, without paging.
+  * @param site is the site path, or the empty string for the root site.
+  * @param docLibrary is the list/library GUID.
+  * @return the result.
+  */
+  protected GetListItemsResponseGetListItemsResult getListItems( String site, String docLibrary, GetListItemsQuery q,
+    GetListItemsViewFields viewFields, String rowLimit )
+    throws ManifoldCFException, java.net.MalformedURLException, javax.xml.rpc.ServiceException, java.rmi.RemoteException
+  {
+    ListsWS lservice = new ListsWS(baseUrl + site, userName, password, configuration, httpClient );
+    ListsSoapStub stub1 = (ListsSoapStub)lservice.getListsSoapHandler();
+    return stub1.getListItems(docLibrary, "", q, viewFields, rowLimit, buildNonPagingQueryOptions(), null);
+  }
+
+  /** Parse the field values out of a GetListItems response.
+  * @param xml is the response xml.
+  * @param fieldNames are the fields to extract.
+  * @param fileRefMap maps the FileRef of each wanted item to the key to return its values under.
+  * @return a map from key to field values, for each wanted item found in the response.
+  */
+  protected static Map<String,Map<String,String>> parseFieldValues(String xml, ArrayList fieldNames, Map<String,String> fileRefMap)
+    throws ManifoldCFException
+  {
+    Map<String,Map<String,String>> result = new HashMap<String,Map<String,String>>();
+
+    ArrayList nodeList = new ArrayList();
+    XMLDoc doc = new XMLDoc(xml);
+
+    doc.processPath(nodeList, "*", null);
+    if (nodeList.size() != 1)
+      throw new ManifoldCFException("Bad xml - expecting one outer 'ns1:listitems' node - there are " + Integer.toString(nodeList.size()) + " nodes");
+
+    Object parent = nodeList.get(0);
+    if (!"ns1:listitems".equals(doc.getNodeName(parent)))
+      throw new ManifoldCFException("Bad xml - outer node is not 'ns1:listitems'");
+
+    nodeList.clear();
+    doc.processPath(nodeList, "*", parent);
+
+    if (nodeList.size() != 1)
+      throw new ManifoldCFException("Expected rsdata result but no results found.");
+
+    Object rsData = nodeList.get(0);
+
+    int itemCount = Integer.parseInt(doc.getValue(rsData, "ItemCount"));
+    if (itemCount == 0)
+      return result;
+
+    // Now, extract the files from the response document
+    ArrayList nodeDocs = new ArrayList();
+
+    doc.processPath(nodeDocs, "*", rsData);
+
+    if (nodeDocs.size() != itemCount)
+      throw new ManifoldCFException("itemCount does not match with nodeDocs.size()");
+
+    for (Object o : nodeDocs)
+    {
+      String fileRef = doc.getValue(o,"ows_FileRef");
+      if (fileRef == null)
+        continue;
+      String key = fileRefMap.get(valueMunge(fileRef));
+      if (key == null)
+        continue;
+
+      // Look for all the specified attributes in the record
+      Map<String,String> values = new HashMap<String,String>();
+      for (Object attrName : fieldNames)
+      {
+        String attrValue = doc.getValue(o,"ows_"+(String)attrName);
+        if (attrValue != null)
+        {
+          values.put((String)attrName,valueMunge(attrValue));
+        }
+      }
+      result.put(key,values);
+    }
+    return result;
+  }
+
   /**
   * Gets a list of sites given a parent site
   * @param parentSite the site to search for subsites, empty string for root
@@ -2437,6 +2641,56 @@ public class SPSProxyHelper {
     }
   }
   
+  /** Build a query XML object that matches any of a list of values for a specified field.
+  * CAML's Or takes exactly two operands, so the matches are nested.
+  */
+  protected static GetListItemsQuery buildMatchAnyQuery(String fieldName, String type, List<String> values)
+    throws ManifoldCFException
+  {
+    try
+    {
+      GetListItemsQuery rval = new GetListItemsQuery();
+      MessageElement queryNode = new MessageElement((String)null,"Query");
+      rval.set_any(new MessageElement[]{queryNode});
+      MessageElement whereNode = new MessageElement((String)null,"Where");
+      queryNode.addChild(whereNode);
+      MessageElement parentNode = whereNode;
+      for (int i = 0 ; i < values.size() ; i++)
+      {
+        if (i < values.size() - 1)
+        {
+          MessageElement orNode = new MessageElement((String)null,"Or");
+          parentNode.addChild(orNode);
+          addEqNode(orNode,fieldName,type,values.get(i));
+          parentNode = orNode;
+        }
+        else
+          addEqNode(parentNode,fieldName,type,values.get(i));
+      }
+      return rval;
+    }
+    catch (javax.xml.soap.SOAPException e)
+    {
+      throw new ManifoldCFException(e.getMessage(),e);
+    }
+  }
+
+  /** Add an Eq node matching a field and value to a query node.
+  */
+  protected static void addEqNode(MessageElement parentNode, String fieldName, String type, String value)
+    throws javax.xml.soap.SOAPException
+  {
+    MessageElement eqNode = new MessageElement((String)null,"Eq");
+    parentNode.addChild(eqNode);
+    MessageElement fieldRefNode = new MessageElement((String)null,"FieldRef");
+    eqNode.addChild(fieldRefNode);
+    fieldRefNode.addAttribute(null,"Name",fieldName);
+    MessageElement valueNode = new MessageElement((String)null,"Value");
+    eqNode.addChild(valueNode);
+    valueNode.addAttribute(null,"Type",type);
+    valueNode.addTextNode(value);
+  }
+
   /** Build a query XML object that orders by an indexed column, for paging.
   */
   protected static GetListItemsQuery buildOrderedQuery(String indexedColumn)
@@ -80,6 +80,17 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
   public final static String ACTIVITY_FETCH = "fetch";
 
   protected final static long sessionExpirationInterval = 300000L;
+
+  /** How long library and list GUIDs, field lists, and library and list acls stay cached */
+  protected final static long metadataCacheLifetime = 300000L;
+  /** The most metadata objects to keep cached */
+  protected final static int metadataCacheLRUSize = 1000;
+
+  // Kinds of cached metadata
+  protected final static String METADATA_LIBRARYID = "L";
+  protected final static String METADATA_LISTID = "T";
+  protected final static String METADATA_FIELDLIST = "F";
+  protected final static String METADATA_ACLS = "A";
   
   private boolean supportsItemSecurity = false;
   private boolean dspStsWorks = true;
@@ -97,6 +108,8 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
 
   private SPSProxyHelper proxy = null;
 
+  private ICacheManager cacheManager = null;
+
   private long sessionTimeout;
   
   // SSL support
@@ -132,6 +145,25 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
   {
   }
 
+  /** Set thread context.
+  */
+  @Override
+  public void setThreadContext(IThreadContext tc)
+    throws ManifoldCFException
+  {
+    super.setThreadContext(tc);
+    cacheManager = CacheManagerFactory.make(tc);
+  }
+
+  /** Clear thread context.
+  */
+  @Override
+  public void clearThreadContext()
+  {
+    super.clearThreadContext();
+    cacheManager = null;
+  }
+
   /** Set up a session */
   protected void getSession()
     throws ManifoldCFException
@@ -675,13 +707,13 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
 
     }
 
-    // This is the cached map of sitelibstring to library identifier
-    Map<String,String> libIDMap = new HashMap<String,String>();
-    // This is the cached map of siteliststring to list identifier
-    Map<String,String> listIDMap = new HashMap<String,String>();
-    
-    // This is the cached map if guid to field list
-    Map<String,Map<String,String>> fieldListMap = new HashMap<String,Map<String,String>>();
+    // Library and list identifiers, field lists, and acls come from the metadata cache.
+    // The modify dates of the documents are fetched a library or list at a time.
+    FieldValueBatch fieldValueBatch = new FieldValueBatch(proxy,dspStsWorks);
+    for (String documentIdentifier : documentIdentifiers)
+    {
+      fieldValueBatch.addDocument(documentIdentifier);
+    }
     
     // Calculate the part of the version string that comes from path name and mapping.
     // This starts with = since ; is used by another optional component (the forced acls)
@@ -691,10 +723,6 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
 
     String[] rval = new String[documentIdentifiers.length];
     
-    // Build a cache of the acls for a given site, guid.
-    // The key is the guid, and the value is a String[]
-    Map<String,String[]> ACLmap = new HashMap<String,String[]>();
-    
     i = 0;
     while (i < rval.length)
     {
@@ -750,18 +778,12 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
 
               String encodedSitePath = encodePath(sitePath);
 
-              // Need to get the library id.  Cache it if we need to calculate it.
-              String listID = listIDMap.get(decodedListPath);
-              if (listID == null)
-              {
-                listID = proxy.getListID(encodedSitePath, sitePath, list);
-                if (listID != null)
-                  listIDMap.put(decodedListPath,listID);
-              }
+              // Need to get the list id.
+              String listID = getCachedListID(encodedSitePath, sitePath, list);
 
               if (listID != null)
               {
-                String[] sortedMetadataFields = getInterestingFieldSetSorted(metadataInfo,encodedSitePath,listID,fieldListMap);
+                String[] sortedMetadataFields = getInterestingFieldSetSorted(metadataInfo,encodedSitePath,listID);
                 
                 if (sortedMetadataFields != null)
                 {
@@ -771,7 +793,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
                   // The document path includes the library, with no leading slash, and is decoded.
                   int cutoff = decodedListPath.lastIndexOf("/");
                   String decodedItemPathWithoutSite = decodedItemPath.substring(cutoff+1);
-                  Map values = proxy.getFieldValues( metadataDescription, encodedSitePath, listID, "/Lists/" + decodedItemPathWithoutSite, dspStsWorks );
+                  Map values = fieldValueBatch.getFieldValues( metadataDescription, encodedSitePath, listID, decodedListPath, "/Lists/" + decodedItemPathWithoutSite );
                   String modifyDate = (String)values.get("Modified");
                   if (modifyDate != null)
                   {
@@ -796,7 +818,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
                         // The goal here is simply to record what should get ingested with the document, so that
                         // we can compare against future values.
                         // Grab the acls for this combo, if we haven't already
-                        accessTokens = lookupAccessTokensSorted(encodedSitePath,listID,ACLmap);
+                        accessTokens = lookupAccessTokensSorted(encodedSitePath,listID);
                           
                         if (accessTokens == null)
                           foundAcls = false;
@@ -895,18 +917,12 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
 
               String encodedSitePath = encodePath(sitePath);
 
-              // Need to get the library id.  Cache it if we need to calculate it.
-              String libID = libIDMap.get(decodedLibPath);
-              if (libID == null)
-              {
-                libID = proxy.getDocLibID(encodedSitePath, sitePath, lib);
-                if (libID != null)
-                  libIDMap.put(decodedLibPath,libID);
-              }
+              // Need to get the library id.
+              String libID = getCachedDocLibID(encodedSitePath, sitePath, lib);
 
               if (libID != null)
               {
-                String[] sortedMetadataFields = getInterestingFieldSetSorted(metadataInfo,encodedSitePath,libID,fieldListMap);
+                String[] sortedMetadataFields = getInterestingFieldSetSorted(metadataInfo,encodedSitePath,libID);
                 
                 if (sortedMetadataFields != null)
                 {
@@ -916,7 +932,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
                   // The document path includes the library, with no leading slash, and is decoded.
                   int cutoff = decodedLibPath.lastIndexOf("/");
                   String decodedDocumentPathWithoutSite = decodedDocumentPath.substring(cutoff+1);
-                  Map values = proxy.getFieldValues( metadataDescription, encodedSitePath, libID, decodedDocumentPathWithoutSite, dspStsWorks );
+                  Map values = fieldValueBatch.getFieldValues( metadataDescription, encodedSitePath, libID, decodedLibPath, decodedDocumentPathWithoutSite );
                   String modifyDate = (String)values.get("Last_x0020_Modified");
                   if (modifyDate != null)
                   {
@@ -958,7 +974,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
                           // The goal here is simply to record what should get ingested with the document, so that
                           // we can compare against future values.
                           // Grab the acls for this combo, if we haven't already
-                          accessTokens = lookupAccessTokensSorted(encodedSitePath,libID,ACLmap);
+                          accessTokens = lookupAccessTokensSorted(encodedSitePath,libID);
                           
                           if (accessTokens == null)
                             foundAcls = false;
@@ -1049,28 +1065,14 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
     return rval;
   }
 
-  protected String[] lookupAccessTokensSorted(String encodedSitePath, String guid, Map<String,String[]> ACLmap)
+  protected String[] lookupAccessTokensSorted(String encodedSitePath, String guid)
     throws ManifoldCFException, ServiceInterruption
   {
-    String[] accessTokens = ACLmap.get(guid);
-    if (accessTokens == null)
-    {
-      if (Logging.connectors.isDebugEnabled())
-        Logging.connectors.debug( "SharePoint: Compiling acl list for guid "+guid+"... ");
-      accessTokens = proxy.getACLs( encodedSitePath, guid );
-      if (accessTokens != null)
-      {
-        java.util.Arrays.sort(accessTokens);
-        if (Logging.connectors.isDebugEnabled())
-          Logging.connectors.debug( "SharePoint: Received " + accessTokens.length + " acls for  guid " +guid);
-        ACLmap.put(guid,accessTokens);
-      }
-    }
-    return accessTokens;
+    return (String[])lookupMetadata(METADATA_ACLS,encodedSitePath,null,guid);
   }
 
   protected String[] getInterestingFieldSetSorted(MetadataInformation metadataInfo,
-    String encodedSitePath, String guid, Map<String,Map<String,String>> fieldListMap)
+    String encodedSitePath, String guid)
     throws ManifoldCFException, ServiceInterruption
   {
     Set<String> metadataFields = null;
@@ -1079,13 +1081,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
     if (metadataInfo.getAllMetadata())
     {
       // Fetch the fields
-      Map<String,String> fieldNames = fieldListMap.get(guid);
-      if (fieldNames == null)
-      {
-        fieldNames = proxy.getFieldList( encodedSitePath, guid );
-        if (fieldNames != null)
-          fieldListMap.put(guid,fieldNames);
-      }
+      Map<String,String> fieldNames = getCachedFieldList( encodedSitePath, guid );
 
       if (fieldNames != null)
       {
@@ -1124,6 +1120,270 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
     return sortedMetadataFields;
   }
 
+  /** Get a library's GUID, using the metadata cache.
+  */
+  protected String getCachedDocLibID(String encodedSitePath, String sitePath, String docLibrary)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    return (String)lookupMetadata(METADATA_LIBRARYID,encodedSitePath,sitePath,docLibrary);
+  }
+
+  /** Get a list's GUID, using the metadata cache.
+  */
+  protected String getCachedListID(String encodedSitePath, String sitePath, String list)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    return (String)lookupMetadata(METADATA_LISTID,encodedSitePath,sitePath,list);
+  }
+
+  /** Get the field list for a library or list GUID, using the metadata cache.
+  * The returned map is shared and must not be modified.
+  */
+  protected Map<String,String> getCachedFieldList(String encodedSitePath, String guid)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    return (Map<String,String>)lookupMetadata(METADATA_FIELDLIST,encodedSitePath,null,guid);
+  }
+
+  /** Look up a piece of library or list metadata in the cache, fetching and caching it if needed.
+  * Null results (e.g. a library that no longer exists) are not cached.
+  *@param kind is the kind of metadata.
+  *@param encodedSitePath is the encoded site path.
+  *@param sitePath is the decoded site path, needed only for name lookups.
+  *@param name is the library or list name, or the GUID.
+  *@return the metadata object, or null if it does not exist.
+  */
+  protected Object lookupMetadata(String kind, String encodedSitePath, String sitePath, String name)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    ICacheDescription objectDescription = new MetadataDescription(kind,fileBaseUrl,userName,encodedSitePath,name,
+      metadataCacheLifetime,metadataCacheLRUSize);
+    ICacheHandle ch = cacheManager.enterCache(new ICacheDescription[]{objectDescription},null,null);
+    try
+    {
+      ICacheCreateHandle createHandle = cacheManager.enterCreateSection(ch);
+      try
+      {
+        // Lookup the object
+        Object rval = cacheManager.lookupObject(createHandle,objectDescription);
+        if (rval != null)
+          return rval;
+        // Create the object.
+        rval = fetchMetadata(kind,encodedSitePath,sitePath,name);
+        // Save it in the cache
+        if (rval != null)
+          cacheManager.saveObject(createHandle,objectDescription,rval);
+        return rval;
+      }
+      finally
+      {
+        cacheManager.leaveCreateSection(createHandle);
+      }
+    }
+    finally
+    {
+      cacheManager.leaveCache(ch);
+    }
+  }
+
+  /** Fetch a piece of library or list metadata from SharePoint, uncached.
+  */
+  protected Object fetchMetadata(String kind, String encodedSitePath, String sitePath, String name)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    if (kind.equals(METADATA_LIBRARYID))
+      return proxy.getDocLibID(encodedSitePath, sitePath, name);
+    if (kind.equals(METADATA_LISTID))
+      return proxy.getListID(encodedSitePath, sitePath, name);
+    if (kind.equals(METADATA_FIELDLIST))
+      return proxy.getFieldList(encodedSitePath, name);
+    if (kind.equals(METADATA_ACLS))
+    {
+      if (Logging.connectors.isDebugEnabled())
+        Logging.connectors.debug( "SharePoint: Compiling acl list for guid "+name+"... ");
+      String[] accessTokens = proxy.getACLs( encodedSitePath, name );
+      if (accessTokens != null)
+      {
+        java.util.Arrays.sort(accessTokens);
+        if (Logging.connectors.isDebugEnabled())
+          Logging.connectors.debug( "SharePoint: Received " + accessTokens.length + " acls for  guid " +name);
+      }
+      return accessTokens;
+    }
+    throw new ManifoldCFException("Unknown metadata kind: '"+kind+"'");
+  }
+
+  /** This class fetches the field values of a set of documents, one library or list
+  * at a time, where the server supports it.  Documents the multiple-item request
+  * does not account for are fetched individually.
+  */
+  protected static class FieldValueBatch
+  {
+    /** The connection to the server */
+    protected final SPSProxyHelper proxy;
+    /** True if the server describes documents through the DSP service */
+    protected final boolean dspStsWorks;
+    /** Item paths (relative to the site), keyed by decoded library or list path */
+    protected Map<String,List<String>> itemPaths = new HashMap<String,List<String>>();
+    /** Fetched values, keyed by GUID and field names */
+    protected Map<String,Map<String,Map<String,String>>> fetchedValues = new HashMap<String,Map<String,Map<String,String>>>();
+
+    /** Constructor.
+    *@param proxy is the connection to the server.
+    *@param dspStsWorks is true if the server describes documents through the DSP service.
+    */
+    public FieldValueBatch(SPSProxyHelper proxy, boolean dspStsWorks)
+    {
+      this.proxy = proxy;
+      this.dspStsWorks = dspStsWorks;
+    }
+
+    /** Note a document whose field values will be wanted.  Identifiers that are
+    * not library documents or list items are ignored.
+    */
+    public void addDocument(String documentIdentifier)
+    {
+      if (!documentIdentifier.startsWith("/"))
+        return;
+      int dListSeparatorIndex = documentIdentifier.indexOf("///");
+      if (dListSeparatorIndex != -1)
+      {
+        if (documentIdentifier.endsWith("///"))
+          return;
+        String decodedListPath = documentIdentifier.substring(0,dListSeparatorIndex);
+        String decodedItemPath = decodedListPath + documentIdentifier.substring(dListSeparatorIndex+2);
+        int cutoff = decodedListPath.lastIndexOf("/");
+        addItemPath(decodedListPath,"/Lists/" + decodedItemPath.substring(cutoff+1));
+        return;
+      }
+      int dLibSeparatorIndex = documentIdentifier.indexOf("//");
+      if (dLibSeparatorIndex != -1)
+      {
+        if (documentIdentifier.endsWith("//"))
+          return;
+        String decodedLibPath = documentIdentifier.substring(0,dLibSeparatorIndex);
+        String decodedDocumentPath = decodedLibPath + documentIdentifier.substring(dLibSeparatorIndex+1);
+        int cutoff = decodedLibPath.lastIndexOf("/");
+        addItemPath(decodedLibPath,decodedDocumentPath.substring(cutoff+1));
+      }
+    }
+
+    protected void addItemPath(String decodedParentPath, String itemPath)
+    {
+      List<String> paths = itemPaths.get(decodedParentPath);
+      if (paths == null)
+      {
+        paths = new ArrayList<String>();
+        itemPaths.put(decodedParentPath,paths);
+      }
+      paths.add(itemPath);
+    }
+
+    /** Get the field values for one document.
+    *@param fieldNames are the fields to fetch.
+    *@param encodedSitePath is the encoded site path.
+    *@param guid is the library or list GUID.
+    *@param decodedParentPath is the decoded library or list path the document was noted under.
+    *@param itemPath is the item path, relative to the site.
+    *@return the field values, or null if the library or list is gone.
+    */
+    public Map<String,String> getFieldValues(ArrayList fieldNames, String encodedSitePath, String guid,
+      String decodedParentPath, String itemPath)
+      throws ManifoldCFException, ServiceInterruption
+    {
+      List<String> paths = itemPaths.get(decodedParentPath);
+      // The DSP service only describes one document at a time
+      if (!dspStsWorks && paths != null && paths.size() > 1 && paths.contains(itemPath))
+      {
+        String key = guid + ":" + fieldNames.toString();
+        Map<String,Map<String,String>> values = fetchedValues.get(key);
+        if (values == null && !fetchedValues.containsKey(key))
+        {
+          if (Logging.connectors.isDebugEnabled())
+            Logging.connectors.debug("SharePoint: Fetching field values for "+paths.size()+" items in '"+decodedParentPath+"'");
+          values = proxy.getFieldValues( fieldNames, encodedSitePath, guid, paths );
+          fetchedValues.put(key,values);
+        }
+        if (values != null)
+        {
+          Map<String,String> rval = values.get(itemPath);
+          if (rval != null)
+            return rval;
+        }
+      }
+      return proxy.getFieldValues( fieldNames, encodedSitePath, guid, itemPath, dspStsWorks );
+    }
+  }
+
+  protected static StringSet emptyStringSet = new StringSet();
+
+  /** This is the cache object descriptor for cached library and list metadata.
+  */
+  protected static class MetadataDescription extends org.apache.manifoldcf.core.cachemanager.BaseDescription
+  {
+    /** The kind of metadata */
+    protected String kind;
+    /** The connection's base url */
+    protected String baseUrl;
+    /** The connection's user name */
+    protected String userName;
+    /** The encoded site path */
+    protected String encodedSitePath;
+    /** The library or list name, or GUID */
+    protected String name;
+    /** The lifetime */
+    protected long lifetime;
+    /** The expiration time */
+    protected long expirationTime = -1;
+
+    /** Constructor. */
+    public MetadataDescription(String kind, String baseUrl, String userName, String encodedSitePath, String name,
+      long lifetime, int LRUsize)
+    {
+      super("SharePointRepository",LRUsize);
+      this.kind = kind;
+      this.baseUrl = baseUrl;
+      this.userName = userName;
+      this.encodedSitePath = encodedSitePath;
+      this.name = name;
+      this.lifetime = lifetime;
+    }
+
+    /** Return the invalidation keys for this object. */
+    public StringSet getObjectKeys()
+    {
+      return emptyStringSet;
+    }
+
+    /** Get the critical section name, used for synchronizing the creation of the object */
+    public String getCriticalSectionName()
+    {
+      return getClass().getName() + "-" + kind + "-" + baseUrl + "-" + userName + "-" + encodedSitePath + "-" + name;
+    }
+
+    /** Return the object expiration interval */
+    public long getObjectExpirationTime(long currentTime)
+    {
+      if (expirationTime == -1)
+        expirationTime = currentTime + lifetime;
+      return expirationTime;
+    }
+
+    public int hashCode()
+    {
+      return kind.hashCode() + baseUrl.hashCode() + userName.hashCode() + encodedSitePath.hashCode() + name.hashCode();
+    }
+
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof MetadataDescription))
+        return false;
+      MetadataDescription md = (MetadataDescription)o;
+      return md.kind.equals(kind) && md.baseUrl.equals(baseUrl) && md.userName.equals(userName) &&
+        md.encodedSitePath.equals(encodedSitePath) && md.name.equals(name);
+    }
+  }
+
   /** Process a set of documents.
   * This is the method that should cause each document to be fetched, processed, and the results either added
   * to the queue of documents for the current job, and/or entered into the incremental ingestion manager.
@@ -1147,6 +1407,14 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
     Map<String,String> docLibIDMap = new HashMap<String,String>();
     Map<String,String> listIDMap = new HashMap<String,String>();
 
+    // Metadata for the documents we will ingest is fetched a library or list at a time
+    FieldValueBatch fieldValueBatch = new FieldValueBatch(proxy,dspStsWorks);
+    for (int j = 0 ; j < documentIdentifiers.length ; j++)
+    {
+      if (!scanOnly[j])
+        fieldValueBatch.addDocument(documentIdentifiers[j]);
+    }
+
     int i = 0;
     while (i < documentIdentifiers.length)
     {
@@ -1260,7 +1528,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
                     String listID = listIDMap.get(decodedListPath);
                     if (listID == null)
                     {
-                      listID = proxy.getListID( encodePath(site), site, listName);
+                      listID = getCachedListID( encodePath(site), site, listName);
                       if (listID == null)
                         listID = "";
                       listIDMap.put(decodedListPath,listID);
@@ -1275,7 +1543,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
                       continue;
                     }
 
-                    Map values = proxy.getFieldValues( metadataDescription, encodePath(site), listID, "/Lists/" + decodedItemPath.substring(cutoff+1), dspStsWorks );
+                    Map values = fieldValueBatch.getFieldValues( metadataDescription, encodePath(site), listID, decodedListPath, "/Lists/" + decodedItemPath.substring(cutoff+1) );
                     if (values != null)
                     {
                       Iterator iter = values.keySet().iterator();
@@ -1535,7 +1803,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
                         String documentLibID = docLibIDMap.get(decodedLibPath);
                         if (documentLibID == null)
                         {
-                          documentLibID = proxy.getDocLibID( encodePath(site), site, libName);
+                          documentLibID = getCachedDocLibID( encodePath(site), site, libName);
                           if (documentLibID == null)
                             documentLibID = "";
                           docLibIDMap.put(decodedLibPath,documentLibID);
@@ -1551,7 +1819,7 @@ public class SharePointRepository extends org.apache.manifoldcf.crawler.connecto
                         }
 
                         int cutoff = decodedLibPath.lastIndexOf("/");
-                        Map values = proxy.getFieldValues( metadataDescription, encodePath(site), documentLibID, decodedDocumentPath.substring(cutoff+1), dspStsWorks );
+                        Map values = fieldValueBatch.getFieldValues( metadataDescription, encodePath(site), documentLibID, decodedLibPath, decodedDocumentPath.substring(cutoff+1) );
                         if (values != null)
                         {
                           Iterator iter = values.keySet().iterator();
@@ -0,0 +1,228 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.sharepoint;
+
+import org.apache.manifoldcf.core.interfaces.ManifoldCFException;
+import org.apache.manifoldcf.agents.interfaces.ServiceInterruption;
+import org.apache.manifoldcf.crawler.system.Logging;
+
+import com.microsoft.schemas.sharepoint.soap.*;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.message.MessageElement;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+/** Run the batched field value lookup against canned GetListItems responses and SOAP faults,
+* and check which documents end up being fetched one at a time.
+*/
+public class FieldValueBatchTest
+{
+
+  protected final static String listItemsResponse =
+    "<ns1:listitems xmlns:ns1=\"http://schemas.microsoft.com/sharepoint/soap/\">"+
+    "<rs:data xmlns:rs=\"urn:schemas-microsoft-com:rowset\" xmlns:z=\"#RowsetSchema\" ItemCount=\"2\">"+
+    "<z:row ows_FileRef=\"1;#Site/Lib/a.doc\" ows_Modified=\"2012-01-01 00:00:00\"/>"+
+    "<z:row ows_FileRef=\"2;#Site/Lib/b.doc\" ows_Modified=\"2012-01-02 00:00:00\"/>"+
+    "</rs:data></ns1:listitems>";
+
+  protected final static String listMissingFault =
+    "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"+
+    "<soap:Fault><faultcode>soap:Server</faultcode>"+
+    "<faultstring>Exception of type 'Microsoft.SharePoint.SoapServer.SoapServerException' was thrown.</faultstring>"+
+    "<detail><errorstring xmlns=\"http://schemas.microsoft.com/sharepoint/soap/\">List does not exist.</errorstring>"+
+    "<errorcode xmlns=\"http://schemas.microsoft.com/sharepoint/soap/\">0x82000006</errorcode></detail>"+
+    "</soap:Fault></soap:Body></soap:Envelope>";
+
+  protected final static String notFoundFault =
+    "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"+
+    "<soap:Fault><faultcode xmlns:ns1=\"http://xml.apache.org/axis/\">ns1:HTTP</faultcode>"+
+    "<faultstring>(404)Not Found</faultstring>"+
+    "<detail><ns2:HttpErrorCode xmlns:ns2=\"http://xml.apache.org/axis/\">404</ns2:HttpErrorCode></detail>"+
+    "</soap:Fault></soap:Body></soap:Envelope>";
+
+  protected final static String serverFault =
+    "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"+
+    "<soap:Fault><faultcode>soap:Server</faultcode>"+
+    "<faultstring>Server was unable to process request.</faultstring>"+
+    "</soap:Fault></soap:Body></soap:Envelope>";
+
+  @BeforeClass
+  public static void setupLogging()
+  {
+    // The connector logs through the connectors logger, which is normally set up along with the rest of ManifoldCF
+    if (Logging.connectors == null)
+    {
+      Logging.connectors = org.apache.log4j.Logger.getLogger("org.apache.manifoldcf.connectors");
+      Logging.connectors.setLevel(org.apache.log4j.Level.WARN);
+    }
+  }
+
+  @Test
+  public void missingItemsAreFetchedIndividually()
+    throws Exception
+  {
+    CannedProxy proxy = new CannedProxy(listItemsResponse,null);
+    SharePointRepository.FieldValueBatch batch = fillBatch(proxy,false);
+
+    assertEquals("2012-01-01 00:00:00",getModified(batch,"Lib/a.doc"));
+    assertEquals("2012-01-02 00:00:00",getModified(batch,"Lib/b.doc"));
+    assertEquals("single",getModified(batch,"Lib/c.doc"));
+    assertEquals(1,proxy.batchCalls);
+    assertEquals(Collections.singletonList("Lib/c.doc"),proxy.singleFetches);
+  }
+
+  @Test
+  public void sharePointFaultFallsBack()
+    throws Exception
+  {
+    CannedProxy proxy = new CannedProxy(null,parseFault(listMissingFault));
+    SharePointRepository.FieldValueBatch batch = fillBatch(proxy,false);
+
+    assertEquals("single",getModified(batch,"Lib/a.doc"));
+    assertEquals("single",getModified(batch,"Lib/b.doc"));
+    assertEquals("single",getModified(batch,"Lib/c.doc"));
+    // The failed batch is remembered, not retried for every document
+    assertEquals(1,proxy.batchCalls);
+    assertEquals(3,proxy.singleFetches.size());
+  }
+
+  @Test
+  public void notFoundFaultFallsBack()
+    throws Exception
+  {
+    CannedProxy proxy = new CannedProxy(null,parseFault(notFoundFault));
+    SharePointRepository.FieldValueBatch batch = fillBatch(proxy,false);
+
+    assertEquals("single",getModified(batch,"Lib/a.doc"));
+    assertEquals("single",getModified(batch,"Lib/b.doc"));
+    assertEquals(1,proxy.batchCalls);
+    assertEquals(2,proxy.singleFetches.size());
+  }
+
+  @Test
+  public void otherServerFaultInterrupts()
+    throws Exception
+  {
+    CannedProxy proxy = new CannedProxy(null,parseFault(serverFault));
+    SharePointRepository.FieldValueBatch batch = fillBatch(proxy,false);
+
+    try
+    {
+      getModified(batch,"Lib/a.doc");
+      fail("Expected a service interruption");
+    }
+    catch (ServiceInterruption e)
+    {
+    }
+    assertEquals(0,proxy.singleFetches.size());
+  }
+
+  @Test
+  public void dspServerDoesNotBatch()
+    throws Exception
+  {
+    CannedProxy proxy = new CannedProxy(listItemsResponse,null);
+    SharePointRepository.FieldValueBatch batch = fillBatch(proxy,true);
+
+    assertEquals("single",getModified(batch,"Lib/a.doc"));
+    assertEquals(0,proxy.batchCalls);
+  }
+
+  protected static SharePointRepository.FieldValueBatch fillBatch(SPSProxyHelper proxy, boolean dspStsWorks)
+  {
+    SharePointRepository.FieldValueBatch batch = new SharePointRepository.FieldValueBatch(proxy,dspStsWorks);
+    batch.addDocument("/Site/Lib//a.doc");
+    batch.addDocument("/Site/Lib//b.doc");
+    batch.addDocument("/Site/Lib//c.doc");
+    return batch;
+  }
+
+  protected static String getModified(SharePointRepository.FieldValueBatch batch, String itemPath)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    ArrayList fieldNames = new ArrayList();
+    fieldNames.add("Modified");
+    Map<String,String> values = batch.getFieldValues(fieldNames,"/Site","{guid}","/Site/Lib",itemPath);
+    assertNotNull(values);
+    return values.get("Modified");
+  }
+
+  protected static AxisFault parseFault(String envelope)
+    throws Exception
+  {
+    org.apache.axis.message.SOAPFault fault = (org.apache.axis.message.SOAPFault)new org.apache.axis.Message(envelope).getSOAPEnvelope().getFirstBody();
+    return fault.getFault();
+  }
+
+  /** A proxy that answers GetListItems from canned xml, or with a canned fault, and counts
+  * the calls that reach the server.
+  */
+  protected static class CannedProxy extends SPSProxyHelper
+  {
+    protected final String responseXML;
+    protected final AxisFault fault;
+    public int batchCalls = 0;
+    public final List<String> singleFetches = new ArrayList<String>();
+
+    public CannedProxy(String responseXML, AxisFault fault)
+    {
+      super("http://localhost","","","user","password",SPSProxyHelper.class,"client-config.wsdd",null);
+      this.responseXML = responseXML;
+      this.fault = fault;
+    }
+
+    @Override
+    protected GetListItemsResponseGetListItemsResult getListItems( String site, String docLibrary, GetListItemsQuery q,
+      GetListItemsViewFields viewFields, String rowLimit )
+      throws ManifoldCFException, java.net.MalformedURLException, javax.xml.rpc.ServiceException, java.rmi.RemoteException
+    {
+      batchCalls++;
+      if (fault != null)
+        throw fault;
+      try
+      {
+        javax.xml.parsers.DocumentBuilderFactory factory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        org.w3c.dom.Document document = factory.newDocumentBuilder().parse(new org.xml.sax.InputSource(new java.io.StringReader(responseXML)));
+        GetListItemsResponseGetListItemsResult result = new GetListItemsResponseGetListItemsResult();
+        result.set_any(new MessageElement[]{new MessageElement(document.getDocumentElement())});
+        return result;
+      }
+      catch (Exception e)
+      {
+        throw new java.rmi.RemoteException("Bad canned response",e);
+      }
+    }
+
+    @Override
+    public Map getFieldValues( ArrayList fieldNames, String site, String docLibrary, String docId, boolean dspStsWorks )
+      throws ManifoldCFException, ServiceInterruption
+    {
+      singleFetches.add(docId);
+      Map<String,String> rval = new HashMap<String,String>();
+      rval.put("Modified","single");
+      return rval;
+    }
+  }
+
+}
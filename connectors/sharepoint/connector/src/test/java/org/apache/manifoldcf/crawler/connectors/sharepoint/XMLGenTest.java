@@ -61,4 +61,38 @@ public class XMLGenTest
     assertEquals("<Query><Where><Eq><FieldRef Name=\"foo\"/><Value Type=\"Text\">bar</Value></Eq></Where></Query>",matchQuery);
   }
 
+  @Test
+  public void buildMatchAnyQueryTest()
+    throws Exception
+  {
+    List<String> values = new ArrayList<String>();
+    values.add("a");
+    values.add("b");
+    values.add("c");
+    String matchAnyQuery = SPSProxyHelper.buildMatchAnyQuery("foo","Text",values).get_any()[0].toString();
+    assertEquals("<Query><Where><Or><Eq><FieldRef Name=\"foo\"/><Value Type=\"Text\">a</Value></Eq>"+
+      "<Or><Eq><FieldRef Name=\"foo\"/><Value Type=\"Text\">b</Value></Eq>"+
+      "<Eq><FieldRef Name=\"foo\"/><Value Type=\"Text\">c</Value></Eq></Or></Or></Where></Query>",matchAnyQuery);
+  }
+
+  @Test
+  public void parseFieldValuesTest()
+    throws Exception
+  {
+    String xml = "<ns1:listitems xmlns:ns1=\"http://schemas.microsoft.com/sharepoint/soap/\">"+
+      "<rs:data xmlns:rs=\"urn:schemas-microsoft-com:rowset\" xmlns:z=\"#RowsetSchema\" ItemCount=\"2\">"+
+      "<z:row ows_FileRef=\"1;#Site/Lib/a.doc\" ows_Modified=\"2012-01-01 00:00:00\"/>"+
+      "<z:row ows_FileRef=\"2;#Site/Lib/b.doc\" ows_Modified=\"2012-01-02 00:00:00\"/>"+
+      "</rs:data></ns1:listitems>";
+    ArrayList fieldNames = new ArrayList();
+    fieldNames.add("Modified");
+    Map<String,String> fileRefMap = new HashMap<String,String>();
+    fileRefMap.put("Site/Lib/a.doc","Lib/a.doc");
+    fileRefMap.put("Site/Lib/c.doc","Lib/c.doc");
+    Map<String,Map<String,String>> result = SPSProxyHelper.parseFieldValues(xml,fieldNames,fileRefMap);
+    assertEquals(1,result.size());
+    assertEquals("2012-01-01 00:00:00",result.get("Lib/a.doc").get("Modified"));
+    assertNull(result.get("Lib/c.doc"));
+  }
+
 }
\ No newline at end of file
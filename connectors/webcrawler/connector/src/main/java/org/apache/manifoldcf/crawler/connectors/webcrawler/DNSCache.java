@@ -0,0 +1,331 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.webcrawler;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.net.*;
+import org.apache.manifoldcf.core.interfaces.*;
+
+/** This class keeps resolved host names in memory, for all web connector instances in the process.
+*
+* An unknown host is cached just like a known one, but for less time.  Host names seen in discovered links can
+* be resolved ahead of time by a small set of background threads, so that the worker thread that later fetches
+* from the host finds it already resolved.  A worker that asks for a host that is waiting to be prefetched resolves it
+* right away itself, and one that asks for a host while it is being resolved waits for that resolution rather than
+* starting another.
+*
+* Resolutions made here are not written to the database immediately.  They are queued, so that DNSManager can write
+* them in batches from a worker thread.
+*/
+public class DNSCache
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** How long a resolved host is good for */
+  public final static long KNOWN_HOST_EXPIRATION = 6L * 60L * 60000L;
+  /** How long an unknown host is good for */
+  public final static long UNKNOWN_HOST_EXPIRATION = 60L * 60000L;
+
+  /** Maximum number of hosts held in memory */
+  protected final static int MAX_CACHED_HOSTS = 10000;
+  /** Number of prefetch threads */
+  protected final static int PREFETCH_THREAD_COUNT = 4;
+  /** Maximum number of host names waiting to be prefetched; others are dropped */
+  protected final static int MAX_PREFETCH_QUEUE = 1000;
+  /** Maximum number of resolutions waiting to be written; older ones are dropped */
+  protected final static int MAX_PENDING_WRITES = 10000;
+
+  /** The resolver */
+  protected static volatile IDNSResolver resolver = new InetAddressResolver();
+
+  /** Resolved hosts */
+  protected final static ConcurrentHashMap<String,DNSManager.DNSInfo> hosts = new ConcurrentHashMap<String,DNSManager.DNSInfo>();
+  /** Resolutions in progress */
+  protected final static ConcurrentHashMap<String,FutureTask<DNSManager.DNSInfo>> inProgress = new ConcurrentHashMap<String,FutureTask<DNSManager.DNSInfo>>();
+  /** Prefetches waiting for a thread */
+  protected final static BlockingQueue<FutureTask<DNSManager.DNSInfo>> prefetchQueue = new LinkedBlockingQueue<FutureTask<DNSManager.DNSInfo>>(MAX_PREFETCH_QUEUE);
+  /** Resolutions not yet written to the database, oldest first */
+  protected final static LinkedList<DNSManager.DNSInfo> pendingWrites = new LinkedList<DNSManager.DNSInfo>();
+  /** When the oldest pending write was queued */
+  protected static long oldestPendingWriteTime = 0L;
+  /** Set once the prefetch threads have been started */
+  protected static boolean threadsStarted = false;
+  /** Bumped whenever everything is discarded, so that resolutions begun before then are not kept */
+  protected static volatile long generation = 0L;
+
+  /** Use a different resolver.  Everything already cached or queued is discarded.
+  *@param newResolver is the resolver.
+  */
+  public static void setResolver(IDNSResolver newResolver)
+  {
+    resolver = newResolver;
+    clear();
+  }
+
+  /** Discard everything cached or queued.
+  */
+  public static synchronized void clear()
+  {
+    generation++;
+    prefetchQueue.clear();
+    inProgress.clear();
+    hosts.clear();
+    synchronized (pendingWrites)
+    {
+      pendingWrites.clear();
+    }
+  }
+
+  /** Find a host in memory.
+  *@param hostName is the host name.
+  *@param currentTime is the current time.
+  *@return the host data, or null if it is missing or expired.
+  */
+  public static DNSManager.DNSInfo getCached(String hostName, long currentTime)
+  {
+    DNSManager.DNSInfo rval = hosts.get(hostName);
+    if (rval == null || rval.getExpirationTime() <= currentTime)
+      return null;
+    return rval;
+  }
+
+  /** Remember host data that was read from, or written to, the database.
+  *@param info is the host data.
+  */
+  public static void noteHost(DNSManager.DNSInfo info)
+  {
+    hosts.put(info.getHostName(),info);
+    if (hosts.size() > MAX_CACHED_HOSTS)
+      makeRoom();
+  }
+
+  /** Resolve a host, using the cached answer if there is one, and waiting for a resolution already in progress
+  * if there is one of those.
+  *@param hostName is the host name.
+  *@param currentTime is the current time.
+  *@return the host data.  The ip address will be null if the host is unknown.
+  */
+  public static DNSManager.DNSInfo resolve(String hostName, long currentTime)
+    throws ManifoldCFException
+  {
+    DNSManager.DNSInfo rval = getCached(hostName,currentTime);
+    if (rval != null)
+      return rval;
+    FutureTask<DNSManager.DNSInfo> task = inProgress.get(hostName);
+    if (task == null)
+    {
+      FutureTask<DNSManager.DNSInfo> newTask = makeTask(hostName);
+      task = inProgress.putIfAbsent(hostName,newTask);
+      if (task == null)
+        task = newTask;
+    }
+    // Run the task here unless some thread already has it, rather than wait for it to get through the prefetch queue
+    task.run();
+    try
+    {
+      return task.get();
+    }
+    catch (InterruptedException e)
+    {
+      throw new ManifoldCFException("Interrupted",ManifoldCFException.INTERRUPTED);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof InterruptedException)
+        throw new ManifoldCFException("Interrupted",ManifoldCFException.INTERRUPTED);
+      throw new ManifoldCFException("Error resolving host '"+hostName+"': "+cause.getMessage(),cause);
+    }
+  }
+
+  /** Ask for a host to be resolved in the background, if it isn't already known.  This never blocks; if the
+  * background threads are too far behind, the request is dropped.
+  *@param hostName is the host name.
+  */
+  public static void prefetch(String hostName)
+  {
+    if (getCached(hostName,System.currentTimeMillis()) != null || inProgress.get(hostName) != null)
+      return;
+    FutureTask<DNSManager.DNSInfo> task = makeTask(hostName);
+    if (inProgress.putIfAbsent(hostName,task) != null)
+      return;
+    startThreads();
+    if (!prefetchQueue.offer(task))
+      inProgress.remove(hostName,task);
+  }
+
+  /** Take the resolutions that are waiting to be written, if enough of them are waiting, or they have waited
+  * long enough.
+  *@param minCount is the number that must be waiting.
+  *@param maxAge is the longest the oldest may wait, in milliseconds.
+  *@return the resolutions, or null if none should be written yet.
+  */
+  public static List<DNSManager.DNSInfo> takePendingWrites(int minCount, long maxAge)
+  {
+    synchronized (pendingWrites)
+    {
+      if (pendingWrites.size() == 0)
+        return null;
+      if (pendingWrites.size() < minCount && System.currentTimeMillis() - oldestPendingWriteTime < maxAge)
+        return null;
+      List<DNSManager.DNSInfo> rval = new ArrayList<DNSManager.DNSInfo>(pendingWrites);
+      pendingWrites.clear();
+      return rval;
+    }
+  }
+
+  /** Build the task that resolves a host.
+  */
+  protected static FutureTask<DNSManager.DNSInfo> makeTask(final String hostName)
+  {
+    final long taskGeneration = generation;
+    return new FutureTask<DNSManager.DNSInfo>(new Callable<DNSManager.DNSInfo>()
+      {
+        public DNSManager.DNSInfo call()
+          throws Exception
+        {
+          String[] result = resolver.resolve(hostName);
+          long currentTime = System.currentTimeMillis();
+          DNSManager.DNSInfo info;
+          if (result == null)
+            info = new DNSManager.DNSInfo(null,null,currentTime + UNKNOWN_HOST_EXPIRATION,hostName);
+          else
+            info = new DNSManager.DNSInfo(result[0],result[1],currentTime + KNOWN_HOST_EXPIRATION,hostName);
+          if (taskGeneration == generation)
+          {
+            noteHost(info);
+            queueWrite(info);
+          }
+          return info;
+        }
+      })
+      {
+        protected void done()
+        {
+          inProgress.remove(hostName,this);
+        }
+      };
+  }
+
+  /** Queue a resolution to be written.
+  */
+  protected static void queueWrite(DNSManager.DNSInfo info)
+  {
+    synchronized (pendingWrites)
+    {
+      if (pendingWrites.size() == 0)
+        oldestPendingWriteTime = System.currentTimeMillis();
+      pendingWrites.add(info);
+      if (pendingWrites.size() > MAX_PENDING_WRITES)
+        pendingWrites.removeFirst();
+    }
+  }
+
+  /** Drop hosts to bring the cache back under its limit.  Expired hosts go first.
+  */
+  protected static void makeRoom()
+  {
+    synchronized (hosts)
+    {
+      if (hosts.size() <= MAX_CACHED_HOSTS)
+        return;
+      long currentTime = System.currentTimeMillis();
+      Iterator<Map.Entry<String,DNSManager.DNSInfo>> iter = hosts.entrySet().iterator();
+      while (iter.hasNext())
+      {
+        if (iter.next().getValue().getExpirationTime() <= currentTime)
+          iter.remove();
+      }
+      int targetSize = MAX_CACHED_HOSTS * 3 / 4;
+      iter = hosts.entrySet().iterator();
+      while (hosts.size() > targetSize && iter.hasNext())
+      {
+        iter.next();
+        iter.remove();
+      }
+    }
+  }
+
+  /** Start the prefetch threads, if they aren't running yet.
+  */
+  protected static synchronized void startThreads()
+  {
+    if (threadsStarted)
+      return;
+    int i = 0;
+    while (i < PREFETCH_THREAD_COUNT)
+    {
+      new PrefetchThread(i++).start();
+    }
+    threadsStarted = true;
+  }
+
+  /** Thread that resolves hosts in the background */
+  protected static class PrefetchThread extends Thread
+  {
+    public PrefetchThread(int number)
+    {
+      super();
+      setDaemon(true);
+      setName("Web connector DNS prefetch thread "+number);
+    }
+
+    public void run()
+    {
+      while (true)
+      {
+        FutureTask<DNSManager.DNSInfo> task;
+        try
+        {
+          task = prefetchQueue.take();
+        }
+        catch (InterruptedException e)
+        {
+          break;
+        }
+        // Any error is reported to whoever waits for the task
+        task.run();
+      }
+    }
+  }
+
+  /** The resolver that uses the JVM's own lookup */
+  protected static class InetAddressResolver implements IDNSResolver
+  {
+    public InetAddressResolver()
+    {
+    }
+
+    public String[] resolve(String hostName)
+      throws InterruptedException
+    {
+      try
+      {
+        InetAddress ip = InetAddress.getByName(hostName);
+        return new String[]{ip.getHostAddress(),ip.getCanonicalHostName()};
+      }
+      catch (UnknownHostException e)
+      {
+        return null;
+      }
+    }
+  }
+
+}
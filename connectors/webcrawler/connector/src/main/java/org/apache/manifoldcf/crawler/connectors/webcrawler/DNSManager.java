@@ -32,6 +32,8 @@ import org.apache.manifoldcf.crawler.system.Logging;
 * as well as in cache (up to a certain point).  The result is that there is a memory limited, database-backed repository
 * of DNS entries that we can draw on.
 * Note that this code is also responsible for efficiently caching the mapping of IP address to a canonical host name.
+* Hosts are also held in memory by DNSCache, which resolves them in the first place; its resolutions are written here
+* in batches.
 * 
 * <br><br>
 * <b>dnsdata</b>
@@ -53,6 +55,11 @@ public class DNSManager extends org.apache.manifoldcf.core.database.BaseTable
   // Robots cache class.  Only one needed.
   protected static DNSCacheClass dnsCacheClass = new DNSCacheClass();
 
+  /** Resolutions are written once this many are waiting... */
+  protected final static int WRITE_BATCH_SIZE = 50;
+  /** ... or once the oldest has waited this long */
+  protected final static long MAX_WRITE_DELAY = 30000L;
+
   // Database fields
   protected final static String hostField = "hostname";
   protected final static String fqdnField = "canonicalhostname";
@@ -123,6 +130,13 @@ public class DNSManager extends org.apache.manifoldcf.core.database.BaseTable
   public DNSInfo lookup(String hostName, long currentTime)
     throws ManifoldCFException
   {
+    DNSInfo rd = DNSCache.getCached(hostName,currentTime);
+    if (rd != null)
+    {
+      writePendingDNSData(false);
+      return rd;
+    }
+
     // Build description objects
     HostDescription[] objectDescriptions = new HostDescription[1];
     StringSetBuffer ssb = new StringSetBuffer();
@@ -133,12 +147,36 @@ public class DNSManager extends org.apache.manifoldcf.core.database.BaseTable
     cacheManager.findObjectsAndExecute(objectDescriptions,null,exec,getTransactionID());
 
     // DNSInfo object must be built if it isn't yet present.
-    DNSInfo rd = exec.getResults();
+    rd = exec.getResults();
     if (rd == null || rd.getExpirationTime() <= currentTime)
       return null;
+    DNSCache.noteHost(rd);
+    return rd;
+  }
+
+  /** Resolve a host name that lookup() did not find, and write the result, along with any other resolutions
+  * that are waiting to be written.
+  *@return the DNS info; the ip address will be null if the host is unknown.
+  */
+  public DNSInfo resolve(String hostName, long currentTime)
+    throws ManifoldCFException
+  {
+    DNSInfo rd = DNSCache.resolve(hostName,currentTime);
+    writePendingDNSData(true);
     return rd;
   }
 
+  /** Write the resolutions that are waiting to be written.
+  *@param force is true if they should be written now, rather than once enough of them have accumulated.
+  */
+  public void writePendingDNSData(boolean force)
+    throws ManifoldCFException
+  {
+    List<DNSInfo> list = DNSCache.takePendingWrites(force?1:WRITE_BATCH_SIZE,force?0L:MAX_WRITE_DELAY);
+    if (list != null)
+      writeDNSData(list);
+  }
+
   /** Write DNS data, replacing any existing row.
   *@param hostName is the host.
   *@param fqdn is the canonical host name.
@@ -148,8 +186,29 @@ public class DNSManager extends org.apache.manifoldcf.core.database.BaseTable
   public void writeDNSData(String hostName, String fqdn, String ipaddress, long expirationTime)
     throws ManifoldCFException
   {
+    List<DNSInfo> list = new ArrayList<DNSInfo>();
+    list.add(new DNSInfo(ipaddress,fqdn,expirationTime,hostName));
+    writeDNSData(list);
+  }
+
+  /** Write DNS data for a set of hosts in one transaction, replacing any existing rows.
+  *@param list is the data to write.
+  */
+  public void writeDNSData(List<DNSInfo> list)
+    throws ManifoldCFException
+  {
+    // The last entry for a host wins
+    Map<String,DNSInfo> infos = new HashMap<String,DNSInfo>();
+    for (DNSInfo info : list)
+    {
+      infos.put(info.getHostName(),info);
+    }
+
     StringSetBuffer ssb = new StringSetBuffer();
-    ssb.add(getDNSKey(hostName));
+    for (String hostName : infos.keySet())
+    {
+      ssb.add(getDNSKey(hostName));
+    }
     StringSet cacheKeys = new StringSet(ssb);
     ICacheHandle ch = cacheManager.enterCache(null,cacheKeys,getTransactionID());
     try
@@ -157,34 +216,55 @@ public class DNSManager extends org.apache.manifoldcf.core.database.BaseTable
       beginTransaction();
       try
       {
-        // See whether the instance exists
-        ArrayList params = new ArrayList();
-        params.add(hostName);
-        IResultSet set = performQuery("SELECT * FROM "+getTableName()+" WHERE "+
-          hostField+"=?",params,null,null);
-        HashMap values = new HashMap();
-        values.put(expirationField,new Long(expirationTime));
-        if (fqdn == null)
-          fqdn = "";
-        values.put(fqdnField,fqdn);
-        if (ipaddress == null)
-          ipaddress = "";
-        values.put(ipaddressField, ipaddress);
-        if (set.getRowCount() > 0)
+        // Find out which hosts already have rows
+        Set<String> existingHosts = new HashSet<String>();
+        int maxClause = getMaxInClause();
+        ArrayList hostList = new ArrayList();
+        for (String hostName : infos.keySet())
         {
-          // Update
-          params.clear();
-          params.add(hostName);
-          performUpdate(values," WHERE "+hostField+"=?",params,null);
+          if (hostList.size() == maxClause)
+          {
+            findExistingHosts(existingHosts,hostList);
+            hostList.clear();
+          }
+          hostList.add(hostName);
         }
-        else
+        if (hostList.size() > 0)
+          findExistingHosts(existingHosts,hostList);
+
+        for (DNSInfo info : infos.values())
         {
-          // Insert
-          values.put(hostField,hostName);
-          // We only need the general key because this is new.
-          performInsert(values,null);
+          String hostName = info.getHostName();
+          HashMap values = new HashMap();
+          values.put(expirationField,new Long(info.getExpirationTime()));
+          String fqdn = info.getFQDN();
+          if (fqdn == null)
+            fqdn = "";
+          values.put(fqdnField,fqdn);
+          String ipaddress = info.getIPAddress();
+          if (ipaddress == null)
+            ipaddress = "";
+          values.put(ipaddressField, ipaddress);
+          if (existingHosts.contains(hostName))
+          {
+            // Update
+            ArrayList params = new ArrayList();
+            params.add(hostName);
+            performUpdate(values," WHERE "+hostField+"=?",params,null);
+          }
+          else
+          {
+            // Insert
+            values.put(hostField,hostName);
+            // We only need the general key because this is new.
+            performInsert(values,null);
+          }
         }
         cacheManager.invalidateKeys(ch);
+        for (DNSInfo info : infos.values())
+        {
+          DNSCache.noteHost(info);
+        }
       }
       catch (ManifoldCFException e)
       {
@@ -207,6 +287,24 @@ public class DNSManager extends org.apache.manifoldcf.core.database.BaseTable
     }
   }
 
+  /** Find which of a set of hosts have rows.
+  */
+  protected void findExistingHosts(Set<String> existingHosts, ArrayList hostList)
+    throws ManifoldCFException
+  {
+    ArrayList list = new ArrayList();
+    String query = buildConjunctionClause(list,new ClauseDescription[]{
+      new MultiClause(hostField,hostList)});
+    IResultSet set = performQuery("SELECT "+hostField+" FROM "+getTableName()+" WHERE "+
+      query,list,null,null);
+    int i = 0;
+    while (i < set.getRowCount())
+    {
+      IResultRow row = set.getRow(i++);
+      existingHosts.add((String)row.getValue(hostField));
+    }
+  }
+
   // Protected methods and classes
 
   /** Construct a key which represents an individual host name.
@@ -243,7 +341,7 @@ public class DNSManager extends org.apache.manifoldcf.core.database.BaseTable
 
   /** This is a cached data item.
   */
-  protected static class DNSInfo
+  public static class DNSInfo
   {
     protected long expiration;
     protected String hostName;
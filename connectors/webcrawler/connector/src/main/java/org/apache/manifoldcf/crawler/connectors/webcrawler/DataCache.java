@@ -68,6 +68,32 @@ public class DataCache
     String contentType = connection.getResponseHeader("Content-Type");
     String referralURI = connection.getResponseHeader("Location");
 
+    // A prefetched document has usually been written to a temporary file already
+    SpooledData data = null;
+    if (connection instanceof PrefetchedConnection)
+      data = ((PrefetchedConnection)connection).takeSpooledData();
+    if (data == null)
+      data = spoolResponseBody(activities,connection);
+    if (data == null)
+      return null;
+
+    synchronized(this)
+    {
+      deleteData(documentIdentifier);
+      cacheData.put(documentIdentifier,new DocumentData(data.getFile(),responseCode,contentType,referralURI));
+      return new Long(data.getCheckSum()).toString();
+    }
+  }
+
+  /** Copy the response body of a fetch into a temporary file, computing the checksum that serves
+  * as the document's version string.
+  *@param activities is used to check that the job is still active as the data is read, or null if no check is needed.
+  *@param connection is the connection, upon which a fetch has been done.
+  *@return the data, or null if there was no response body.
+  */
+  public static SpooledData spoolResponseBody(IAbortActivity activities, IThrottledConnection connection)
+    throws ManifoldCFException, ServiceInterruption
+  {
     // Create a temporary file; that's what we will cache
     try
     {
@@ -138,7 +164,8 @@ public class DataCache
 
               os.write(byteArray,0,amt);
               // Check if job is alive before looping
-              activities.checkJobStillActive();
+              if (activities != null)
+                activities.checkJobStillActive();
             }
           }
           finally
@@ -146,12 +173,7 @@ public class DataCache
             os.close();
           }
 
-          synchronized(this)
-          {
-            deleteData(documentIdentifier);
-            cacheData.put(documentIdentifier,new DocumentData(tempFile,responseCode,contentType,referralURI));
-            return new Long(checkSum).toString();
-          }
+          return new SpooledData(tempFile,checkSum);
 
         }
         catch (IOException e)
@@ -302,6 +324,30 @@ public class DataCache
 
   // Protected classes
 
+  /** A response body that has been written to a temporary file.
+  */
+  public static class SpooledData
+  {
+    protected File data;
+    protected long checkSum;
+
+    public SpooledData(File data, long checkSum)
+    {
+      this.data = data;
+      this.checkSum = checkSum;
+    }
+
+    public File getFile()
+    {
+      return data;
+    }
+
+    public long getCheckSum()
+    {
+      return checkSum;
+    }
+  }
+
   /** This class represents everything we need to know about a document that's getting passed from the
   * getDocumentVersions() phase to the processDocuments() phase.
   */
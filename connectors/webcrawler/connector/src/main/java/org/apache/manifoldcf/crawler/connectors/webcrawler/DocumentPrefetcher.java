@@ -0,0 +1,553 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.webcrawler;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.system.Logging;
+import java.util.*;
+import java.util.concurrent.*;
+
+/** This class fetches documents ahead of the worker thread that will version them.
+*
+* A worker hands over the documents in its set that can be fetched without any help from its thread context (no
+* login sequence, and host and robots data already in memory).  A pool of fetch threads, shared by all
+* connector instances, performs those fetches under the usual throttles, spools the response bodies, and releases
+* the connections.  When the worker reaches a document, it takes the finished fetch in place of opening a
+* connection of its own.  Fetches thus overlap one another, no matter how many worker threads there are.  A
+* finished fetch never holds a connection, so it cannot keep the worker from getting one.
+*
+* The pool and its queue are bounded.  A document whose fetch has not started by the time the worker gets to
+* it is simply fetched by the worker, as is one that didn't fit in the queue.  Fetch threads are started as
+* fetches are queued, and go away once they have been idle for a while, so none are left once crawling stops.
+*
+* Only the worker can tell whether it wants a document of a given content type, so a fetch thread only spools
+* the body of a successful fetch when its content type is one the worker is known to want.  Otherwise it
+* keeps just the headers, and the worker decides when it takes the fetch.  If the worker turns out to want the
+* body after all, it fetches the document again itself, and the decision is kept for the rest of its documents.
+*/
+public class DocumentPrefetcher
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Number of fetch threads */
+  protected final static int FETCH_THREAD_COUNT = 50;
+  /** Maximum number of fetches waiting for a thread */
+  protected final static int MAX_QUEUED_FETCHES = 1000;
+  /** How long a fetch thread waits for work before it exits, in milliseconds */
+  protected final static long IDLE_TIME = 60000L;
+
+  /** Fetches waiting for a thread */
+  protected final static BlockingQueue<PrefetchTask> queue = new LinkedBlockingQueue<PrefetchTask>(MAX_QUEUED_FETCHES);
+
+  // The following are protected by synchronizing on this class
+  /** Number of fetch threads running */
+  protected static int threadCount = 0;
+  /** Number of fetch threads waiting for work */
+  protected static int idleThreadCount = 0;
+  /** Number given to the next fetch thread */
+  protected static int nextThreadNumber = 0;
+
+  /** This prefetcher's fetches, keyed by document identifier */
+  protected final Map<String,PrefetchTask> tasks = new HashMap<String,PrefetchTask>();
+  /** Whether the worker wants documents of each content type it has decided about.  Read by the fetch threads. */
+  protected final Map<String,Boolean> contentTypeDecisions = new ConcurrentHashMap<String,Boolean>();
+
+  /** Constructor.  Each worker thread uses its own instance.
+  *@param wantedContentTypes are the content types the worker always wants the body of.
+  */
+  public DocumentPrefetcher(Collection<String> wantedContentTypes)
+  {
+    Iterator<String> iter = wantedContentTypes.iterator();
+    while (iter.hasNext())
+    {
+      contentTypeDecisions.put(iter.next(),Boolean.TRUE);
+    }
+  }
+
+  /** Queue a document to be fetched.  The parameters are those that would be passed to
+  * ThrottledFetcher.getConnection() and IThrottledConnection.executeFetch() for a standard fetch.
+  *@return true if the fetch was queued.
+  */
+  public boolean prefetch(String documentIdentifier, String protocol, String server, int port,
+    PageCredentials authentication, IKeystoreManager trustStore, ThrottleDescription throttleDescription,
+    String[] binNames, int connectionLimit,
+    String proxyHost, int proxyPort, String proxyAuthDomain, String proxyAuthUsername, String proxyAuthPassword,
+    String urlPath, String userAgent, String from, int connectionTimeoutMilliseconds, int socketTimeoutMilliseconds,
+    String host, String lastETag, String lastModified)
+  {
+    if (tasks.get(documentIdentifier) != null)
+      return true;
+    PrefetchTask task = new PrefetchTask(protocol,server,port,authentication,trustStore,throttleDescription,binNames,
+      connectionLimit,proxyHost,proxyPort,proxyAuthDomain,proxyAuthUsername,proxyAuthPassword,
+      urlPath,userAgent,from,connectionTimeoutMilliseconds,socketTimeoutMilliseconds,host,lastETag,lastModified,
+      contentTypeDecisions);
+    return queueTask(documentIdentifier,task);
+  }
+
+  /** Queue a fetch, and make sure there is a thread to do it.
+  *@return true if the fetch was queued.
+  */
+  protected boolean queueTask(String documentIdentifier, PrefetchTask task)
+  {
+    if (!queue.offer(task))
+      return false;
+    tasks.put(documentIdentifier,task);
+    startThreads();
+    return true;
+  }
+
+  /** Take the fetch of a document, waiting for it to finish if it is under way.
+  *@param activities receives the activity recorded by the fetch, if the fetch failed or has to be repeated.
+  * (Otherwise that is recorded when the returned connection's doneFetch() is called.)
+  *@param checker decides whether the worker wants the body of a document whose body wasn't spooled.
+  *@return the connection, or null if the caller should do the fetch itself.
+  */
+  public IThrottledConnection takeConnection(String documentIdentifier, IHistoryActivity activities,
+    IContentTypeChecker checker)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    PrefetchTask task = tasks.remove(documentIdentifier);
+    if (task == null)
+      return null;
+    PrefetchedConnection connection = task.take(activities);
+    if (connection == null || !connection.isBodySkipped())
+      return connection;
+    String contentType = normalizeContentType(connection.getResponseHeader("Content-Type"));
+    boolean wanted = (contentType != null && checker.isContentTypeWanted(contentType));
+    if (contentType != null)
+      contentTypeDecisions.put(contentType,new Boolean(wanted));
+    if (!wanted)
+      return connection;
+    // The body is wanted after all, and it is gone, so the worker has to fetch the document again
+    connection.doneFetch(activities);
+    connection.close();
+    return null;
+  }
+
+  /** Give up on the fetch of a document, if it hasn't been taken.
+  */
+  public void abandon(String documentIdentifier)
+    throws ManifoldCFException
+  {
+    PrefetchTask task = tasks.remove(documentIdentifier);
+    if (task != null)
+    {
+      queue.remove(task);
+      task.abandon();
+    }
+  }
+
+  /** Give up on all fetches that haven't been taken.
+  */
+  public void abandonAll()
+    throws ManifoldCFException
+  {
+    Iterator<PrefetchTask> iter = tasks.values().iterator();
+    while (iter.hasNext())
+    {
+      PrefetchTask task = iter.next();
+      iter.remove();
+      queue.remove(task);
+      task.abandon();
+    }
+  }
+
+  /** Reduce a Content-Type header to the bare content type.
+  *@return the content type, or null if there is none.
+  */
+  protected static String normalizeContentType(String contentTypeHeader)
+  {
+    String contentType = WebcrawlerConnector.extractContentType(contentTypeHeader);
+    if (contentType == null)
+      return null;
+    int pos = contentType.indexOf(";");
+    if (pos != -1)
+      contentType = contentType.substring(0,pos);
+    contentType = contentType.trim();
+    if (contentType.length() == 0)
+      return null;
+    return contentType;
+  }
+
+  /** The worker's decision about content types, made in the worker thread.
+  */
+  public interface IContentTypeChecker
+  {
+    /** Decide whether the worker wants the body of a successfully fetched document.
+    *@param contentType is the document's content type, without parameters.
+    *@return true if the worker wants the body.
+    */
+    public boolean isContentTypeWanted(String contentType)
+      throws ManifoldCFException, ServiceInterruption;
+  }
+
+  /** Start enough fetch threads for the queued fetches, up to the limit.
+  */
+  protected static synchronized void startThreads()
+  {
+    while (threadCount < FETCH_THREAD_COUNT && idleThreadCount < queue.size())
+    {
+      // A new thread counts as idle until it takes a fetch
+      new FetchThread(nextThreadNumber++).start();
+      threadCount++;
+      idleThreadCount++;
+    }
+  }
+
+  /** Note that a fetch thread has taken a fetch.
+  */
+  protected static synchronized void noteThreadBusy()
+  {
+    idleThreadCount--;
+  }
+
+  /** Note that a fetch thread is done with a fetch.
+  */
+  protected static synchronized void noteThreadIdle()
+  {
+    idleThreadCount++;
+  }
+
+  /** Decide whether an idle fetch thread should exit, and account for it if so.
+  *@return true if the thread should exit.
+  */
+  protected static synchronized boolean noteThreadExit(boolean onlyIfNoWork)
+  {
+    if (onlyIfNoWork && queue.size() > 0)
+      return false;
+    threadCount--;
+    idleThreadCount--;
+    return true;
+  }
+
+  /** One document fetch.
+  */
+  protected static class PrefetchTask
+  {
+    protected final String protocol;
+    protected final String server;
+    protected final int port;
+    protected final PageCredentials authentication;
+    protected final IKeystoreManager trustStore;
+    protected final ThrottleDescription throttleDescription;
+    protected final String[] binNames;
+    protected final int connectionLimit;
+    protected final String proxyHost;
+    protected final int proxyPort;
+    protected final String proxyAuthDomain;
+    protected final String proxyAuthUsername;
+    protected final String proxyAuthPassword;
+    protected final String urlPath;
+    protected final String userAgent;
+    protected final String from;
+    protected final int connectionTimeoutMilliseconds;
+    protected final int socketTimeoutMilliseconds;
+    protected final String host;
+    protected final String lastETag;
+    protected final String lastModified;
+    protected final Map<String,Boolean> contentTypeDecisions;
+
+    protected final PrefetchedConnection.ActivityRecorder recorder = new PrefetchedConnection.ActivityRecorder();
+
+    // The following are protected by synchronizing on this object
+    protected boolean started = false;
+    protected boolean finished = false;
+    protected boolean abandoned = false;
+    protected PrefetchedConnection result = null;
+    protected Throwable exception = null;
+
+    public PrefetchTask(String protocol, String server, int port,
+      PageCredentials authentication, IKeystoreManager trustStore, ThrottleDescription throttleDescription,
+      String[] binNames, int connectionLimit,
+      String proxyHost, int proxyPort, String proxyAuthDomain, String proxyAuthUsername, String proxyAuthPassword,
+      String urlPath, String userAgent, String from, int connectionTimeoutMilliseconds, int socketTimeoutMilliseconds,
+      String host, String lastETag, String lastModified, Map<String,Boolean> contentTypeDecisions)
+    {
+      this.protocol = protocol;
+      this.server = server;
+      this.port = port;
+      this.authentication = authentication;
+      this.trustStore = trustStore;
+      this.throttleDescription = throttleDescription;
+      this.binNames = binNames;
+      this.connectionLimit = connectionLimit;
+      this.proxyHost = proxyHost;
+      this.proxyPort = proxyPort;
+      this.proxyAuthDomain = proxyAuthDomain;
+      this.proxyAuthUsername = proxyAuthUsername;
+      this.proxyAuthPassword = proxyAuthPassword;
+      this.urlPath = urlPath;
+      this.userAgent = userAgent;
+      this.from = from;
+      this.connectionTimeoutMilliseconds = connectionTimeoutMilliseconds;
+      this.socketTimeoutMilliseconds = socketTimeoutMilliseconds;
+      this.host = host;
+      this.lastETag = lastETag;
+      this.lastModified = lastModified;
+      this.contentTypeDecisions = contentTypeDecisions;
+    }
+
+    /** Do the fetch.  Called by a fetch thread.
+    */
+    public void run()
+      throws ManifoldCFException
+    {
+      synchronized (this)
+      {
+        if (abandoned)
+          return;
+        started = true;
+      }
+      PrefetchedConnection rval = null;
+      Throwable thrown = null;
+      try
+      {
+        rval = fetch();
+      }
+      catch (ManifoldCFException e)
+      {
+        thrown = e;
+      }
+      catch (ServiceInterruption e)
+      {
+        thrown = e;
+      }
+      catch (RuntimeException e)
+      {
+        thrown = e;
+      }
+      catch (Error e)
+      {
+        thrown = e;
+      }
+      synchronized (this)
+      {
+        if (!abandoned)
+        {
+          result = rval;
+          exception = thrown;
+          finished = true;
+          notifyAll();
+          return;
+        }
+      }
+      if (rval != null)
+        rval.close();
+    }
+
+    /** Take the result.  Called by the worker thread.
+    *@return the result, or null if the fetch never started.
+    */
+    public PrefetchedConnection take(IHistoryActivity activities)
+      throws ManifoldCFException, ServiceInterruption
+    {
+      synchronized (this)
+      {
+        if (!started)
+        {
+          // Not worth waiting for; the worker can do it sooner itself.  It mustn't hold up other fetches, either.
+          abandoned = true;
+          queue.remove(this);
+          return null;
+        }
+        try
+        {
+          while (!finished)
+          {
+            wait();
+          }
+        }
+        catch (InterruptedException e)
+        {
+          abandoned = true;
+          throw new ManifoldCFException("Interrupted: "+e.getMessage(),e,ManifoldCFException.INTERRUPTED);
+        }
+      }
+      if (exception == null)
+        return result;
+      recorder.replay(activities);
+      if (exception instanceof ManifoldCFException)
+        throw (ManifoldCFException)exception;
+      if (exception instanceof ServiceInterruption)
+        throw (ServiceInterruption)exception;
+      if (exception instanceof RuntimeException)
+        throw (RuntimeException)exception;
+      throw (Error)exception;
+    }
+
+    /** Give up on the result.  Called by the worker thread.
+    */
+    public void abandon()
+      throws ManifoldCFException
+    {
+      PrefetchedConnection rval;
+      synchronized (this)
+      {
+        abandoned = true;
+        if (!finished)
+          return;
+        rval = result;
+        result = null;
+      }
+      if (rval != null)
+        rval.close();
+    }
+
+    /** Fetch the document, in the same way a worker thread would for a standard fetch.  The connection is
+    * always released before this returns, so that nothing but the fetch's results is handed to the worker.
+    */
+    protected PrefetchedConnection fetch()
+      throws ManifoldCFException, ServiceInterruption
+    {
+      IThrottledConnection connection = openConnection();
+      try
+      {
+        connection.beginFetch(WebcrawlerConnector.FETCH_STANDARD);
+        try
+        {
+          connection.executeFetch(urlPath,userAgent,from,connectionTimeoutMilliseconds,
+            socketTimeoutMilliseconds,false,host,null,null,lastETag,lastModified);
+          int response = connection.getResponseCode();
+          Map<String,List<String>> headers = connection.getResponseHeaders();
+          LoginCookies cookies = connection.getLastFetchCookies();
+          if (response == 200)
+          {
+            // Spool the body only if the worker will want it; it can't have the open connection
+            String contentType = normalizeContentType(connection.getResponseHeader("Content-Type"));
+            Boolean wanted = (contentType == null)?null:contentTypeDecisions.get(contentType);
+            if (wanted == null || !wanted.booleanValue())
+              return new PrefetchedConnection(response,headers,cookies,null,null,recorder,true);
+          }
+          if (response == 200 || response == 301 || response == 302)
+          {
+            DataCache.SpooledData data = DataCache.spoolResponseBody(null,connection);
+            return new PrefetchedConnection(response,headers,cookies,data,null,recorder,false);
+          }
+
+          // An error; the worker will only want the start of the body
+          String contentType = WebcrawlerConnector.extractContentType(connection.getResponseHeader("Content-Type"));
+          String encoding = WebcrawlerConnector.extractEncoding(contentType);
+          if (encoding == null)
+            encoding = "utf-8";
+          String limitedBody = null;
+          try
+          {
+            limitedBody = connection.getLimitedResponseBody(1024,encoding);
+          }
+          catch (ManifoldCFException e)
+          {
+            if (e.getErrorCode() == ManifoldCFException.INTERRUPTED)
+              throw e;
+            connection.noteInterrupted(e);
+          }
+          catch (ServiceInterruption e)
+          {
+            connection.noteInterrupted(e);
+          }
+          return new PrefetchedConnection(response,headers,cookies,null,limitedBody,recorder,false);
+        }
+        catch (ManifoldCFException e)
+        {
+          connection.noteInterrupted(e);
+          throw e;
+        }
+        catch (ServiceInterruption e)
+        {
+          connection.noteInterrupted(e);
+          throw e;
+        }
+        finally
+        {
+          connection.doneFetch(recorder);
+        }
+      }
+      finally
+      {
+        connection.close();
+      }
+    }
+
+    /** Get a connection to fetch with.
+    */
+    protected IThrottledConnection openConnection()
+      throws ManifoldCFException
+    {
+      return ThrottledFetcher.getConnection(protocol,server,port,
+        authentication,trustStore,throttleDescription,binNames,connectionLimit,
+        proxyHost,proxyPort,proxyAuthDomain,proxyAuthUsername,proxyAuthPassword);
+    }
+  }
+
+  /** Thread that performs fetches */
+  protected static class FetchThread extends Thread
+  {
+    public FetchThread(int number)
+    {
+      super();
+      setDaemon(true);
+      setName("Web connector fetch thread "+number);
+    }
+
+    public void run()
+    {
+      while (true)
+      {
+        PrefetchTask task;
+        try
+        {
+          task = queue.poll(IDLE_TIME,TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+          noteThreadExit(false);
+          return;
+        }
+        if (task == null)
+        {
+          if (noteThreadExit(true))
+            return;
+          continue;
+        }
+        noteThreadBusy();
+        try
+        {
+          task.run();
+        }
+        catch (ManifoldCFException e)
+        {
+          if (e.getErrorCode() == ManifoldCFException.INTERRUPTED)
+          {
+            noteThreadIdle();
+            noteThreadExit(false);
+            return;
+          }
+          Logging.connectors.warn("WEB: Error discarding prefetched document: "+e.getMessage(),e);
+        }
+        catch (Throwable e)
+        {
+          Logging.connectors.error("WEB: Fetch thread error: "+e.getMessage(),e);
+        }
+        noteThreadIdle();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,32 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.webcrawler;
+
+/** This interface describes how host names are resolved.  The web connector normally uses the JVM's resolver;
+* tests may substitute another, through DNSCache.setResolver().
+*/
+public interface IDNSResolver
+{
+  /** Resolve a host name.
+  *@param hostName is the host name.
+  *@return the ip address and the canonical host name, in that order, or null if the host is unknown.
+  */
+  public String[] resolve(String hostName)
+    throws InterruptedException;
+}
@@ -61,10 +61,12 @@ public interface IThrottledConnection
   * @param host is the value to use as the "Host" header, or null to use the default.
   * @param formData describes additional form arguments and how to fetch the page.
   * @param loginCookies describes the cookies that should be in effect for this page fetch.
+  * @param lastETag is the ETag seen on the last fetch of this page, to make the fetch conditional, or null.
+  * @param lastModified is the Last-Modified value seen on the last fetch of this page, to make the fetch conditional, or null.
   */
   public void executeFetch(String urlPath, String userAgent, String from, int connectionTimeoutMilliseconds,
     int socketTimeoutMilliseconds, boolean redirectOK, String host, FormData formData,
-    LoginCookies loginCookies)
+    LoginCookies loginCookies, String lastETag, String lastModified)
     throws ManifoldCFException, ServiceInterruption;
 
   /** Get the http response code.
@@ -110,7 +112,7 @@ public interface IThrottledConnection
   /** Done with the fetch.  Call this when the fetch has been completed.  A log entry will be generated
   * describing what was done.
   */
-  public void doneFetch(IVersionActivity activities)
+  public void doneFetch(IHistoryActivity activities)
     throws ManifoldCFException;
 
   /** Close the connection.  Call this to end this server connection.
@@ -0,0 +1,222 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.webcrawler;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.system.ManifoldCF;
+import java.io.*;
+import java.util.*;
+
+/** This class represents a fetch that has already been executed by DocumentPrefetcher, on behalf of a worker thread.
+* It stands in for the connection the worker would otherwise have opened, so beginFetch() and executeFetch() do nothing.
+*
+* The underlying connection has always been released by the time the worker gets this, with the response body
+* written to a temporary file, or, for an error response, its start kept in memory.  The body of a document whose
+* content type the worker might not want is not read at all.  The fetch's activity record is
+* held until doneFetch() is called, when it is recorded against the worker's activities.
+*/
+public class PrefetchedConnection implements IThrottledConnection
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  protected int responseCode;
+  protected Map<String,List<String>> responseHeaders;
+  protected LoginCookies lastFetchCookies;
+  /** The spooled response body, or null */
+  protected DataCache.SpooledData spooledData;
+  /** The start of the body of an error response, or null */
+  protected String limitedResponseBody;
+  /** Activity held back from the fetch */
+  protected ActivityRecorder recorder;
+  /** True if the response body was left unread */
+  protected boolean bodySkipped;
+
+  /** Constructor.
+  *@param spooledData is the response body, if it has been read.
+  *@param limitedResponseBody is the start of the response body, if this is an error response that has been read.
+  *@param recorder holds the activity recorded by the connection when it was released.
+  *@param bodySkipped is true if the response body was left unread.
+  */
+  public PrefetchedConnection(int responseCode, Map<String,List<String>> responseHeaders,
+    LoginCookies lastFetchCookies, DataCache.SpooledData spooledData, String limitedResponseBody, ActivityRecorder recorder,
+    boolean bodySkipped)
+  {
+    this.responseCode = responseCode;
+    this.responseHeaders = responseHeaders;
+    this.lastFetchCookies = lastFetchCookies;
+    this.spooledData = spooledData;
+    this.limitedResponseBody = limitedResponseBody;
+    this.recorder = recorder;
+    this.bodySkipped = bodySkipped;
+  }
+
+  /** Find out whether the response body was left unread.
+  */
+  public boolean isBodySkipped()
+  {
+    return bodySkipped;
+  }
+
+  /** Take ownership of the spooled response body.
+  *@return the data, or null if there is none.
+  */
+  public DataCache.SpooledData takeSpooledData()
+  {
+    DataCache.SpooledData rval = spooledData;
+    spooledData = null;
+    return rval;
+  }
+
+  @Override
+  public void beginFetch(String fetchType)
+    throws ManifoldCFException
+  {
+  }
+
+  @Override
+  public void executeFetch(String urlPath, String userAgent, String from, int connectionTimeoutMilliseconds,
+    int socketTimeoutMilliseconds, boolean redirectOK, String host, FormData formData,
+    LoginCookies loginCookies, String lastETag, String lastModified)
+    throws ManifoldCFException, ServiceInterruption
+  {
+  }
+
+  @Override
+  public int getResponseCode()
+    throws ManifoldCFException, ServiceInterruption
+  {
+    return responseCode;
+  }
+
+  @Override
+  public LoginCookies getLastFetchCookies()
+    throws ManifoldCFException, ServiceInterruption
+  {
+    return lastFetchCookies;
+  }
+
+  @Override
+  public Map<String,List<String>> getResponseHeaders()
+    throws ManifoldCFException, ServiceInterruption
+  {
+    return responseHeaders;
+  }
+
+  @Override
+  public String getResponseHeader(String headerName)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    if (responseHeaders == null)
+      return null;
+    // Header names are not case sensitive
+    for (Map.Entry<String,List<String>> entry : responseHeaders.entrySet())
+    {
+      if (entry.getKey().equalsIgnoreCase(headerName) && entry.getValue().size() > 0)
+        return entry.getValue().get(0);
+    }
+    return null;
+  }
+
+  @Override
+  public InputStream getResponseBodyStream()
+    throws ManifoldCFException, ServiceInterruption
+  {
+    // As for a connection whose response had no body
+    if (spooledData == null)
+      return null;
+    try
+    {
+      return new FileInputStream(spooledData.getFile());
+    }
+    catch (IOException e)
+    {
+      throw new ManifoldCFException("Error opening prefetched response body: "+e.getMessage(),e);
+    }
+  }
+
+  @Override
+  public String getLimitedResponseBody(int maxSize, String encoding)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    if (limitedResponseBody == null)
+      throw new ManifoldCFException("Prefetched response body could not be read");
+    if (limitedResponseBody.length() > maxSize)
+      return limitedResponseBody.substring(0,maxSize);
+    return limitedResponseBody;
+  }
+
+  @Override
+  public void noteInterrupted(Throwable e)
+  {
+  }
+
+  @Override
+  public void doneFetch(IHistoryActivity activities)
+    throws ManifoldCFException
+  {
+    recorder.replay(activities);
+  }
+
+  @Override
+  public void close()
+    throws ManifoldCFException
+  {
+    if (spooledData != null)
+    {
+      ManifoldCF.deleteFile(spooledData.getFile());
+      spooledData = null;
+    }
+  }
+
+  /** This class holds on to activity recorded outside of a worker thread, so that it can be recorded
+  * properly later.
+  */
+  public static class ActivityRecorder implements IHistoryActivity
+  {
+    protected final List<Object[]> records = new ArrayList<Object[]>();
+
+    public ActivityRecorder()
+    {
+    }
+
+    @Override
+    public synchronized void recordActivity(Long startTime, String activityType, Long dataSize,
+      String entityIdentifier, String resultCode, String resultDescription, String[] childIdentifiers)
+      throws ManifoldCFException
+    {
+      records.add(new Object[]{startTime,activityType,dataSize,entityIdentifier,resultCode,resultDescription,childIdentifiers});
+    }
+
+    /** Record everything held so far against real activities.
+    */
+    public synchronized void replay(IHistoryActivity activities)
+      throws ManifoldCFException
+    {
+      for (Object[] record : records)
+      {
+        activities.recordActivity((Long)record[0],(String)record[1],(Long)record[2],(String)record[3],
+          (String)record[4],(String)record[5],(String[])record[6]);
+      }
+      records.clear();
+    }
+  }
+
+}
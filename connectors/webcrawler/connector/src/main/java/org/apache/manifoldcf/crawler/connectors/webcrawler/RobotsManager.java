@@ -20,6 +20,7 @@ package org.apache.manifoldcf.crawler.connectors.webcrawler;
 
 import java.util.*;
 import java.io.*;
+import java.util.concurrent.*;
 import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.authorities.interfaces.*;
@@ -51,6 +52,14 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
   // Robots cache class.  Only one needed.
   protected static RobotsCacheClass robotsCacheClass = new RobotsCacheClass();
 
+  /** Maximum number of hosts held in the compiled robots cache */
+  protected final static int MAX_CACHED_HOSTS = 2000;
+
+  /** Compiled robots data, keyed by host name.  Checking a URL against an entry here needs no cache manager
+  * locking.  An entry is good until its robots data expires; after that, the host is looked up through the cache
+  * manager again, which will find that it needs to be refetched. */
+  protected final static ConcurrentHashMap<String,RobotsData> hostCache = new ConcurrentHashMap<String,RobotsData>();
+
   // Database fields
   protected final static String hostField = "hostname";
   protected final static String robotsField = "robotsdata";
@@ -118,6 +127,15 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
     IVersionActivity activities)
     throws ManifoldCFException
   {
+    // Data read inside a transaction may not be committed, so don't share it through the host cache
+    boolean useHostCache = (getTransactionID() == null);
+    if (useHostCache)
+    {
+      RobotsData rd = hostCache.get(hostName);
+      if (rd != null && rd.getExpirationTime() > currentTime)
+        return new Boolean(rd.isFetchAllowed(userAgent,pathString));
+    }
+
     // Build description objects
     HostDescription[] objectDescriptions = new HostDescription[1];
     StringSetBuffer ssb = new StringSetBuffer();
@@ -130,11 +148,56 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
     // We do the expiration check here, rather than in the query, so that caching
     // is possible.
     RobotsData rd = exec.getResults();
+    if (rd == null || rd.getExpirationTime() <= currentTime)
+      return null;
+    if (useHostCache)
+      cacheHost(hostName,rd);
+    return new Boolean(rd.isFetchAllowed(userAgent,pathString));
+  }
+
+  /** Check robots.txt data for a host using only what is held in memory.  This needs no thread context, so it
+  * can be used to decide whether it is safe to fetch ahead of time.
+  *@param hostName is the host for which the data is desired.
+  *@param currentTime is the time of the check.
+  *@return null if the answer isn't known, true if fetch is allowed.
+  */
+  public static Boolean checkCachedFetchAllowed(String userAgent, String hostName, long currentTime, String pathString)
+  {
+    RobotsData rd = hostCache.get(hostName);
     if (rd == null || rd.getExpirationTime() <= currentTime)
       return null;
     return new Boolean(rd.isFetchAllowed(userAgent,pathString));
   }
 
+  /** Put robots data into the host cache, making room if needed.
+  */
+  protected static void cacheHost(String hostName, RobotsData rd)
+  {
+    hostCache.put(hostName,rd);
+    if (hostCache.size() <= MAX_CACHED_HOSTS)
+      return;
+    synchronized (hostCache)
+    {
+      if (hostCache.size() <= MAX_CACHED_HOSTS)
+        return;
+      // Expired entries go first, then arbitrary ones, until there's a reasonable amount of room
+      long currentTime = System.currentTimeMillis();
+      Iterator<Map.Entry<String,RobotsData>> iter = hostCache.entrySet().iterator();
+      while (iter.hasNext())
+      {
+        if (iter.next().getValue().getExpirationTime() <= currentTime)
+          iter.remove();
+      }
+      int targetSize = MAX_CACHED_HOSTS * 3 / 4;
+      iter = hostCache.entrySet().iterator();
+      while (hostCache.size() > targetSize && iter.hasNext())
+      {
+        iter.next();
+        iter.remove();
+      }
+    }
+  }
+
   /** Write robots.txt, replacing any existing row.
   *@param hostName is the host.
   *@param expirationTime is the time this data should expire.
@@ -194,6 +257,7 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
             performInsert(values,null);
           }
           cacheManager.invalidateKeys(ch);
+          hostCache.remove(hostName);
         }
         catch (ManifoldCFException e)
         {
@@ -300,6 +364,8 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
   {
     protected long expiration;
     protected ArrayList records = null;
+    /** Compiled rules, keyed by user agent */
+    protected final ConcurrentHashMap<String,PathRules> compiledRules = new ConcurrentHashMap<String,PathRules>();
 
     /** Constructor. */
     public RobotsData(InputStream is, long expiration, String hostName, IVersionActivity activities)
@@ -336,9 +402,20 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
       if (records == null)
         return true;
 
-      boolean wasDisallowed = false;
-      boolean wasAllowed = false;
+      PathRules rules = compiledRules.get(userAgent);
+      if (rules == null)
+      {
+        rules = compileRules(userAgent);
+        PathRules existing = compiledRules.putIfAbsent(userAgent,rules);
+        if (existing != null)
+          rules = existing;
+      }
+      return rules.isFetchAllowed(pathString);
+    }
 
+    /** Build the rules for a user agent, from the record that applies to it */
+    protected PathRules compileRules(String userAgent)
+    {
       // First matching user-agent takes precedence, according to the following chunk of spec:
       // "These name tokens are used in User-agent lines in /robots.txt to
       // identify to which specific robots the record applies. The robot
@@ -349,8 +426,6 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
       // line with a "*" value, if present. If no record satisfied either
       // condition, or no records are present at all, access is unlimited."
 
-      boolean sawAgent = false;
-
       String userAgentUpper = userAgent.toUpperCase();
 
       int i = 0;
@@ -358,46 +433,17 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
       {
         Record r = (Record)records.get(i++);
         if (r.isAgentMatch(userAgentUpper,false))
-        {
-          if (r.isDisallowed(pathString))
-            wasDisallowed = true;
-          if (r.isAllowed(pathString))
-            wasAllowed = true;
-
-          sawAgent = true;
-          break;
-        }
+          return new PathRules(r);
       }
-      if (sawAgent == false)
+      i = 0;
+      while (i < records.size())
       {
-        i = 0;
-        while (i < records.size())
-        {
-          Record r = (Record)records.get(i++);
-          if (r.isAgentMatch("*",true))
-          {
-            if (r.isDisallowed(pathString))
-              wasDisallowed = true;
-            if (r.isAllowed(pathString))
-              wasAllowed = true;
-
-            sawAgent = true;
-            break;
-          }
-        }
+        Record r = (Record)records.get(i++);
+        if (r.isAgentMatch("*",true))
+          return new PathRules(r);
       }
-
-      if (sawAgent == false)
-        return true;
-
-      // Allowed always overrides disallowed
-      if (wasAllowed)
-        return true;
-      if (wasDisallowed)
-        return false;
-
-      // No match -> crawl allowed
-      return true;
+      // No record applies: everything is allowed
+      return new PathRules(null);
     }
 
     /** Get expiration */
@@ -841,6 +887,176 @@ public class RobotsManager extends org.apache.manifoldcf.core.database.BaseTable
 
   }
 
+  /** The allows and disallows of one robots.txt record, compiled into a trie keyed by path character, so that a
+  * path is checked in a single walk down the trie rather than by matching it against every clause.
+  * Clauses with wildcards hang off the node for the literal part that precedes the first wildcard, and are matched
+  * in full only when a path reaches that node.
+  */
+  protected static class PathRules
+  {
+    protected final TrieNode root = new TrieNode();
+
+    /** Constructor.
+    *@param record is the record, or null if nothing is disallowed.
+    */
+    public PathRules(Record record)
+    {
+      if (record == null)
+        return;
+      int i = 0;
+      while (i < record.disallows.size())
+      {
+        addClause((String)record.disallows.get(i++),false);
+      }
+      i = 0;
+      while (i < record.allows.size())
+      {
+        addClause((String)record.allows.get(i++),true);
+      }
+    }
+
+    /** Add an allow or disallow clause */
+    protected void addClause(String spec, boolean isAllow)
+    {
+      int wildcardIndex = spec.indexOf('*');
+      boolean isExact = (wildcardIndex == -1 && spec.length() > 0 && spec.charAt(spec.length()-1) == '$');
+      int literalLength;
+      if (wildcardIndex != -1)
+        literalLength = wildcardIndex;
+      else if (isExact)
+        literalLength = spec.length() - 1;
+      else
+        literalLength = spec.length();
+
+      TrieNode node = root;
+      int i = 0;
+      while (i < literalLength)
+      {
+        node = node.addChild(spec.charAt(i++));
+      }
+
+      if (wildcardIndex != -1)
+        node.addWildcard(spec,isAllow);
+      else if (isExact)
+      {
+        if (isAllow)
+          node.allowExact = true;
+        else
+          node.disallowExact = true;
+      }
+      else
+      {
+        if (isAllow)
+          node.allow = true;
+        else
+          node.disallow = true;
+      }
+    }
+
+    /** Check whether a path may be fetched.  An allow that matches always overrides a disallow that matches,
+    * and a path that matches nothing may be fetched.
+    */
+    public boolean isFetchAllowed(String path)
+    {
+      boolean wasDisallowed = false;
+      TrieNode node = root;
+      int i = 0;
+      while (true)
+      {
+        if (node.allow)
+          return true;
+        if (node.disallow)
+          wasDisallowed = true;
+        if (node.allowWildcards != null && matchesAny(path,node.allowWildcards))
+          return true;
+        if (!wasDisallowed && node.disallowWildcards != null && matchesAny(path,node.disallowWildcards))
+          wasDisallowed = true;
+        if (i == path.length())
+        {
+          if (node.allowExact)
+            return true;
+          if (node.disallowExact)
+            wasDisallowed = true;
+          break;
+        }
+        node = node.getChild(path.charAt(i++));
+        if (node == null)
+          break;
+      }
+      return !wasDisallowed;
+    }
+
+    protected static boolean matchesAny(String path, List<String> specs)
+    {
+      for (String spec : specs)
+      {
+        if (doesPathMatch(path,spec))
+          return true;
+      }
+      return false;
+    }
+  }
+
+  /** A node in a PathRules trie.  Nodes are only modified while the trie is being built.
+  */
+  protected static class TrieNode
+  {
+    protected Map<Character,TrieNode> children = null;
+    /** Paths with this prefix are allowed */
+    public boolean allow = false;
+    /** Paths with this prefix are disallowed */
+    public boolean disallow = false;
+    /** The path ending here is allowed */
+    public boolean allowExact = false;
+    /** The path ending here is disallowed */
+    public boolean disallowExact = false;
+    /** Wildcard allows whose literal prefix ends here */
+    public List<String> allowWildcards = null;
+    /** Wildcard disallows whose literal prefix ends here */
+    public List<String> disallowWildcards = null;
+
+    public TrieNode()
+    {
+    }
+
+    public TrieNode getChild(char c)
+    {
+      if (children == null)
+        return null;
+      return children.get(new Character(c));
+    }
+
+    public TrieNode addChild(char c)
+    {
+      if (children == null)
+        children = new HashMap<Character,TrieNode>();
+      Character key = new Character(c);
+      TrieNode rval = children.get(key);
+      if (rval == null)
+      {
+        rval = new TrieNode();
+        children.put(key,rval);
+      }
+      return rval;
+    }
+
+    public void addWildcard(String spec, boolean isAllow)
+    {
+      if (isAllow)
+      {
+        if (allowWildcards == null)
+          allowWildcards = new ArrayList<String>();
+        allowWildcards.add(spec);
+      }
+      else
+      {
+        if (disallowWildcards == null)
+          disallowWildcards = new ArrayList<String>();
+        disallowWildcards.add(spec);
+      }
+    }
+  }
+
   /** This class represents a record in a robots.txt file.  It contains one or
   * more user-agents, and one or more disallows.
   */
@@ -1259,11 +1259,13 @@ public class ThrottledFetcher
     * @param host is the value to use as the "Host" header, or null to use the default.
     * @param formData describes additional form arguments and how to fetch the page.
     * @param loginCookies describes the cookies that should be in effect for this page fetch.
+    * @param lastETag is the ETag seen on the last fetch of this page, to make the fetch conditional, or null.
+    * @param lastModified is the Last-Modified value seen on the last fetch of this page, to make the fetch conditional, or null.
     */
     @Override
     public void executeFetch(String urlPath, String userAgent, String from, int connectionTimeoutMilliseconds,
       int socketTimeoutMilliseconds, boolean redirectOK, String host, FormData formData,
-      LoginCookies loginCookies)
+      LoginCookies loginCookies, String lastETag, String lastModified)
       throws ManifoldCFException, ServiceInterruption
     {
       // Set up scheme
@@ -1507,6 +1509,11 @@ public class ThrottledFetcher
       fetchMethod.setHeader(new BasicHeader("User-Agent",userAgent));
       fetchMethod.setHeader(new BasicHeader("From",from));
       fetchMethod.setHeader(new BasicHeader("Accept","*/*"));
+      // Validators from the last fetch let the server answer 304 if nothing has changed
+      if (lastETag != null)
+        fetchMethod.setHeader(new BasicHeader("If-None-Match",lastETag));
+      if (lastModified != null)
+        fetchMethod.setHeader(new BasicHeader("If-Modified-Since",lastModified));
         
       // Use a custom cookie store
       CookieStore cookieStore = new OurBasicCookieStore();
@@ -1814,7 +1821,7 @@ public class ThrottledFetcher
     * describing what was done.
     */
     @Override
-    public void doneFetch(IVersionActivity activities)
+    public void doneFetch(IHistoryActivity activities)
       throws ManifoldCFException
     {
       if (fetchType != null)
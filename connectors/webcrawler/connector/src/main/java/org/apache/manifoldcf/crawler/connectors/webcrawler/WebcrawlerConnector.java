@@ -116,6 +116,21 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
     understoodProtocols.put("https","https");
   }
 
+  /** Maximum number of compiled document specification filters to keep */
+  protected static final int MAX_FILTER_CACHE_SIZE = 100;
+
+  /** Compiled document specification filters, keyed by read-only specification instance, least recently used first.
+  * Shared by all connector instances.  The framework hands connectors the same read-only specification instance for
+  * as long as the job's description stays cached, so a filter is compiled about once per job rather than once per batch,
+  * and finding it costs no more than an identity hash. */
+  protected static final Map<SpecificationKey,DocumentURLFilter> filterCache = new LinkedHashMap<SpecificationKey,DocumentURLFilter>(16,0.75f,true)
+  {
+    protected boolean removeEldestEntry(Map.Entry<SpecificationKey,DocumentURLFilter> eldest)
+    {
+      return size() > MAX_FILTER_CACHE_SIZE;
+    }
+  };
+
 
   // Usage flag values
   protected static final int ROBOTS_NONE = 0;
@@ -497,7 +512,7 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
   {
     getSession();
 
-    DocumentURLFilter filter = new DocumentURLFilter(spec);
+    DocumentURLFilter filter = getDocumentURLFilter(spec);
 
     // This is the call that's used to seed everything.
     // We just find the current seeds, and create the appropriate iterator.
@@ -540,6 +555,7 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
   protected static final int RESULT_NO_VERSION = 1;
   protected static final int RESULT_VERSION_NEEDED = 2;
   protected static final int RESULT_RETRY_DOCUMENT = 3;
+  protected static final int RESULT_UNCHANGED = 4;
 
 
   /** Get document versions given an array of document identifiers.
@@ -596,7 +612,7 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
     // Since document specifications can change, we need to look at each url and filter it as part of the
     // process of getting version strings.  To do that, we need to compile the DocumentSpecification into
     // an object that knows how to do this.
-    DocumentURLFilter filter = new DocumentURLFilter(spec);
+    DocumentURLFilter filter = getDocumentURLFilter(spec);
 
     String filterVersion = filter.getVersionString();
     
@@ -611,626 +627,820 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
     // incapable of deleting documents.
     // Since the primary use of the crawler is expected to be repeated intranet crawls,  I've thus chosen to optimize the crawler for accuracy rather than performance
     // - if the document is gone, I just remove it, and expect churn when recrawling activities occur.
-    int i = 0;
-    while (i < documentIdentifiers.length)
+
+    // On a continuous crawl, a document that was fetched before can be fetched conditionally, using the ETag and
+    // Last-Modified headers from the last fetch.  A 304 response then means that the old version still stands.
+    // Other crawls cannot do this, because the document must be fetched to requeue its links, or the documents it points at would
+    // get deleted.  Nor can documents in session-protected areas, because their content is needed to recognize login pages.
+    String[][] validators = new String[documentIdentifiers.length][];
+    if (jobMode == JOBMODE_CONTINUOUS)
     {
-      String documentIdentifier = documentIdentifiers[i];
-      // Verify that the url is legal
-      if (filter.isDocumentAndHostLegal(documentIdentifier))
+      int j = 0;
+      while (j < documentIdentifiers.length)
+      {
+        if (getSequenceCredential(documentIdentifiers[j]) == null)
+          validators[j] = findValidators(oldVersions[j],acls,metadata,filterVersion);
+        j++;
+      }
+    }
+
+    // Hand the documents that can be fetched without help from this thread to the prefetcher, so that their
+    // fetches overlap one another
+    DocumentPrefetcher prefetcher = new DocumentPrefetcher(interestingMimeTypeMap.keySet());
+    final IVersionActivity checkerActivities = activities;
+    DocumentPrefetcher.IContentTypeChecker contentTypeChecker = new DocumentPrefetcher.IContentTypeChecker()
+    {
+      public boolean isContentTypeWanted(String contentType)
+        throws ManifoldCFException, ServiceInterruption
       {
-        // The first thing we need to know is whether this url is part of a session-protected area.  We'll use that information
-        // later to detect redirection to login.
-        SequenceCredentials sessionCredential = getSequenceCredential(documentIdentifier);
+        return checkerActivities.checkMimeTypeIndexable(contentType);
+      }
+    };
+    try
+    {
+      int j = 0;
+      while (j < documentIdentifiers.length)
+      {
+        String documentIdentifier = documentIdentifiers[j];
+        if (filter.isDocumentAndHostLegal(documentIdentifier) && getSequenceCredential(documentIdentifier) == null)
+          prefetchDocument(prefetcher,documentIdentifier,validators[j],currentTime,connectionLimit);
+        j++;
+      }
 
-        if (Logging.connectors.isDebugEnabled())
+      int i = 0;
+      while (i < documentIdentifiers.length)
+      {
+        String documentIdentifier = documentIdentifiers[i];
+        // Verify that the url is legal
+        if (filter.isDocumentAndHostLegal(documentIdentifier))
         {
-          if (sessionCredential != null)
-            Logging.connectors.debug("Web: For document identifier '"+documentIdentifier+"' found session credential key '"+sessionCredential.getSequenceKey()+"'");
-        }
+          // The first thing we need to know is whether this url is part of a session-protected area.  We'll use that information
+          // later to detect redirection to login.
+          SequenceCredentials sessionCredential = getSequenceCredential(documentIdentifier);
+
+          if (Logging.connectors.isDebugEnabled())
+          {
+            if (sessionCredential != null)
+              Logging.connectors.debug("Web: For document identifier '"+documentIdentifier+"' found session credential key '"+sessionCredential.getSequenceKey()+"'");
+          }
         
-        // Set up the initial state and state variables.
-        int sessionState = SESSIONSTATE_NORMAL;
-        String currentURI = documentIdentifier;
-        FormData formData = null;
-        // Calculate an event name; we'll need this to control sequencing.
-        String globalSequenceEvent;
-        if (sessionCredential != null)
-        {
-          String sequenceKey = sessionCredential.getSequenceKey();
-          globalSequenceEvent = makeSessionLoginEventName(activities,sequenceKey);
-        }
-        else
-          globalSequenceEvent = null;
+          // Set up the initial state and state variables.
+          int sessionState = SESSIONSTATE_NORMAL;
+          String currentURI = documentIdentifier;
+          FormData formData = null;
+          // Calculate an event name; we'll need this to control sequencing.
+          String globalSequenceEvent;
+          if (sessionCredential != null)
+          {
+            String sequenceKey = sessionCredential.getSequenceKey();
+            globalSequenceEvent = makeSessionLoginEventName(activities,sequenceKey);
+          }
+          else
+            globalSequenceEvent = null;
 
-        // This is the main 'state loop'.  The code is structured to use the finally clause from the following try to clean up any
-        // events that were created within the loop.  The loop itself has two parts: document fetch, and logic to figure out what state to transition
-        // to (e.g. how to process the fetched document).  A signal variable is used to signal the desired outcome.
-        // We need to be sure we clean up the sequence event in case there's an error, so put a try/finally around everything.
-        try
-        {
-          // Login pages are special in that I *don't* require them to do a robots check.  The reason why is because it is conceivable that a
-          // site may inadvertantly exclude them via robots, and yet allow content pages to be scanned.  This would effectively exclude session login
-          // for that site if we adhered to the strict policy.  Since login pages have to be exclusively identified as being special, explicit
-          // permission is effectively granted by the user in any case.
-
-          int resultSignal = RESULT_NO_DOCUMENT;
-          // The result code to be activity logging, or null if no activity logging desired.
-          String activityResultCode = null;
-          // The result context message, which will be used for logging and activity logging if enabled.
-          String contextMessage = null;
-          // The result context exception, which will be used for logging if needed.
-          Throwable contextException = null;
-          // The checksum, which will be needed if resultSignal is RESULT_VERSION_NEEDED.
-          String checkSum = null;
-          // The headers, which will be needed if resultSignal is RESULT_VERSION_NEEDED.
-          Map<String,List<String>> headerData = null;
-          
-          while (true)
+          // This is the main 'state loop'.  The code is structured to use the finally clause from the following try to clean up any
+          // events that were created within the loop.  The loop itself has two parts: document fetch, and logic to figure out what state to transition
+          // to (e.g. how to process the fetched document).  A signal variable is used to signal the desired outcome.
+          // We need to be sure we clean up the sequence event in case there's an error, so put a try/finally around everything.
+          try
           {
-            try
+            // Login pages are special in that I *don't* require them to do a robots check.  The reason why is because it is conceivable that a
+            // site may inadvertantly exclude them via robots, and yet allow content pages to be scanned.  This would effectively exclude session login
+            // for that site if we adhered to the strict policy.  Since login pages have to be exclusively identified as being special, explicit
+            // permission is effectively granted by the user in any case.
+
+            int resultSignal = RESULT_NO_DOCUMENT;
+            // The result code to be activity logging, or null if no activity logging desired.
+            String activityResultCode = null;
+            // The result context message, which will be used for logging and activity logging if enabled.
+            String contextMessage = null;
+            // The result context exception, which will be used for logging if needed.
+            Throwable contextException = null;
+            // The checksum, which will be needed if resultSignal is RESULT_VERSION_NEEDED.
+            String checkSum = null;
+            // The headers, which will be needed if resultSignal is RESULT_VERSION_NEEDED.
+            Map<String,List<String>> headerData = null;
+          
+            while (true)
             {
-              // Do the mapping from the current host name to the IP address
-              URL url = new URL(currentURI);
-              String hostName = url.getHost();
-              StringBuilder ipAddressBuffer = new StringBuilder();
-              int ipAddressStatus = lookupIPAddress(currentURI,activities,hostName,currentTime,ipAddressBuffer);
-              if (ipAddressStatus == RESULTSTATUS_TRUE)
+              try
               {
-                String ipAddress = ipAddressBuffer.toString();
-                String protocol = url.getProtocol();
-                int port = url.getPort();
-                if (port == -1)
-                  port = url.getDefaultPort();
-
-                // Try to fetch the document.  We'll need its bin names first.
-                String[] binNames = getBinNames(currentURI);
-
-                // Get the credentials for this document (if any)
-                PageCredentials credential = getPageCredential(currentURI);
-                IKeystoreManager trustStore;
-                // Save effort - only bother to get a trust store if this is https
-                if (protocol.equalsIgnoreCase("https"))
-                  // null return is possible here; indicates "trust everything"
-                  trustStore = getTrustStore(currentURI);
-                else
-                  trustStore = KeystoreManagerFactory.make("");
-                // Check robots, if enabled, and if we're fetching the primary document identifier.  See comment above.
-                int robotsStatus = RESULTSTATUS_TRUE;
-                if (!documentIdentifier.equals(currentURI) || robotsUsage < ROBOTS_DATA || (robotsStatus = checkFetchAllowed(documentIdentifier,protocol,ipAddress,port,credential,trustStore,hostName,binNames,currentTime,
-                  url.getFile(),activities,connectionLimit,proxyHost,proxyPort,proxyAuthDomain,proxyAuthUsername,proxyAuthPassword)) == RESULTSTATUS_TRUE)
+                // Do the mapping from the current host name to the IP address
+                URL url = new URL(currentURI);
+                String hostName = url.getHost();
+                StringBuilder ipAddressBuffer = new StringBuilder();
+                int ipAddressStatus = lookupIPAddress(currentURI,activities,hostName,currentTime,ipAddressBuffer);
+                if (ipAddressStatus == RESULTSTATUS_TRUE)
                 {
-                  // Passed the robots check!
-
-                  // Find whatever login parameters apply.  This will be null if currentURI is not a login page, and will contain
-                  // interesting information if it is.
-                  LoginCookies lc = null;
-                  if (sessionCredential != null)
+                  String ipAddress = ipAddressBuffer.toString();
+                  String protocol = url.getProtocol();
+                  int port = url.getPort();
+                  if (port == -1)
+                    port = url.getDefaultPort();
+
+                  // Try to fetch the document.  We'll need its bin names first.
+                  String[] binNames = getBinNames(currentURI);
+
+                  // Get the credentials for this document (if any)
+                  PageCredentials credential = getPageCredential(currentURI);
+                  IKeystoreManager trustStore;
+                  // Save effort - only bother to get a trust store if this is https
+                  if (protocol.equalsIgnoreCase("https"))
+                    // null return is possible here; indicates "trust everything"
+                    trustStore = getTrustStore(currentURI);
+                  else
+                    trustStore = KeystoreManagerFactory.make("");
+                  // Check robots, if enabled, and if we're fetching the primary document identifier.  See comment above.
+                  int robotsStatus = RESULTSTATUS_TRUE;
+                  if (!documentIdentifier.equals(currentURI) || robotsUsage < ROBOTS_DATA || (robotsStatus = checkFetchAllowed(documentIdentifier,protocol,ipAddress,port,credential,trustStore,hostName,binNames,currentTime,
+                    url.getFile(),activities,connectionLimit,proxyHost,proxyPort,proxyAuthDomain,proxyAuthUsername,proxyAuthPassword)) == RESULTSTATUS_TRUE)
                   {
-                    lc = cookieManager.readCookies(sessionCredential.getSequenceKey());
-                  }
+                    // Passed the robots check!
 
-                  // Prepare to perform the fetch, and decide what to do with the document.
-                  //
-                  IThrottledConnection connection = ThrottledFetcher.getConnection(protocol,ipAddress,port,
-                    credential,trustStore,throttleDescription,binNames,connectionLimit,
-                    proxyHost,proxyPort,proxyAuthDomain,proxyAuthUsername,proxyAuthPassword);
-                  try
-                  {
-                    connection.beginFetch((sessionState == SESSIONSTATE_LOGIN)?FETCH_LOGIN:FETCH_STANDARD);
+                    // Find whatever login parameters apply.  This will be null if currentURI is not a login page, and will contain
+                    // interesting information if it is.
+                    LoginCookies lc = null;
+                    if (sessionCredential != null)
+                    {
+                      lc = cookieManager.readCookies(sessionCredential.getSequenceKey());
+                    }
+
+                    // Prepare to perform the fetch, and decide what to do with the document.
+                    // The fetch may have been done already.
+                    IThrottledConnection connection = null;
+                    // Only the primary document's own fetch can be conditional
+                    String[] fetchValidators = null;
+                    if (sessionState == SESSIONSTATE_NORMAL && currentURI.equals(documentIdentifier))
+                    {
+                      fetchValidators = validators[i];
+                      connection = prefetcher.takeConnection(documentIdentifier,activities,contentTypeChecker);
+                    }
+                    if (connection == null)
+                      connection = ThrottledFetcher.getConnection(protocol,ipAddress,port,
+                        credential,trustStore,throttleDescription,binNames,connectionLimit,
+                        proxyHost,proxyPort,proxyAuthDomain,proxyAuthUsername,proxyAuthPassword);
                     try
                     {
+                      connection.beginFetch((sessionState == SESSIONSTATE_LOGIN)?FETCH_LOGIN:FETCH_STANDARD);
+                      try
+                      {
 
-                      // Execute the fetch!
-                      connection.executeFetch(url.getFile(),userAgent,from,connectionTimeoutMilliseconds,
-                        socketTimeoutMilliseconds,false,hostName,formData,lc);
-                      int response = connection.getResponseCode();
+                        // Execute the fetch!
+                        connection.executeFetch(url.getFile(),userAgent,from,connectionTimeoutMilliseconds,
+                          socketTimeoutMilliseconds,false,hostName,formData,lc,
+                          (fetchValidators==null)?null:fetchValidators[0],(fetchValidators==null)?null:fetchValidators[1]);
+                        int response = connection.getResponseCode();
 
-                      if (response == 200 || response == 302 || response == 301)
-                      {
-                        // If this was part of the login sequence, update the cookies regardless of what else happens
-                        if (sessionState == SESSIONSTATE_LOGIN)
+                        if (response == 304 && fetchValidators != null)
                         {
-                          // Update the cookies
-                          LoginCookies lastFetchCookies = connection.getLastFetchCookies();
-                          cookieManager.updateCookies(sessionCredential.getSequenceKey(),lastFetchCookies);
+                          // Not modified.  Nothing has been read or cached; the old version stands.
+                          // The fetch itself is recorded in the activity history with its 304 status.
+                          contextMessage = "it was not modified since the last fetch";
+                          resultSignal = RESULT_UNCHANGED;
+                          activityResultCode = null;
                         }
+                        else if (response == 200 || response == 302 || response == 301)
+                        {
+                          // If this was part of the login sequence, update the cookies regardless of what else happens
+                          if (sessionState == SESSIONSTATE_LOGIN)
+                          {
+                            // Update the cookies
+                            LoginCookies lastFetchCookies = connection.getLastFetchCookies();
+                            cookieManager.updateCookies(sessionCredential.getSequenceKey(),lastFetchCookies);
+                          }
 
-                        // Decide whether to exclude this document based on what we see here.
-                        // Basically, we want to get rid of everything that we (a) don't know what
-                        // to do with in the ingestion system, and (b) we can't get useful links from.
+                          // Decide whether to exclude this document based on what we see here.
+                          // Basically, we want to get rid of everything that we (a) don't know what
+                          // to do with in the ingestion system, and (b) we can't get useful links from.
 
-                        String contentType = extractContentType(connection.getResponseHeader("Content-Type"));
+                          String contentType = extractContentType(connection.getResponseHeader("Content-Type"));
 
-                        if (isContentInteresting(activities,currentURI,response,contentType))
-                        {
-                          // Treat it as real, and cache it.
-                          checkSum = cache.addData(activities,currentURI,connection);
-                          headerData = connection.getResponseHeaders();
-                          resultSignal = RESULT_VERSION_NEEDED;
-                          activityResultCode = null;
+                          if (isContentInteresting(activities,currentURI,response,contentType))
+                          {
+                            // Treat it as real, and cache it.
+                            checkSum = cache.addData(activities,currentURI,connection);
+                            headerData = connection.getResponseHeaders();
+                            resultSignal = RESULT_VERSION_NEEDED;
+                            activityResultCode = null;
+                          }
+                          else
+                          {
+                            contextMessage = "it had the wrong content type";
+                            resultSignal = RESULT_NO_DOCUMENT;
+                            activityResultCode = null;
+                          }
                         }
                         else
                         {
-                          contextMessage = "it had the wrong content type";
-                          resultSignal = RESULT_NO_DOCUMENT;
+                          // We got some kind of http error code.
+                          // We don't want to remove it from the queue entirely, because that would cause us to lose track of the item, and therefore lose
+                          // control of all scheduling around it.  Instead, we leave it on the queue and give it an empty version string; that will lead it to be
+                          // reprocessed without fail on the next scheduled check.
+                          // Decode response body to the extent we can
+                          String contentType = extractContentType(connection.getResponseHeader("Content-Type"));
+                          String encoding = extractEncoding(contentType);
+                          if (encoding == null)
+                            encoding = "utf-8";
+                          String decodedResponse = "undecodable";
+                          try
+                          {
+                            decodedResponse = "'"+connection.getLimitedResponseBody(1024,encoding)+"'";
+                          }
+                          catch (ManifoldCFException e)
+                          {
+                            // Eat this exception unless it is an interrupt
+                            if (e.getErrorCode() == ManifoldCFException.INTERRUPTED)
+                              throw e;
+                            connection.noteInterrupted(e);
+                          }
+                          catch (ServiceInterruption e)
+                          {
+                            // Eat this exception too
+                            connection.noteInterrupted(e);
+                          }
+                          contextMessage = "it failed to fetch (status="+Integer.toString(response)+", message="+decodedResponse+")";
+                          resultSignal = RESULT_NO_VERSION;
                           activityResultCode = null;
                         }
                       }
-                      else
+                      catch (ManifoldCFException e)
                       {
-                        // We got some kind of http error code.
-                        // We don't want to remove it from the queue entirely, because that would cause us to lose track of the item, and therefore lose
-                        // control of all scheduling around it.  Instead, we leave it on the queue and give it an empty version string; that will lead it to be
-                        // reprocessed without fail on the next scheduled check.
-                        // Decode response body to the extent we can
-                        String contentType = extractContentType(connection.getResponseHeader("Content-Type"));
-                        String encoding = extractEncoding(contentType);
-                        if (encoding == null)
-                          encoding = "utf-8";
-                        String decodedResponse = "undecodable";
-                        try
-                        {
-                          decodedResponse = "'"+connection.getLimitedResponseBody(1024,encoding)+"'";
-                        }
-                        catch (ManifoldCFException e)
-                        {
-                          // Eat this exception unless it is an interrupt
-                          if (e.getErrorCode() == ManifoldCFException.INTERRUPTED)
-                            throw e;
-                          connection.noteInterrupted(e);
-                        }
-                        catch (ServiceInterruption e)
-                        {
-                          // Eat this exception too
-                          connection.noteInterrupted(e);
-                        }
-                        contextMessage = "it failed to fetch (status="+Integer.toString(response)+", message="+decodedResponse+")";
-                        resultSignal = RESULT_NO_VERSION;
-                        activityResultCode = null;
+                        connection.noteInterrupted(e);
+                        throw e;
+                      }
+                      catch (ServiceInterruption e)
+                      {
+                        connection.noteInterrupted(e);
+                        throw e;
+                      }
+                      finally
+                      {
+                        connection.doneFetch(activities);
                       }
-                    }
-                    catch (ManifoldCFException e)
-                    {
-                      connection.noteInterrupted(e);
-                      throw e;
-                    }
-                    catch (ServiceInterruption e)
-                    {
-                      connection.noteInterrupted(e);
-                      throw e;
                     }
                     finally
                     {
-                      connection.doneFetch(activities);
+                      connection.close();
                     }
-                  }
-                  finally
-                  {
-                    connection.close();
-                  }
 
-                  // State transition logic.  If the result indicates a successful fetch so far, we need to decide where to go next.
-                  // This happens AFTER we've released all the connections, because it's conceivable that processing here might be
-                  // significant, and we don't want to tie things up unnecessarily.
-                  String preferredLink = null;
-                  String preferredRedirection = null;
-                  formData = null;
-                  String contentLink = null;
-                  if (resultSignal == RESULT_VERSION_NEEDED)
-                  {
-                    // If we get here, we know:
-                    // (a) There's a cached version of the page on disk we can read as many times as necessary;
-                    // (b) The saved cookies have not been updated yet, so we'll need to do that where appropriate.
-
-                    // The way we determine if we're in the login sequence for a site is by TWO criteria:
-                    // (1) The URI must match the specified regular expression, and
-                    // (2) The data from that URI must contain the specified form or link information.
-                    // We use the same criteria to look for the exit from a sequence.  So, in essence, we're *always* going to need to know whether we're
-                    // officially in the sequence, or not, so we evaluate it always.
-                    boolean isLoginPage = false;
-                    if (sessionCredential != null)
+                    // State transition logic.  If the result indicates a successful fetch so far, we need to decide where to go next.
+                    // This happens AFTER we've released all the connections, because it's conceivable that processing here might be
+                    // significant, and we don't want to tie things up unnecessarily.
+                    String preferredLink = null;
+                    String preferredRedirection = null;
+                    formData = null;
+                    String contentLink = null;
+                    if (resultSignal == RESULT_VERSION_NEEDED)
                     {
-                      Iterator iterMatches = sessionCredential.findLoginParameters(currentURI);
-                      boolean seenAnything = false;
-                      boolean seenFormError = false;
-                      boolean seenLinkError = false;
-                      boolean seenRedirectionError = false;
-                      boolean seenContentError = false;
-                      while (iterMatches.hasNext())
+                      // If we get here, we know:
+                      // (a) There's a cached version of the page on disk we can read as many times as necessary;
+                      // (b) The saved cookies have not been updated yet, so we'll need to do that where appropriate.
+
+                      // The way we determine if we're in the login sequence for a site is by TWO criteria:
+                      // (1) The URI must match the specified regular expression, and
+                      // (2) The data from that URI must contain the specified form or link information.
+                      // We use the same criteria to look for the exit from a sequence.  So, in essence, we're *always* going to need to know whether we're
+                      // officially in the sequence, or not, so we evaluate it always.
+                      boolean isLoginPage = false;
+                      if (sessionCredential != null)
                       {
-                        seenAnything = true;
-                        LoginParameters lp = (LoginParameters)iterMatches.next();
-                        // Note that more than one of the rules may match.
-                        // In that case, a clear order of precedence applies between form-style rules and link-style: form has priority.
-                        // If more than one of the same kind of rule is seen, then all bets are off, a warning is displayed, and nothing is
-                        // matched.
-
-                        // Parse the page; it had better match up!  Otherwise we get null back.
-                        FormData newFormData = findHTMLForm(currentURI,lp);
-                        if (newFormData != null)
-                        {
-                          if (formData != null)
-                          {
-                            // Oops, more than one matching form rule.  Complain.
-                            seenFormError = true;
-                            formData = null;
-                          }
-                          else if (!seenFormError)
-                          {
-                            // A form overrides links, redirection, or content
-                            formData = newFormData;
-                            preferredLink = null;
-                            preferredRedirection = null;
-                          }
-                        }
-                        else
+                        Iterator iterMatches = sessionCredential.findLoginParameters(currentURI);
+                        boolean seenAnything = false;
+                        boolean seenFormError = false;
+                        boolean seenLinkError = false;
+                        boolean seenRedirectionError = false;
+                        boolean seenContentError = false;
+                        while (iterMatches.hasNext())
                         {
-                          // Look for the preferred link instead.
-                          String newPreferredLink = findHTMLLinkURI(currentURI,lp);
-                          if (newPreferredLink != null)
+                          seenAnything = true;
+                          LoginParameters lp = (LoginParameters)iterMatches.next();
+                          // Note that more than one of the rules may match.
+                          // In that case, a clear order of precedence applies between form-style rules and link-style: form has priority.
+                          // If more than one of the same kind of rule is seen, then all bets are off, a warning is displayed, and nothing is
+                          // matched.
+
+                          // Parse the page; it had better match up!  Otherwise we get null back.
+                          FormData newFormData = findHTMLForm(currentURI,lp);
+                          if (newFormData != null)
                           {
-                            if (preferredLink != null)
+                            if (formData != null)
                             {
-                              // Oops
-                              seenLinkError = true;
-                              preferredLink = null;
+                              // Oops, more than one matching form rule.  Complain.
+                              seenFormError = true;
+                              formData = null;
                             }
-                            else if (!seenLinkError && !seenFormError && formData == null)
+                            else if (!seenFormError)
                             {
-                              // Link overrides redirection and content
-                              preferredLink = newPreferredLink;
+                              // A form overrides links, redirection, or content
+                              formData = newFormData;
+                              preferredLink = null;
                               preferredRedirection = null;
                             }
                           }
                           else
                           {
-                            // Look for the preferred redirection.
-                            String newPreferredRedirection = findPreferredRedirectionURI(currentURI,lp);
-                            if (newPreferredRedirection != null)
+                            // Look for the preferred link instead.
+                            String newPreferredLink = findHTMLLinkURI(currentURI,lp);
+                            if (newPreferredLink != null)
                             {
-                              if (preferredRedirection != null)
+                              if (preferredLink != null)
                               {
-                                seenRedirectionError = true;
-                                preferredRedirection = null;
+                                // Oops
+                                seenLinkError = true;
+                                preferredLink = null;
                               }
-                              else if (!seenRedirectionError && !seenLinkError && !seenFormError && formData == null && preferredLink == null)
+                              else if (!seenLinkError && !seenFormError && formData == null)
                               {
-                                preferredRedirection = newPreferredRedirection;
+                                // Link overrides redirection and content
+                                preferredLink = newPreferredLink;
+                                preferredRedirection = null;
                               }
                             }
                             else
                             {
-                              // Look for the content in the page.  The link returned may be an empty string, if matching content
-                              // is discovered but there is no override.  It will be null of the content is not found.
-                              String newContentLink = findSpecifiedContent(currentURI,lp);
-                              if (newContentLink != null)
+                              // Look for the preferred redirection.
+                              String newPreferredRedirection = findPreferredRedirectionURI(currentURI,lp);
+                              if (newPreferredRedirection != null)
                               {
-                                if (contentLink != null)
+                                if (preferredRedirection != null)
                                 {
-                                  seenContentError = true;
-                                  contentLink = null;
+                                  seenRedirectionError = true;
+                                  preferredRedirection = null;
                                 }
-                                else if (!seenContentError && !seenRedirectionError && !seenLinkError && !seenFormError && formData == null && preferredLink == null && preferredRedirection == null)
+                                else if (!seenRedirectionError && !seenLinkError && !seenFormError && formData == null && preferredLink == null)
                                 {
-                                  contentLink = newContentLink;
+                                  preferredRedirection = newPreferredRedirection;
+                                }
+                              }
+                              else
+                              {
+                                // Look for the content in the page.  The link returned may be an empty string, if matching content
+                                // is discovered but there is no override.  It will be null of the content is not found.
+                                String newContentLink = findSpecifiedContent(currentURI,lp);
+                                if (newContentLink != null)
+                                {
+                                  if (contentLink != null)
+                                  {
+                                    seenContentError = true;
+                                    contentLink = null;
+                                  }
+                                  else if (!seenContentError && !seenRedirectionError && !seenLinkError && !seenFormError && formData == null && preferredLink == null && preferredRedirection == null)
+                                  {
+                                    contentLink = newContentLink;
+                                  }
                                 }
                               }
                             }
                           }
                         }
-                      }
 
-                      // Now, evaluate all the data and pick the right rule
-                      if (formData != null)
-                      {
-                        // We found the right form!  And, we filled it in.  So now we enter the "login sequence".
-                        if (Logging.connectors.isDebugEnabled())
-                          Logging.connectors.debug("WEB: Document '"+currentURI+"' matches form, so determined to be login page for sequence '"+sessionCredential.getSequenceKey()+"'");
-                        isLoginPage = true;
-                      }
-                      else if (preferredLink != null)
-                      {
-                        if (Logging.connectors.isDebugEnabled())
-                          Logging.connectors.debug("WEB: Document '"+currentURI+"' matches preferred link, so determined to be login page for sequence '"+sessionCredential.getSequenceKey()+"'");
-                        isLoginPage = true;
-                      }
-                      else if (preferredRedirection != null)
-                      {
-                        if (Logging.connectors.isDebugEnabled())
-                          Logging.connectors.debug("WEB: Document '"+currentURI+"' matches preferred redirection, so determined to be login page for sequence '"+sessionCredential.getSequenceKey()+"'");
-                        isLoginPage = true;
-                      }
-                      else if (contentLink != null)
-                      {
-                        if (Logging.connectors.isDebugEnabled())
-                          Logging.connectors.debug("WEB: Document '"+currentURI+"' matches content, so determined to be login page for sequence '"+sessionCredential.getSequenceKey()+"'");
-                        isLoginPage = true;
-                      }
-                      else
-                      {
-                        if (seenAnything && Logging.connectors.isDebugEnabled())
-                          Logging.connectors.debug("WEB: Document '"+currentURI+"' did not match expected form, link, redirection, or content for sequence '"+sessionCredential.getSequenceKey()+"'");
+                        // Now, evaluate all the data and pick the right rule
+                        if (formData != null)
+                        {
+                          // We found the right form!  And, we filled it in.  So now we enter the "login sequence".
+                          if (Logging.connectors.isDebugEnabled())
+                            Logging.connectors.debug("WEB: Document '"+currentURI+"' matches form, so determined to be login page for sequence '"+sessionCredential.getSequenceKey()+"'");
+                          isLoginPage = true;
+                        }
+                        else if (preferredLink != null)
+                        {
+                          if (Logging.connectors.isDebugEnabled())
+                            Logging.connectors.debug("WEB: Document '"+currentURI+"' matches preferred link, so determined to be login page for sequence '"+sessionCredential.getSequenceKey()+"'");
+                          isLoginPage = true;
+                        }
+                        else if (preferredRedirection != null)
+                        {
+                          if (Logging.connectors.isDebugEnabled())
+                            Logging.connectors.debug("WEB: Document '"+currentURI+"' matches preferred redirection, so determined to be login page for sequence '"+sessionCredential.getSequenceKey()+"'");
+                          isLoginPage = true;
+                        }
+                        else if (contentLink != null)
+                        {
+                          if (Logging.connectors.isDebugEnabled())
+                            Logging.connectors.debug("WEB: Document '"+currentURI+"' matches content, so determined to be login page for sequence '"+sessionCredential.getSequenceKey()+"'");
+                          isLoginPage = true;
+                        }
+                        else
+                        {
+                          if (seenAnything && Logging.connectors.isDebugEnabled())
+                            Logging.connectors.debug("WEB: Document '"+currentURI+"' did not match expected form, link, redirection, or content for sequence '"+sessionCredential.getSequenceKey()+"'");
+                        }
                       }
-                    }
 
-                    // Should we do a state transition into the "logging in" state?
-                    if (sessionState == SESSIONSTATE_NORMAL && isLoginPage)
-                    {
-                      // Entering the login sequence.  Make sure we actually can do this...
-                      if (activities.beginEventSequence(globalSequenceEvent))
+                      // Should we do a state transition into the "logging in" state?
+                      if (sessionState == SESSIONSTATE_NORMAL && isLoginPage)
                       {
-                        if (Logging.connectors.isDebugEnabled())
-                          Logging.connectors.debug("WEB: For document '"+documentIdentifier+"', beginning login sequence '"+sessionCredential.getSequenceKey()+"'");
+                        // Entering the login sequence.  Make sure we actually can do this...
+                        if (activities.beginEventSequence(globalSequenceEvent))
+                        {
+                          if (Logging.connectors.isDebugEnabled())
+                            Logging.connectors.debug("WEB: For document '"+documentIdentifier+"', beginning login sequence '"+sessionCredential.getSequenceKey()+"'");
 
-                        activities.recordActivity(null,WebcrawlerConnector.ACTIVITY_LOGON_START,
-                          null,sessionCredential.getSequenceKey(),"OK",null,null);
+                          activities.recordActivity(null,WebcrawlerConnector.ACTIVITY_LOGON_START,
+                            null,sessionCredential.getSequenceKey(),"OK",null,null);
 
-                        // Transition to the right state, etc.
-                        sessionState = SESSIONSTATE_LOGIN;
+                          // Transition to the right state, etc.
+                          sessionState = SESSIONSTATE_LOGIN;
+                        }
+                        else
+                        {
+                          if (Logging.connectors.isDebugEnabled())
+                            Logging.connectors.debug("WEB: For document '"+documentIdentifier+"', login sequence '"+sessionCredential.getSequenceKey()+"' was already in progress.");
+
+                          // Didn't make it in.  Retry the main URI when the proper conditions are met.
+                          // We don't want the cached data anymore.
+                          cache.deleteData(currentURI);
+                          contextMessage = "login sequence already in progress";
+                          resultSignal = RESULT_RETRY_DOCUMENT;
+                          activityResultCode = null;
+                        }
                       }
-                      else
+                      else if (sessionState == SESSIONSTATE_LOGIN && isLoginPage == false)
                       {
-                        if (Logging.connectors.isDebugEnabled())
-                          Logging.connectors.debug("WEB: For document '"+documentIdentifier+"', login sequence '"+sessionCredential.getSequenceKey()+"' was already in progress.");
-
-                        // Didn't make it in.  Retry the main URI when the proper conditions are met.
-                        // We don't want the cached data anymore.
-                        cache.deleteData(currentURI);
-                        contextMessage = "login sequence already in progress";
-                        resultSignal = RESULT_RETRY_DOCUMENT;
-                        activityResultCode = null;
+                        //== Exit login mode ==
+                        activities.completeEventSequence(globalSequenceEvent);
+                        activities.recordActivity(null,WebcrawlerConnector.ACTIVITY_LOGON_END,
+                          null,sessionCredential.getSequenceKey(),"OK",null,null);
+                        sessionState = SESSIONSTATE_NORMAL;
+                        // Make sure we go back and try the original document again, if we happened to have been directed somewhere else
+                        if (!currentURI.equals(documentIdentifier))
+                        {
+                          cache.deleteData(currentURI);
+                          currentURI = documentIdentifier;
+                          continue;
+                        }
+                        // Otherwise, the last fetch stands on its own.  Fall through, and allow processing and link extraction
                       }
-                    }
-                    else if (sessionState == SESSIONSTATE_LOGIN && isLoginPage == false)
-                    {
-                      //== Exit login mode ==
-                      activities.completeEventSequence(globalSequenceEvent);
-                      activities.recordActivity(null,WebcrawlerConnector.ACTIVITY_LOGON_END,
-                        null,sessionCredential.getSequenceKey(),"OK",null,null);
-                      sessionState = SESSIONSTATE_NORMAL;
-                      // Make sure we go back and try the original document again, if we happened to have been directed somewhere else
-                      if (!currentURI.equals(documentIdentifier))
+
+                      // Now, based on the session state and the document contents, decide how to proceed
+                      if (resultSignal == RESULT_VERSION_NEEDED && sessionState == SESSIONSTATE_LOGIN)
                       {
+                        // We are dealing with a login page!
+
+                        // We need to (a) figure out what the next URI should be, and (b) record form information that it might need.
+                        // This is a bit dicey because there's really
+                        // no good way to *guarantee* that we pick the right one, if there's more than one available.
+                        // What we do is the following:
+                        //
+                        // (a) We look for matching forms.  If we found one, we submit it.
+                        // (b) Look for redirections.
+                        // (c) If there are links that vector within the login sequence, we pick one of those preferentially.
+                        // (d) If there are no links that vector within the login sequence, we pick one of the other links.
+                        //
+                        // Note well that it's probably going to be pretty easy to get this code stuck in an infinite login sequence.
+                        // While that won't be a problem performance-wise (because everything is appropriately throttled), it
+                        // is obviously not ideal, and furthermore, it will not be possible to crawl a site for which this occurs.
+                        //
+                        // Longer time (and with higher complexity) we can solve this problem by allowing the user to *specify*
+                        // which link they want us to pick for a page.  Hopefully this would not be necessary.
+
+                        // Locate the next target URI.
+                        String targetURI;
+                        if (formData != null)
+                          targetURI = formData.getActionURI();
+                        else if (preferredLink != null)
+                          targetURI = preferredLink;
+                        else if (preferredRedirection != null)
+                          targetURI = preferredRedirection;
+                        else /* if (contentLink != null) */
+                          targetURI = contentLink;
+
+                        // Definitely we don't want the cached data anymore
                         cache.deleteData(currentURI);
-                        currentURI = documentIdentifier;
+
+                        // If the target URI is null, it means we could not find a suitable link.  If target URI is "",
+                        // it means that we found a designated logon page but the description did not include a link we
+                        // could chase.  Either way, treat this exactly the same
+                        // way as if the link found exited login mode.
+                        if (targetURI == null || targetURI.length() == 0)
+                        {
+                          //== Exiting login mode ==
+                          activities.completeEventSequence(globalSequenceEvent);
+                          activities.recordActivity(null,WebcrawlerConnector.ACTIVITY_LOGON_END,
+                            null,sessionCredential.getSequenceKey(),"NEXT LINK NOT FOUND",null,null);
+                          sessionState = SESSIONSTATE_NORMAL;
+                          // Make sure we go back and try the original document again, no matter where we got directed to
+                          currentURI = documentIdentifier;
+                        }
+                        else
+                        {
+                          currentURI = targetURI;
+                        }
                         continue;
                       }
-                      // Otherwise, the last fetch stands on its own.  Fall through, and allow processing and link extraction
-                    }
-
-                    // Now, based on the session state and the document contents, decide how to proceed
-                    if (resultSignal == RESULT_VERSION_NEEDED && sessionState == SESSIONSTATE_LOGIN)
-                    {
-                      // We are dealing with a login page!
-
-                      // We need to (a) figure out what the next URI should be, and (b) record form information that it might need.
-                      // This is a bit dicey because there's really
-                      // no good way to *guarantee* that we pick the right one, if there's more than one available.
-                      // What we do is the following:
-                      //
-                      // (a) We look for matching forms.  If we found one, we submit it.
-                      // (b) Look for redirections.
-                      // (c) If there are links that vector within the login sequence, we pick one of those preferentially.
-                      // (d) If there are no links that vector within the login sequence, we pick one of the other links.
-                      //
-                      // Note well that it's probably going to be pretty easy to get this code stuck in an infinite login sequence.
-                      // While that won't be a problem performance-wise (because everything is appropriately throttled), it
-                      // is obviously not ideal, and furthermore, it will not be possible to crawl a site for which this occurs.
-                      //
-                      // Longer time (and with higher complexity) we can solve this problem by allowing the user to *specify*
-                      // which link they want us to pick for a page.  Hopefully this would not be necessary.
-
-                      // Locate the next target URI.
-                      String targetURI;
-                      if (formData != null)
-                        targetURI = formData.getActionURI();
-                      else if (preferredLink != null)
-                        targetURI = preferredLink;
-                      else if (preferredRedirection != null)
-                        targetURI = preferredRedirection;
-                      else /* if (contentLink != null) */
-                        targetURI = contentLink;
-
-                      // Definitely we don't want the cached data anymore
-                      cache.deleteData(currentURI);
-
-                      // If the target URI is null, it means we could not find a suitable link.  If target URI is "",
-                      // it means that we found a designated logon page but the description did not include a link we
-                      // could chase.  Either way, treat this exactly the same
-                      // way as if the link found exited login mode.
-                      if (targetURI == null || targetURI.length() == 0)
+                      else if (resultSignal != RESULT_VERSION_NEEDED && sessionState == SESSIONSTATE_LOGIN)
                       {
+                        // The next URL we fetched in the logon sequence turned out to be unsuitable.
+                        // That means that the logon sequence is fundamentally wrong.  The session thus ends,
+                        // and of course it will retry, but that's neither here nor there.
                         //== Exiting login mode ==
                         activities.completeEventSequence(globalSequenceEvent);
                         activities.recordActivity(null,WebcrawlerConnector.ACTIVITY_LOGON_END,
-                          null,sessionCredential.getSequenceKey(),"NEXT LINK NOT FOUND",null,null);
+                          null,sessionCredential.getSequenceKey(),"LINK TARGET UNSUITABLE",null,null);
                         sessionState = SESSIONSTATE_NORMAL;
-                        // Make sure we go back and try the original document again, no matter where we got directed to
-                        currentURI = documentIdentifier;
+                        // Fall through, leaving everything else alone.
                       }
-                      else
-                      {
-                        currentURI = targetURI;
-                      }
-                      continue;
                     }
-                    else if (resultSignal != RESULT_VERSION_NEEDED && sessionState == SESSIONSTATE_LOGIN)
+
+                  }
+                  else
+                  {
+                    if (robotsStatus == RESULTSTATUS_FALSE)
+                    {
+                      activityResultCode = "-11";
+                      contextMessage = "robots.txt says so";
+                      resultSignal = RESULT_NO_DOCUMENT;
+                    }
+                    else
                     {
-                      // The next URL we fetched in the logon sequence turned out to be unsuitable.
-                      // That means that the logon sequence is fundamentally wrong.  The session thus ends,
-                      // and of course it will retry, but that's neither here nor there.
-                      //== Exiting login mode ==
-                      activities.completeEventSequence(globalSequenceEvent);
-                      activities.recordActivity(null,WebcrawlerConnector.ACTIVITY_LOGON_END,
-                        null,sessionCredential.getSequenceKey(),"LINK TARGET UNSUITABLE",null,null);
-                      sessionState = SESSIONSTATE_NORMAL;
-                      // Fall through, leaving everything else alone.
+                      // Robots prerequisite in progress
+                      activityResultCode = null;
+                      resultSignal = RESULT_RETRY_DOCUMENT;
+                      contextMessage = "robots prerequisite already in progress";
                     }
                   }
-
                 }
                 else
                 {
-                  if (robotsStatus == RESULTSTATUS_FALSE)
+                  if (ipAddressStatus == RESULTSTATUS_FALSE)
                   {
-                    activityResultCode = "-11";
-                    contextMessage = "robots.txt says so";
+                    activityResultCode = "-10";
+                    contextMessage = "ip address not found";
                     resultSignal = RESULT_NO_DOCUMENT;
                   }
                   else
                   {
-                    // Robots prerequisite in progress
+                    // DNS prerequisite in progress
                     activityResultCode = null;
+                    contextMessage = "dns prerequisite already in progress";
                     resultSignal = RESULT_RETRY_DOCUMENT;
-                    contextMessage = "robots prerequisite already in progress";
                   }
                 }
               }
-              else
+              catch (MalformedURLException e)
               {
-                if (ipAddressStatus == RESULTSTATUS_FALSE)
-                {
-                  activityResultCode = "-10";
-                  contextMessage = "ip address not found";
-                  resultSignal = RESULT_NO_DOCUMENT;
-                }
-                else
-                {
-                  // DNS prerequisite in progress
-                  activityResultCode = null;
-                  contextMessage = "dns prerequisite already in progress";
+                // currentURI is malformed.
+                // If the document was the primary, we should remove it from the queue.  But if it's part of a login sequence, we'd better just retry later.
+                contextMessage = "was not a valid URL: "+e.getMessage();
+                contextException = e;
+                activityResultCode = "-12";
+                resultSignal = RESULT_NO_DOCUMENT;
+              }
+
+              // If we fail on a document that's not the primary, the result should be to retry the primary later.
+              if (!currentURI.equals(documentIdentifier))
+              {
+                activityResultCode = null;
+                if (contextMessage != null)
+                  contextMessage = "for login sequence url '"+currentURI+"': "+contextMessage;
+                if (resultSignal != RESULT_VERSION_NEEDED)
                   resultSignal = RESULT_RETRY_DOCUMENT;
-                }
               }
+
+              break;
             }
-            catch (MalformedURLException e)
-            {
-              // currentURI is malformed.
-              // If the document was the primary, we should remove it from the queue.  But if it's part of a login sequence, we'd better just retry later.
-              contextMessage = "was not a valid URL: "+e.getMessage();
-              contextException = e;
-              activityResultCode = "-12";
-              resultSignal = RESULT_NO_DOCUMENT;
-            }
 
-            // If we fail on a document that's not the primary, the result should be to retry the primary later.
-            if (!currentURI.equals(documentIdentifier))
+            // Now, look at the result signal, and set up the version appropriately.
+            if (activityResultCode != null)
+              activities.recordActivity(null,ACTIVITY_FETCH,null,documentIdentifier,activityResultCode,((contextMessage!=null)?contextMessage:""),null);
+
+            switch (resultSignal)
             {
-              activityResultCode = null;
-              if (contextMessage != null)
-                contextMessage = "for login sequence url '"+currentURI+"': "+contextMessage;
-              if (resultSignal != RESULT_VERSION_NEEDED)
-                resultSignal = RESULT_RETRY_DOCUMENT;
+            case RESULT_NO_DOCUMENT:
+              if (Logging.connectors.isDebugEnabled())
+                Logging.connectors.debug("WEB: Removing url '"+documentIdentifier+"'"+((contextMessage!=null)?" because "+contextMessage:""),contextException);
+              rval[i] = null;
+              break;
+            case RESULT_NO_VERSION:
+              if (Logging.connectors.isDebugEnabled())
+                Logging.connectors.debug("WEB: Ignoring url '"+documentIdentifier+"'"+((contextMessage!=null)?" because "+contextMessage:""),contextException);
+              rval[i] = "";
+              break;
+            case RESULT_VERSION_NEEDED:
+              // Calculate version from document data, which is presumed to be present.
+              rval[i] = makeVersionString(acls,metadata,makeHeaderMetadata(headerData),checkSum,filterVersion);
+              break;
+            case RESULT_UNCHANGED:
+              if (Logging.connectors.isDebugEnabled())
+                Logging.connectors.debug("WEB: Keeping version of url '"+documentIdentifier+"'"+((contextMessage!=null)?" because "+contextMessage:""));
+              rval[i] = oldVersions[i];
+              break;
+            case RESULT_RETRY_DOCUMENT:
+              // Document could not be processed right now.
+              if (Logging.connectors.isDebugEnabled())
+                Logging.connectors.debug("WEB: Retrying url '"+documentIdentifier+"' later"+((contextMessage!=null)?" because "+contextMessage:""),contextException);
+              activities.retryDocumentProcessing(documentIdentifier);
+              rval[i] = null;
+              break;
+            default:
+              throw new ManifoldCFException("Unexpected value for result signal: "+Integer.toString(resultSignal));
             }
-
-            break;
           }
-
-          // Now, look at the result signal, and set up the version appropriately.
-          if (activityResultCode != null)
-            activities.recordActivity(null,ACTIVITY_FETCH,null,documentIdentifier,activityResultCode,((contextMessage!=null)?contextMessage:""),null);
-
-          switch (resultSignal)
+          catch (ServiceInterruption e)
           {
-          case RESULT_NO_DOCUMENT:
-            if (Logging.connectors.isDebugEnabled())
-              Logging.connectors.debug("WEB: Removing url '"+documentIdentifier+"'"+((contextMessage!=null)?" because "+contextMessage:""),contextException);
+            // An interruption for one host should not hold up the rest of the set, unless the job itself is going away.
+            if (e.jobInactiveAbort())
+              throw e;
+            cache.deleteData(currentURI);
+            cache.deleteData(documentIdentifier);
+            activities.noteDocumentServiceInterruption(documentIdentifier,e);
             rval[i] = null;
-            break;
-          case RESULT_NO_VERSION:
-            if (Logging.connectors.isDebugEnabled())
-              Logging.connectors.debug("WEB: Ignoring url '"+documentIdentifier+"'"+((contextMessage!=null)?" because "+contextMessage:""),contextException);
-            rval[i] = "";
-            break;
-          case RESULT_VERSION_NEEDED:
-            // Calculate version from document data, which is presumed to be present.
-            StringBuilder sb = new StringBuilder();
-
-            // Acls
-            packList(sb,acls,'+');
-            if (acls.length > 0)
-            {
-              sb.append('+');
-              pack(sb,defaultAuthorityDenyToken,'+');
-            }
-            else
-              sb.append('-');
-
-            // Now, do the metadata.  This comes in two parts: first, the canned metadata, then the header data.
-            // They're all folded into the same part of the version string.
-            int headerCount = 0;
-            Iterator<String> headerIterator = headerData.keySet().iterator();
-            while (headerIterator.hasNext())
-            {
-              String headerName = headerIterator.next();
-              if (reservedHeaders.get(headerName.toLowerCase()) == null)
-                headerCount += headerData.get(headerName).size();
-            }
-            String[] fullMetadata = new String[metadata.length + headerCount];
-            headerCount = 0;
-            headerIterator = headerData.keySet().iterator();
-            while (headerIterator.hasNext())
-            {
-              String headerName = headerIterator.next();
-              if (reservedHeaders.get(headerName.toLowerCase()) == null)
-              {
-                List<String> headerValues = headerData.get(headerName);
-                for (String headerValue : headerValues)
-                {
-                  fixedListStrings[0] = "header-"+headerName;
-                  fixedListStrings[1] = headerValue;
-                  StringBuilder newsb = new StringBuilder();
-                  packFixedList(newsb,fixedListStrings,'=');
-                  fullMetadata[headerCount++] = newsb.toString();
-                }
-              }
-            }
-            int index = 0;
-            while (index < metadata.length)
+          }
+          finally
+          {
+            // Clean up event, if there is one.
+            if (sessionState == SESSIONSTATE_LOGIN && globalSequenceEvent != null)
             {
-              fullMetadata[headerCount++] = metadata[index++];
+              // Terminate the event
+              activities.completeEventSequence(globalSequenceEvent);
             }
-            java.util.Arrays.sort(fullMetadata);
-            
-            packList(sb,fullMetadata,'+');
-            // Done with the parseable part!  Add the checksum.
-            sb.append(checkSum);
-            // Add the filter version
-            sb.append("+");
-            sb.append(filterVersion);
-            rval[i] = sb.toString();
-            break;
-          case RESULT_RETRY_DOCUMENT:
-            // Document could not be processed right now.
-            if (Logging.connectors.isDebugEnabled())
-              Logging.connectors.debug("WEB: Retrying url '"+documentIdentifier+"' later"+((contextMessage!=null)?" because "+contextMessage:""),contextException);
-            activities.retryDocumentProcessing(documentIdentifier);
-            rval[i] = null;
-            break;
-          default:
-            throw new ManifoldCFException("Unexpected value for result signal: "+Integer.toString(resultSignal));
+            // Release the prefetched document, if it was never used
+            prefetcher.abandon(documentIdentifier);
           }
         }
-        finally
+        else
         {
-          // Clean up event, if there is one.
-          if (sessionState == SESSIONSTATE_LOGIN && globalSequenceEvent != null)
-          {
-            // Terminate the event
-            activities.completeEventSequence(globalSequenceEvent);
-          }
+          if (Logging.connectors.isDebugEnabled())
+            Logging.connectors.debug("WEB: Removing url '"+documentIdentifier+"' because it's not in the set of allowed ones");
+          // Use null because we should have already filtered when we queued.
+          rval[i] = null;
         }
+        i++;
       }
-      else
+      return rval;
+    }
+    finally
+    {
+      prefetcher.abandonAll();
+    }
+  }
+
+  /** Queue a document to be fetched ahead of time, if everything needed to fetch it is at hand.
+  */
+  protected void prefetchDocument(DocumentPrefetcher prefetcher, String documentIdentifier, String[] validators, long currentTime, int connectionLimit)
+    throws ManifoldCFException
+  {
+    URL url;
+    try
+    {
+      url = new URL(documentIdentifier);
+    }
+    catch (MalformedURLException e)
+    {
+      return;
+    }
+    String hostName = url.getHost();
+    DNSManager.DNSInfo info = DNSCache.getCached(hostName,currentTime);
+    if (info == null || info.getIPAddress() == null)
+      return;
+    String protocol = url.getProtocol();
+    int port = url.getPort();
+    if (port == -1)
+      port = url.getDefaultPort();
+    if (robotsUsage >= ROBOTS_DATA)
+    {
+      Boolean allowed = RobotsManager.checkCachedFetchAllowed(userAgent,makeRobotsKey(protocol,hostName,port),currentTime,url.getFile());
+      if (allowed == null || !allowed.booleanValue())
+        return;
+    }
+    PageCredentials credential = getPageCredential(documentIdentifier);
+    IKeystoreManager trustStore;
+    if (protocol.equalsIgnoreCase("https"))
+      trustStore = getTrustStore(documentIdentifier);
+    else
+      trustStore = KeystoreManagerFactory.make("");
+    prefetcher.prefetch(documentIdentifier,protocol,info.getIPAddress(),port,credential,trustStore,
+      throttleDescription,getBinNames(documentIdentifier),connectionLimit,
+      proxyHost,proxyPort,proxyAuthDomain,proxyAuthUsername,proxyAuthPassword,
+      url.getFile(),userAgent,from,connectionTimeoutMilliseconds,socketTimeoutMilliseconds,hostName,
+      (validators==null)?null:validators[0],(validators==null)?null:validators[1]);
+  }
+
+  /** Assemble a document version string.
+  *@param acls are the sorted forced acls.
+  *@param metadata are the sorted, packed metadata name/value pairs from the specification.
+  *@param headerMetadata are the packed metadata name/value pairs from the response headers.
+  *@param checkSum is the checksum of the document data.
+  *@param filterVersion is the version string of the document filter.
+  *@return the version string.
+  */
+  protected String makeVersionString(String[] acls, String[] metadata, String[] headerMetadata, String checkSum, String filterVersion)
+  {
+    StringBuilder sb = new StringBuilder();
+
+    // Acls
+    packList(sb,acls,'+');
+    if (acls.length > 0)
+    {
+      sb.append('+');
+      pack(sb,defaultAuthorityDenyToken,'+');
+    }
+    else
+      sb.append('-');
+
+    // Now, do the metadata.  This comes in two parts: first, the canned metadata, then the header data.
+    // They're all folded into the same part of the version string.
+    String[] fullMetadata = new String[metadata.length + headerMetadata.length];
+    int index = 0;
+    while (index < headerMetadata.length)
+    {
+      fullMetadata[index] = headerMetadata[index];
+      index++;
+    }
+    int k = 0;
+    while (k < metadata.length)
+    {
+      fullMetadata[index++] = metadata[k++];
+    }
+    java.util.Arrays.sort(fullMetadata);
+
+    packList(sb,fullMetadata,'+');
+    // Done with the parseable part!  Add the checksum.
+    sb.append(checkSum);
+    // Add the filter version
+    sb.append("+");
+    sb.append(filterVersion);
+    return sb.toString();
+  }
+
+  /** Convert the response headers that belong in a version string into packed metadata name/value pairs.
+  */
+  protected static String[] makeHeaderMetadata(Map<String,List<String>> headerData)
+  {
+    String[] fixedListStrings = new String[2];
+    List<String> rval = new ArrayList<String>();
+    Iterator<String> headerIterator = headerData.keySet().iterator();
+    while (headerIterator.hasNext())
+    {
+      String headerName = headerIterator.next();
+      if (reservedHeaders.get(headerName.toLowerCase()) == null)
       {
-        if (Logging.connectors.isDebugEnabled())
-          Logging.connectors.debug("WEB: Removing url '"+documentIdentifier+"' because it's not in the set of allowed ones");
-        // Use null because we should have already filtered when we queued.
-        rval[i] = null;
+        List<String> headerValues = headerData.get(headerName);
+        for (String headerValue : headerValues)
+        {
+          fixedListStrings[0] = "header-"+headerName;
+          fixedListStrings[1] = headerValue;
+          StringBuilder newsb = new StringBuilder();
+          packFixedList(newsb,fixedListStrings,'=');
+          rval.add(newsb.toString());
+        }
       }
-      i++;
     }
-    return rval;
+    return rval.toArray(new String[0]);
+  }
+
+  /** Find the ETag and Last-Modified values recorded in a document's old version string, for a conditional fetch.
+  * These are only usable if nothing else that goes into the version has changed since, since a 304 response means
+  * the old version string will be kept.
+  *@param oldVersion is the old version string, or null.
+  *@param acls are the sorted forced acls.
+  *@param metadata are the sorted, packed metadata name/value pairs from the specification.
+  *@param filterVersion is the version string of the document filter.
+  *@return the ETag and Last-Modified values (either of which may be null), or null if the fetch cannot be conditional.
+  */
+  protected String[] findValidators(String oldVersion, String[] acls, String[] metadata, String filterVersion)
+  {
+    if (oldVersion == null || oldVersion.length() == 0)
+      return null;
+
+    // Unpack the old version string, the same way processDocuments() does
+    ArrayList oldAcls = new ArrayList();
+    int index = unpackList(oldAcls,oldVersion,0,'+');
+    if (index < oldVersion.length() && oldVersion.charAt(index++) == '+')
+      index = unpack(new StringBuilder(),oldVersion,index,'+');
+    ArrayList oldMetadata = new ArrayList();
+    index = unpackList(oldMetadata,oldVersion,index,'+');
+    String suffix = "+" + filterVersion;
+    if (index > oldVersion.length() - suffix.length() || !oldVersion.endsWith(suffix))
+      return null;
+    String checkSum = oldVersion.substring(index,oldVersion.length() - suffix.length());
+
+    // Pick out the header metadata, and the validators among it
+    String lastETag = null;
+    String lastModified = null;
+    List<String> headerMetadata = new ArrayList<String>();
+    String[] fixedList = new String[2];
+    int k = 0;
+    while (k < oldMetadata.size())
+    {
+      String metadataItem = (String)oldMetadata.get(k++);
+      unpackFixedList(fixedList,metadataItem,0,'=');
+      if (fixedList[0].startsWith("header-"))
+      {
+        headerMetadata.add(metadataItem);
+        if (lastETag == null && fixedList[0].equalsIgnoreCase("header-ETag"))
+          lastETag = fixedList[1];
+        else if (lastModified == null && fixedList[0].equalsIgnoreCase("header-Last-Modified"))
+          lastModified = fixedList[1];
+      }
+    }
+    if (lastETag == null && lastModified == null)
+      return null;
+
+    // The fetch can only be conditional if the current specification would produce exactly the same version string
+    if (!makeVersionString(acls,metadata,headerMetadata.toArray(new String[0]),checkSum,filterVersion).equals(oldVersion))
+      return null;
+    return new String[]{lastETag,lastModified};
   }
 
   protected static String extractContentType(String contentType)
@@ -1289,7 +1499,7 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
   {
     getSession();
 
-    DocumentURLFilter filter = new DocumentURLFilter(spec);
+    DocumentURLFilter filter = getDocumentURLFilter(spec);
 
     String[] fixedList = new String[2];
 
@@ -1311,6 +1521,15 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
         continue;
       }
 
+      if (doScanOnly && cache.getResponseCode(documentIdentifier) == IThrottledConnection.FETCH_NOT_TRIED)
+      {
+        // The document was found to be unmodified by a conditional fetch, so there is nothing to extract links from.
+        // Keep the links found the last time it was fetched.
+        activities.retainDocumentReferences(documentIdentifier);
+        i++;
+        continue;
+      }
+
       // Now, extract links.
       // We'll call the "link extractor" series, so we can plug more stuff in over time.
       boolean indexDocument = extractLinks(documentIdentifier,activities,filter);
@@ -1478,8 +1697,8 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
   @Override
   public int getMaxDocumentRequest()
   {
-    // The web in general does not batch well.  Multiple chunks have no advantage over one-at-a-time requests.
-    return 1;
+    // Small, because every fetched page stays cached on disk until the whole batch is done
+    return 10;
   }
 
   // UI support methods.
@@ -5022,25 +5241,9 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
       //  We uniquely can do the lookup.
       try
       {
-        // Fetch it using InetAddress
-        InetAddress ip = null;
-        try
-        {
-          ip = InetAddress.getByName(hostName);
-        }
-        catch (UnknownHostException e)
-        {
-          // Host is unknown, so leave ipAddress as null.
-        }
-        String fqdn = null;
-        String ipAddress = null;
-        if (ip != null)
-        {
-          fqdn = ip.getCanonicalHostName();
-          ipAddress = ip.getHostAddress();
-        }
-        // Write this to the cache - expiration time 6 hours
-        dnsManager.writeDNSData(hostName,fqdn,ipAddress,currentTime + 1000*60*60*6);
+        // This picks up a background resolution of the host if there is one, and writes the result to the database
+        info = dnsManager.resolve(hostName,currentTime);
+        String ipAddress = info.getIPAddress();
         if (ipAddress == null)
           return RESULTSTATUS_FALSE;
         ipAddressBuffer.append(ipAddress);
@@ -5118,7 +5321,7 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
           connection.beginFetch(FETCH_ROBOTS);
           try
           {
-            connection.executeFetch("/robots.txt",userAgent,from,connectionTimeoutMilliseconds,socketTimeoutMilliseconds,true,hostName,null,null);
+            connection.executeFetch("/robots.txt",userAgent,from,connectionTimeoutMilliseconds,socketTimeoutMilliseconds,true,hostName,null,null,null,null);
             long expirationTime = currentTime+1000*60*60*24;
             int code = connection.getResponseCode();
             if (code == 200)
@@ -5762,6 +5965,15 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
         if (Logging.connectors.isDebugEnabled())
           Logging.connectors.debug("WEB: In "+contextDescription+" document '"+documentIdentifier+"', found link to '"+newIdentifier+"'");
         activities.addDocumentReference(newIdentifier,documentIdentifier,linkType,null,null,null,calculateDocumentEvents(activities,newIdentifier));
+        // Get the host resolved before the link is fetched
+        try
+        {
+          DNSCache.prefetch(new URL(newIdentifier).getHost());
+        }
+        catch (MalformedURLException e)
+        {
+          // Leave it to the fetch to report
+        }
       }
       else
       {
@@ -6940,6 +7152,31 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
     return list;
   }
 
+  /** Get the compiled filter for a document specification, from the cache if possible.
+  * Filters are never modified once built, so one instance can be used by any number of threads.
+  * Only read-only specifications are cached, since any other could change under the cached filter.
+  */
+  protected static DocumentURLFilter getDocumentURLFilter(DocumentSpecification spec)
+    throws ManifoldCFException
+  {
+    if (!spec.isReadOnly())
+      return new DocumentURLFilter(spec);
+    SpecificationKey key = new SpecificationKey(spec);
+    synchronized (filterCache)
+    {
+      DocumentURLFilter rval = filterCache.get(key);
+      if (rval != null)
+        return rval;
+    }
+    // Compile outside the lock; if two threads race, both results are equivalent
+    DocumentURLFilter rval = new DocumentURLFilter(spec);
+    synchronized (filterCache)
+    {
+      filterCache.put(key,rval);
+    }
+    return rval;
+  }
+
   /** Compile all regexp entries in the passed in list, and add them to the output
   * list.
   */
@@ -7167,20 +7404,163 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
     }
   }
 
+  /** A filter cache key, which matches one specification instance only.
+  */
+  protected static class SpecificationKey
+  {
+    protected final DocumentSpecification spec;
+
+    public SpecificationKey(DocumentSpecification spec)
+    {
+      this.spec = spec;
+    }
+
+    public int hashCode()
+    {
+      return System.identityHashCode(spec);
+    }
+
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof SpecificationKey))
+        return false;
+      return ((SpecificationKey)o).spec == spec;
+    }
+  }
+
+  /** A list of regular expressions, to be checked for whether any of them is found in a string.
+  * The expressions are also combined into a single alternation, so that a string can be checked in one
+  * pass rather than one pass per expression.  Each expression is wrapped in its own non-capturing group.
+  * Some expressions cannot be combined safely: back references would be renumbered, an unterminated \Q
+  * quotes the rest of the combined pattern, and comments (the x flag) can swallow the closing parenthesis.
+  * Lists containing those, or whose combination fails to compile, are checked one expression at a time.
+  */
+  public static class PatternSet
+  {
+    /** Detects back references, conservatively */
+    protected final static Pattern backReferencePattern = Pattern.compile("\\\\([1-9]|k<)");
+    /** Detects the comments flag, conservatively */
+    protected final static Pattern commentsFlagPattern = Pattern.compile("\\(\\?[a-zA-Z-]*x");
+
+    /** The individual patterns */
+    protected final ArrayList patterns = new ArrayList();
+    /** The combined pattern, or null if the patterns could not be combined */
+    protected final Pattern combinedPattern;
+
+    /** Constructor.
+    *@param expressions is the list of regular expression strings.
+    */
+    public PatternSet(ArrayList expressions)
+      throws ManifoldCFException
+    {
+      compileList(patterns,expressions);
+      combinedPattern = combine(expressions);
+    }
+
+    /** Build the combined pattern, if possible. */
+    protected static Pattern combine(ArrayList expressions)
+    {
+      if (expressions.size() < 2)
+        return null;
+      StringBuilder sb = new StringBuilder();
+      int i = 0;
+      while (i < expressions.size())
+      {
+        String expression = (String)expressions.get(i);
+        if (backReferencePattern.matcher(expression).find() || commentsFlagPattern.matcher(expression).find() ||
+          hasUnterminatedQuote(expression))
+          return null;
+        if (i > 0)
+          sb.append("|");
+        sb.append("(?:").append(expression).append(")");
+        i++;
+      }
+      try
+      {
+        return Pattern.compile(sb.toString());
+      }
+      catch (PatternSyntaxException e)
+      {
+        return null;
+      }
+    }
+
+    /** Check whether an expression starts a \Q quote that it doesn't end.  Backslashes are followed
+    * pairwise, so an escaped backslash followed by Q doesn't count.
+    */
+    protected static boolean hasUnterminatedQuote(String expression)
+    {
+      boolean quoting = false;
+      int i = 0;
+      while (i < expression.length())
+      {
+        char x = expression.charAt(i++);
+        if (x != '\\')
+          continue;
+        if (i == expression.length())
+          // A trailing backslash would escape our closing parenthesis
+          return true;
+        char y = expression.charAt(i++);
+        if (quoting)
+        {
+          if (y == 'E')
+            quoting = false;
+          else
+            // Inside a quote, only \E means anything
+            i--;
+        }
+        else if (y == 'Q')
+          quoting = true;
+      }
+      return quoting;
+    }
+
+    /** Check whether the patterns were combined into one.
+    */
+    public boolean isCombined()
+    {
+      return combinedPattern != null;
+    }
+
+    /** Check if any of the patterns is found in a string.
+    */
+    public boolean find(String value)
+    {
+      if (combinedPattern != null)
+        return combinedPattern.matcher(value).find();
+      return findPattern(value) != null;
+    }
+
+    /** Find the first pattern that is found in a string.
+    *@return the pattern, or null if none is found.
+    */
+    public Pattern findPattern(String value)
+    {
+      int i = 0;
+      while (i < patterns.size())
+      {
+        Pattern p = (Pattern)patterns.get(i++);
+        if (p.matcher(value).find())
+          return p;
+      }
+      return null;
+    }
+  }
+
   /** This class describes the url filtering information (for crawling and indexing) obtained from a digested DocumentSpecification.
   */
   protected static class DocumentURLFilter
   {
     /** The version string */
     protected String versionString;
-    /** The arraylist of include patterns */
-    protected ArrayList includePatterns = new ArrayList();
-    /** The arraylist of exclude patterns */
-    protected ArrayList excludePatterns = new ArrayList();
-    /** The arraylist of index include patterns */
-    protected ArrayList includeIndexPatterns = new ArrayList();
-    /** The arraylist of index exclude patterns */
-    protected ArrayList excludeIndexPatterns = new ArrayList();
+    /** The include patterns */
+    protected PatternSet includePatterns;
+    /** The exclude patterns */
+    protected PatternSet excludePatterns;
+    /** The index include patterns */
+    protected PatternSet includeIndexPatterns;
+    /** The index exclude patterns */
+    protected PatternSet excludeIndexPatterns;
     /** The hash map of seed hosts, to limit urls by, if non-null */
     protected HashMap seedHosts = null;
     
@@ -7322,14 +7702,12 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
 
       versionString = includesIndex + "+" + excludesIndex;
       
-      ArrayList list = stringToArray(includes);
-      compileList(includePatterns,list);
-      list = stringToArray(excludes);
-      compileList(excludePatterns,list);
-      list = stringToArray(includesIndex);
-      compileList(includeIndexPatterns,list);
-      list = stringToArray(excludesIndex);
-      compileList(excludeIndexPatterns,list);
+      includePatterns = new PatternSet(stringToArray(includes));
+      excludePatterns = new PatternSet(stringToArray(excludes));
+      includeIndexPatterns = new PatternSet(stringToArray(includesIndex));
+      excludeIndexPatterns = new PatternSet(stringToArray(excludesIndex));
+      
+      ArrayList list;
       
       if (limitToSeeds)
       {
@@ -7413,16 +7791,7 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
     public boolean isDocumentLegal(String url)
     {
       // First, verify that the url matches one of the patterns in the include list.
-      int i = 0;
-      while (i < includePatterns.size())
-      {
-        Pattern p = (Pattern)includePatterns.get(i);
-        Matcher m = p.matcher(url);
-        if (m.find())
-          break;
-        i++;
-      }
-      if (i == includePatterns.size())
+      if (!includePatterns.find(url))
       {
         if (Logging.connectors.isDebugEnabled())
           Logging.connectors.debug("WEB: Url '"+url+"' is illegal because no include patterns match it");
@@ -7430,18 +7799,11 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
       }
 
       // Now make sure it's not in the exclude list.
-      i = 0;
-      while (i < excludePatterns.size())
+      if (excludePatterns.find(url))
       {
-        Pattern p = (Pattern)excludePatterns.get(i);
-        Matcher m = p.matcher(url);
-        if (m.find())
-        {
-          if (Logging.connectors.isDebugEnabled())
-            Logging.connectors.debug("WEB: Url '"+url+"' is illegal because exclude pattern '"+p.toString()+"' matched it");
-          return false;
-        }
-        i++;
+        if (Logging.connectors.isDebugEnabled())
+          Logging.connectors.debug("WEB: Url '"+url+"' is illegal because exclude pattern '"+excludePatterns.findPattern(url).toString()+"' matched it");
+        return false;
       }
 
       return true;
@@ -7452,16 +7814,7 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
     public boolean isDocumentIndexable(String url)
     {
       // First, verify that the url matches one of the patterns in the include list.
-      int i = 0;
-      while (i < includeIndexPatterns.size())
-      {
-        Pattern p = (Pattern)includeIndexPatterns.get(i);
-        Matcher m = p.matcher(url);
-        if (m.find())
-          break;
-        i++;
-      }
-      if (i == includeIndexPatterns.size())
+      if (!includeIndexPatterns.find(url))
       {
         if (Logging.connectors.isDebugEnabled())
           Logging.connectors.debug("WEB: Url '"+url+"' is not indexable because no include patterns match it");
@@ -7469,18 +7822,11 @@ public class WebcrawlerConnector extends org.apache.manifoldcf.crawler.connector
       }
 
       // Now make sure it's not in the exclude list.
-      i = 0;
-      while (i < excludeIndexPatterns.size())
+      if (excludeIndexPatterns.find(url))
       {
-        Pattern p = (Pattern)excludeIndexPatterns.get(i);
-        Matcher m = p.matcher(url);
-        if (m.find())
-        {
-          if (Logging.connectors.isDebugEnabled())
-            Logging.connectors.debug("WEB: Url '"+url+"' is not indexable because exclude pattern '"+p.toString()+"' matched it");
-          return false;
-        }
-        i++;
+        if (Logging.connectors.isDebugEnabled())
+          Logging.connectors.debug("WEB: Url '"+url+"' is not indexable because exclude pattern '"+excludeIndexPatterns.findPattern(url).toString()+"' matched it");
+        return false;
       }
 
       return true;
@@ -0,0 +1,340 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.webcrawler;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DocumentPrefetcherTest
+{
+
+  @Test
+  public void connectionReleasedForUnparsedContent()
+    throws Exception
+  {
+    // A content type the connector doesn't parse used to leave the connection open for the worker
+    StubConnection connection = new StubConnection(200,"application/pdf");
+    DocumentPrefetcher.PrefetchTask task = makeTask(connection,new HashMap<String,Boolean>());
+    task.run();
+    assertTrue(connection.doneFetchCalled);
+    assertTrue(connection.closed);
+
+    RecordingActivities activities = new RecordingActivities();
+    IThrottledConnection result = task.take(activities);
+    assertEquals(200,result.getResponseCode());
+    assertEquals("application/pdf",result.getResponseHeader("content-type"));
+    assertNull(result.getResponseBodyStream());
+    // The fetch's activity is only recorded once the worker is done with it
+    assertEquals(0,activities.resultCodes.size());
+    result.doneFetch(activities);
+    assertEquals(1,activities.resultCodes.size());
+    assertEquals("200",activities.resultCodes.get(0));
+    result.close();
+  }
+
+  @Test
+  public void errorResponseKeepsStartOfBody()
+    throws Exception
+  {
+    StubConnection connection = new StubConnection(404,"text/html");
+    DocumentPrefetcher.PrefetchTask task = makeTask(connection,new HashMap<String,Boolean>());
+    task.run();
+    assertTrue(connection.closed);
+    IThrottledConnection result = task.take(new RecordingActivities());
+    assertEquals(404,result.getResponseCode());
+    assertEquals("Not",result.getLimitedResponseBody(3,"utf-8"));
+    result.close();
+  }
+
+  @Test
+  public void fetchFailureReachesWorker()
+    throws Exception
+  {
+    StubConnection connection = new StubConnection(200,"text/html");
+    connection.failFetch = true;
+    DocumentPrefetcher.PrefetchTask task = makeTask(connection,new HashMap<String,Boolean>());
+    task.run();
+    assertTrue(connection.closed);
+    RecordingActivities activities = new RecordingActivities();
+    try
+    {
+      task.take(activities);
+      fail("Expected a service interruption");
+    }
+    catch (ServiceInterruption e)
+    {
+    }
+    assertEquals(1,activities.resultCodes.size());
+  }
+
+  @Test
+  public void unstartedFetchIsLeftToWorker()
+    throws Exception
+  {
+    StubConnection connection = new StubConnection(200,"text/html");
+    DocumentPrefetcher.PrefetchTask task = makeTask(connection,new HashMap<String,Boolean>());
+    // Keep any idle fetch thread from starting the fetch before the worker takes it
+    synchronized (task)
+    {
+      assertTrue(DocumentPrefetcher.queue.offer(task));
+      assertNull(task.take(new RecordingActivities()));
+      // It no longer takes up room in the queue
+      assertFalse(DocumentPrefetcher.queue.contains(task));
+    }
+    // A fetch thread that gets to it afterwards does nothing
+    task.run();
+    assertFalse(connection.opened);
+  }
+
+  @Test
+  public void unwantedBodyIsNotSpooled()
+    throws Exception
+  {
+    DocumentPrefetcher prefetcher = new DocumentPrefetcher(Collections.singleton("text/html"));
+    try
+    {
+      StubConnection connection = new StubConnection(200,"application/octet-stream; charset=binary");
+      DocumentPrefetcher.PrefetchTask task = makeTask(connection,prefetcher.contentTypeDecisions);
+      task.run();
+      assertTrue(connection.closed);
+      assertFalse(connection.bodyRead);
+      prefetcher.tasks.put("http://www.example.com/",task);
+
+      CountingChecker checker = new CountingChecker(false);
+      RecordingActivities activities = new RecordingActivities();
+      IThrottledConnection result = prefetcher.takeConnection("http://www.example.com/",activities,checker);
+      assertNotNull(result);
+      assertEquals(200,result.getResponseCode());
+      assertEquals(1,checker.contentTypes.size());
+      assertEquals("application/octet-stream",checker.contentTypes.get(0));
+      result.doneFetch(activities);
+      assertEquals(1,activities.resultCodes.size());
+      result.close();
+
+      // The worker's decision holds for the rest of its fetches
+      assertEquals(Boolean.FALSE,prefetcher.contentTypeDecisions.get("application/octet-stream"));
+      assertEquals(Boolean.TRUE,prefetcher.contentTypeDecisions.get("text/html"));
+    }
+    finally
+    {
+      prefetcher.abandonAll();
+    }
+  }
+
+  @Test
+  public void wantedBodyIsFetchedAgain()
+    throws Exception
+  {
+    DocumentPrefetcher prefetcher = new DocumentPrefetcher(Collections.singleton("text/html"));
+    try
+    {
+      StubConnection connection = new StubConnection(200,"application/pdf");
+      DocumentPrefetcher.PrefetchTask task = makeTask(connection,prefetcher.contentTypeDecisions);
+      task.run();
+      assertFalse(connection.bodyRead);
+      prefetcher.tasks.put("http://www.example.com/",task);
+
+      // The worker wants it, so it has to do the fetch, but the first fetch is still on the record
+      RecordingActivities activities = new RecordingActivities();
+      assertNull(prefetcher.takeConnection("http://www.example.com/",activities,new CountingChecker(true)));
+      assertEquals(1,activities.resultCodes.size());
+      assertEquals(Boolean.TRUE,prefetcher.contentTypeDecisions.get("application/pdf"));
+    }
+    finally
+    {
+      prefetcher.abandonAll();
+    }
+  }
+
+  @Test
+  public void fetchThreadsRunQueuedFetches()
+    throws Exception
+  {
+    DocumentPrefetcher prefetcher = new DocumentPrefetcher(Collections.singleton("text/html"));
+    try
+    {
+      StubConnection connection = new StubConnection(404,"text/html");
+      DocumentPrefetcher.PrefetchTask task = makeTask(connection,prefetcher.contentTypeDecisions);
+      assertTrue(prefetcher.queueTask("http://www.example.com/",task));
+      waitForStart(task);
+      IThrottledConnection result = prefetcher.takeConnection("http://www.example.com/",new RecordingActivities(),
+        new CountingChecker(true));
+      assertNotNull(result);
+      assertEquals(404,result.getResponseCode());
+      result.close();
+      // Taken already
+      assertNull(prefetcher.takeConnection("http://www.example.com/",new RecordingActivities(),new CountingChecker(true)));
+    }
+    finally
+    {
+      prefetcher.abandonAll();
+    }
+  }
+
+  protected static void waitForStart(DocumentPrefetcher.PrefetchTask task)
+    throws Exception
+  {
+    long deadline = System.currentTimeMillis() + 30000L;
+    while (true)
+    {
+      synchronized (task)
+      {
+        if (task.started)
+          return;
+      }
+      if (System.currentTimeMillis() >= deadline)
+        fail("Fetch was never started");
+      Thread.sleep(10L);
+    }
+  }
+
+  protected static DocumentPrefetcher.PrefetchTask makeTask(final StubConnection connection,
+    Map<String,Boolean> contentTypeDecisions)
+  {
+    return new DocumentPrefetcher.PrefetchTask("http","127.0.0.1",80,null,null,null,new String[]{"www.example.com"},10,
+      null,-1,null,null,null,"/","Bot",null,1000,1000,"www.example.com",null,null,contentTypeDecisions)
+      {
+        protected IThrottledConnection openConnection()
+          throws ManifoldCFException
+        {
+          connection.opened = true;
+          return connection;
+        }
+      };
+  }
+
+  /** A connection that answers every fetch the same way, without a response body to stream */
+  protected static class StubConnection implements IThrottledConnection
+  {
+    protected final int responseCode;
+    protected final Map<String,List<String>> headers = new HashMap<String,List<String>>();
+    public boolean failFetch = false;
+    public boolean opened = false;
+    public boolean bodyRead = false;
+    public boolean doneFetchCalled = false;
+    public boolean closed = false;
+
+    public StubConnection(int responseCode, String contentType)
+    {
+      this.responseCode = responseCode;
+      List<String> values = new ArrayList<String>();
+      values.add(contentType);
+      headers.put("Content-Type",values);
+    }
+
+    public void beginFetch(String fetchType)
+    {
+    }
+
+    public void executeFetch(String urlPath, String userAgent, String from, int connectionTimeoutMilliseconds,
+      int socketTimeoutMilliseconds, boolean redirectOK, String host, FormData formData,
+      LoginCookies loginCookies, String lastETag, String lastModified)
+      throws ServiceInterruption
+    {
+      if (failFetch)
+        throw new ServiceInterruption("Connection refused",0L);
+    }
+
+    public int getResponseCode()
+    {
+      return responseCode;
+    }
+
+    public LoginCookies getLastFetchCookies()
+    {
+      return null;
+    }
+
+    public Map<String,List<String>> getResponseHeaders()
+    {
+      return headers;
+    }
+
+    public String getResponseHeader(String headerName)
+    {
+      List<String> values = headers.get(headerName);
+      return (values == null)?null:values.get(0);
+    }
+
+    public InputStream getResponseBodyStream()
+    {
+      bodyRead = true;
+      return null;
+    }
+
+    public String getLimitedResponseBody(int maxSize, String encoding)
+    {
+      String body = "Not found";
+      return (body.length() > maxSize)?body.substring(0,maxSize):body;
+    }
+
+    public void noteInterrupted(Throwable e)
+    {
+    }
+
+    public void doneFetch(IHistoryActivity activities)
+      throws ManifoldCFException
+    {
+      doneFetchCalled = true;
+      activities.recordActivity(null,WebcrawlerConnector.ACTIVITY_FETCH,null,"http://www.example.com/",
+        failFetch?"-103":Integer.toString(responseCode),null,null);
+    }
+
+    public void close()
+    {
+      closed = true;
+    }
+  }
+
+  /** A worker's content type decision, which keeps track of what it was asked */
+  protected static class CountingChecker implements DocumentPrefetcher.IContentTypeChecker
+  {
+    protected final boolean wanted;
+    public final List<String> contentTypes = new ArrayList<String>();
+
+    public CountingChecker(boolean wanted)
+    {
+      this.wanted = wanted;
+    }
+
+    public boolean isContentTypeWanted(String contentType)
+    {
+      contentTypes.add(contentType);
+      return wanted;
+    }
+  }
+
+  /** Activities that keep the result codes recorded against them */
+  protected static class RecordingActivities implements IHistoryActivity
+  {
+    public final List<String> resultCodes = new ArrayList<String>();
+
+    public void recordActivity(Long startTime, String activityType, Long dataSize,
+      String entityIdentifier, String resultCode, String resultDescription, String[] childIdentifiers)
+    {
+      resultCodes.add(resultCode);
+    }
+  }
+
+}
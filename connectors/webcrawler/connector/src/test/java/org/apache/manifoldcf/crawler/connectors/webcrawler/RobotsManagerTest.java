@@ -0,0 +1,151 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.webcrawler;
+
+import java.io.*;
+import java.lang.reflect.*;
+import org.apache.manifoldcf.crawler.interfaces.IVersionActivity;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class RobotsManagerTest
+{
+
+  @Test
+  public void allowOverridesDisallow()
+    throws Exception
+  {
+    RobotsManager.RobotsData rd = parse(
+      "User-agent: *\n"+
+      "Disallow: /private\n"+
+      "Allow: /private/public\n"+
+      "Disallow: /private/public/secret\n");
+    assertFalse(rd.isFetchAllowed("Bot","/private"));
+    assertFalse(rd.isFetchAllowed("Bot","/private/index.html"));
+    assertTrue(rd.isFetchAllowed("Bot","/private/public"));
+    assertTrue(rd.isFetchAllowed("Bot","/private/public/index.html"));
+    // An allow wins even over a longer disallow
+    assertTrue(rd.isFetchAllowed("Bot","/private/public/secret"));
+    assertTrue(rd.isFetchAllowed("Bot","/other"));
+  }
+
+  @Test
+  public void wildcards()
+    throws Exception
+  {
+    RobotsManager.RobotsData rd = parse(
+      "User-agent: *\n"+
+      "Disallow: /*.gif\n"+
+      "Disallow: /docs/*/draft\n"+
+      "Allow: /docs/*/draft/ok\n");
+    assertFalse(rd.isFetchAllowed("Bot","/a.gif"));
+    assertFalse(rd.isFetchAllowed("Bot","/images/b.gif?size=1"));
+    assertTrue(rd.isFetchAllowed("Bot","/images/b.png"));
+    assertFalse(rd.isFetchAllowed("Bot","/docs/one/draft"));
+    assertFalse(rd.isFetchAllowed("Bot","/docs/one/two/draft/x"));
+    assertTrue(rd.isFetchAllowed("Bot","/docs/draft"));
+    assertTrue(rd.isFetchAllowed("Bot","/docs/one/draft/ok"));
+  }
+
+  @Test
+  public void endAnchors()
+    throws Exception
+  {
+    RobotsManager.RobotsData rd = parse(
+      "User-agent: *\n"+
+      "Disallow: /page$\n"+
+      "Disallow: /*.php$\n"+
+      "Allow: /dir/$\n"+
+      "Disallow: /dir/\n");
+    assertFalse(rd.isFetchAllowed("Bot","/page"));
+    assertTrue(rd.isFetchAllowed("Bot","/page.html"));
+    assertTrue(rd.isFetchAllowed("Bot","/pag"));
+    assertFalse(rd.isFetchAllowed("Bot","/x/index.php"));
+    assertTrue(rd.isFetchAllowed("Bot","/x/index.php?id=1"));
+    assertTrue(rd.isFetchAllowed("Bot","/dir/"));
+    assertFalse(rd.isFetchAllowed("Bot","/dir/file"));
+  }
+
+  @Test
+  public void emptyDisallowAllowsEverything()
+    throws Exception
+  {
+    RobotsManager.RobotsData rd = parse(
+      "User-agent: Bot\n"+
+      "Disallow:\n"+
+      "\n"+
+      "User-agent: *\n"+
+      "Disallow: /\n");
+    assertTrue(rd.isFetchAllowed("Bot","/"));
+    assertTrue(rd.isFetchAllowed("Bot","/anything/at/all"));
+    assertFalse(rd.isFetchAllowed("Other","/anything/at/all"));
+  }
+
+  @Test
+  public void userAgentFallback()
+    throws Exception
+  {
+    RobotsManager.RobotsData rd = parse(
+      "User-agent: FirstBot\n"+
+      "Disallow: /first\n"+
+      "\n"+
+      "User-agent: *\n"+
+      "Disallow: /everyone\n"+
+      "\n"+
+      "User-agent: bot\n"+
+      "Disallow: /bot\n");
+    // Matched by substring, case-insensitively, and the first matching record wins
+    assertFalse(rd.isFetchAllowed("MyFirstBot/1.0","/first"));
+    assertTrue(rd.isFetchAllowed("MyFirstBot/1.0","/everyone"));
+    assertTrue(rd.isFetchAllowed("MyFirstBot/1.0","/bot"));
+    assertFalse(rd.isFetchAllowed("OtherBot","/bot"));
+    assertTrue(rd.isFetchAllowed("OtherBot","/everyone"));
+    // No named record applies, so the "*" record does
+    assertFalse(rd.isFetchAllowed("Crawler","/everyone"));
+    assertTrue(rd.isFetchAllowed("Crawler","/first"));
+
+    // With no "*" record, an agent nothing matches may fetch anything
+    rd = parse(
+      "User-agent: FirstBot\n"+
+      "Disallow: /\n");
+    assertTrue(rd.isFetchAllowed("Crawler","/first"));
+  }
+
+  protected static RobotsManager.RobotsData parse(String robotsTxt)
+    throws Exception
+  {
+    return new RobotsManager.RobotsData(new ByteArrayInputStream(robotsTxt.getBytes("utf-8")),Long.MAX_VALUE,
+      "www.example.com",makeActivities());
+  }
+
+  /** Activities that ignore everything; parsing only records its outcome. */
+  protected static IVersionActivity makeActivities()
+  {
+    return (IVersionActivity)Proxy.newProxyInstance(IVersionActivity.class.getClassLoader(),
+      new Class[]{IVersionActivity.class},
+      new InvocationHandler()
+      {
+        public Object invoke(Object proxy, Method method, Object[] args)
+        {
+          return null;
+        }
+      });
+  }
+
+}
@@ -0,0 +1,183 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.webcrawler.tests;
+
+import org.apache.manifoldcf.crawler.connectors.webcrawler.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class DNSCacheTest
+{
+
+  protected StandInResolver resolver;
+
+  @Before
+  public void setUp()
+  {
+    resolver = new StandInResolver();
+    DNSCache.setResolver(resolver);
+  }
+
+  @After
+  public void tearDown()
+  {
+    // Let any prefetch threads still waiting go
+    resolver.unblock();
+  }
+
+  @Test
+  public void knownHost()
+    throws Exception
+  {
+    long currentTime = System.currentTimeMillis();
+    assertNull(DNSCache.getCached("www.example.com",currentTime));
+    DNSManager.DNSInfo info = DNSCache.resolve("www.example.com",currentTime);
+    assertEquals("10.0.0.1",info.getIPAddress());
+    assertEquals("server.example.com",info.getFQDN());
+    assertSame(info,DNSCache.resolve("www.example.com",currentTime));
+    assertEquals(1,resolver.getCount("www.example.com"));
+  }
+
+  @Test
+  public void unknownHostIsCached()
+    throws Exception
+  {
+    long currentTime = System.currentTimeMillis();
+    DNSManager.DNSInfo info = DNSCache.resolve("nowhere.example.com",currentTime);
+    assertNull(info.getIPAddress());
+    assertTrue(info.getExpirationTime() <= System.currentTimeMillis() + DNSCache.UNKNOWN_HOST_EXPIRATION);
+    assertNull(DNSCache.resolve("nowhere.example.com",currentTime).getIPAddress());
+    assertEquals(1,resolver.getCount("nowhere.example.com"));
+    // Expired entries are resolved again
+    DNSCache.resolve("nowhere.example.com",info.getExpirationTime());
+    assertEquals(2,resolver.getCount("nowhere.example.com"));
+  }
+
+  @Test
+  public void prefetchedHost()
+    throws Exception
+  {
+    resolver.block();
+    DNSCache.prefetch("www.example.com");
+    DNSCache.prefetch("www.example.com");
+    resolver.unblock();
+    // Either waits for the prefetch or finds its result
+    DNSManager.DNSInfo info = DNSCache.resolve("www.example.com",System.currentTimeMillis());
+    assertEquals("10.0.0.1",info.getIPAddress());
+    assertEquals(1,resolver.getCount("www.example.com"));
+  }
+
+  @Test(timeout=30000L)
+  public void queuedPrefetchRunsInWorker()
+    throws Exception
+  {
+    resolver.blockSlowHosts();
+    // Keep every prefetch thread busy, with more waiting behind
+    int i = 0;
+    while (i < 20)
+    {
+      DNSCache.prefetch("slow"+(i++)+".example.com");
+    }
+    DNSCache.prefetch("www.example.com");
+    // Must not wait for the prefetch threads to get to it
+    DNSManager.DNSInfo info = DNSCache.resolve("www.example.com",System.currentTimeMillis());
+    assertEquals("10.0.0.1",info.getIPAddress());
+    assertEquals(1,resolver.getCount("www.example.com"));
+  }
+
+  @Test(timeout=30000L)
+  public void setResolverDropsPrefetches()
+    throws Exception
+  {
+    StandInResolver oldResolver = resolver;
+    oldResolver.block();
+    try
+    {
+      DNSCache.prefetch("www.example.com");
+      resolver = new StandInResolver();
+      DNSCache.setResolver(resolver);
+      // Must not wait for the old resolver
+      DNSManager.DNSInfo info = DNSCache.resolve("www.example.com",System.currentTimeMillis());
+      assertEquals("10.0.0.1",info.getIPAddress());
+      assertEquals(1,resolver.getCount("www.example.com"));
+    }
+    finally
+    {
+      oldResolver.unblock();
+    }
+  }
+
+  @Test
+  public void pendingWrites()
+    throws Exception
+  {
+    long currentTime = System.currentTimeMillis();
+    DNSCache.resolve("www.example.com",currentTime);
+    DNSCache.resolve("nowhere.example.com",currentTime);
+    assertNull(DNSCache.takePendingWrites(3,60000L));
+    List<DNSManager.DNSInfo> list = DNSCache.takePendingWrites(2,60000L);
+    assertEquals(2,list.size());
+    assertNull(DNSCache.takePendingWrites(1,0L));
+  }
+
+  /** Resolves names under example.com, except those starting with "nowhere" */
+  protected static class StandInResolver implements IDNSResolver
+  {
+    protected final Map<String,Integer> counts = new HashMap<String,Integer>();
+    protected boolean blocked = false;
+    protected boolean slowHostsBlocked = false;
+
+    public synchronized String[] resolve(String hostName)
+      throws InterruptedException
+    {
+      while (blocked || (slowHostsBlocked && hostName.startsWith("slow")))
+        wait();
+      Integer count = counts.get(hostName);
+      counts.put(hostName,new Integer((count == null)?1:count.intValue()+1));
+      if (hostName.startsWith("nowhere"))
+        return null;
+      return new String[]{"10.0.0.1","server.example.com"};
+    }
+
+    public synchronized int getCount(String hostName)
+    {
+      Integer count = counts.get(hostName);
+      return (count == null)?0:count.intValue();
+    }
+
+    public synchronized void block()
+    {
+      blocked = true;
+    }
+
+    public synchronized void blockSlowHosts()
+    {
+      slowHostsBlocked = true;
+    }
+
+    public synchronized void unblock()
+    {
+      blocked = false;
+      slowHostsBlocked = false;
+      notifyAll();
+    }
+  }
+
+}
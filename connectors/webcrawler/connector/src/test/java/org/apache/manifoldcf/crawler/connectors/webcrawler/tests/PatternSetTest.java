@@ -0,0 +1,134 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.connectors.webcrawler.tests;
+
+import org.apache.manifoldcf.crawler.connectors.webcrawler.WebcrawlerConnector;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PatternSetTest
+{
+
+  @Test
+  public void alternation()
+    throws Exception
+  {
+    WebcrawlerConnector.PatternSet set = makeSet(new String[]{"^http://foo\\.com/","\\.pdf$","/private/"});
+    assertTrue(set.isCombined());
+    assertTrue(set.find("http://foo.com/index.html"));
+    assertTrue(set.find("http://bar.com/doc.pdf"));
+    assertTrue(set.find("http://bar.com/private/index.html"));
+    assertFalse(set.find("http://bar.com/index.html"));
+    assertFalse(set.find("http://bar.com/doc.pdf.html"));
+  }
+
+  @Test
+  public void alternationKeepsAnchorsPerExpression()
+    throws Exception
+  {
+    // Each expression is grouped, so an anchor applies to its own expression only
+    WebcrawlerConnector.PatternSet set = makeSet(new String[]{"^a","b$"});
+    assertTrue(set.isCombined());
+    assertTrue(set.find("axx"));
+    assertTrue(set.find("xxb"));
+    assertFalse(set.find("xax"));
+    assertFalse(set.find("xbx"));
+  }
+
+  @Test
+  public void backReferenceFallback()
+    throws Exception
+  {
+    // Combined, the back reference would point at the first expression's group
+    WebcrawlerConnector.PatternSet set = makeSet(new String[]{"(x)y","(a)\\1"});
+    assertFalse(set.isCombined());
+    assertTrue(set.find("baab"));
+    assertTrue(set.find("xy"));
+    assertFalse(set.find("abxa"));
+  }
+
+  @Test
+  public void unterminatedQuoteFallback()
+    throws Exception
+  {
+    // Combined, the quote would swallow the second expression
+    WebcrawlerConnector.PatternSet set = makeSet(new String[]{"a\\Q.b","c"});
+    assertFalse(set.isCombined());
+    assertTrue(set.find("xa.bx"));
+    assertFalse(set.find("xaxbx"));
+    assertTrue(set.find("c"));
+
+    // Terminated quotes, and escaped backslashes before a Q, combine fine
+    set = makeSet(new String[]{"a\\Q.\\Eb","\\\\Q","c"});
+    assertTrue(set.isCombined());
+    assertTrue(set.find("a.b"));
+    assertFalse(set.find("axb"));
+    assertTrue(set.find("\\Q"));
+    assertTrue(set.find("c"));
+  }
+
+  @Test
+  public void commentsFallback()
+    throws Exception
+  {
+    // Combined, the comment would swallow the closing parenthesis
+    WebcrawlerConnector.PatternSet set = makeSet(new String[]{"(?x)a b # comment","c"});
+    assertFalse(set.isCombined());
+    assertTrue(set.find("ab"));
+    assertTrue(set.find("c"));
+    assertFalse(set.find("a b"));
+  }
+
+  @Test
+  public void findPatternReturnsFirstMatch()
+    throws Exception
+  {
+    WebcrawlerConnector.PatternSet set = makeSet(new String[]{"foo","bar","o"});
+    assertEquals("bar",set.findPattern("xbarx").pattern());
+    assertEquals("foo",set.findPattern("foobar").pattern());
+    assertNull(set.findPattern("xyz"));
+  }
+
+  @Test
+  public void smallSets()
+    throws Exception
+  {
+    WebcrawlerConnector.PatternSet set = makeSet(new String[0]);
+    assertFalse(set.isCombined());
+    assertFalse(set.find("anything"));
+
+    set = makeSet(new String[]{".*"});
+    assertFalse(set.isCombined());
+    assertTrue(set.find(""));
+  }
+
+  protected static WebcrawlerConnector.PatternSet makeSet(String[] expressions)
+    throws Exception
+  {
+    ArrayList list = new ArrayList();
+    int i = 0;
+    while (i < expressions.length)
+    {
+      list.add(expressions[i++]);
+    }
+    return new WebcrawlerConnector.PatternSet(list);
+  }
+
+}
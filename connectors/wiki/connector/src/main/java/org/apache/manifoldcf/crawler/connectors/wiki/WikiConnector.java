@@ -106,6 +106,9 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   protected ClientConnectionManager connectionManager = null;
 
   protected HttpClient httpClient = null;
+
+  /** The start time of the seeding pass that getConnectorModel() said would use the recent changes, or null */
+  protected Long incrementalStartTime = null;
   
   /** Constructor.
   */
@@ -687,6 +690,50 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     super.disconnect();
   }
 
+  /** Tell the world what model this connector uses for addSeedDocuments().
+  * Unless a specific seeding pass can use the recent changes, all pages are listed.
+  *@return the model type value.
+  */
+  @Override
+  public int getConnectorModel()
+  {
+    return MODEL_ALL;
+  }
+
+  /** Tell the framework what model a specific seeding pass will use.
+  * A pass can seed only the pages the recent changes list as added or changed, provided the wiki still has
+  * all the changes since the start time, and no page has been deleted since then.  Deleted pages are not
+  * listed by page id, so any other pass lists all pages, and pages that are no longer listed are removed.
+  *@param jobID is the identifier of the job being seeded.
+  *@param spec is the document specification of the job.
+  *@param startTime is the seeding start time that will be passed to addSeedDocuments().
+  *@param jobMode is an integer describing how the job is being run, whether continuous or once-only.
+  *@return the model type value.
+  */
+  @Override
+  public int getConnectorModel(Long jobID, DocumentSpecification spec, long startTime, int jobMode)
+    throws ManifoldCFException
+  {
+    incrementalStartTime = null;
+    if (startTime > 0L)
+    {
+      try
+      {
+        if (recentChangesReachBack(startTime) && !pagesDeletedSince(startTime))
+        {
+          incrementalStartTime = new Long(startTime);
+          return MODEL_ADD_CHANGE;
+        }
+      }
+      catch (ServiceInterruption e)
+      {
+        // Seeding will run into the same problem, and report it; until then, assume a full listing
+        Logging.connectors.debug("Wiki: Could not check recent changes: "+e.getMessage());
+      }
+    }
+    return MODEL_ALL;
+  }
+
   /** Get the maximum number of documents to amalgamate together into one batch, for this connector.
   *@return the maximum number. 0 indicates "unlimited".
   */
@@ -726,6 +773,10 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     long startTime, long endTime)
     throws ManifoldCFException, ServiceInterruption
   {
+    // Only use the recent changes if the framework was told this pass would
+    boolean incremental = incrementalStartTime != null && incrementalStartTime.longValue() == startTime;
+    incrementalStartTime = null;
+
     // Scan specification nodes and extract prefixes and namespaces
     boolean seenAny = false;
     for (int i = 0 ; i < spec.getChildCount() ; i++)
@@ -735,12 +786,20 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       {
         String namespace = sn.getAttributeValue(WikiConfig.ATTR_NAMESPACE);
         String titleprefix = sn.getAttributeValue(WikiConfig.ATTR_TITLEPREFIX);
-        listAllPages(activities,namespace,titleprefix,startTime,endTime);
+        if (incremental)
+          listRecentChanges(activities,namespace,titleprefix,startTime,endTime);
+        else
+          listAllPages(activities,namespace,titleprefix,startTime,endTime);
         seenAny = true;
       }
     }
     if (!seenAny)
-      listAllPages(activities,null,null,startTime,endTime);
+    {
+      if (incremental)
+        listRecentChanges(activities,null,null,startTime,endTime);
+      else
+        listAllPages(activities,null,null,startTime,endTime);
+    }
   }
 
   /** Get document versions given an array of document identifiers.
@@ -798,15 +857,24 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
 
     Map<String,String> urls = new HashMap<String,String>();
     getDocURLs(documentIdentifiers,urls);
+    List<String> fetchIdentifiers = new ArrayList<String>();
+    List<String> fetchVersions = new ArrayList<String>();
+    List<String> fetchURLs = new ArrayList<String>();
     for (int i = 0 ; i < documentIdentifiers.length ; i++)
     {
       if (!scanOnly[i])
       {
         String url = urls.get(documentIdentifiers[i]);
         if (url != null)
-          getDocInfo(documentIdentifiers[i], versions[i], url, activities, acls);
+        {
+          fetchIdentifiers.add(documentIdentifiers[i]);
+          fetchVersions.add(versions[i]);
+          fetchURLs.add(url);
+        }
       }
     }
+    if (fetchIdentifiers.size() > 0)
+      getDocInfos(fetchIdentifiers.toArray(new String[0]),fetchVersions.toArray(new String[0]),fetchURLs.toArray(new String[0]),activities,acls);
   }
 
   /**
@@ -2445,26 +2513,109 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     }
   }
 
-  // -- Methods and classes to perform a "get doc urls" operation. --
-  
-  protected void getDocURLs(String[] documentIdentifiers, Map<String,String> urls)
+  // -- Methods and classes to perform a "list recent changes" operation. --
+
+  /** Find out whether the wiki's recent changes still go back as far as a given time.  MediaWiki only keeps
+  * recent changes for a limited period, so changes older than that can only be found by listing all pages.
+  *@param startTime is the time the recent changes would need to start at.
+  *@return true if the recent changes cover everything since that time.
+  */
+  protected boolean recentChangesReachBack(long startTime)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    getSession();
+    ReturnString oldestTimestamp = new ReturnString();
+    executeListRecentChangesViaThread(getOldestRecentChangeURL(),"recentchanges","rc",null,null,oldestTimestamp,null);
+    if (oldestTimestamp.returnValue == null)
+      return false;
+    Long oldestTime = parseTimestamp(oldestTimestamp.returnValue);
+    return oldestTime != null && oldestTime.longValue() <= startTime;
+  }
+
+  /** Find out whether any page has been deleted since a given time, according to the wiki's deletion log.
+  *@param startTime is the time to look from.
+  *@return true if there has been a deletion since then.
+  */
+  protected boolean pagesDeletedSince(long startTime)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    getSession();
+    ReturnString firstDeletion = new ReturnString();
+    executeListRecentChangesViaThread(getFirstDeletionURL(startTime),"logevents","item",null,null,firstDeletion,null);
+    return firstDeletion.returnValue != null;
+  }
+
+  /** Perform a series of listRecentChanges() operations, so that we obtain all the pages added or changed within a time range even
+  * though we're limited to 500 of them per request.
+  */
+  protected void listRecentChanges(ISeedingActivity activities, String namespace, String prefix, long startTime, long endTime)
     throws ManifoldCFException, ServiceInterruption
   {
     getSession();
+    String[] continuation = null;
+    while (true)
+    {
+      activities.checkJobStillActive();
+
+      String[] newContinuation = new String[2];
+      executeListRecentChangesViaThread(getListRecentChangesURL(namespace,startTime,endTime,continuation),"recentchanges","rc",
+        prefix,activities,null,newContinuation);
+      if (newContinuation[0] == null)
+        break;
+      continuation = newContinuation;
+    }
+  }
+
+  /** Execute a listRecentChanges() operation via a thread.  The deletion log is listed in the same form, so it is read the
+  * same way.
+  *@param listName is the name of the list in the response.
+  *@param itemName is the name of each entry in the list.
+  *@param activities receives the pages found as seeds, or is null if the pages are not wanted.
+  *@param firstTimestamp receives the timestamp of the first change listed, or is null.
+  *@param continuation receives the name and value of the parameter to continue the listing with, or is null.
+  */
+  protected void executeListRecentChangesViaThread(String url, String listName, String itemName, String prefix, ISeedingActivity activities,
+    ReturnString firstTimestamp, String[] continuation)
+    throws ManifoldCFException, ServiceInterruption
+  {
     boolean loginAttempted = false;
     while (true)
     {
       try
       {
-	HttpRequestBase executeMethod = getInitializedGetMethod(getGetDocURLsURL(documentIdentifiers));
-        ExecuteGetDocURLsThread t = new ExecuteGetDocURLsThread(httpClient,executeMethod,urls);
+	HttpRequestBase executeMethod = getInitializedGetMethod(url);
+        PageBuffer pageBuffer = (activities == null)?null:new PageBuffer();
+        ExecuteListRecentChangesThread t = new ExecuteListRecentChangesThread(httpClient,executeMethod,listName,itemName,pageBuffer,prefix);
         try
         {
           t.start();
+
+          if (pageBuffer != null)
+          {
+            // Pick up the pages, and add them to the activities, before we join with the child thread.
+            while (true)
+            {
+              String pageID = pageBuffer.fetch();
+              if (pageID == null)
+                break;
+              activities.addSeedDocument(pageID);
+            }
+          }
+
           t.join();
           handleException(t.getException());
           if (loginAttempted || !t.isLoginRequired())
+          {
+            if (firstTimestamp != null)
+              firstTimestamp.returnValue = t.getFirstTimestamp();
+            if (continuation != null)
+            {
+              String[] threadContinuation = t.getContinuation();
+              continuation[0] = threadContinuation[0];
+              continuation[1] = threadContinuation[1];
+            }
             return;
+          }
         }
         catch (ManifoldCFException e)
         {
@@ -2492,6 +2643,12 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
           // We need the caller to abandon any connections left around, so rethrow in a way that forces them to process the event properly.
           throw e;
         }
+        finally
+        {
+          // Make SURE buffer is dead, otherwise child thread may well hang waiting on it
+          if (pageBuffer != null)
+            pageBuffer.abandon();
+        }
       }
       catch (InterruptedException e)
       {
@@ -2504,17 +2661,17 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       catch (java.net.SocketTimeoutException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("URL fetch timed out reading from the Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("ListRecentChanges timed out reading from the Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (java.net.SocketException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("URL fetch received a socket error reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("ListRecentChanges received a socket error reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (ConnectTimeoutException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("URL fetch connection timed out reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("ListRecentChanges connection timed out reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (InterruptedIOException e)
       {
@@ -2522,34 +2679,71 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       }
       catch (IOException e)
       {
-        throw new ManifoldCFException("URL fetch had an IO failure: "+e.getMessage(),e);
+        throw new ManifoldCFException("ListRecentChanges had an IO failure: "+e.getMessage(),e);
       }
       catch (HttpException e)
       {
-	throw new ManifoldCFException("URL fetch had an HTTP exception: "+e.getMessage(),e);
+	throw new ManifoldCFException("ListRecentChanges had an HTTP exception: "+e.getMessage(),e);
       }
-      
+
       if (!loginToAPI())
         break;
       loginAttempted = true;
+      // Back around...
     }
   }
-  
-  /** Create a URL to obtain multiple page's urls, given the page IDs.
+
+  /** Create a URL to obtain the oldest recent change the wiki still has.
   */
-  protected String getGetDocURLsURL(String[] documentIdentifiers)
+  protected String getOldestRecentChangeURL()
+  {
+    return baseURL + "action=query&list=recentchanges&rcdir=newer&rcprop=timestamp&rclimit=1";
+  }
+
+  /** Create a URL to obtain the first deletion since a given time.
+  */
+  protected String getFirstDeletionURL(long startTime)
     throws ManifoldCFException
   {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0 ; i < documentIdentifiers.length ; i++)
+    try
     {
-      if (i > 0)
-        sb.append("|");
-      sb.append(documentIdentifiers[i]);
+      return baseURL + "action=query&list=logevents&letype=delete&ledir=newer" +
+        "&lestart="+URLEncoder.encode(formatTimestamp(startTime),"utf-8") +
+        "&leprop=timestamp&lelimit=1";
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      throw new ManifoldCFException(e.getMessage(),e);
+    }
+  }
+
+  /** Create a URL to obtain the next 500 pages added or changed within a time range.
+  * Deleted pages have no page id in the recent changes, so they are skipped.
+  */
+  protected String getListRecentChangesURL(String namespace, long startTime, long endTime, String[] continuation)
+    throws ManifoldCFException
+  {
+    // Older wikis continue by moving the start of the range forward; newer ones pass an opaque token
+    String rcstart = formatTimestamp(startTime);
+    String rccontinue = null;
+    if (continuation != null)
+    {
+      if (continuation[0].equals("rcstart"))
+        rcstart = continuation[1];
+      else
+        rccontinue = continuation[1];
     }
     try
     {
-      return baseURL + "action=query&prop=info&pageids="+URLEncoder.encode(sb.toString(),"utf-8")+"&inprop=url";
+      // With no namespace, listing all pages only lists the main namespace, so do the same here
+      return baseURL + "action=query&list=recentchanges&rcdir=newer" +
+        "&rcstart="+URLEncoder.encode(rcstart,"utf-8") +
+        "&rcend="+URLEncoder.encode(formatTimestamp(endTime),"utf-8") +
+        "&rcnamespace="+((namespace != null)?URLEncoder.encode(namespace,"utf-8"):"0") +
+        "&rctype="+URLEncoder.encode("edit|new|log","utf-8") +
+        "&rcprop="+URLEncoder.encode("ids|title|timestamp","utf-8") +
+        ((rccontinue!=null)?"&rccontinue="+URLEncoder.encode(rccontinue,"utf-8"):"") +
+        "&rclimit=500";
     }
     catch (UnsupportedEncodingException e)
     {
@@ -2557,22 +2751,56 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     }
   }
 
-  /** Thread to execute a "get timestamp" operation.  This thread both executes the operation and parses the result. */
-  protected static class ExecuteGetDocURLsThread extends Thread
+  /** Format a time as a MediaWiki API timestamp. */
+  protected static String formatTimestamp(long time)
+  {
+    java.text.SimpleDateFormat format = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'",Locale.ROOT);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format.format(new Date(time));
+  }
+
+  /** Parse a MediaWiki API timestamp.
+  *@return the time, or null if the timestamp could not be parsed.
+  */
+  protected static Long parseTimestamp(String timestamp)
+  {
+    java.text.SimpleDateFormat format = new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'",Locale.ROOT);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    try
+    {
+      return new Long(format.parse(timestamp).getTime());
+    }
+    catch (java.text.ParseException e)
+    {
+      return null;
+    }
+  }
+
+  /** Thread to execute a list recent changes operation */
+  protected static class ExecuteListRecentChangesThread extends Thread
   {
     protected HttpClient client;
     protected HttpRequestBase executeMethod;
     protected Throwable exception = null;
-    protected Map<String,String> urls;
+    protected String listName;
+    protected String itemName;
+    protected PageBuffer pageBuffer;
+    protected String prefix;
+    protected String firstTimestamp = null;
+    protected String[] continuation = new String[2];
     protected boolean loginNeeded = false;
 
-    public ExecuteGetDocURLsThread(HttpClient client, HttpRequestBase executeMethod, Map<String,String> urls)
+    public ExecuteListRecentChangesThread(HttpClient client, HttpRequestBase executeMethod, String listName, String itemName,
+      PageBuffer pageBuffer, String prefix)
     {
       super();
       setDaemon(true);
       this.client = client;
       this.executeMethod = executeMethod;
-      this.urls = urls;
+      this.listName = listName;
+      this.itemName = itemName;
+      this.pageBuffer = pageBuffer;
+      this.prefix = prefix;
     }
 
     public void run()
@@ -2587,7 +2815,9 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
         InputStream is = rval.getEntity().getContent();
         try
         {
-          loginNeeded = parseGetDocURLsResponse(is,urls);
+          ReturnString returnString = new ReturnString();
+          loginNeeded = parseListRecentChangesResponse(is,listName,itemName,pageBuffer,prefix,returnString,continuation);
+          firstTimestamp = returnString.returnValue;
         }
         finally
         {
@@ -2607,6 +2837,8 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       }
       finally
       {
+        if (pageBuffer != null)
+          pageBuffer.signalDone();
 	executeMethod.abort();
       }
     }
@@ -2616,33 +2848,54 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       return exception;
     }
 
+    public String getFirstTimestamp()
+    {
+      return firstTimestamp;
+    }
+
+    public String[] getContinuation()
+    {
+      return continuation;
+    }
+
     public boolean isLoginRequired()
     {
       return loginNeeded;
     }
   }
 
-  /** This method parses a response like the following:
+  /** Parse recent changes output, e.g.:
   * <api>
   *   <query>
-  *     <pages>
-  *       <page pageid="27697087" ns="0" title="API" fullurl="..."/>
-  *     </pages>
+  *     <recentchanges>
+  *       <rc type="edit" ns="0" title="Kre-O" rcid="461250187" pageid="30955295" revid="449003419" old_revid="448904446" timestamp="2011-09-06T12:20:20Z" />
+  *       <rc type="log" ns="0" title="Kre Mbaye" rcid="461250190" pageid="0" revid="0" old_revid="0" timestamp="2011-09-06T12:21:07Z" />
+  *     </recentchanges>
   *   </query>
+  *   <query-continue>
+  *     <recentchanges rcstart="2011-09-06T12:22:51Z" />
+  *   </query-continue>
   * </api>
+  * Newer wikis continue with <continue rccontinue="..."/> instead.  The deletion log has the same form, with
+  * <logevents> and <item> in place of <recentchanges> and <rc>.
   */
-  protected static boolean parseGetDocURLsResponse(InputStream is, Map<String,String> urls)
+  protected static boolean parseListRecentChangesResponse(InputStream is, String listName, String itemName, PageBuffer buffer,
+    String prefix, ReturnString firstTimestamp, String[] continuation)
     throws ManifoldCFException, ServiceInterruption
   {
     // Parse the document.  This will cause various things to occur, within the instantiated XMLContext class.
     XMLStream x = new XMLStream(false);
-    WikiGetDocURLsAPIContext c = new WikiGetDocURLsAPIContext(x,urls);
+    WikiListRecentChangesAPIContext c = new WikiListRecentChangesAPIContext(x,listName,itemName,buffer,prefix);
     x.setContext(c);
     try
     {
       try
       {
         x.parse(is);
+        firstTimestamp.returnValue = c.getFirstTimestamp();
+        String[] contextContinuation = c.getContinuation();
+        continuation[0] = contextContinuation[0];
+        continuation[1] = contextContinuation[1];
         return c.isLoginRequired();
       }
       catch (IOException e)
@@ -2657,115 +2910,267 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     }
   }
 
-  /** Class representing the "api" context of a "get timestamp" response */
-  protected static class WikiGetDocURLsAPIContext extends SingleLevelContext
+  /** Class representing the "api" context of a "list recent changes" response */
+  protected static class WikiListRecentChangesAPIContext extends SingleLevelContext
   {
-    protected Map<String,String> urls;
+    protected String listName;
+    protected String itemName;
+    protected PageBuffer buffer;
+    protected String prefix;
+    protected String firstTimestamp = null;
+    protected String[] continuation = new String[2];
     protected boolean loginNeeded = false;
-    
-    public WikiGetDocURLsAPIContext(XMLStream theStream, Map<String,String> urls)
+
+    public WikiListRecentChangesAPIContext(XMLStream theStream, String listName, String itemName, PageBuffer buffer, String prefix)
     {
       super(theStream,"api");
-      this.urls = urls;
+      this.listName = listName;
+      this.itemName = itemName;
+      this.buffer = buffer;
+      this.prefix = prefix;
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetDocURLsQueryContext(theStream,namespaceURI,localName,qName,atts,urls);
+      return new WikiListRecentChangesQueryContext(theStream,namespaceURI,localName,qName,atts,listName,itemName,buffer,prefix);
     }
-    
+
     protected void finishChild(BaseProcessingContext child)
       throws ManifoldCFException
     {
-      loginNeeded |= ((WikiGetDocURLsQueryContext)child).isLoginRequired();
+      WikiListRecentChangesQueryContext qc = (WikiListRecentChangesQueryContext)child;
+      firstTimestamp = qc.getFirstTimestamp();
+      continuation = qc.getContinuation();
+      loginNeeded |= qc.isLoginRequired();
+    }
+
+    public String getFirstTimestamp()
+    {
+      return firstTimestamp;
+    }
+
+    public String[] getContinuation()
+    {
+      return continuation;
     }
 
     public boolean isLoginRequired()
     {
       return loginNeeded;
     }
-
   }
 
-  /** Class representing the "api/query" context of a "get timestamp" response */
-  protected static class WikiGetDocURLsQueryContext extends SingleLevelErrorContext
+  /** Class representing the "api/query" context of a "list recent changes" response.  This also picks up the continuation,
+  * which is a sibling of "query".
+  */
+  protected static class WikiListRecentChangesQueryContext extends SingleLevelErrorContext
   {
-    protected Map<String,String> urls;
-    
-    public WikiGetDocURLsQueryContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
-      Map<String,String> urls)
+    protected String listName;
+    protected String itemName;
+    protected PageBuffer buffer;
+    protected String prefix;
+    protected String firstTimestamp = null;
+    protected String[] continuation = new String[2];
+
+    public WikiListRecentChangesQueryContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      String listName, String itemName, PageBuffer buffer, String prefix)
     {
       super(theStream,namespaceURI,localName,qName,atts,"query");
-      this.urls = urls;
+      this.listName = listName;
+      this.itemName = itemName;
+      this.buffer = buffer;
+      this.prefix = prefix;
+    }
+
+    protected XMLContext beginTag(String namespaceURI, String localName, String qName, Attributes atts)
+      throws ManifoldCFException, ServiceInterruption
+    {
+      if (qName.equals("query-continue"))
+        return new WikiListRecentChangesContinueContext(theStream,namespaceURI,localName,qName,atts);
+      if (qName.equals("continue") && atts.getValue("rccontinue") != null)
+      {
+        continuation[0] = "rccontinue";
+        continuation[1] = atts.getValue("rccontinue");
+      }
+      return super.beginTag(namespaceURI,localName,qName,atts);
+    }
+
+    protected void endTag()
+      throws ManifoldCFException, ServiceInterruption
+    {
+      XMLContext theContext = theStream.getContext();
+      String theTag = theContext.getQname();
+      if (theTag.equals("query-continue"))
+      {
+        String[] contextContinuation = ((WikiListRecentChangesContinueContext)theContext).getContinuation();
+        if (contextContinuation[0] != null)
+          continuation = contextContinuation;
+      }
+      else
+        super.endTag();
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetDocURLsPagesContext(theStream,namespaceURI,localName,qName,atts,urls);
+      return new WikiListRecentChangesRecentChangesContext(theStream,namespaceURI,localName,qName,atts,listName,itemName,buffer,prefix);
     }
 
     protected void finishChild(BaseProcessingContext child)
       throws ManifoldCFException
     {
+      firstTimestamp = ((WikiListRecentChangesRecentChangesContext)child).getFirstTimestamp();
+    }
+
+    public String getFirstTimestamp()
+    {
+      return firstTimestamp;
+    }
+
+    public String[] getContinuation()
+    {
+      return continuation;
     }
-    
   }
 
-  /** Class looking for the "api/query/pages" context of a "get timestamp" response */
-  protected static class WikiGetDocURLsPagesContext extends SingleLevelContext
+  /** Class representing the "api/query-continue" context of a "list recent changes" response */
+  protected static class WikiListRecentChangesContinueContext extends BaseProcessingContext
   {
-    protected Map<String,String> urls;
-    
-    public WikiGetDocURLsPagesContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
-      Map<String,String> urls)
+    protected String[] continuation = new String[2];
+
+    public WikiListRecentChangesContinueContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts)
     {
-      super(theStream,namespaceURI,localName,qName,atts,"pages");
-      this.urls = urls;
+      super(theStream,namespaceURI,localName,qName,atts);
+    }
+
+    protected XMLContext beginTag(String namespaceURI, String localName, String qName, Attributes atts)
+      throws ManifoldCFException, ServiceInterruption
+    {
+      if (qName.equals("recentchanges"))
+      {
+        if (atts.getValue("rccontinue") != null)
+        {
+          continuation[0] = "rccontinue";
+          continuation[1] = atts.getValue("rccontinue");
+        }
+        else if (atts.getValue("rcstart") != null)
+        {
+          continuation[0] = "rcstart";
+          continuation[1] = atts.getValue("rcstart");
+        }
+      }
+      return super.beginTag(namespaceURI,localName,qName,atts);
+    }
+
+    public String[] getContinuation()
+    {
+      return continuation;
+    }
+  }
+
+  /** Class recognizing the "api/query/recentchanges" context of a "list recent changes" response */
+  protected static class WikiListRecentChangesRecentChangesContext extends SingleLevelContext
+  {
+    protected String itemName;
+    protected PageBuffer buffer;
+    protected String prefix;
+    protected String firstTimestamp = null;
+
+    public WikiListRecentChangesRecentChangesContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      String listName, String itemName, PageBuffer buffer, String prefix)
+    {
+      super(theStream,namespaceURI,localName,qName,atts,listName);
+      this.itemName = itemName;
+      this.buffer = buffer;
+      this.prefix = prefix;
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetDocURLsPageContext(theStream,namespaceURI,localName,qName,atts,urls);
+      // When we recognize recentchanges, we need to look for <rc> records.
+      return new WikiListRecentChangesRCContext(theStream,namespaceURI,localName,qName,atts,itemName,buffer,prefix);
     }
 
     protected void finishChild(BaseProcessingContext child)
       throws ManifoldCFException
     {
+      firstTimestamp = ((WikiListRecentChangesRCContext)child).getFirstTimestamp();
+    }
+
+    public String getFirstTimestamp()
+    {
+      return firstTimestamp;
     }
   }
 
-  /** Class looking for the "api/query/pages/page" context of a "get timestamp" response */
-  protected static class WikiGetDocURLsPageContext extends BaseProcessingContext
+  /** Class representing the "api/query/recentchanges/rc" context of a "list recent changes" response */
+  protected static class WikiListRecentChangesRCContext extends BaseProcessingContext
   {
-    protected Map<String,String> urls;
-    
-    public WikiGetDocURLsPageContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
-      Map<String,String> urls)
+    protected String itemName;
+    protected PageBuffer buffer;
+    protected String prefix;
+    protected String firstTimestamp = null;
+
+    public WikiListRecentChangesRCContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      String itemName, PageBuffer buffer, String prefix)
     {
       super(theStream,namespaceURI,localName,qName,atts);
-      this.urls = urls;
+      this.itemName = itemName;
+      this.buffer = buffer;
+      this.prefix = prefix;
     }
 
     protected XMLContext beginTag(String namespaceURI, String localName, String qName, Attributes atts)
       throws ManifoldCFException, ServiceInterruption
     {
-      if (qName.equals("page"))
+      if (qName.equals(itemName))
       {
+        if (firstTimestamp == null)
+          firstTimestamp = atts.getValue("timestamp");
         String pageID = atts.getValue("pageid");
-        String fullURL = atts.getValue("fullurl");
-        if (pageID != null && fullURL != null)
-          urls.put(pageID,fullURL);
-      }
-      return super.beginTag(namespaceURI,localName,qName,atts);
+        // Deleted pages have a page id of 0
+        if (buffer != null && pageID != null && !pageID.equals("0") && isPrefixMatch(atts.getValue("ns"),atts.getValue("title")))
+        {
+          // Add the discovered page id to the page buffer
+          try
+          {
+            buffer.add(pageID);
+          }
+          catch (InterruptedException e)
+          {
+            throw new ManifoldCFException(e.getMessage(),e,ManifoldCFException.INTERRUPTED);
+          }
+        }
+      }
+      return super.beginTag(namespaceURI,localName,qName,atts);
     }
-    
-  }
 
-  // -- Methods and classes to perform a "get Timestamp" operation. --
+    /** Check a title against the title prefix.  Titles outside the main namespace start with the namespace name,
+    * which the prefix does not include.
+    */
+    protected boolean isPrefixMatch(String ns, String title)
+    {
+      if (prefix == null)
+        return true;
+      if (title == null)
+        return false;
+      if (ns != null && !ns.equals("0"))
+      {
+        int colonIndex = title.indexOf(":");
+        if (colonIndex != -1)
+          title = title.substring(colonIndex+1);
+      }
+      return title.startsWith(prefix);
+    }
 
-  /** Obtain document versions for a set of documents.
-  */
-  protected void getTimestamps(String[] documentIdentifiers, Map<String,String> versions, IVersionActivity activities)
+    public String getFirstTimestamp()
+    {
+      return firstTimestamp;
+    }
+  }
+
+  // -- Methods and classes to perform a "get doc urls" operation. --
+  
+  protected void getDocURLs(String[] documentIdentifiers, Map<String,String> urls)
     throws ManifoldCFException, ServiceInterruption
   {
     getSession();
@@ -2774,8 +3179,8 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     {
       try
       {
-	HttpRequestBase executeMethod = getInitializedGetMethod(getGetTimestampURL(documentIdentifiers));
-        ExecuteGetTimestampThread t = new ExecuteGetTimestampThread(httpClient,executeMethod,versions);
+	HttpRequestBase executeMethod = getInitializedGetMethod(getGetDocURLsURL(documentIdentifiers));
+        ExecuteGetDocURLsThread t = new ExecuteGetDocURLsThread(httpClient,executeMethod,urls);
         try
         {
           t.start();
@@ -2822,17 +3227,17 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       catch (java.net.SocketTimeoutException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("Version fetch timed out reading from the Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("URL fetch timed out reading from the Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (java.net.SocketException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("Version fetch received a socket error reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("URL fetch received a socket error reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (ConnectTimeoutException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("Version fetch connection timed out reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("URL fetch connection timed out reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (InterruptedIOException e)
       {
@@ -2840,11 +3245,11 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       }
       catch (IOException e)
       {
-        throw new ManifoldCFException("Version fetch had an IO failure: "+e.getMessage(),e);
+        throw new ManifoldCFException("URL fetch had an IO failure: "+e.getMessage(),e);
       }
       catch (HttpException e)
       {
-	throw new ManifoldCFException("Version fetch had an HTTP exception: "+e.getMessage(),e);
+	throw new ManifoldCFException("URL fetch had an HTTP exception: "+e.getMessage(),e);
       }
       
       if (!loginToAPI())
@@ -2852,10 +3257,10 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       loginAttempted = true;
     }
   }
-
-  /** Create a URL to obtain multiple page's timestamps, given the page IDs.
+  
+  /** Create a URL to obtain multiple page's urls, given the page IDs.
   */
-  protected String getGetTimestampURL(String[] documentIdentifiers)
+  protected String getGetDocURLsURL(String[] documentIdentifiers)
     throws ManifoldCFException
   {
     StringBuilder sb = new StringBuilder();
@@ -2867,7 +3272,7 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     }
     try
     {
-      return baseURL + "action=query&prop=revisions&pageids="+URLEncoder.encode(sb.toString(),"utf-8")+"&rvprop=timestamp";
+      return baseURL + "action=query&prop=info&pageids="+URLEncoder.encode(sb.toString(),"utf-8")+"&inprop=url";
     }
     catch (UnsupportedEncodingException e)
     {
@@ -2876,21 +3281,21 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   }
 
   /** Thread to execute a "get timestamp" operation.  This thread both executes the operation and parses the result. */
-  protected static class ExecuteGetTimestampThread extends Thread
+  protected static class ExecuteGetDocURLsThread extends Thread
   {
     protected HttpClient client;
     protected HttpRequestBase executeMethod;
     protected Throwable exception = null;
-    protected Map<String,String> versions;
+    protected Map<String,String> urls;
     protected boolean loginNeeded = false;
 
-    public ExecuteGetTimestampThread(HttpClient client, HttpRequestBase executeMethod, Map<String,String> versions)
+    public ExecuteGetDocURLsThread(HttpClient client, HttpRequestBase executeMethod, Map<String,String> urls)
     {
       super();
       setDaemon(true);
       this.client = client;
       this.executeMethod = executeMethod;
-      this.versions = versions;
+      this.urls = urls;
     }
 
     public void run()
@@ -2905,7 +3310,7 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
         InputStream is = rval.getEntity().getContent();
         try
         {
-          loginNeeded = parseGetTimestampResponse(is,versions);
+          loginNeeded = parseGetDocURLsResponse(is,urls);
         }
         finally
         {
@@ -2944,21 +3349,17 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   * <api>
   *   <query>
   *     <pages>
-  *       <page pageid="27697087" ns="0" title="API">
-  *         <revisions>
-  *           <rev user="Graham87" timestamp="2010-06-13T08:41:17Z" />
-  *         </revisions>
-  *       </page>
+  *       <page pageid="27697087" ns="0" title="API" fullurl="..."/>
   *     </pages>
   *   </query>
   * </api>
   */
-  protected static boolean parseGetTimestampResponse(InputStream is, Map<String,String> versions)
+  protected static boolean parseGetDocURLsResponse(InputStream is, Map<String,String> urls)
     throws ManifoldCFException, ServiceInterruption
   {
     // Parse the document.  This will cause various things to occur, within the instantiated XMLContext class.
     XMLStream x = new XMLStream(false);
-    WikiGetTimestampAPIContext c = new WikiGetTimestampAPIContext(x,versions);
+    WikiGetDocURLsAPIContext c = new WikiGetDocURLsAPIContext(x,urls);
     x.setContext(c);
     try
     {
@@ -2980,49 +3381,50 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   }
 
   /** Class representing the "api" context of a "get timestamp" response */
-  protected static class WikiGetTimestampAPIContext extends SingleLevelContext
+  protected static class WikiGetDocURLsAPIContext extends SingleLevelContext
   {
-    protected Map<String,String> versions;
+    protected Map<String,String> urls;
     protected boolean loginNeeded = false;
     
-    public WikiGetTimestampAPIContext(XMLStream theStream, Map<String,String> versions)
+    public WikiGetDocURLsAPIContext(XMLStream theStream, Map<String,String> urls)
     {
       super(theStream,"api");
-      this.versions = versions;
+      this.urls = urls;
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetTimestampQueryContext(theStream,namespaceURI,localName,qName,atts,versions);
+      return new WikiGetDocURLsQueryContext(theStream,namespaceURI,localName,qName,atts,urls);
     }
     
     protected void finishChild(BaseProcessingContext child)
       throws ManifoldCFException
     {
-      loginNeeded |= ((WikiGetTimestampQueryContext)child).isLoginRequired();
+      loginNeeded |= ((WikiGetDocURLsQueryContext)child).isLoginRequired();
     }
 
     public boolean isLoginRequired()
     {
       return loginNeeded;
     }
+
   }
 
   /** Class representing the "api/query" context of a "get timestamp" response */
-  protected static class WikiGetTimestampQueryContext extends SingleLevelErrorContext
+  protected static class WikiGetDocURLsQueryContext extends SingleLevelErrorContext
   {
-    protected Map<String,String> versions;
+    protected Map<String,String> urls;
     
-    public WikiGetTimestampQueryContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
-      Map<String,String> versions)
+    public WikiGetDocURLsQueryContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,String> urls)
     {
       super(theStream,namespaceURI,localName,qName,atts,"query");
-      this.versions = versions;
+      this.urls = urls;
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetTimestampPagesContext(theStream,namespaceURI,localName,qName,atts,versions);
+      return new WikiGetDocURLsPagesContext(theStream,namespaceURI,localName,qName,atts,urls);
     }
 
     protected void finishChild(BaseProcessingContext child)
@@ -3033,20 +3435,20 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   }
 
   /** Class looking for the "api/query/pages" context of a "get timestamp" response */
-  protected static class WikiGetTimestampPagesContext extends SingleLevelContext
+  protected static class WikiGetDocURLsPagesContext extends SingleLevelContext
   {
-    protected Map<String,String> versions;
+    protected Map<String,String> urls;
     
-    public WikiGetTimestampPagesContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
-      Map<String,String> versions)
+    public WikiGetDocURLsPagesContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,String> urls)
     {
       super(theStream,namespaceURI,localName,qName,atts,"pages");
-      this.versions = versions;
+      this.urls = urls;
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetTimestampPageContext(theStream,namespaceURI,localName,qName,atts,versions);
+      return new WikiGetDocURLsPageContext(theStream,namespaceURI,localName,qName,atts,urls);
     }
 
     protected void finishChild(BaseProcessingContext child)
@@ -3056,16 +3458,15 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   }
 
   /** Class looking for the "api/query/pages/page" context of a "get timestamp" response */
-  protected static class WikiGetTimestampPageContext extends BaseProcessingContext
+  protected static class WikiGetDocURLsPageContext extends BaseProcessingContext
   {
-    protected String pageID = null;
-    protected Map<String,String> versions;
+    protected Map<String,String> urls;
     
-    public WikiGetTimestampPageContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
-      Map<String,String> versions)
+    public WikiGetDocURLsPageContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,String> urls)
     {
       super(theStream,namespaceURI,localName,qName,atts);
-      this.versions = versions;
+      this.urls = urls;
     }
 
     protected XMLContext beginTag(String namespaceURI, String localName, String qName, Attributes atts)
@@ -3073,88 +3474,21 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     {
       if (qName.equals("page"))
       {
-        pageID = atts.getValue("pageid");
-        return new WikiGetTimestampRevisionsContext(theStream,namespaceURI,localName,qName,atts);
+        String pageID = atts.getValue("pageid");
+        String fullURL = atts.getValue("fullurl");
+        if (pageID != null && fullURL != null)
+          urls.put(pageID,fullURL);
       }
       return super.beginTag(namespaceURI,localName,qName,atts);
     }
     
-    protected void endTag()
-      throws ManifoldCFException, ServiceInterruption
-    {
-      XMLContext theContext = theStream.getContext();
-      String theTag = theContext.getQname();
-
-      if (theTag.equals("page"))
-      {
-        String lastRevEdit = ((WikiGetTimestampRevisionsContext)theContext).getTimestamp();
-        versions.put(pageID,lastRevEdit);
-      }
-      else
-        super.endTag();
-    }
-    
-  }
-
-  /** Class looking for the "api/query/pages/page/revisions" context of a "get timestamp" response */
-  protected static class WikiGetTimestampRevisionsContext extends SingleLevelContext
-  {
-    protected String timestamp = null;
-    
-    public WikiGetTimestampRevisionsContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts)
-    {
-      super(theStream,namespaceURI,localName,qName,atts,"revisions");
-    }
-
-    protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
-    {
-      return new WikiGetTimestampRevContext(theStream,namespaceURI,localName,qName,atts);
-    }
-
-    protected void finishChild(BaseProcessingContext child)
-      throws ManifoldCFException
-    {
-      WikiGetTimestampRevContext rc = (WikiGetTimestampRevContext)child;
-      if (timestamp == null)
-        timestamp = rc.getTimestamp();
-    }
-    
-    public String getTimestamp()
-    {
-      return timestamp;
-    }
   }
 
-  /** Class looking for the "api/query/pages/page/revisions/rev" context of a "get timestamp" response */
-  protected static class WikiGetTimestampRevContext extends BaseProcessingContext
-  {
-    protected String timestamp = null;
-    
-    public WikiGetTimestampRevContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts)
-    {
-      super(theStream,namespaceURI,localName,qName,atts);
-    }
+  // -- Methods and classes to perform a "get Timestamp" operation. --
 
-    protected XMLContext beginTag(String namespaceURI, String localName, String qName, Attributes atts)
-      throws ManifoldCFException, ServiceInterruption
-    {
-      if (qName.equals("rev"))
-        timestamp = atts.getValue("timestamp");
-      return super.beginTag(namespaceURI,localName,qName,atts);
-    }
-    
-    public String getTimestamp()
-    {
-      return timestamp;
-    }
-  }
-  
-  // -- Methods and classes to perform a "get namespaces" operation. --
-  
-  /** Obtain the set of namespaces, as a map keyed by the canonical namespace name
-  * where the value is the descriptive name.
+  /** Obtain document versions for a set of documents.
   */
-  protected void getNamespaces(Map<String,String> namespaces)
+  protected void getTimestamps(String[] documentIdentifiers, Map<String,String> versions, IVersionActivity activities)
     throws ManifoldCFException, ServiceInterruption
   {
     getSession();
@@ -3163,13 +3497,12 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     {
       try
       {
-	HttpRequestBase executeMethod = getInitializedGetMethod(getGetNamespacesURL());
-        ExecuteGetNamespacesThread t = new ExecuteGetNamespacesThread(httpClient,executeMethod,namespaces);
+	HttpRequestBase executeMethod = getInitializedGetMethod(getGetTimestampURL(documentIdentifiers));
+        ExecuteGetTimestampThread t = new ExecuteGetTimestampThread(httpClient,executeMethod,versions);
         try
         {
           t.start();
           t.join();
-          
           handleException(t.getException());
           if (loginAttempted || !t.isLoginRequired())
             return;
@@ -3212,17 +3545,17 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       catch (java.net.SocketTimeoutException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("Get namespaces timed out reading from the Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("Version fetch timed out reading from the Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (java.net.SocketException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("Get namespaces received a socket error reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("Version fetch received a socket error reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (ConnectTimeoutException e)
       {
         long currentTime = System.currentTimeMillis();
-        throw new ServiceInterruption("Get namespaces connection timed out reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+        throw new ServiceInterruption("Version fetch connection timed out reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
       }
       catch (InterruptedIOException e)
       {
@@ -3230,11 +3563,11 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       }
       catch (IOException e)
       {
-        throw new ManifoldCFException("Get namespaces had an IO failure: "+e.getMessage(),e);
+        throw new ManifoldCFException("Version fetch had an IO failure: "+e.getMessage(),e);
       }
       catch (HttpException e)
       {
-	throw new ManifoldCFException("Get namespaces had an HTTP exception: "+e.getMessage(),e);
+	throw new ManifoldCFException("Version fetch had an HTTP exception: "+e.getMessage(),e);
       }
       
       if (!loginToAPI())
@@ -3242,23 +3575,413 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       loginAttempted = true;
     }
   }
-  
-  /** Thread to execute a "get namespaces" operation.  This thread both executes the operation and parses the result. */
-  protected static class ExecuteGetNamespacesThread extends Thread
+
+  /** Create a URL to obtain multiple page's timestamps, given the page IDs.
+  */
+  protected String getGetTimestampURL(String[] documentIdentifiers)
+    throws ManifoldCFException
+  {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0 ; i < documentIdentifiers.length ; i++)
+    {
+      if (i > 0)
+        sb.append("|");
+      sb.append(documentIdentifiers[i]);
+    }
+    try
+    {
+      return baseURL + "action=query&prop=revisions&pageids="+URLEncoder.encode(sb.toString(),"utf-8")+"&rvprop=timestamp";
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      throw new ManifoldCFException(e.getMessage(),e);
+    }
+  }
+
+  /** Thread to execute a "get timestamp" operation.  This thread both executes the operation and parses the result. */
+  protected static class ExecuteGetTimestampThread extends Thread
   {
     protected HttpClient client;
     protected HttpRequestBase executeMethod;
     protected Throwable exception = null;
-    protected Map<String,String> namespaces;
+    protected Map<String,String> versions;
     protected boolean loginNeeded = false;
 
-    public ExecuteGetNamespacesThread(HttpClient client, HttpRequestBase executeMethod, Map<String,String> namespaces)
+    public ExecuteGetTimestampThread(HttpClient client, HttpRequestBase executeMethod, Map<String,String> versions)
     {
       super();
       setDaemon(true);
       this.client = client;
       this.executeMethod = executeMethod;
-      this.namespaces = namespaces;
+      this.versions = versions;
+    }
+
+    public void run()
+    {
+      try
+      {
+        // Call the execute method appropriately
+        HttpResponse rval = client.execute(executeMethod);
+        if (rval.getStatusLine().getStatusCode() != 200)
+          throw new ManifoldCFException("Unexpected response code: "+rval.getStatusLine().getStatusCode()+": "+readResponseAsString(rval));
+        // Read response and make sure it's valid
+        InputStream is = rval.getEntity().getContent();
+        try
+        {
+          loginNeeded = parseGetTimestampResponse(is,versions);
+        }
+        finally
+        {
+          try
+          {
+            is.close();
+          }
+          catch (IllegalStateException e)
+          {
+            // Ignore this error
+          }
+        }
+      }
+      catch (Throwable e)
+      {
+        this.exception = e;
+      }
+      finally
+      {
+	executeMethod.abort();
+      }
+    }
+
+    public Throwable getException()
+    {
+      return exception;
+    }
+
+    public boolean isLoginRequired()
+    {
+      return loginNeeded;
+    }
+  }
+
+  /** This method parses a response like the following:
+  * <api>
+  *   <query>
+  *     <pages>
+  *       <page pageid="27697087" ns="0" title="API">
+  *         <revisions>
+  *           <rev user="Graham87" timestamp="2010-06-13T08:41:17Z" />
+  *         </revisions>
+  *       </page>
+  *     </pages>
+  *   </query>
+  * </api>
+  */
+  protected static boolean parseGetTimestampResponse(InputStream is, Map<String,String> versions)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    // Parse the document.  This will cause various things to occur, within the instantiated XMLContext class.
+    XMLStream x = new XMLStream(false);
+    WikiGetTimestampAPIContext c = new WikiGetTimestampAPIContext(x,versions);
+    x.setContext(c);
+    try
+    {
+      try
+      {
+        x.parse(is);
+        return c.isLoginRequired();
+      }
+      catch (IOException e)
+      {
+        long time = System.currentTimeMillis();
+        throw new ServiceInterruption(e.getMessage(),e,time + 300000L,time + 12L * 60000L,-1,false);
+      }
+    }
+    finally
+    {
+      x.cleanup();
+    }
+  }
+
+  /** Class representing the "api" context of a "get timestamp" response */
+  protected static class WikiGetTimestampAPIContext extends SingleLevelContext
+  {
+    protected Map<String,String> versions;
+    protected boolean loginNeeded = false;
+    
+    public WikiGetTimestampAPIContext(XMLStream theStream, Map<String,String> versions)
+    {
+      super(theStream,"api");
+      this.versions = versions;
+    }
+
+    protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
+    {
+      return new WikiGetTimestampQueryContext(theStream,namespaceURI,localName,qName,atts,versions);
+    }
+    
+    protected void finishChild(BaseProcessingContext child)
+      throws ManifoldCFException
+    {
+      loginNeeded |= ((WikiGetTimestampQueryContext)child).isLoginRequired();
+    }
+
+    public boolean isLoginRequired()
+    {
+      return loginNeeded;
+    }
+  }
+
+  /** Class representing the "api/query" context of a "get timestamp" response */
+  protected static class WikiGetTimestampQueryContext extends SingleLevelErrorContext
+  {
+    protected Map<String,String> versions;
+    
+    public WikiGetTimestampQueryContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,String> versions)
+    {
+      super(theStream,namespaceURI,localName,qName,atts,"query");
+      this.versions = versions;
+    }
+
+    protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
+    {
+      return new WikiGetTimestampPagesContext(theStream,namespaceURI,localName,qName,atts,versions);
+    }
+
+    protected void finishChild(BaseProcessingContext child)
+      throws ManifoldCFException
+    {
+    }
+    
+  }
+
+  /** Class looking for the "api/query/pages" context of a "get timestamp" response */
+  protected static class WikiGetTimestampPagesContext extends SingleLevelContext
+  {
+    protected Map<String,String> versions;
+    
+    public WikiGetTimestampPagesContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,String> versions)
+    {
+      super(theStream,namespaceURI,localName,qName,atts,"pages");
+      this.versions = versions;
+    }
+
+    protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
+    {
+      return new WikiGetTimestampPageContext(theStream,namespaceURI,localName,qName,atts,versions);
+    }
+
+    protected void finishChild(BaseProcessingContext child)
+      throws ManifoldCFException
+    {
+    }
+  }
+
+  /** Class looking for the "api/query/pages/page" context of a "get timestamp" response */
+  protected static class WikiGetTimestampPageContext extends BaseProcessingContext
+  {
+    protected String pageID = null;
+    protected Map<String,String> versions;
+    
+    public WikiGetTimestampPageContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,String> versions)
+    {
+      super(theStream,namespaceURI,localName,qName,atts);
+      this.versions = versions;
+    }
+
+    protected XMLContext beginTag(String namespaceURI, String localName, String qName, Attributes atts)
+      throws ManifoldCFException, ServiceInterruption
+    {
+      if (qName.equals("page"))
+      {
+        pageID = atts.getValue("pageid");
+        return new WikiGetTimestampRevisionsContext(theStream,namespaceURI,localName,qName,atts);
+      }
+      return super.beginTag(namespaceURI,localName,qName,atts);
+    }
+    
+    protected void endTag()
+      throws ManifoldCFException, ServiceInterruption
+    {
+      XMLContext theContext = theStream.getContext();
+      String theTag = theContext.getQname();
+
+      if (theTag.equals("page"))
+      {
+        String lastRevEdit = ((WikiGetTimestampRevisionsContext)theContext).getTimestamp();
+        versions.put(pageID,lastRevEdit);
+      }
+      else
+        super.endTag();
+    }
+    
+  }
+
+  /** Class looking for the "api/query/pages/page/revisions" context of a "get timestamp" response */
+  protected static class WikiGetTimestampRevisionsContext extends SingleLevelContext
+  {
+    protected String timestamp = null;
+    
+    public WikiGetTimestampRevisionsContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts)
+    {
+      super(theStream,namespaceURI,localName,qName,atts,"revisions");
+    }
+
+    protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
+    {
+      return new WikiGetTimestampRevContext(theStream,namespaceURI,localName,qName,atts);
+    }
+
+    protected void finishChild(BaseProcessingContext child)
+      throws ManifoldCFException
+    {
+      WikiGetTimestampRevContext rc = (WikiGetTimestampRevContext)child;
+      if (timestamp == null)
+        timestamp = rc.getTimestamp();
+    }
+    
+    public String getTimestamp()
+    {
+      return timestamp;
+    }
+  }
+
+  /** Class looking for the "api/query/pages/page/revisions/rev" context of a "get timestamp" response */
+  protected static class WikiGetTimestampRevContext extends BaseProcessingContext
+  {
+    protected String timestamp = null;
+    
+    public WikiGetTimestampRevContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts)
+    {
+      super(theStream,namespaceURI,localName,qName,atts);
+    }
+
+    protected XMLContext beginTag(String namespaceURI, String localName, String qName, Attributes atts)
+      throws ManifoldCFException, ServiceInterruption
+    {
+      if (qName.equals("rev"))
+        timestamp = atts.getValue("timestamp");
+      return super.beginTag(namespaceURI,localName,qName,atts);
+    }
+    
+    public String getTimestamp()
+    {
+      return timestamp;
+    }
+  }
+  
+  // -- Methods and classes to perform a "get namespaces" operation. --
+  
+  /** Obtain the set of namespaces, as a map keyed by the canonical namespace name
+  * where the value is the descriptive name.
+  */
+  protected void getNamespaces(Map<String,String> namespaces)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    getSession();
+    boolean loginAttempted = false;
+    while (true)
+    {
+      try
+      {
+	HttpRequestBase executeMethod = getInitializedGetMethod(getGetNamespacesURL());
+        ExecuteGetNamespacesThread t = new ExecuteGetNamespacesThread(httpClient,executeMethod,namespaces);
+        try
+        {
+          t.start();
+          t.join();
+          
+          handleException(t.getException());
+          if (loginAttempted || !t.isLoginRequired())
+            return;
+        }
+        catch (ManifoldCFException e)
+        {
+          t.interrupt();
+          throw e;
+        }
+        catch (ServiceInterruption e)
+        {
+          t.interrupt();
+          throw e;
+        }
+        catch (IOException e)
+        {
+          t.interrupt();
+          throw e;
+        }
+	catch (HttpException e)
+	{
+	  t.interrupt();
+	  throw e;
+	}
+        catch (InterruptedException e)
+        {
+          t.interrupt();
+          // We need the caller to abandon any connections left around, so rethrow in a way that forces them to process the event properly.
+          throw e;
+        }
+      }
+      catch (InterruptedException e)
+      {
+        throw new ManifoldCFException("Interrupted: "+e.getMessage(),e,ManifoldCFException.INTERRUPTED);
+      }
+      catch (ManifoldCFException e)
+      {
+        throw e;
+      }
+      catch (java.net.SocketTimeoutException e)
+      {
+        long currentTime = System.currentTimeMillis();
+        throw new ServiceInterruption("Get namespaces timed out reading from the Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+      }
+      catch (java.net.SocketException e)
+      {
+        long currentTime = System.currentTimeMillis();
+        throw new ServiceInterruption("Get namespaces received a socket error reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+      }
+      catch (ConnectTimeoutException e)
+      {
+        long currentTime = System.currentTimeMillis();
+        throw new ServiceInterruption("Get namespaces connection timed out reading from Wiki server: "+e.getMessage(),e,currentTime+300000L,currentTime+12L * 60000L,-1,false);
+      }
+      catch (InterruptedIOException e)
+      {
+        throw new ManifoldCFException("Interrupted: "+e.getMessage(),e,ManifoldCFException.INTERRUPTED);
+      }
+      catch (IOException e)
+      {
+        throw new ManifoldCFException("Get namespaces had an IO failure: "+e.getMessage(),e);
+      }
+      catch (HttpException e)
+      {
+	throw new ManifoldCFException("Get namespaces had an HTTP exception: "+e.getMessage(),e);
+      }
+      
+      if (!loginToAPI())
+        break;
+      loginAttempted = true;
+    }
+  }
+  
+  /** Thread to execute a "get namespaces" operation.  This thread both executes the operation and parses the result. */
+  protected static class ExecuteGetNamespacesThread extends Thread
+  {
+    protected HttpClient client;
+    protected HttpRequestBase executeMethod;
+    protected Throwable exception = null;
+    protected Map<String,String> namespaces;
+    protected boolean loginNeeded = false;
+
+    public ExecuteGetNamespacesThread(HttpClient client, HttpRequestBase executeMethod, Map<String,String> namespaces)
+    {
+      super();
+      setDaemon(true);
+      this.client = client;
+      this.executeMethod = executeMethod;
+      this.namespaces = namespaces;
     }
 
     public void run()
@@ -3487,9 +4210,152 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   
   // -- Methods and classes to perform a "get Docinfo" operation. --
 
-  /** Get document info and index the document.
+  /** The most pages whose content MediaWiki will return in a single request */
+  protected static final int MAX_DOCINFO_PAGES = 50;
+
+  /** Get document info for a set of documents, and index the documents.
+  * The documents are requested in chunks that MediaWiki can return in one response.
+  */
+  protected void getDocInfos(String[] documentIdentifiers, String[] documentVersions, String[] fullURLs, IProcessActivity activities, String[] allowACL)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    int i = 0;
+    while (i < documentIdentifiers.length)
+    {
+      int count = documentIdentifiers.length - i;
+      if (count > MAX_DOCINFO_PAGES)
+        count = MAX_DOCINFO_PAGES;
+      Map<String,Integer> wantedPages = new HashMap<String,Integer>();
+      for (int j = i ; j < i + count ; j++)
+      {
+        wantedPages.put(documentIdentifiers[j],new Integer(j));
+      }
+      getDocInfoChunk(wantedPages,documentVersions,fullURLs,activities,allowACL);
+      i += count;
+    }
+  }
+
+  /** Get document info for a chunk of documents, and index the documents.
+  * MediaWiki may leave the content of some pages out of a response when the response gets too large, so those
+  * pages are requested again, for as long as each request makes progress.
+  *@param wantedPages maps the document identifiers to their indexes in the version and url arrays.
+  */
+  protected void getDocInfoChunk(Map<String,Integer> wantedPages, String[] documentVersions, String[] fullURLs, IProcessActivity activities, String[] allowACL)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    while (wantedPages.size() > 0)
+    {
+      String[] documentIdentifiers = new String[wantedPages.size()];
+      int j = 0;
+      for (String documentIdentifier : wantedPages.keySet())
+      {
+        documentIdentifiers[j++] = documentIdentifier;
+      }
+
+      long startTime = System.currentTimeMillis();
+      Map<String,DocInfo> docInfos = new HashMap<String,DocInfo>();
+      try
+      {
+        executeGetDocInfosViaThread(documentIdentifiers,docInfos,activities);
+
+        boolean progress = false;
+        for (String documentIdentifier : documentIdentifiers)
+        {
+          DocInfo docInfo = docInfos.get(documentIdentifier);
+          if (docInfo == null)
+            continue;
+          progress = true;
+          int index = wantedPages.remove(documentIdentifier).intValue();
+          indexDocInfo(documentIdentifier,documentVersions[index],fullURLs[index],docInfo,startTime,activities,allowACL);
+        }
+
+        if (!progress)
+        {
+          // None of the remaining pages came back; the wiki has nothing for them.
+          for (String documentIdentifier : documentIdentifiers)
+          {
+            activities.recordActivity(new Long(startTime),ACTIVITY_FETCH,new Long(0L),documentIdentifier,"OK",null,null);
+          }
+          return;
+        }
+      }
+      finally
+      {
+        for (DocInfo docInfo : docInfos.values())
+        {
+          docInfo.cleanup();
+        }
+      }
+    }
+  }
+
+  /** Index a single document, given the info fetched for it.
+  */
+  protected void indexDocInfo(String documentIdentifier, String documentVersion, String fullURL, DocInfo docInfo, long startTime,
+    IProcessActivity activities, String[] allowACL)
+    throws ManifoldCFException, ServiceInterruption
+  {
+    long dataSize = 0L;
+    File contentFile = docInfo.getContentFile();
+    if (contentFile != null)
+    {
+      try
+      {
+        RepositoryDocument rd = new RepositoryDocument();
+
+        // For wiki, type is always text/plain
+        rd.setMimeType("text/plain");
+
+        dataSize = contentFile.length();
+        InputStream is = new FileInputStream(contentFile);
+        try
+        {
+          rd.setBinary(is,dataSize);
+          if (docInfo.getComment() != null)
+            rd.addField("comment",docInfo.getComment());
+          if (docInfo.getAuthor() != null)
+            rd.addField("author",docInfo.getAuthor());
+          if (docInfo.getTitle() != null)
+            rd.addField("title",docInfo.getTitle());
+          if (docInfo.getLastModified() != null)
+            rd.addField("last-modified",docInfo.getLastModified());
+
+          if (allowACL != null && allowACL.length > 0) {
+            String[] denyACL = new String[]{
+              defaultAuthorityDenyToken
+            };
+            rd.setDenyACL(denyACL);
+
+            rd.setACL(allowACL);
+          }
+
+          activities.ingestDocument(documentIdentifier,documentVersion,fullURL,rd);
+        }
+        finally
+        {
+          is.close();
+        }
+      }
+      catch (InterruptedIOException e)
+      {
+        throw new ManifoldCFException("Interrupted: "+e.getMessage(),e,ManifoldCFException.INTERRUPTED);
+      }
+      catch (IOException e)
+      {
+        throw new ManifoldCFException("Get doc info had an IO failure: "+e.getMessage(),e);
+      }
+      finally
+      {
+        contentFile.delete();
+      }
+    }
+    activities.recordActivity(new Long(startTime),ACTIVITY_FETCH,new Long(dataSize),documentIdentifier,"OK",null,null);
+  }
+
+  /** Fetch document info for a set of documents via a thread.
+  *@param docInfos receives the info for each page the wiki returned.
   */
-  protected void getDocInfo(String documentIdentifier, String documentVersion, String fullURL, IProcessActivity activities, String[] allowACL)
+  protected void executeGetDocInfosViaThread(String[] documentIdentifiers, Map<String,DocInfo> docInfos, IProcessActivity activities)
     throws ManifoldCFException, ServiceInterruption
   {
     getSession();
@@ -3499,12 +4365,11 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       String statusCode = "UNKNOWN";
       String errorMessage = null;
       long startTime = System.currentTimeMillis();
-      long dataSize = 0L;
       
       try
       {
-	HttpRequestBase executeMethod = getInitializedGetMethod(getGetDocInfoURL(documentIdentifier));
-        ExecuteGetDocInfoThread t = new ExecuteGetDocInfoThread(httpClient,executeMethod,documentIdentifier);
+	HttpRequestBase executeMethod = getInitializedGetMethod(getGetDocInfosURL(documentIdentifiers));
+        ExecuteGetDocInfosThread t = new ExecuteGetDocInfosThread(httpClient,executeMethod,docInfos);
         try
         {
           t.start();
@@ -3515,61 +4380,12 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
             
           handleException(t.getException());
    
-          // Fetch all the data we need from the thread, and do the indexing.
-          File contentFile = t.getContentFile();
-          if (contentFile != null)
-          {
-            statusCode = "OK";
-            try
-            {
-              String author = t.getAuthor();
-              String comment = t.getComment();
-              String title = t.getTitle();
-              String lastModified = t.getLastModified();
-              
-              RepositoryDocument rd = new RepositoryDocument();
-              
-              // For wiki, type is always text/plain
-              rd.setMimeType("text/plain");
-              
-              dataSize = contentFile.length();
-              InputStream is = new FileInputStream(contentFile);
-              try
-              {
-                rd.setBinary(is,dataSize);
-                if (comment != null)
-                  rd.addField("comment",comment);
-                if (author != null)
-                  rd.addField("author",author);
-                if (title != null)
-                  rd.addField("title",title);
-                if (lastModified != null)
-                  rd.addField("last-modified",lastModified);
-
-                if (allowACL != null && allowACL.length > 0) {
-                  String[] denyACL = new String[]{
-                    defaultAuthorityDenyToken
-                  };
-                  rd.setDenyACL(denyACL);
-
-                  rd.setACL(allowACL);
-                }
-
-                activities.ingestDocument(documentIdentifier,documentVersion,fullURL,rd);
-              }
-              finally
-              {
-                is.close();
-              }
-            }
-            finally
-            {
-              contentFile.delete();
-            }
-          }
-          
           if (loginAttempted || !t.isLoginRequired())
+          {
+            // Activities are recorded per document by the caller
+            statusCode = null;
             return;
+          }
         }
         catch (ManifoldCFException e)
         {
@@ -3597,10 +4413,6 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
           // We need the caller to abandon any connections left around, so rethrow in a way that forces them to process the event properly.
           throw e;
         }
-        finally
-        {
-          t.cleanup();
-        }
       }
       catch (InterruptedException e)
       {
@@ -3646,40 +4458,95 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       }
       finally
       {
-        if (statusCode != null)
-          activities.recordActivity(new Long(startTime),ACTIVITY_FETCH,new Long(dataSize),documentIdentifier,statusCode,errorMessage,null);
+        if (statusCode != null)
+        {
+          for (String documentIdentifier : documentIdentifiers)
+          {
+            activities.recordActivity(new Long(startTime),ACTIVITY_FETCH,new Long(0L),documentIdentifier,statusCode,errorMessage,null);
+          }
+        }
+      }
+      
+      if (!loginToAPI())
+        break;
+      loginAttempted = true;
+    }
+  }
+  
+  /** Metadata and content of one page, as returned by a "get doc info" request */
+  protected static class DocInfo
+  {
+    protected String title;
+    protected String author;
+    protected String comment;
+    protected String lastModified;
+    protected File contentFile;
+
+    public DocInfo(String title, String author, String comment, String lastModified, File contentFile)
+    {
+      this.title = title;
+      this.author = author;
+      this.comment = comment;
+      this.lastModified = lastModified;
+      this.contentFile = contentFile;
+    }
+
+    public String getTitle()
+    {
+      return title;
+    }
+    
+    public String getAuthor()
+    {
+      return author;
+    }
+    
+    public String getComment()
+    {
+      return comment;
+    }
+
+    public String getLastModified()
+    {
+      return lastModified;
+    }
+
+    public File getContentFile()
+    {
+      File rval = contentFile;
+      contentFile = null;
+      return rval;
+    }
+
+    public void cleanup()
+    {
+      if (contentFile != null)
+      {
+        contentFile.delete();
+        contentFile = null;
       }
-      
-      if (!loginToAPI())
-        break;
-      loginAttempted = true;
     }
   }
-  
+
   /** Thread to execute a "get doc info" operation.  This thread both executes the operation and parses the result. */
-  protected static class ExecuteGetDocInfoThread extends Thread
+  protected static class ExecuteGetDocInfosThread extends Thread
   {
     protected HttpClient client;
     protected HttpRequestBase executeMethod;
     protected Throwable exception = null;
-    protected String documentIdentifier;
-    protected File contentFile = null;
-    protected String author = null;
-    protected String title = null;
-    protected String comment = null;
-    protected String lastModified = null;
+    protected Map<String,DocInfo> docInfos;
     
     protected String statusCode = null;
     protected String errorMessage = null;
     protected boolean loginNeeded = false;
 
-    public ExecuteGetDocInfoThread(HttpClient client, HttpRequestBase executeMethod, String documentIdentifier)
+    public ExecuteGetDocInfosThread(HttpClient client, HttpRequestBase executeMethod, Map<String,DocInfo> docInfos)
     {
       super();
       setDaemon(true);
       this.client = client;
       this.executeMethod = executeMethod;
-      this.documentIdentifier = documentIdentifier;
+      this.docInfos = docInfos;
     }
 
     public void run()
@@ -3706,23 +4573,19 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
           //          <rev user="Graham87" timestamp="2010-06-13T08:41:17Z" comment="Protected API: restore protection ([edit=sysop] (indefinite) [move=sysop] (indefinite))" xml:space="preserve">#REDIRECT [[Application programming interface]]{{R from abbreviation}}</rev>
           //        </revisions>
           //      </page>
+          //      <page pageid="27697088" missing="" />
           //    </pages>
           //  </query>
           //</api>
 
           XMLStream x = new XMLStream(false);
-          WikiGetDocInfoAPIContext c = new WikiGetDocInfoAPIContext(x);
+          WikiGetDocInfoAPIContext c = new WikiGetDocInfoAPIContext(x,docInfos);
           x.setContext(c);
           try
           {
             try
             {
               x.parse(is);
-              contentFile = c.getContentFile();
-              title = c.getTitle();
-              author = c.getAuthor();
-              comment = c.getComment();
-              lastModified = c.getLastModified();
               statusCode = "OK";
               loginNeeded = c.isLoginRequired();
             }
@@ -3780,132 +4643,57 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       return errorMessage;
     }
     
-    public File getContentFile()
-    {
-      File rval = contentFile;
-      contentFile = null;
-      return rval;
-    }
-    
-    public String getAuthor()
-    {
-      return author;
-    }
-    
-    public String getComment()
-    {
-      return comment;
-    }
-    
-    public String getTitle()
-    {
-      return title;
-    }
-
-    public String getLastModified()
-    {
-      return lastModified;
-    }
-    
     public boolean isLoginRequired()
     {
       return loginNeeded;
     }
     
-    public void cleanup()
-    {
-      if (contentFile != null)
-      {
-        contentFile.delete();
-        contentFile = null;
-      }
-    }
-    
   }
 
-  /** Create a URL to obtain a page's metadata and content, given the page ID.
-  * QUESTION: Can we do multiple document identifiers at a time??
+  /** Create a URL to obtain multiple pages' metadata and content, given the page IDs.
   */
-  protected String getGetDocInfoURL(String documentIdentifier)
+  protected String getGetDocInfosURL(String[] documentIdentifiers)
     throws ManifoldCFException
   {
-    return baseURL + "action=query&prop=revisions&pageids="+documentIdentifier+"&rvprop=user%7ccomment%7ccontent%7ctimestamp";
+    try
+    {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0 ; i < documentIdentifiers.length ; i++)
+      {
+        if (i > 0)
+          sb.append("|");
+        sb.append(documentIdentifiers[i]);
+      }
+      return baseURL + "action=query&prop=revisions&pageids="+URLEncoder.encode(sb.toString(),"utf-8")+"&rvprop=user%7ccomment%7ccontent%7ctimestamp";
+    }
+    catch (UnsupportedEncodingException e)
+    {
+      throw new ManifoldCFException(e.getMessage(),e);
+    }
   }
 
   /** Class representing the "api" context of a "get doc info" response */
   protected static class WikiGetDocInfoAPIContext extends SingleLevelContext
   {
-    /** Title */
-    protected String title = null;
-    /** Content file */
-    protected File contentFile = null;
-    /** Author */
-    protected String author = null;
-    /** Comment */
-    protected String comment = null;
-    /** Last modified */
-    protected String lastModified = null;
+    /** The map to place the page info into */
+    protected Map<String,DocInfo> docInfos;
     protected boolean loginNeeded = false;
     
-    public WikiGetDocInfoAPIContext(XMLStream theStream)
+    public WikiGetDocInfoAPIContext(XMLStream theStream, Map<String,DocInfo> docInfos)
     {
       super(theStream,"api");
+      this.docInfos = docInfos;
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetDocInfoQueryContext(theStream,namespaceURI,localName,qName,atts);
+      return new WikiGetDocInfoQueryContext(theStream,namespaceURI,localName,qName,atts,docInfos);
     }
     
     protected void finishChild(BaseProcessingContext child)
       throws ManifoldCFException
     {
-      WikiGetDocInfoQueryContext pc = (WikiGetDocInfoQueryContext)child;
-      tagCleanup();
-      title = pc.getTitle();
-      contentFile = pc.getContentFile();
-      author = pc.getAuthor();
-      comment = pc.getComment();
-      lastModified = pc.getLastModified();
-      loginNeeded |= pc.isLoginRequired();
-    }
-    
-    protected void tagCleanup()
-      throws ManifoldCFException
-    {
-      // Delete the contents file if it is there.
-      if (contentFile != null)
-      {
-        contentFile.delete();
-        contentFile = null;
-      }
-    }
-
-    public String getTitle()
-    {
-      return title;
-    }
-    
-    public File getContentFile()
-    {
-      File rval = contentFile;
-      contentFile = null;
-      return rval;
-    }
-    
-    public String getAuthor()
-    {
-      return author;
-    }
-
-    public String getLastModified()
-    {
-      return lastModified;
-    }
-    
-    public String getComment()
-    {
-      return comment;
+      loginNeeded |= ((WikiGetDocInfoQueryContext)child).isLoginRequired();
     }
 
     public boolean isLoginRequired()
@@ -3918,75 +4706,24 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   /** Class representing the "api/query" context of a "get doc info" response */
   protected static class WikiGetDocInfoQueryContext extends SingleLevelErrorContext
   {
-    /** Title */
-    protected String title = null;
-    /** Content file */
-    protected File contentFile = null;
-    /** Author */
-    protected String author = null;
-    /** Comment */
-    protected String comment = null;
-    /** Last modified */
-    protected String lastModified = null;
+    /** The map to place the page info into */
+    protected Map<String,DocInfo> docInfos;
     
-    public WikiGetDocInfoQueryContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts)
+    public WikiGetDocInfoQueryContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,DocInfo> docInfos)
     {
       super(theStream,namespaceURI,localName,qName,atts,"query");
+      this.docInfos = docInfos;
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetDocInfoPagesContext(theStream,namespaceURI,localName,qName,atts);
+      return new WikiGetDocInfoPagesContext(theStream,namespaceURI,localName,qName,atts,docInfos);
     }
 
     protected void finishChild(BaseProcessingContext child)
       throws ManifoldCFException
     {
-      WikiGetDocInfoPagesContext pc = (WikiGetDocInfoPagesContext)child;
-      tagCleanup();
-      title = pc.getTitle();
-      contentFile = pc.getContentFile();
-      author = pc.getAuthor();
-      comment = pc.getComment();
-      lastModified = pc.getLastModified();
-    }
-    
-    protected void tagCleanup()
-      throws ManifoldCFException
-    {
-      // Delete the contents file if it is there.
-      if (contentFile != null)
-      {
-        contentFile.delete();
-        contentFile = null;
-      }
-    }
-
-    public String getTitle()
-    {
-      return title;
-    }
-    
-    public File getContentFile()
-    {
-      File rval = contentFile;
-      contentFile = null;
-      return rval;
-    }
-    
-    public String getAuthor()
-    {
-      return author;
-    }
-
-    public String getLastModified()
-    {
-      return lastModified;
-    }
-    
-    public String getComment()
-    {
-      return comment;
     }
     
   }
@@ -3994,75 +4731,24 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   /** Class representing the "api/query/pages" context of a "get doc info" response */
   protected static class WikiGetDocInfoPagesContext extends SingleLevelContext
   {
-    /** Title */
-    protected String title = null;
-    /** Content file */
-    protected File contentFile = null;
-    /** Author */
-    protected String author = null;
-    /** Comment */
-    protected String comment = null;
-    /** Last modified */
-    protected String lastModified = null;
+    /** The map to place the page info into */
+    protected Map<String,DocInfo> docInfos;
     
-    public WikiGetDocInfoPagesContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts)
+    public WikiGetDocInfoPagesContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,DocInfo> docInfos)
     {
       super(theStream,namespaceURI,localName,qName,atts,"pages");
+      this.docInfos = docInfos;
     }
 
     protected BaseProcessingContext createChild(String namespaceURI, String localName, String qName, Attributes atts)
     {
-      return new WikiGetDocInfoPageContext(theStream,namespaceURI,localName,qName,atts);
+      return new WikiGetDocInfoPageContext(theStream,namespaceURI,localName,qName,atts,docInfos);
     }
     
     protected void finishChild(BaseProcessingContext child)
       throws ManifoldCFException
     {
-      WikiGetDocInfoPageContext pc = (WikiGetDocInfoPageContext)child;
-      tagCleanup();
-      title = pc.getTitle();
-      contentFile = pc.getContentFile();
-      author = pc.getAuthor();
-      lastModified = pc.getLastModified();
-      comment = pc.getComment();
-    }
-    
-    protected void tagCleanup()
-      throws ManifoldCFException
-    {
-      // Delete the contents file if it is there.
-      if (contentFile != null)
-      {
-        contentFile.delete();
-        contentFile = null;
-      }
-    }
-
-    public String getTitle()
-    {
-      return title;
-    }
-    
-    public File getContentFile()
-    {
-      File rval = contentFile;
-      contentFile = null;
-      return rval;
-    }
-    
-    public String getAuthor()
-    {
-      return author;
-    }
-
-    public String getLastModified()
-    {
-      return lastModified;
-    }
-    
-    public String getComment()
-    {
-      return comment;
     }
 
   }
@@ -4070,20 +4756,20 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
   /** Class representing the "api/query/pages/page" context of a "get doc info" response */
   protected static class WikiGetDocInfoPageContext extends BaseProcessingContext
   {
+    /** The map to place the page info into */
+    protected Map<String,DocInfo> docInfos;
+    /** Page ID */
+    protected String pageID = null;
     /** Title */
     protected String title = null;
-    /** Content file */
-    protected File contentFile = null;
-    /** Author */
-    protected String author = null;
-    /** Comment */
-    protected String comment = null;
-    /** Last modified */
-    protected String lastModified = null;
+    /** Set if the wiki has no such page */
+    protected boolean missing = false;
     
-    public WikiGetDocInfoPageContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts)
+    public WikiGetDocInfoPageContext(XMLStream theStream, String namespaceURI, String localName, String qName, Attributes atts,
+      Map<String,DocInfo> docInfos)
     {
       super(theStream,namespaceURI,localName,qName,atts);
+      this.docInfos = docInfos;
     }
 
     protected XMLContext beginTag(String namespaceURI, String localName, String qName, Attributes atts)
@@ -4091,7 +4777,9 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
     {
       if (qName.equals("page"))
       {
+        pageID = atts.getValue("pageid");
         title = atts.getValue("title");
+        missing = atts.getValue("missing") != null;
         return new WikiGetDocInfoRevisionsContext(theStream,namespaceURI,localName,qName,atts);
       }
       return super.beginTag(namespaceURI,localName,qName,atts);
@@ -4106,53 +4794,20 @@ public class WikiConnector extends org.apache.manifoldcf.crawler.connectors.Base
       {
         // Pull down the data
         WikiGetDocInfoRevisionsContext rc = (WikiGetDocInfoRevisionsContext)theContext;
-        tagCleanup();
-        contentFile = rc.getContentFile();
-        author = rc.getAuthor();
-        comment = rc.getComment();
-        lastModified = rc.getLastModified();
+        File contentFile = rc.getContentFile();
+        // A page without content that the wiki doesn't call missing was left out of this response, so leave it out of the map
+        if (pageID != null && (contentFile != null || missing))
+        {
+          DocInfo oldDocInfo = docInfos.put(pageID,new DocInfo(title,rc.getAuthor(),rc.getComment(),rc.getLastModified(),contentFile));
+          if (oldDocInfo != null)
+            oldDocInfo.cleanup();
+        }
+        else if (contentFile != null)
+          contentFile.delete();
       }
       super.endTag();
     }
 
-    protected void tagCleanup()
-      throws ManifoldCFException
-    {
-      // Delete the contents file if it is there.
-      if (contentFile != null)
-      {
-        contentFile.delete();
-        contentFile = null;
-      }
-    }
-
-    public String getTitle()
-    {
-      return title;
-    }
-    
-    public File getContentFile()
-    {
-      File rval = contentFile;
-      contentFile = null;
-      return rval;
-    }
-    
-    public String getAuthor()
-    {
-      return author;
-    }
-    
-    public String getComment()
-    {
-      return comment;
-    }
-
-    public String getLastModified()
-    {
-      return lastModified;
-    }
-    
   }
 
   /** Class representing the "api/query/pages/page/revisions" context of a "get doc info" response */
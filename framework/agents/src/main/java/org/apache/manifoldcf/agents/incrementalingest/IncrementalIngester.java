@@ -22,6 +22,7 @@ import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.agents.system.Logging;
 import org.apache.manifoldcf.agents.system.ManifoldCF;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
 import java.util.*;
 import java.io.*;
 
@@ -427,8 +428,16 @@ public class IncrementalIngester extends org.apache.manifoldcf.core.database.Bas
       Logging.ingest.debug("Ingesting document '"+docKey+"' into output connection '"+outputConnectionName+"'");
     }
 
-    return performIngestion(connection,docKey,documentVersion,outputVersion,parameterVersion,authorityName,
-      data,ingestTime,documentURI,activities);
+    long startTime = System.currentTimeMillis();
+    try
+    {
+      return performIngestion(connection,docKey,documentVersion,outputVersion,parameterVersion,authorityName,
+        data,ingestTime,documentURI,activities);
+    }
+    finally
+    {
+      MetricsRegistry.getHistogram("agents.ingest.time","connection",outputConnectionName).record(System.currentTimeMillis() - startTime);
+    }
   }
 
   
@@ -1045,6 +1054,56 @@ public class IncrementalIngester extends org.apache.manifoldcf.core.database.Bas
     performDelete("WHERE "+query,newList,null);
   }
 
+  /** Forget multiple documents, without removing them from the search engine index.  The records of their
+  * ingestion are deleted, so the documents will be treated as never ingested.
+  *@param outputConnectionName is the name of the output connection associated with this action.
+  *@param identifierClasses are the names of the spaces in which the identifier hashes should be interpreted.
+  *@param identifierHashes is tha array of document identifier hashes if the documents.
+  */
+  @Override
+  public void documentForgetMultiple(String outputConnectionName,
+    String[] identifierClasses, String[] identifierHashes)
+    throws ManifoldCFException
+  {
+    // No transaction; each chunk stands on its own, and a document that is forgotten twice is no problem.
+    int maxClause = maxClausesForgetDocKeys(outputConnectionName);
+    ArrayList list = new ArrayList();
+    int i = 0;
+    while (i < identifierHashes.length)
+    {
+      if (list.size() == maxClause)
+      {
+        forgetDocKeys(outputConnectionName,list);
+        list.clear();
+      }
+      list.add(makeKey(identifierClasses[i],identifierHashes[i]));
+      i++;
+    }
+    if (list.size() > 0)
+      forgetDocKeys(outputConnectionName,list);
+  }
+
+  /** Calculate the maximum number of doc keys we should forget at once.
+  */
+  protected int maxClausesForgetDocKeys(String outputConnectionName)
+  {
+    return findConjunctionClauseMax(new ClauseDescription[]{
+      new UnitaryClause(outputConnNameField,outputConnectionName)});
+  }
+
+  /** Delete the rows for a set of doc keys.
+  */
+  protected void forgetDocKeys(String outputConnectionName, ArrayList list)
+    throws ManifoldCFException
+  {
+    ArrayList newList = new ArrayList();
+    String query = buildConjunctionClause(newList,new ClauseDescription[]{
+      new UnitaryClause(outputConnNameField,outputConnectionName),
+      new MultiClause(docKeyField,list)});
+    performDelete("WHERE "+query,newList,null);
+    noteModifications(0,0,list.size());
+  }
+
   /** Delete a document from the search engine index.
   *@param outputConnectionName is the name of the output connection associated with this action.
   *@param identifierClass is the name of the space in which the identifier hash should be interpreted.
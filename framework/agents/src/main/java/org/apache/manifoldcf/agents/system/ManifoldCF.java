@@ -175,6 +175,17 @@ public class ManifoldCF extends org.apache.manifoldcf.core.system.ManifoldCF
     // Done.
   }
 
+  /** Check whether any agents are running in this process.
+  *@return true if startAgents() has started an agent that has not been stopped.
+  */
+  public static boolean agentsRunning()
+  {
+    synchronized (runningHash)
+    {
+      return runningHash.size() > 0;
+    }
+  }
+
   /** Stop all started agents.
   */
   public static void stopAgents(IThreadContext threadContext)
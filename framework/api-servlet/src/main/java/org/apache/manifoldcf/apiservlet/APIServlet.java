@@ -23,6 +23,7 @@ import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.crawler.system.ManifoldCF;
 import org.apache.manifoldcf.crawler.system.Logging;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
 
 import java.io.*;
 import java.util.*;
@@ -37,6 +38,9 @@ public class APIServlet extends HttpServlet
 {
   public static final String _rcsid = "@(#)$Id: APIServlet.java 996524 2010-09-13 13:38:01Z kwright $";
 
+  /** The largest response, in bytes, that is held so that its content length can be sent */
+  protected static final int MAX_BUFFERED_RESPONSE = 1048576;
+
   /** The init method.
   */
   public void init(ServletConfig config)
@@ -220,6 +224,14 @@ public class APIServlet extends HttpServlet
       command = pathInfo.substring(index+1);
     }
 
+    // The "metrics" path is special; it's not json, but the Prometheus text format, so that
+    // monitoring systems can scrape it directly.
+    if (protocol.equals("metrics") && command.length() == 0)
+    {
+      executeReadMetrics(response);
+      return;
+    }
+    
     // If query string exists, parse it
     Map<String,List<String>> queryParameters = parseQueryString(queryString);
     
@@ -232,39 +244,65 @@ public class APIServlet extends HttpServlet
 
     // Output
     
-    String outputText = null;
+    if (!protocol.equals("json"))
+    {
+      response.sendError(response.SC_BAD_REQUEST,"Unknown API protocol: "+protocol);
+      return;
+    }
 
-    if (protocol.equals("json"))
+    if (readResult == ManifoldCF.READRESULT_NOTFOUND)
+      response.setStatus(response.SC_NOT_FOUND);
+    else if (readResult == ManifoldCF.READRESULT_BADARGS)
+      response.setStatus(response.SC_BAD_REQUEST);
+
+    // Set response mime type.  Responses of ordinary size are sent with a content length; only a
+    // large one is streamed without it, so that there isn't another full copy of it in memory.
+    response.setContentType("text/plain; charset=utf-8");
+    ResponseOutputStream out = new ResponseOutputStream(response,MAX_BUFFERED_RESPONSE);
+    try
     {
-      // Format the response
+      Writer w = new BufferedWriter(new OutputStreamWriter(out,"utf-8"));
       try
       {
-	outputText = output.toJSON();
+        output.writeJSON(w);
       }
       catch (ManifoldCFException e)
       {
-	// Log it
-	Logging.api.error("Error forming JSON response: "+e.getMessage(),e);
-	// Internal server error
-	response.sendError(response.SC_INTERNAL_SERVER_ERROR);
-	return;
+        // Log it
+        Logging.api.error("Error forming JSON response: "+e.getMessage(),e);
+        // Internal server error, if we still can
+        out.abandon();
+        if (!response.isCommitted())
+        {
+          response.reset();
+          response.sendError(response.SC_INTERNAL_SERVER_ERROR);
+        }
+        return;
       }
+      w.flush();
     }
-    else
+    finally
     {
-      response.sendError(response.SC_BAD_REQUEST,"Unknown API protocol: "+protocol);
-      return;
+      out.close();
     }
 
-    if (readResult == ManifoldCF.READRESULT_NOTFOUND)
-      response.setStatus(response.SC_NOT_FOUND);
-    else if (readResult == ManifoldCF.READRESULT_BADARGS)
-      response.setStatus(response.SC_BAD_REQUEST);
-
-    byte[] responseValue = outputText.getBytes("utf-8");
+  }
+  
+  /** Write all performance metrics, in Prometheus text format.
+  * The registry is per-process, so this is only done when the agents run in this webapp's JVM
+  * (e.g. the quick-start example); otherwise there would be nothing of the crawler to report.
+  */
+  protected static void executeReadMetrics(HttpServletResponse response)
+    throws IOException
+  {
+    if (!ManifoldCF.agentsRunning())
+    {
+      response.sendError(response.SC_NOT_FOUND,ManifoldCF.METRICS_UNAVAILABLE);
+      return;
+    }
+    byte[] responseValue = MetricsRegistry.toPrometheusText().getBytes("utf-8");
 
-    // Set response mime type
-    response.setContentType("text/plain; charset=utf-8");
+    response.setContentType("text/plain; version=0.0.4; charset=utf-8");
     response.setIntHeader("Content-Length", (int)responseValue.length);
     ServletOutputStream out = response.getOutputStream();
     try
@@ -276,7 +314,6 @@ public class APIServlet extends HttpServlet
     {
       out.close();
     }
-
   }
   
   /** Perform a general "write" operation.
@@ -610,4 +647,76 @@ public class APIServlet extends HttpServlet
     valueList.add(value);
   }
   
+  /** Output stream for a response.  The response is held until it is complete, so that its content length
+  * can be sent, unless it grows beyond a limit; from then on it is streamed without a content length.
+  */
+  protected static class ResponseOutputStream extends OutputStream
+  {
+    protected final HttpServletResponse response;
+    protected final int maxBufferSize;
+    protected ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    protected OutputStream out = null;
+
+    public ResponseOutputStream(HttpServletResponse response, int maxBufferSize)
+    {
+      this.response = response;
+      this.maxBufferSize = maxBufferSize;
+    }
+
+    public void write(int b)
+      throws IOException
+    {
+      write(new byte[]{(byte)b},0,1);
+    }
+
+    public void write(byte[] b, int off, int len)
+      throws IOException
+    {
+      if (out == null)
+      {
+        if (buffer.size() + len <= maxBufferSize)
+        {
+          buffer.write(b,off,len);
+          return;
+        }
+        // Too big to hold; send what we have, and stream the rest
+        out = response.getOutputStream();
+        buffer.writeTo(out);
+        buffer = null;
+      }
+      out.write(b,off,len);
+    }
+
+    public void flush()
+      throws IOException
+    {
+      // Held output is only sent on close
+      if (out != null)
+        out.flush();
+    }
+
+    /** Throw away any output that is still held, because something else is being sent instead.
+    */
+    public void abandon()
+    {
+      if (out == null)
+        buffer = null;
+    }
+
+    public void close()
+      throws IOException
+    {
+      if (out == null)
+      {
+        if (buffer == null)
+          return;
+        response.setIntHeader("Content-Length",buffer.size());
+        out = response.getOutputStream();
+        buffer.writeTo(out);
+        buffer = null;
+      }
+      out.close();
+    }
+  }
+
 }
@@ -0,0 +1,150 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.apiservlet;
+
+import java.io.*;
+import java.lang.reflect.*;
+import javax.servlet.*;
+import javax.servlet.http.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Check that an API response is held and sent with a content length while it is small, and
+* streamed once it grows past the limit.
+*/
+public class ResponseOutputStreamTest
+{
+
+  @Test
+  public void smallResponseHasContentLength()
+    throws Exception
+  {
+    RecordingResponse recorder = new RecordingResponse();
+    APIServlet.ResponseOutputStream out = new APIServlet.ResponseOutputStream(recorder.getResponse(),APIServlet.MAX_BUFFERED_RESPONSE);
+    byte[] data = makeData(APIServlet.MAX_BUFFERED_RESPONSE);
+    out.write(data,0,data.length);
+    out.flush();
+    // Nothing goes out before close, so an error can still replace the response
+    assertFalse(recorder.streamOpened);
+    out.close();
+    assertEquals(new Integer(data.length),recorder.contentLength);
+    assertArrayEquals(data,recorder.body.toByteArray());
+    assertTrue(recorder.closed);
+  }
+
+  @Test
+  public void largeResponseIsStreamed()
+    throws Exception
+  {
+    RecordingResponse recorder = new RecordingResponse();
+    APIServlet.ResponseOutputStream out = new APIServlet.ResponseOutputStream(recorder.getResponse(),APIServlet.MAX_BUFFERED_RESPONSE);
+    byte[] data = makeData(APIServlet.MAX_BUFFERED_RESPONSE + 1);
+    // Write in pieces, so that the switch happens partway through
+    int chunk = 65536;
+    int i = 0;
+    while (i < data.length)
+    {
+      int len = Math.min(chunk,data.length - i);
+      out.write(data,i,len);
+      i += len;
+    }
+    // Everything held so far has gone out, in order
+    assertTrue(recorder.streamOpened);
+    out.close();
+    assertNull(recorder.contentLength);
+    assertArrayEquals(data,recorder.body.toByteArray());
+    assertTrue(recorder.closed);
+  }
+
+  @Test
+  public void abandonedResponseSendsNothing()
+    throws Exception
+  {
+    RecordingResponse recorder = new RecordingResponse();
+    APIServlet.ResponseOutputStream out = new APIServlet.ResponseOutputStream(recorder.getResponse(),APIServlet.MAX_BUFFERED_RESPONSE);
+    out.write(makeData(100),0,100);
+    out.abandon();
+    out.close();
+    assertFalse(recorder.streamOpened);
+    assertNull(recorder.contentLength);
+  }
+
+  protected static byte[] makeData(int length)
+  {
+    byte[] rval = new byte[length];
+    int i = 0;
+    while (i < length)
+    {
+      rval[i] = (byte)(i % 251);
+      i++;
+    }
+    return rval;
+  }
+
+  /** Stand-in for the servlet response, which records the content length and the body.
+  */
+  protected static class RecordingResponse implements InvocationHandler
+  {
+    public Integer contentLength = null;
+    public boolean streamOpened = false;
+    public boolean closed = false;
+    public final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    public HttpServletResponse getResponse()
+    {
+      return (HttpServletResponse)Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+        new Class[]{HttpServletResponse.class},this);
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args)
+      throws Throwable
+    {
+      String name = method.getName();
+      if (name.equals("setIntHeader") && "Content-Length".equals(args[0]))
+      {
+        contentLength = (Integer)args[1];
+        return null;
+      }
+      if (name.equals("getOutputStream"))
+      {
+        streamOpened = true;
+        return new ServletOutputStream()
+        {
+          public void write(int b)
+          {
+            body.write(b);
+          }
+
+          public void write(byte[] b, int off, int len)
+          {
+            body.write(b,off,len);
+          }
+
+          public void close()
+          {
+            closed = true;
+          }
+        };
+      }
+      throw new UnsupportedOperationException(name);
+    }
+  }
+
+}
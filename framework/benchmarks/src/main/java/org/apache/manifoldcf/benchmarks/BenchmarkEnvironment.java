@@ -0,0 +1,98 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.crawler.system.ManifoldCF;
+
+import java.io.*;
+
+/** Sets up a minimal crawler environment for benchmarks that need one: a properties file
+* with no database or synchronization directory, and logging at WARN into a scratch directory.
+* The default (PostgreSQL) database implementation does nothing when opened, so no database is needed.
+*/
+public class BenchmarkEnvironment
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  protected static boolean initialized = false;
+
+  private BenchmarkEnvironment()
+  {
+  }
+
+  /** Initialize the environment, once per JVM.
+  */
+  public static synchronized void initialize()
+    throws ManifoldCFException
+  {
+    if (initialized)
+      return;
+    try
+    {
+      File directory = File.createTempFile("mcf-benchmarks","");
+      directory.delete();
+      directory.mkdir();
+      directory.deleteOnExit();
+
+      File logOutputFile = new File(directory,"manifoldcf.log");
+      File loggingFile = new File(directory,"logging.ini");
+      writeFile(loggingFile,
+        "log4j.appender.MAIN.File="+logOutputFile.getAbsolutePath().replaceAll("\\\\","/")+"\n" +
+        "log4j.rootLogger=WARN, MAIN\n" +
+        "log4j.appender.MAIN=org.apache.log4j.RollingFileAppender\n" +
+        "log4j.appender.MAIN.layout=org.apache.log4j.PatternLayout\n" +
+        "log4j.appender.MAIN.layout.ConversionPattern=%5p %d{ISO8601} (%t) - %m%n\n");
+
+      File configFile = new File(directory,"properties.xml");
+      writeFile(configFile,
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+        "<configuration>\n" +
+        "  <property name=\"org.apache.manifoldcf.logconfigfile\" value=\""+loggingFile.getAbsolutePath().replaceAll("\\\\","/")+"\"/>\n" +
+        "</configuration>\n");
+
+      logOutputFile.deleteOnExit();
+      loggingFile.deleteOnExit();
+      configFile.deleteOnExit();
+
+      System.setProperty("org.apache.manifoldcf.configfile",configFile.getAbsolutePath());
+    }
+    catch (IOException e)
+    {
+      throw new ManifoldCFException("Couldn't set up benchmark environment: "+e.getMessage(),e);
+    }
+    ManifoldCF.initializeEnvironment();
+    initialized = true;
+  }
+
+  protected static void writeFile(File file, String contents)
+    throws IOException
+  {
+    Writer w = new OutputStreamWriter(new FileOutputStream(file),"UTF-8");
+    try
+    {
+      w.write(contents);
+    }
+    finally
+    {
+      w.close();
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import java.io.*;
+import java.util.Properties;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+/** Entry point for the benchmark jar.  Accepts the usual JMH command line, but defaults to writing
+* JSON results to a file named after the ManifoldCF version, so that runs can be compared across releases.
+*/
+public class BenchmarkRunner
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** The properties file the Maven jar plugin writes into every jar it builds */
+  protected static final String pomPropertiesResource = "/META-INF/maven/org.apache.manifoldcf/mcf-benchmarks/pom.properties";
+
+  public static void main(String[] args)
+    throws Exception
+  {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine);
+    if (!commandLine.getResultFormat().hasValue())
+      builder.resultFormat(ResultFormatType.JSON);
+    if (!commandLine.getResult().hasValue())
+      builder.result("mcf-benchmarks-"+getVersion()+".json");
+    new Runner(builder.build()).run();
+  }
+
+  /** Find the ManifoldCF version the benchmarks were built from.  The jar manifest normally has it;
+  * when it doesn't (e.g. the classes are run straight from target/classes, or the manifest was
+  * replaced by a repackaging), the Maven properties that the jar plugin embeds are tried.
+  *@return the version, or "unknown".
+  */
+  protected static String getVersion()
+  {
+    Package p = BenchmarkRunner.class.getPackage();
+    String version = (p == null)?null:p.getImplementationVersion();
+    if (version != null)
+      return version;
+    InputStream is = BenchmarkRunner.class.getResourceAsStream(pomPropertiesResource);
+    if (is != null)
+    {
+      try
+      {
+        try
+        {
+          Properties props = new Properties();
+          props.load(is);
+          version = props.getProperty("version");
+          if (version != null)
+            return version;
+        }
+        finally
+        {
+          is.close();
+        }
+      }
+      catch (IOException e)
+      {
+        // Fall through
+      }
+    }
+    return "unknown";
+  }
+
+}
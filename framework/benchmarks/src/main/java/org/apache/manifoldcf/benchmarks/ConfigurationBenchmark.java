@@ -0,0 +1,101 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of serializing and parsing configuration trees, which is how connection
+* configurations, document specifications and all API traffic are represented.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigurationBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Number of top-level nodes, each of which has a few attributes and children */
+  @Param({"10","1000"})
+  public int nodeCount;
+
+  protected Configuration configuration;
+  protected String xml;
+  protected String json;
+
+  @Setup
+  public void setUp()
+    throws Exception
+  {
+    configuration = new Configuration();
+    for (int i = 0; i < nodeCount; i++)
+    {
+      ConfigurationNode node = new ConfigurationNode("include");
+      node.setAttribute("type","file");
+      node.setAttribute("match","*.doc"+i);
+      ConfigurationNode child = new ConfigurationNode("path");
+      child.setValue("/some/directory/path/"+i);
+      node.addChild(node.getChildCount(),child);
+      child = new ConfigurationNode("description");
+      child.setValue("A description with characters that need escaping: <&> \"quoted\" "+i);
+      node.addChild(node.getChildCount(),child);
+      configuration.addChild(configuration.getChildCount(),node);
+    }
+    xml = configuration.toXML();
+    json = configuration.toJSON();
+  }
+
+  @Benchmark
+  public String toXML()
+    throws ManifoldCFException
+  {
+    return configuration.toXML();
+  }
+
+  @Benchmark
+  public String toJSON()
+    throws ManifoldCFException
+  {
+    return configuration.toJSON();
+  }
+
+  @Benchmark
+  public Configuration fromXML()
+    throws ManifoldCFException
+  {
+    Configuration c = new Configuration();
+    c.fromXML(xml);
+    return c;
+  }
+
+  @Benchmark
+  public Configuration fromJSON()
+    throws ManifoldCFException
+  {
+    Configuration c = new Configuration();
+    c.fromJSON(json);
+    return c;
+  }
+
+}
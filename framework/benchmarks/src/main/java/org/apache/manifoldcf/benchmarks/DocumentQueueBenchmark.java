@@ -0,0 +1,111 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.jobs.JobDescription;
+import org.apache.manifoldcf.crawler.repository.RepositoryConnection;
+import org.apache.manifoldcf.crawler.system.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of a worker thread pulling the best-rated document set off the in-memory document queue.
+* The queue is kept at a constant depth: each pulled set is marked as being processed, the oldest
+* in-flight set is finished, and that set goes back on the queue.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentQueueBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Number of document sets on the queue */
+  @Param({"100","1000"})
+  public int queueDepth;
+
+  /** Number of distinct bins (e.g. hosts) the documents are spread over */
+  @Param({"10","1000"})
+  public int binCount;
+
+  /** Number of documents in each set */
+  @Param({"10"})
+  public int setSize;
+
+  /** Number of sets being processed at any one time, i.e. the worker thread count */
+  protected final static int inFlightCount = 30;
+
+  protected DocumentQueue documentQueue;
+  protected QueueTracker queueTracker;
+  protected LinkedList<QueuedDocumentSet> inFlight;
+
+  @Setup
+  public void setUp()
+    throws Exception
+  {
+    BenchmarkEnvironment.initialize();
+    documentQueue = new DocumentQueue();
+    queueTracker = new QueueTracker();
+    inFlight = new LinkedList<QueuedDocumentSet>();
+
+    IJobDescription job = new JobDescription();
+    IRepositoryConnection connection = new RepositoryConnection();
+    Random random = new Random(42L);
+    long documentID = 0L;
+    for (int i = 0; i < queueDepth + inFlightCount; i++)
+    {
+      ArrayList documents = new ArrayList();
+      for (int j = 0; j < setSize; j++)
+      {
+        String identifier = "doc"+documentID;
+        DocumentDescription dd = new DocumentDescription(new Long(documentID),new Long(1L),Integer.toString(identifier.hashCode()),identifier);
+        documents.add(new QueuedDocument(dd,null,new String[]{"bin"+random.nextInt(binCount)}));
+        documentID++;
+      }
+      QueuedDocumentSet set = new QueuedDocumentSet(documents,job,connection);
+      if (i < queueDepth)
+        documentQueue.addDocument(set);
+      else
+      {
+        set.beginProcessing(queueTracker);
+        inFlight.add(set);
+      }
+    }
+  }
+
+  @Benchmark
+  public QueuedDocumentSet getDocument()
+    throws InterruptedException
+  {
+    QueuedDocumentSet set = documentQueue.getDocument(queueTracker);
+    set.beginProcessing(queueTracker);
+    inFlight.add(set);
+    QueuedDocumentSet finished = inFlight.removeFirst();
+    finished.endProcessing(queueTracker);
+    documentQueue.addDocument(finished);
+    return set;
+  }
+
+}
@@ -0,0 +1,111 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.core.fuzzyml.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Throughput of the fuzzyml parser over generated HTML and RSS corpora, with charset detection,
+* as used by the web and RSS connectors.  The parse states have no listeners attached, so this
+* measures the tokenizing cost only.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FuzzyMLParserBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Approximate corpus size in kilobytes */
+  @Param({"16","1024"})
+  public int size;
+
+  protected byte[] htmlCorpus;
+  protected byte[] rssCorpus;
+
+  @Setup
+  public void setUp()
+    throws Exception
+  {
+    BenchmarkEnvironment.initialize();
+    htmlCorpus = makeHTML(size * 1024);
+    rssCorpus = makeRSS(size * 1024);
+  }
+
+  @Benchmark
+  public void parseHTML()
+    throws ManifoldCFException, IOException
+  {
+    new Parser().parseWithCharsetDetection(null,new ByteArrayInputStream(htmlCorpus),new HTMLParseState());
+  }
+
+  @Benchmark
+  public void parseRSS()
+    throws ManifoldCFException, IOException
+  {
+    new Parser().parseWithCharsetDetection(null,new ByteArrayInputStream(rssCorpus),new XMLFuzzyHierarchicalParseState());
+  }
+
+  protected static byte[] makeHTML(int length)
+    throws UnsupportedEncodingException
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<!DOCTYPE html>\n<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\">")
+      .append("<title>Benchmark page</title><script type=\"text/javascript\">var x = 1 < 2 && 3 > 2;</script></head><body>\n");
+    int i = 0;
+    while (sb.length() < length)
+    {
+      sb.append("<div class=\"item\" id=item").append(i).append("><p>Paragraph ").append(i)
+        .append(" with some text, an entity &amp; a character reference &#233;t&#xE9;.</p>")
+        .append("<a href=\"http://www.example.com/page").append(i).append("?a=1&amp;b=2\" title='Link'>Link text</a>")
+        .append("<!-- comment <a href=\"ignored\"> --><img src=\"/img/").append(i).append(".png\"/><br>\n</div>\n");
+      i++;
+    }
+    sb.append("</body></html>\n");
+    return sb.toString().getBytes("utf-8");
+  }
+
+  protected static byte[] makeRSS(int length)
+    throws UnsupportedEncodingException
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rss version=\"2.0\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\"><channel>")
+      .append("<title>Benchmark feed</title><link>http://www.example.com/</link><ttl>60</ttl>\n");
+    int i = 0;
+    while (sb.length() < length)
+    {
+      sb.append("<item><title>Item ").append(i).append(" &amp; more</title>")
+        .append("<link>http://www.example.com/item").append(i).append("</link>")
+        .append("<pubDate>Mon, 18 Feb 2013 10:00:00 GMT</pubDate><dc:creator>Author ").append(i % 10).append("</dc:creator>")
+        .append("<description><![CDATA[<p>Description of item ").append(i).append(", with <b>markup</b>.</p>]]></description>")
+        .append("<category>Category ").append(i % 7).append("</category></item>\n");
+      i++;
+    }
+    sb.append("</channel></rss>\n");
+    return sb.toString().getBytes("utf-8");
+  }
+
+}
@@ -0,0 +1,111 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.core.cachemanager.GeneralCache;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of the in-memory object cache underlying the cache manager: lookups of present and
+* absent objects, and invalidation of a key followed by re-creation of the object it covered.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneralCacheBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Number of objects in the cache */
+  @Param({"1000","100000"})
+  public int objectCount;
+
+  /** Number of objects sharing each invalidation key */
+  protected final static int objectsPerKey = 10;
+
+  protected GeneralCache cache;
+  protected String[] descriptions;
+  protected String[] absentDescriptions;
+  protected StringSet[] keySets;
+  protected int index;
+  protected int keyIndex;
+
+  @Setup
+  public void setUp()
+  {
+    cache = new GeneralCache();
+    descriptions = new String[objectCount];
+    absentDescriptions = new String[objectCount];
+    keySets = new StringSet[objectCount / objectsPerKey + 1];
+    for (int i = 0; i < keySets.length; i++)
+    {
+      keySets[i] = new StringSet("KEY_"+i);
+    }
+    for (int i = 0; i < objectCount; i++)
+    {
+      descriptions[i] = "OBJECT_"+i;
+      absentDescriptions[i] = "ABSENT_"+i;
+      cache.setObject(descriptions[i],new Integer(i),keySets[i / objectsPerKey],0L);
+    }
+    index = 0;
+    keyIndex = 0;
+  }
+
+  protected int nextIndex()
+  {
+    int rval = index++;
+    if (index == objectCount)
+      index = 0;
+    return rval;
+  }
+
+  @Benchmark
+  public Object lookupHit()
+  {
+    return cache.lookup(descriptions[nextIndex()]);
+  }
+
+  @Benchmark
+  public Object lookupMiss()
+  {
+    return cache.lookup(absentDescriptions[nextIndex()]);
+  }
+
+  @Benchmark
+  public void invalidateAndRecreate()
+  {
+    StringSet keys = keySets[keyIndex];
+    cache.invalidateKeys(keys);
+    int start = keyIndex * objectsPerKey;
+    int end = Math.min(start + objectsPerKey,objectCount);
+    for (int i = start; i < end; i++)
+    {
+      cache.setObject(descriptions[i],new Integer(i),keys,0L);
+    }
+    keyIndex++;
+    if (keyIndex * objectsPerKey >= objectCount)
+      keyIndex = 0;
+  }
+
+}
@@ -0,0 +1,65 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.core.system.ManifoldCF;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of the standard identifier hash (SHA-1, hex encoded), which is computed for every
+* document identifier the crawler queues or looks up.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  @Param({"40","200","2000"})
+  public int length;
+
+  protected String input;
+
+  @Setup
+  public void setUp()
+  {
+    StringBuilder sb = new StringBuilder("http://www.example.com/");
+    int i = 0;
+    while (sb.length() < length)
+    {
+      sb.append("path").append(i++).append('/');
+    }
+    sb.setLength(length);
+    input = sb.toString();
+  }
+
+  @Benchmark
+  public String hash()
+    throws ManifoldCFException
+  {
+    return ManifoldCF.hash(input);
+  }
+
+}
@@ -0,0 +1,100 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.core.lockmanager.LockManager;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of entering and leaving local (single-JVM) locks, uncontended and with several threads
+* competing for the same lock.  Each thread has its own lock manager, as each thread context does.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LockManagerBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  protected final static String sharedLockKey = "benchmark-shared";
+
+  protected LockManager lockManager;
+  protected String privateLockKey;
+  protected String[] multipleReadLocks;
+  protected String[] multipleWriteLocks;
+
+  @Setup
+  public void setUp()
+    throws Exception
+  {
+    BenchmarkEnvironment.initialize();
+    lockManager = new LockManager();
+    privateLockKey = "benchmark-private-"+Thread.currentThread().getId();
+    multipleReadLocks = new String[]{sharedLockKey+"-a",sharedLockKey+"-b"};
+    multipleWriteLocks = new String[]{privateLockKey+"-c"};
+  }
+
+  @Benchmark
+  public void readLockUncontended()
+    throws ManifoldCFException
+  {
+    lockManager.enterReadLock(privateLockKey);
+    lockManager.leaveReadLock(privateLockKey);
+  }
+
+  @Benchmark
+  public void writeLockUncontended()
+    throws ManifoldCFException
+  {
+    lockManager.enterWriteLock(privateLockKey);
+    lockManager.leaveWriteLock(privateLockKey);
+  }
+
+  @Benchmark
+  public void multipleLocksUncontended()
+    throws ManifoldCFException
+  {
+    lockManager.enterLocks(multipleReadLocks,null,multipleWriteLocks);
+    lockManager.leaveLocks(multipleReadLocks,null,multipleWriteLocks);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void readLockShared()
+    throws ManifoldCFException
+  {
+    lockManager.enterReadLock(sharedLockKey);
+    lockManager.leaveReadLock(sharedLockKey);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void writeLockContended()
+    throws ManifoldCFException
+  {
+    lockManager.enterWriteLock(sharedLockKey);
+    lockManager.leaveWriteLock(sharedLockKey);
+  }
+
+}
@@ -0,0 +1,86 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.repository.RepositoryConnection;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of assigning a document priority, as done by the stuffer and during job queue
+* priority resets, against a connection with and without throttles.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueueTrackerBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Number of distinct bins (e.g. hosts) the documents are spread over */
+  @Param({"10","10000"})
+  public int binCount;
+
+  /** Number of throttle rules on the connection */
+  @Param({"0","5"})
+  public int throttleCount;
+
+  protected QueueTracker queueTracker;
+  protected IRepositoryConnection connection;
+  protected String[][] binNames;
+  protected int index;
+
+  @Setup
+  public void setUp()
+    throws Exception
+  {
+    BenchmarkEnvironment.initialize();
+    queueTracker = new QueueTracker();
+    RepositoryConnection rc = new RepositoryConnection();
+    for (int i = 0; i < throttleCount; i++)
+    {
+      rc.addThrottleValue("^bin"+i,"Throttle "+i,(float)(i+1) / 1000.0f);
+    }
+    connection = rc;
+
+    // A repeating sequence of bins, so that the lookup pattern doesn't depend on the random generator
+    Random random = new Random(42L);
+    binNames = new String[4096][];
+    for (int i = 0; i < binNames.length; i++)
+    {
+      binNames[i] = new String[]{"bin"+random.nextInt(binCount)};
+    }
+    index = 0;
+  }
+
+  @Benchmark
+  public double calculatePriority()
+  {
+    String[] bins = binNames[index];
+    index = (index + 1) & (binNames.length - 1);
+    return queueTracker.calculatePriority(bins,connection);
+  }
+
+}
@@ -0,0 +1,100 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Cost of building a repository document the way a typical connector does: binary content,
+* security tokens and a handful of metadata fields, then reading the fields back as an output
+* connector would.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RepositoryDocumentBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Number of metadata fields */
+  @Param({"5","50"})
+  public int fieldCount;
+
+  protected byte[] content;
+  protected String[] fieldNames;
+  protected String[][] fieldValues;
+  protected String[] acl;
+  protected String[] denyAcl;
+
+  @Setup
+  public void setUp()
+    throws Exception
+  {
+    content = new byte[16384];
+    fieldNames = new String[fieldCount];
+    fieldValues = new String[fieldCount][];
+    for (int i = 0; i < fieldCount; i++)
+    {
+      fieldNames[i] = "field"+i;
+      fieldValues[i] = new String[]{"value "+i,"another value "+i};
+    }
+    acl = new String[]{"token1","token2","token3"};
+    denyAcl = new String[]{"deadbeef"};
+  }
+
+  @Benchmark
+  public RepositoryDocument construct()
+    throws ManifoldCFException
+  {
+    RepositoryDocument rd = new RepositoryDocument();
+    rd.setMimeType("text/html");
+    rd.setFileName("document.html");
+    rd.setBinary(new ByteArrayInputStream(content),(long)content.length);
+    rd.setACL(acl);
+    rd.setDenyACL(denyAcl);
+    for (int i = 0; i < fieldCount; i++)
+    {
+      rd.addField(fieldNames[i],fieldValues[i]);
+    }
+    return rd;
+  }
+
+  @Benchmark
+  public int constructAndRead()
+    throws ManifoldCFException, IOException
+  {
+    RepositoryDocument rd = construct();
+    int total = 0;
+    java.util.Iterator<String> iter = rd.getFields();
+    while (iter.hasNext())
+    {
+      String[] values = rd.getFieldAsStrings(iter.next());
+      total += values.length;
+    }
+    return total;
+  }
+
+}
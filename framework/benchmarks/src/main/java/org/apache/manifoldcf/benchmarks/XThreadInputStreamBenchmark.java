@@ -0,0 +1,121 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.benchmarks;
+
+import org.apache.manifoldcf.core.common.XThreadInputStream;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Throughput of XThreadInputStream, which hands document content from a connector's fetch
+* thread to the worker thread.  Each invocation moves 64MB through the stream.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class XThreadInputStreamBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  protected final static long TRANSFER_LENGTH = 64L * 1024L * 1024L;
+
+  @Param({"4096","65536","1048576"})
+  public int bufferSize;
+
+  protected byte[] readBuffer = new byte[65536];
+
+  @Benchmark
+  public long transfer()
+    throws Exception
+  {
+    final XThreadInputStream is = new XThreadInputStream(new BlankInputStream(TRANSFER_LENGTH),bufferSize);
+    Thread t = new Thread()
+      {
+        public void run()
+        {
+          try
+          {
+            is.stuffQueue();
+          }
+          catch (Throwable e)
+          {
+          }
+        }
+      };
+    t.setDaemon(true);
+    t.start();
+    long total = 0L;
+    try
+    {
+      while (true)
+      {
+        int amt = is.read(readBuffer,0,readBuffer.length);
+        if (amt == -1)
+          break;
+        total += amt;
+      }
+    }
+    finally
+    {
+      is.abort();
+      t.join();
+    }
+    return total;
+  }
+
+  /** Stream that hands back whatever is asked for, without touching the data, so that only
+  * the cost of the cross-thread stream is measured */
+  protected static class BlankInputStream extends InputStream
+  {
+    protected final long length;
+    protected long position = 0L;
+
+    public BlankInputStream(long length)
+    {
+      this.length = length;
+    }
+
+    @Override
+    public int read()
+      throws IOException
+    {
+      if (position == length)
+        return -1;
+      position++;
+      return 0;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+      throws IOException
+    {
+      if (position == length)
+        return -1;
+      if (len > length - position)
+        len = (int)(length - position);
+      position += len;
+      return len;
+    }
+  }
+
+}
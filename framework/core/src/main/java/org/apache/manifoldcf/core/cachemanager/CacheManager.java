@@ -22,6 +22,9 @@ import org.apache.manifoldcf.core.interfaces.*;
 import java.util.*;
 import org.apache.manifoldcf.core.system.Logging;
 import org.apache.manifoldcf.core.system.ManifoldCF;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
+import org.apache.manifoldcf.core.metrics.Counter;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.*;
 
 /** This class implements the cache manager interface, and provides generic cache management
@@ -38,6 +41,9 @@ public class CacheManager implements ICacheManager
   protected ILockManager lockManager;
   protected static GeneralCache cache = new GeneralCache();
 
+  /** The hit and miss counters for each cache class, so that a lookup needn't go to the registry */
+  protected final static Map<String,Counter[]> hitMissCounters = new ConcurrentHashMap<String,Counter[]>();
+
   // This is the hash mapping transaction id's to CacheTransactionHandle objects.
   // It is thread specific because transactions are thread local.
   protected HashMap transactionHash = new HashMap();
@@ -373,6 +379,43 @@ public class CacheManager implements ICacheManager
   */
   public Object lookupObject(ICacheCreateHandle handle, ICacheDescription objectDescription)
     throws ManifoldCFException
+  {
+    Object rval = lookupObjectUncounted(handle,objectDescription);
+    // Objects that can't be cached don't count toward the hit rate
+    if (objectDescription.getObjectKeys() != null)
+    {
+      ICacheClass objectClass = objectDescription.getObjectClass();
+      String className = (objectClass == null)?"":objectClass.getClassName();
+      Counter[] counters = getHitMissCounters(className);
+      if (rval != null)
+        counters[0].increment();
+      else
+        counters[1].increment();
+    }
+    return rval;
+  }
+
+  /** Get the hit and miss counters for a cache class.
+  *@param className is the cache class name.
+  *@return the hit counter, followed by the miss counter.
+  */
+  protected static Counter[] getHitMissCounters(String className)
+  {
+    Counter[] rval = hitMissCounters.get(className);
+    if (rval == null)
+    {
+      // Two threads may both get here; the registry hands them the same counters
+      rval = new Counter[]{MetricsRegistry.getCounter("cache.hits","class",className),
+        MetricsRegistry.getCounter("cache.misses","class",className)};
+      hitMissCounters.put(className,rval);
+    }
+    return rval;
+  }
+
+  /** Lookup an object, without noting the hit or miss.
+  */
+  protected Object lookupObjectUncounted(ICacheCreateHandle handle, ICacheDescription objectDescription)
+    throws ManifoldCFException
   {
     if (handle == null)
       throw new ManifoldCFException("Can't do lookup outside of create section",
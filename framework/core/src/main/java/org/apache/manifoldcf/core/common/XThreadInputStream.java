@@ -19,90 +19,163 @@
 package org.apache.manifoldcf.core.common;
 
 import java.io.*;
+import java.util.*;
 
 /** Cross-thread input stream.  Use this class when you have a helper thread
 * reading from a socket, and you need the ability to read safely from a ManifoldCF
 * worker thread.
+*
+* The data is handed over through a single-producer/single-consumer ring buffer.
+* The producer (the thread calling stuffQueue()) owns the write position, and the
+* consumer (the thread calling read()) owns the read position.  Neither side takes
+* a lock while data is flowing; a side blocks only when the buffer is truly empty
+* (consumer) or truly full (producer).  Ring buffers are recycled through a pool,
+* keyed by size, once both sides are done with them.  Only buffers up to a modest size
+* are pooled, and the pool as a whole is bounded, so one large transfer doesn't pin
+* its buffer for the life of the JVM.
 */
 public class XThreadInputStream extends InputStream
 {
-  private byte[] buffer = new byte[65536];
-  private int startPoint = 0;
-  private int byteCount = 0;
-  private boolean streamEnd = false;
-  private IOException failureException = null;
+  /** Default buffer size */
+  public static final int DEFAULT_BUFFER_SIZE = 65536;
+  /** Smallest buffer size we will allocate */
+  protected static final int MIN_BUFFER_SIZE = 4096;
+  /** Largest buffer size we will allocate */
+  protected static final int MAX_BUFFER_SIZE = 16777216;
+  /** Maximum number of idle buffers we keep for any one size */
+  protected static final int MAX_POOLED_BUFFERS = 16;
+  /** Largest buffer we will pool; bigger ones are left to the garbage collector */
+  protected static final int MAX_POOLED_BUFFER_SIZE = 1048576;
+  /** Maximum total bytes held in idle buffers */
+  protected static final long MAX_POOLED_BYTES = 4194304L;
+
+  /** Idle buffers, keyed by size */
+  protected static final Map<Integer,LinkedList<byte[]>> bufferPool = new HashMap<Integer,LinkedList<byte[]>>();
+  /** Total bytes held in idle buffers; protected by bufferPool */
+  protected static long pooledBytes = 0L;
+
+  /** The ring buffer; length is always a power of two */
+  private final byte[] buffer;
+  /** Mask for converting positions into buffer offsets */
+  private final int mask;
+  /** Total bytes ever written into the buffer; only the producer changes this */
+  private volatile long writePosition = 0L;
+  /** Total bytes ever read from the buffer; only the consumer changes this */
+  private volatile long readPosition = 0L;
+  /** Set when the consumer is (about to be) blocked waiting for data */
+  private volatile boolean consumerWaiting = false;
+  /** Set when the producer is (about to be) blocked waiting for space */
+  private volatile boolean producerWaiting = false;
+  private volatile boolean streamEnd = false;
+  private volatile IOException failureException = null;
+  private volatile boolean abort = false;
   private InputStream sourceStream;
-  private boolean abort = false;
-  
+  /** Set by the consumer when it is done with the stream */
+  private boolean consumerDone = false;
+  /** Set by the producer when it is done with the stream */
+  private boolean producerDone = false;
+
   /** Constructor */
   public XThreadInputStream(InputStream sourceStream)
+  {
+    this(sourceStream,DEFAULT_BUFFER_SIZE);
+  }
+
+  /** Constructor.
+  *@param sourceStream is the stream to read from in the helper thread.
+  *@param bufferSize is the desired size of the ring buffer, which will be rounded up to
+  * a power of two.
+  */
+  public XThreadInputStream(InputStream sourceStream, int bufferSize)
   {
     this.sourceStream = sourceStream;
+    this.buffer = allocateBuffer(roundBufferSize(bufferSize));
+    this.mask = buffer.length - 1;
   }
-  
+
   /** Call this method to abort the stuffQueue() method.
   */
   public void abort()
   {
+    abort = true;
     synchronized (this)
     {
-      abort = true;
       notifyAll();
     }
+    consumerFinished();
   }
-  
+
   /** This method is called from the helper thread side, to keep the queue
   * stuffed.  It exits when the stream is empty, or when interrupted.
   */
   public void stuffQueue()
     throws IOException, InterruptedException
   {
-    while (true)
+    try
     {
-      int maxToRead;
-      int readStartPoint;
-      synchronized (this)
+      while (true)
       {
         if (streamEnd || abort)
           return;
-        // Calculate amount to read
-        maxToRead = buffer.length - byteCount;
+
+        // Calculate amount we can read without overwriting unread data
+        long currentWrite = writePosition;
+        int maxToRead = buffer.length - (int)(currentWrite - readPosition);
         if (maxToRead == 0)
         {
-          wait();
+          // Buffer is full; wait for the consumer to make room
+          synchronized (this)
+          {
+            producerWaiting = true;
+            try
+            {
+              while (!abort && buffer.length - (int)(currentWrite - readPosition) == 0)
+                wait();
+            }
+            finally
+            {
+              producerWaiting = false;
+            }
+          }
           continue;
         }
-        readStartPoint = (startPoint + byteCount) & (buffer.length-1);
-      }
-      
-      // See how to break up the reads into pieces.  We only do one piece right now.
-      if (readStartPoint + maxToRead >= buffer.length)
-        maxToRead = buffer.length - readStartPoint;
-      
-      int amt = -1;
-      IOException exception = null;
-      try
-      {
-        amt = sourceStream.read(buffer, readStartPoint, maxToRead);
-      }
-      catch (IOException e)
-      {
-        exception = e;
-      }
-      
-      synchronized (this)
-      {
-        if (exception != null)
-          failureException = exception;
-        else if (amt == -1)
+
+        // Read only up to the physical end of the array; the next pass picks up the wrapped part
+        int readStartPoint = (int)currentWrite & mask;
+        if (readStartPoint + maxToRead > buffer.length)
+          maxToRead = buffer.length - readStartPoint;
+
+        int amt;
+        try
+        {
+          amt = sourceStream.read(buffer, readStartPoint, maxToRead);
+        }
+        catch (IOException e)
+        {
+          failureException = e;
+          wakeConsumer();
+          return;
+        }
+
+        if (amt == -1)
+        {
           streamEnd = true;
-        else
-          byteCount += amt;
-        notifyAll();
+          wakeConsumer();
+          return;
+        }
+
+        // Publish the new data
+        writePosition = currentWrite + amt;
+        if (consumerWaiting)
+          wakeConsumer();
       }
     }
+    finally
+    {
+      producerFinished();
+    }
   }
-  
+
   /** Read a byte.
   */
   @Override
@@ -113,9 +186,9 @@ public class XThreadInputStream extends InputStream
     int amt = read(b,0,1);
     if (amt == -1)
       return amt;
-    return ((int)b[0]) & 0xffff;
+    return ((int)b[0]) & 0xff;
   }
-    
+
   /** Read lots of bytes.
   */
   @Override
@@ -125,53 +198,80 @@ public class XThreadInputStream extends InputStream
     return read(b,0,b.length);
   }
 
-  /** Read lots of specific bytes.
+  /** Read lots of specific bytes.  This method blocks only if there are no bytes
+  * available at all; otherwise it returns whatever can be transferred in bulk.
   */
   @Override
   public int read(byte[] b, int off, int len)
     throws IOException
   {
+    if (len == 0)
+      return 0;
+    if (consumerDone)
+      throw new IOException("Stream closed");
     try
     {
-      int totalAmt = 0;
       while (true)
       {
-        if (len == 0)
-          return totalAmt;
-        int copyLen;
-        synchronized (this)
+        long currentRead = readPosition;
+        int available = (int)(writePosition - currentRead);
+        if (available == 0)
         {
-          copyLen = byteCount;
-          if (copyLen > len)
-            copyLen = len;
-          int remLen = buffer.length - startPoint;
-          if (copyLen > remLen)
-            copyLen = remLen;
-          if (copyLen == 0)
+          // Check for end conditions only after the data has been drained
+          if (streamEnd)
           {
-            if (streamEnd)
-            {
-              if (totalAmt != 0)
-                return totalAmt;
+            // Re-check, since the producer may have written data before flagging the end
+            if (writePosition == currentRead)
               return -1;
-            }
-            if (failureException != null)
+            continue;
+          }
+          if (failureException != null)
+          {
+            if (writePosition == currentRead)
               throw failureException;
-            wait();
             continue;
           }
+          if (abort)
+            return -1;
+          // Buffer is empty; wait for the producer
+          synchronized (this)
+          {
+            consumerWaiting = true;
+            try
+            {
+              while (writePosition == currentRead && !streamEnd && failureException == null && !abort)
+                wait();
+            }
+            finally
+            {
+              consumerWaiting = false;
+            }
+          }
+          continue;
         }
-        System.arraycopy(buffer, startPoint, b, off, copyLen);
-        totalAmt += copyLen;
-        off += copyLen;
-        len -= copyLen;
-        synchronized (this)
+
+        // Bulk copy, in at most two pieces if the data wraps around the end of the array
+        int copyLen = available;
+        if (copyLen > len)
+          copyLen = len;
+        int readStartPoint = (int)currentRead & mask;
+        int firstPiece = buffer.length - readStartPoint;
+        if (firstPiece > copyLen)
+          firstPiece = copyLen;
+        System.arraycopy(buffer, readStartPoint, b, off, firstPiece);
+        if (firstPiece < copyLen)
+          System.arraycopy(buffer, 0, b, off + firstPiece, copyLen - firstPiece);
+
+        // Release the space back to the producer
+        readPosition = currentRead + copyLen;
+        if (producerWaiting)
         {
-          startPoint += copyLen;
-          startPoint &= (buffer.length - 1);
-          byteCount -= copyLen;
-          notifyAll();
+          synchronized (this)
+          {
+            notifyAll();
+          }
         }
+        return copyLen;
       }
     }
     catch (InterruptedException e)
@@ -179,7 +279,7 @@ public class XThreadInputStream extends InputStream
       throw new InterruptedIOException(e.getMessage());
     }
   }
-  
+
   /** Skip
   */
   @Override
@@ -196,8 +296,9 @@ public class XThreadInputStream extends InputStream
   public int available()
     throws IOException
   {
-    // Not supported
-    return 0;
+    if (consumerDone)
+      return 0;
+    return (int)(writePosition - readPosition);
   }
 
   /** Mark.
@@ -232,8 +333,115 @@ public class XThreadInputStream extends InputStream
   public void close()
     throws IOException
   {
-    // MHL
+    // Closing from the consumer side also shuts down the producer
+    abort();
   }
 
-}
+  /** Wake up the consumer, if it is waiting.
+  */
+  protected void wakeConsumer()
+  {
+    synchronized (this)
+    {
+      notifyAll();
+    }
+  }
+
+  /** Note that the consumer is done with the buffer.
+  */
+  protected void consumerFinished()
+  {
+    boolean release;
+    synchronized (this)
+    {
+      if (consumerDone)
+        return;
+      consumerDone = true;
+      release = producerDone;
+    }
+    if (release)
+      releaseBuffer(buffer);
+  }
+
+  /** Note that the producer is done with the buffer.
+  */
+  protected void producerFinished()
+  {
+    boolean release;
+    synchronized (this)
+    {
+      if (producerDone)
+        return;
+      producerDone = true;
+      release = consumerDone;
+    }
+    if (release)
+      releaseBuffer(buffer);
+  }
 
+  /** Round a requested buffer size to a supported power of two.
+  */
+  protected static int roundBufferSize(int bufferSize)
+  {
+    if (bufferSize <= MIN_BUFFER_SIZE)
+      return MIN_BUFFER_SIZE;
+    if (bufferSize >= MAX_BUFFER_SIZE)
+      return MAX_BUFFER_SIZE;
+    int rval = Integer.highestOneBit(bufferSize);
+    if (rval < bufferSize)
+      rval <<= 1;
+    return rval;
+  }
+
+  /** Obtain a buffer of the given size, from the pool if possible.
+  */
+  protected static byte[] allocateBuffer(int size)
+  {
+    synchronized (bufferPool)
+    {
+      LinkedList<byte[]> list = bufferPool.get(new Integer(size));
+      if (list != null && list.size() > 0)
+      {
+        byte[] rval = list.removeFirst();
+        pooledBytes -= (long)rval.length;
+        return rval;
+      }
+    }
+    return new byte[size];
+  }
+
+  /** Return a buffer to the pool.
+  */
+  protected static void releaseBuffer(byte[] buffer)
+  {
+    if (buffer.length > MAX_POOLED_BUFFER_SIZE)
+      return;
+    synchronized (bufferPool)
+    {
+      Integer key = new Integer(buffer.length);
+      LinkedList<byte[]> list = bufferPool.get(key);
+      if (list == null)
+      {
+        list = new LinkedList<byte[]>();
+        bufferPool.put(key,list);
+      }
+      if (list.size() < MAX_POOLED_BUFFERS && pooledBytes + (long)buffer.length <= MAX_POOLED_BYTES)
+      {
+        list.addFirst(buffer);
+        pooledBytes += (long)buffer.length;
+      }
+    }
+  }
+
+  /** Get the number of bytes currently held in idle pooled buffers.
+  *@return the byte count.
+  */
+  public static long getPooledBytes()
+  {
+    synchronized (bufferPool)
+    {
+      return pooledBytes;
+    }
+  }
+
+}
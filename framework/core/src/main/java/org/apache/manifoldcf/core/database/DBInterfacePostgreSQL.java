@@ -504,6 +504,58 @@ public class DBInterfacePostgreSQL extends Database implements IDBInterface
     throws ManifoldCFException
   {
     performModification("DROP TABLE "+tableName,null,invalidateKeys);
+    // Tables such as partitions come and go, so don't keep their maintenance statistics around
+    forgetTableStatistics(statslockReindexPrefix+tableName,statsReindexPrefix+tableName,currentReindexStatistics,tableName);
+    forgetTableStatistics(statslockAnalyzePrefix+tableName,statsAnalyzePrefix+tableName,currentAnalyzeStatistics,tableName);
+  }
+
+  /** Find out whether this database supports table partitions.
+  *@return true, since partitions are implemented using table inheritance.
+  */
+  @Override
+  public boolean supportsPartitions()
+  {
+    return true;
+  }
+
+  /** Create a partition of a table.  The partition is a child table, which inherits the parent table's columns,
+  * with a check constraint that allows the planner to skip it when a query asks for a different value.
+  *@param tableName is the name of the table to partition.
+  *@param partitionName is the name of the partition.
+  *@param columnName is the name of the column the partition is selected by.
+  *@param value is the column value of all rows in the partition.
+  *@param invalidateKeys are the cache keys that should be invalidated, if any.
+  */
+  @Override
+  public void performCreatePartition(String tableName, String partitionName, String columnName, Long value,
+    StringSet invalidateKeys)
+    throws ManifoldCFException
+  {
+    beginTransaction(TRANSACTION_ENCLOSING);
+    try
+    {
+      // The constraint must contain the literal value, or the planner cannot use it
+      performModification("CREATE TABLE "+partitionName+" (CHECK ("+columnName+"="+value.toString()+")) INHERITS ("+tableName+")",
+        null,invalidateKeys);
+      List list = new ArrayList();
+      list.add(value);
+      performModification("INSERT INTO "+partitionName+" SELECT * FROM ONLY "+tableName+" WHERE "+columnName+"=?",list,invalidateKeys);
+      performModification("DELETE FROM ONLY "+tableName+" WHERE "+columnName+"=?",list,invalidateKeys);
+    }
+    catch (ManifoldCFException e)
+    {
+      signalRollback();
+      throw e;
+    }
+    catch (Error e)
+    {
+      signalRollback();
+      throw e;
+    }
+    finally
+    {
+      endTransaction();
+    }
   }
 
   /** Create user and database.
@@ -655,9 +707,13 @@ public class DBInterfacePostgreSQL extends Database implements IDBInterface
     query.append(" WHEN 'bpchar' THEN 'char(' || pg_attribute.atttypmod-4 || ')'");
     query.append(" ELSE pg_type.typname END AS \"Type\",");
     query.append("CASE WHEN pg_attribute.attnotnull THEN '' ELSE 'YES' END AS \"Null\",");
-    query.append("CASE pg_type.typname WHEN 'varchar' THEN substring(pg_attrdef.adsrc from '^(.*).*$') ELSE pg_attrdef.adsrc END AS Default ");
+    query.append("CASE pg_type.typname WHEN 'varchar' THEN substring(pg_attrdef.adsrc from '^(.*).*$') ELSE pg_attrdef.adsrc END AS Default,");
+    query.append("refclass.relname AS \"RefTable\",refattr.attname AS \"RefColumn\",pg_constraint.confdeltype AS \"RefDelete\" ");
     query.append("FROM pg_class INNER JOIN pg_attribute ON (pg_class.oid=pg_attribute.attrelid) INNER JOIN pg_type ON (pg_attribute.atttypid=pg_type.oid) ");
     query.append("LEFT JOIN pg_attrdef ON (pg_class.oid=pg_attrdef.adrelid AND pg_attribute.attnum=pg_attrdef.adnum) ");
+    query.append("LEFT JOIN pg_constraint ON (pg_class.oid=pg_constraint.conrelid AND pg_constraint.contype='f' AND pg_constraint.conkey[1]=pg_attribute.attnum) ");
+    query.append("LEFT JOIN pg_class refclass ON (pg_constraint.confrelid=refclass.oid) ");
+    query.append("LEFT JOIN pg_attribute refattr ON (pg_constraint.confrelid=refattr.attrelid AND pg_constraint.confkey[1]=refattr.attnum) ");
     query.append("WHERE pg_class.relname=? AND pg_attribute.attnum>=1 AND NOT pg_attribute.attisdropped ");
     query.append("ORDER BY pg_attribute.attnum");
     list.add(tableName);
@@ -675,7 +731,12 @@ public class DBInterfacePostgreSQL extends Database implements IDBInterface
       String type = row.getValue("Type").toString();
       boolean isNull = row.getValue("Null").toString().equals("YES");
       boolean isPrimaryKey = false; // row.getValue("Key").toString().equals("PRI");
-      rval.put(fieldName,new ColumnDescription(type,isPrimaryKey,isNull,null,null,false));
+      Object refTable = row.getValue("RefTable");
+      Object refColumn = row.getValue("RefColumn");
+      Object refDelete = row.getValue("RefDelete");
+      rval.put(fieldName,new ColumnDescription(type,isPrimaryKey,isNull,
+        (refTable==null)?null:refTable.toString(),(refColumn==null)?null:refColumn.toString(),
+        refDelete != null && refDelete.toString().equals("c")));
     }
 
     return rval;
@@ -1228,6 +1289,32 @@ public class DBInterfacePostgreSQL extends Database implements IDBInterface
     lockManager.writeData(datumName,bytes);
   }
 
+  /** Discard the maintenance statistics for a table.
+  */
+  protected void forgetTableStatistics(String tableStatisticsLock, String eventDatum, Map<String,TableStatistics> currentStatistics,
+    String tableName)
+    throws ManifoldCFException
+  {
+    lockManager.enterWriteCriticalSection(tableStatisticsLock);
+    try
+    {
+      currentStatistics.remove(tableName);
+      lockManager.enterWriteLock(tableStatisticsLock);
+      try
+      {
+        writeDatum(eventDatum,0);
+      }
+      finally
+      {
+        lockManager.leaveWriteLock(tableStatisticsLock);
+      }
+    }
+    finally
+    {
+      lockManager.leaveWriteCriticalSection(tableStatisticsLock);
+    }
+  }
+
   /** Analyze a table.
   *@param tableName is the name of the table to analyze/calculate statistics for.
   */
@@ -22,6 +22,8 @@ import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.core.jdbcpool.*;
 import org.apache.manifoldcf.core.system.Logging;
 import org.apache.manifoldcf.core.system.ManifoldCF;
+import org.apache.manifoldcf.core.metrics.Histogram;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
 
 import java.util.*;
 import java.sql.*;
@@ -58,6 +60,13 @@ public abstract class Database
 
   protected final static String _TRANSACTION_ = "_TRANSACTION_";
 
+  // Query times, by statement class
+  protected final static Histogram selectQueryTime = MetricsRegistry.getHistogram("db.query.time","class","select");
+  protected final static Histogram insertQueryTime = MetricsRegistry.getHistogram("db.query.time","class","insert");
+  protected final static Histogram updateQueryTime = MetricsRegistry.getHistogram("db.query.time","class","update");
+  protected final static Histogram deleteQueryTime = MetricsRegistry.getHistogram("db.query.time","class","delete");
+  protected final static Histogram otherQueryTime = MetricsRegistry.getHistogram("db.query.time","class","other");
+
   public Database(IThreadContext context, String jdbcUrl, String jdbcDriverClass, String databaseName, String userName, String password)
     throws ManifoldCFException
   {
@@ -497,6 +506,29 @@ public abstract class Database
     return "";
   }
 
+  /** Find out whether this database supports table partitions.
+  * Most databases don't.
+  *@return true if performCreatePartition() can be used.
+  */
+  public boolean supportsPartitions()
+  {
+    return false;
+  }
+
+  /** Create a partition of a table.
+  *@param tableName is the name of the table to partition.
+  *@param partitionName is the name of the partition.
+  *@param columnName is the name of the column the partition is selected by.
+  *@param value is the column value of all rows in the partition.
+  *@param invalidateKeys are the cache keys that should be invalidated, if any.
+  */
+  public void performCreatePartition(String tableName, String partitionName, String columnName, Long value,
+    StringSet invalidateKeys)
+    throws ManifoldCFException
+  {
+    throw new ManifoldCFException("Table partitions are not supported by this database");
+  }
+
   /** Construct ORDER-BY clause meant for reading from an index.
   * Supply the field names belonging to the index, in order.
   * Also supply a corresponding boolean array, where TRUE means "ASC", and FALSE
@@ -901,6 +933,28 @@ public abstract class Database
     return rval;
   }
 
+  /** Find the histogram that times a statement, by the statement's leading keyword.
+  *@param query is the query.
+  *@return the histogram for "select", "insert", "update", "delete", or "other" statements.
+  */
+  protected static Histogram getQueryTimeHistogram(String query)
+  {
+    String start = query.trim();
+    if (start.length() >= 6)
+    {
+      start = start.substring(0,6);
+      if (start.equalsIgnoreCase("SELECT"))
+        return selectQueryTime;
+      if (start.equalsIgnoreCase("INSERT"))
+        return insertQueryTime;
+      if (start.equalsIgnoreCase("UPDATE"))
+        return updateQueryTime;
+      if (start.equalsIgnoreCase("DELETE"))
+        return deleteQueryTime;
+    }
+    return otherQueryTime;
+  }
+
   // Read data from a resultset
   protected IResultSet getData(ResultSet rs, boolean bResults, int maxResults, ResultSpecification spec, ILimitChecker returnLimit)
     throws ManifoldCFException
@@ -1431,6 +1485,7 @@ public abstract class Database
           description.getMaxReturn(),spec,limit);
 
         long endTime = System.currentTimeMillis();
+        getQueryTimeHistogram(description.getQuery()).record(endTime-startTime);
         if (endTime-startTime > database.maxQueryTime && description.getQuery().length() >= 6 &&
           ("SELECT".equalsIgnoreCase(description.getQuery().substring(0,6)) || "UPDATE".equalsIgnoreCase(description.getQuery().substring(0,6))))
         {
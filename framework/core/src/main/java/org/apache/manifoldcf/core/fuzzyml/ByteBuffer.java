@@ -19,19 +19,17 @@
 package org.apache.manifoldcf.core.fuzzyml;
 
 import org.apache.manifoldcf.core.interfaces.*;
-import java.util.*;
 
 /** This class represents a variable-length buffer for bytes.
+* The buffer starts small and doubles as needed, since most uses (byte order mark
+* detection, encoding detection prefixes) only ever hold a handful of bytes.
 */
 public class ByteBuffer
 {
-  protected static final int arraySize = 65536;
-  protected static final int arrayShift = 16;
-  
-  protected final List<byte[]> arrayOfArrays = new ArrayList<byte[]>();
+  protected static final int initialSize = 64;
+
+  protected byte[] buffer = null;
   protected int totalBytes = 0;
-  protected int currentIndex = -1;
-  protected byte[] currentBuffer = null;
   
   /** Constructor */
   public ByteBuffer()
@@ -42,10 +40,7 @@ public class ByteBuffer
   */
   public void clear()
   {
-    arrayOfArrays.clear();
     totalBytes = 0;
-    currentIndex = -1;
-    currentBuffer = null;
   }
   
   /** Get the current buffer length.
@@ -59,23 +54,52 @@ public class ByteBuffer
   */
   public void appendByte(byte b)
   {
-    if (currentIndex == arraySize || currentIndex == -1)
-    {
-      currentBuffer = new byte[arraySize];
-      arrayOfArrays.add(currentBuffer);
-      currentIndex = 0;
-    }
-    currentBuffer[currentIndex++] = b;
-    totalBytes++;
+    ensureCapacity(totalBytes + 1);
+    buffer[totalBytes++] = b;
   }
   
+  /** Add bytes to the buffer at the end.
+  */
+  public void appendBytes(byte[] b, int offset, int len)
+  {
+    ensureCapacity(totalBytes + len);
+    System.arraycopy(b,offset,buffer,totalBytes,len);
+    totalBytes += len;
+  }
+
   /** Read a byte from the buffer from the specified place.
   */
   public byte readByte(int position)
   {
-    int arrayNumber = position >> 16;
-    int offset = position & (arraySize-1);
-    return arrayOfArrays.get(arrayNumber)[offset];
+    return buffer[position];
+  }
+  
+  /** Read bytes from the buffer, starting at the specified place.
+  *@return the number of bytes read, which is less than len only if the end of the buffer is reached.
+  */
+  public int readBytes(int position, byte[] b, int offset, int len)
+  {
+    if (len > totalBytes - position)
+      len = totalBytes - position;
+    System.arraycopy(buffer,position,b,offset,len);
+    return len;
+  }
+
+  /** Make sure the buffer can hold a given number of bytes.
+  */
+  protected void ensureCapacity(int size)
+  {
+    if (buffer == null)
+      buffer = new byte[(size > initialSize)?size:initialSize];
+    else if (size > buffer.length)
+    {
+      int newSize = buffer.length * 2;
+      if (newSize < size)
+        newSize = size;
+      byte[] newBuffer = new byte[newSize];
+      System.arraycopy(buffer,0,newBuffer,0,totalBytes);
+      buffer = newBuffer;
+    }
   }
   
 }
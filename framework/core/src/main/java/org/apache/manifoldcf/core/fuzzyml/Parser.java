@@ -38,10 +38,17 @@ public class Parser
   {
   }
   
+  /** The number of bytes at the start of a stream that character set detection looks at.
+  * Both the byte order mark and the xml declaration must come first in a document, so this is plenty.
+  */
+  protected static final int DETECTION_PREFIX_SIZE = 4096;
+
   /** Parse an input stream with character set detection.
   * This method uses BOM (byte order mark) and the xml encoding tag to determine the character encoding to use.
   * The caller may pass in a starting character encoding, which functions as the default if no better determination
   * is made.
+  * Detection looks only at a bounded prefix of the stream, which is read once, so the parse itself reads the
+  * stream straight through.
   *@param startingCharset is the starting character set.  Pass null if this is unknown.
   *@param inputStream is the input stream.  It is the caller's responsibility to close the stream when the parse is done.
   *@param characterReceiver is the character receiver that will actually do the parsing.
@@ -49,37 +56,43 @@ public class Parser
   public void parseWithCharsetDetection(String startingCharset, InputStream inputStream, CharacterReceiver characterReceiver)
     throws IOException, ManifoldCFException
   {
-    // Wrap the input stream, before we do anything else
-    ReplayableInputStream replayableInputStream = new ReplayableInputStream(inputStream);
+    // Read the prefix, before we do anything else
+    byte[] prefixBytes = new byte[DETECTION_PREFIX_SIZE];
+    int prefixLength = 0;
+    while (prefixLength < prefixBytes.length)
+    {
+      int amt = inputStream.read(prefixBytes,prefixLength,prefixBytes.length-prefixLength);
+      if (amt == -1)
+        break;
+      prefixLength += amt;
+    }
     
     // First go-around: use the BOM detector with nothing downstream, since we don't know the character set yet.
     BOMEncodingDetector bomEncodingDetector = new BOMEncodingDetector(null);
     bomEncodingDetector.setEncoding(startingCharset);
-    if (bomEncodingDetector.dealWithBytes(replayableInputStream) == false)
+    if (bomEncodingDetector.dealWithBytes(new ByteArrayInputStream(prefixBytes,0,prefixLength)) == false)
       bomEncodingDetector.finishUp();
     
     // Update our notion of what the character set is
     startingCharset = bomEncodingDetector.getEncoding();
     if (startingCharset == null)
       startingCharset = "utf-8";
-    // Reset the stream
-    replayableInputStream.restart(false);
     // Set up a detection chain that includes the XML detector.
     // BOMEncodingDetector (for BOM detection) -> XMLEncodingDetector (for xml encoding tag access)
     XMLEncodingDetector xmlEncodingDetector = new XMLEncodingDetector();
     xmlEncodingDetector.setEncoding(startingCharset);
     bomEncodingDetector = new BOMEncodingDetector(new DecodingByteReceiver(1024,startingCharset,xmlEncodingDetector));
-    // Rerun the detection; this should finalize the value.
-    if (bomEncodingDetector.dealWithBytes(replayableInputStream) == false)
+    // Rerun the detection over the prefix; this should finalize the value.
+    if (bomEncodingDetector.dealWithBytes(new ByteArrayInputStream(prefixBytes,0,prefixLength)) == false)
       bomEncodingDetector.finishUp();
 
     // Get the final charset determination
     startingCharset = xmlEncodingDetector.getEncoding();
-    // Reset for the final time
-    replayableInputStream.restart(true);
-    // Set up the whole chain and parse
+    // Set up the whole chain and parse, starting over with the prefix
+    ByteBuffer prefix = new ByteBuffer();
+    prefix.appendBytes(prefixBytes,0,prefixLength);
     bomEncodingDetector = new BOMEncodingDetector(new DecodingByteReceiver(65536,startingCharset,characterReceiver));
-    if (bomEncodingDetector.dealWithBytes(replayableInputStream) == false)
+    if (bomEncodingDetector.dealWithBytes(new PrefixedInputStream(prefix,inputStream)) == false)
       bomEncodingDetector.finishUp();
   }
   
@@ -55,10 +55,17 @@ public class PrefixedInputStream extends InputStream
   public int read(byte[] b, int off, int len)
     throws IOException
   {
-    // Use the superclass method that goes through read, if we're within the
-    // buffer.
+    // Copy out of the buffer, if we're within it.
     if (bytePosition < byteMax)
-      return super.read(b,off,len);
+    {
+      if (len == 0)
+        return 0;
+      if (len > byteMax - bytePosition)
+        len = byteMax - bytePosition;
+      int amt = bytes.readBytes(bytePosition,b,off,len);
+      bytePosition += amt;
+      return amt;
+    }
     // Outside of the local buffer, vector right through to the remainder stream.
     return remainderStream.read(b,off,len);
   }
@@ -68,7 +75,14 @@ public class PrefixedInputStream extends InputStream
     throws IOException
   {
     if (bytePosition < byteMax)
-      return super.skip(n);
+    {
+      if (n <= 0L)
+        return 0L;
+      if (n > byteMax - bytePosition)
+        n = byteMax - bytePosition;
+      bytePosition += (int)n;
+      return n;
+    }
     return remainderStream.skip(n);
   }
   
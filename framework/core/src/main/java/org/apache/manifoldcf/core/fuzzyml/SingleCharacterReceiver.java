@@ -46,16 +46,32 @@ public abstract class SingleCharacterReceiver extends CharacterReceiver
       int amt = reader.read(charBuffer);
       if (amt == -1)
         return false;
-      for (int i = 0; i < amt; i++)
-      {
-        if (dealWithCharacter(charBuffer[i]))
-        {
-          return dealWithRemainder(charBuffer, i+1, amt-(i+1), reader);
-        }
-      }
+      int stopPoint = dealWithCharacters(charBuffer, 0, amt);
+      if (stopPoint != -1)
+        return dealWithRemainder(charBuffer, stopPoint, amt-stopPoint, reader);
     }
   }
   
+  /** Receive a run of characters.  The default implementation hands them to dealWithCharacter()
+  * one at a time; override this to handle runs of characters in bulk.
+  *@param buffer is the character buffer.
+  *@param offset is the offset within the buffer of the first character.
+  *@param len is the number of characters.
+  *@return -1 if all the characters were handled, or else the offset just past the character
+  * for which processing was stopped.
+  */
+  protected int dealWithCharacters(char[] buffer, int offset, int len)
+    throws IOException, ManifoldCFException
+  {
+    int end = offset + len;
+    for (int i = offset; i < end; i++)
+    {
+      if (dealWithCharacter(buffer[i]))
+        return i+1;
+    }
+    return -1;
+  }
+  
   /** Receive a byte.
   * @return true if done.
   */
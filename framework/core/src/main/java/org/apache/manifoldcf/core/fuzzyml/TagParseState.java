@@ -21,6 +21,7 @@ package org.apache.manifoldcf.core.fuzzyml;
 import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.core.system.Logging;
 import java.util.*;
+import java.io.*;
 
 /** This class represents a basic xml/html tag parser.
 * It is capable of recognizing the following xml and html constructs:
@@ -94,6 +95,9 @@ public class TagParseState extends SingleCharacterReceiver
   protected String currentTagName = null;
   protected String currentAttrName = null;
   protected List<AttrNameValue> currentAttrList = null;
+  
+  /** The attribute list, reused from tag to tag */
+  protected final List<AttrNameValue> attrListBuffer = new ArrayList<AttrNameValue>();
 
   // Body decoding state
 
@@ -117,6 +121,41 @@ public class TagParseState extends SingleCharacterReceiver
     super(65536);
   }
 
+  /** Deal with a run of characters.  Plain text outside of tags, which is most of a typical
+  * document, is scanned for here without going through the state machine one character at a time.
+  */
+  @Override
+  protected int dealWithCharacters(char[] buffer, int offset, int len)
+    throws IOException, ManifoldCFException
+  {
+    int end = offset + len;
+    int i = offset;
+    while (i < end)
+    {
+      if (currentState == TAGPARSESTATE_NORMAL && bTagDepth == 0 && !inAmpersand)
+      {
+        int runStart = i;
+        while (i < end)
+        {
+          char x = buffer[i];
+          if (x == '<' || x == '&')
+            break;
+          i++;
+        }
+        if (i > runStart)
+        {
+          int stopPoint = noteNormalCharacters(buffer,runStart,i-runStart);
+          if (stopPoint != -1)
+            return stopPoint;
+          continue;
+        }
+      }
+      if (dealWithCharacter(buffer[i++]))
+        return i;
+    }
+    return -1;
+  }
+
   /** Deal with a character.  No exceptions are allowed, since those would represent
   * syntax errors, and we don't want those to cause difficulty. */
   @Override
@@ -200,7 +239,7 @@ public class TagParseState extends SingleCharacterReceiver
             currentTagNameBuffer = null;
             currentTagName = null;
           }
-          if (noteBTagToken(new StringBuilder().append(thisChar).toString()))
+          if (noteBTagToken(String.valueOf(thisChar)))
             return true;
         }
         else if (isWhitespace(thisChar))
@@ -347,7 +386,7 @@ public class TagParseState extends SingleCharacterReceiver
           // Done with the tag name!
           currentTagName = currentTagNameBuffer.toString();
           currentTagNameBuffer = null;
-          currentAttrList = new ArrayList<AttrNameValue>();
+          currentAttrList = newAttrList();
           currentState = TAGPARSESTATE_IN_QTAG_ATTR_NAME;
           currentAttrNameBuffer = newBuffer();
         }
@@ -358,7 +397,7 @@ public class TagParseState extends SingleCharacterReceiver
         {
           currentTagName = currentTagNameBuffer.toString();
           currentTagNameBuffer = null;
-          currentAttrList = new ArrayList<AttrNameValue>();
+          currentAttrList = newAttrList();
           currentState = TAGPARSESTATE_IN_QTAG_SAW_QUESTION;
           if (noteQTag(currentTagName,currentAttrList))
             return true;
@@ -375,7 +414,7 @@ public class TagParseState extends SingleCharacterReceiver
         {
           currentTagName = currentTagNameBuffer.toString();
           currentTagNameBuffer = null;
-          currentAttrList = new ArrayList<AttrNameValue>();
+          currentAttrList = newAttrList();
         }
         if (currentTagName != null)
         {
@@ -463,7 +502,7 @@ public class TagParseState extends SingleCharacterReceiver
           // Done with the tag name!
           currentTagName = currentTagNameBuffer.toString();
           currentTagNameBuffer = null;
-          currentAttrList = new ArrayList<AttrNameValue>();
+          currentAttrList = newAttrList();
           currentState = TAGPARSESTATE_IN_ATTR_NAME;
           currentAttrNameBuffer = newBuffer();
         }
@@ -474,7 +513,7 @@ public class TagParseState extends SingleCharacterReceiver
         {
           currentTagName = currentTagNameBuffer.toString();
           currentTagNameBuffer = null;
-          currentAttrList = new ArrayList<AttrNameValue>();
+          currentAttrList = newAttrList();
           currentState = TAGPARSESTATE_IN_TAG_SAW_SLASH;
           if (noteTag(currentTagName,currentAttrList))
             return true;
@@ -491,7 +530,7 @@ public class TagParseState extends SingleCharacterReceiver
         {
           currentTagName = currentTagNameBuffer.toString();
           currentTagNameBuffer = null;
-          currentAttrList = new ArrayList<AttrNameValue>();
+          currentAttrList = newAttrList();
         }
         if (currentTagName != null)
         {
@@ -882,6 +921,14 @@ public class TagParseState extends SingleCharacterReceiver
     return false;
   }
 
+  /** Allocate the attribute list.
+  */
+  protected List<AttrNameValue> newAttrList()
+  {
+    attrListBuffer.clear();
+    return attrListBuffer;
+  }
+  
   /** Allocate the buffer.
   */
   protected StringBuilder newBuffer()
@@ -932,6 +979,7 @@ public class TagParseState extends SingleCharacterReceiver
   }
   
   /** This method gets called for every tag.  Override this method to intercept tag begins.
+  * The attribute list is reused for the next tag, so copy out anything that must be kept.
   *@return true to halt further processing.
   */
   protected boolean noteTag(String tagName, List<AttrNameValue> attributes)
@@ -955,6 +1003,7 @@ public class TagParseState extends SingleCharacterReceiver
 
   /** This method is called for every <? ... ?> construct, or 'qtag'.
   * Override it to intercept such constructs.
+  * The attribute list is reused for the next tag, so copy out anything that must be kept.
   *@return true to halt further processing.
   */
   protected boolean noteQTag(String tagName, List<AttrNameValue> attributes)
@@ -1029,6 +1078,27 @@ public class TagParseState extends SingleCharacterReceiver
     return false;
   }
 
+  /** This method gets called for runs of characters that are not part of a tag etc.
+  * The default implementation calls noteNormalCharacter() for each one; override it too
+  * if characters can be handled more efficiently in bulk.
+  *@param buffer is the character buffer.
+  *@param offset is the offset within the buffer of the first character.
+  *@param len is the number of characters.
+  *@return -1 if all the characters were handled, or else the offset just past the character
+  * for which processing should halt.
+  */
+  protected int noteNormalCharacters(char[] buffer, int offset, int len)
+    throws ManifoldCFException
+  {
+    int end = offset + len;
+    for (int i = offset; i < end; i++)
+    {
+      if (noteNormalCharacter(buffer[i]))
+        return i+1;
+    }
+    return -1;
+  }
+
   /** This method gets called for every character that is found within an
   * escape block, e.g. CDATA.
   * Override this method to intercept such characters.
@@ -1043,7 +1113,10 @@ public class TagParseState extends SingleCharacterReceiver
   /** Decode an html attribute */
   protected static String attributeDecode(String input)
   {
-    StringBuilder output = new StringBuilder();
+    // Most attribute values have nothing to decode
+    if (input.indexOf('&') == -1)
+      return input;
+    StringBuilder output = new StringBuilder(input.length());
     int i = 0;
     while (i < input.length())
     {
@@ -1088,9 +1161,7 @@ public class TagParseState extends SingleCharacterReceiver
           // Decimal
           value = Integer.parseInt(input);
         }
-        StringBuilder sb = new StringBuilder();
-        sb.append((char)value);
-        return sb.toString();
+        return String.valueOf((char)value);
       }
       catch (NumberFormatException e)
       {
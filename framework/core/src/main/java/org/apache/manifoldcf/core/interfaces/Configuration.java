@@ -137,6 +137,14 @@ public class Configuration implements IHierarchyParent
     readOnly = true;
   }
 
+  /** Check whether the configuration is read-only.
+  *@return true if it can no longer be changed.
+  */
+  public boolean isReadOnly()
+  {
+    return readOnly;
+  }
+
   /** Get as XML
   *@return the xml corresponding to these Configuration.
   */
@@ -162,10 +170,22 @@ public class Configuration implements IHierarchyParent
   */
   public String toJSON()
     throws ManifoldCFException
+  {
+    StringWriter w = new StringWriter();
+    writeJSON(w);
+    return w.toString();
+  }
+
+  /** Write as JSON, directly to a character stream.  Use this rather than toJSON() when the output
+  * is large and is headed somewhere other than a string, e.g. an API response.
+  *@param w is the writer to send the json to.
+  */
+  public void writeJSON(Writer w)
+    throws ManifoldCFException
   {
     try
     {
-      JSONWriter writer = new JSONStringer();
+      JSONWriter writer = new JSONWriter(w);
       writer.object();
       // We do NOT use the root node label, unlike XML.
       
@@ -248,9 +268,6 @@ public class Configuration implements IHierarchyParent
         }
       }
       writer.endObject();
-
-      // Convert to a string.
-      return writer.toString();
     }
     catch (JSONException e)
     {
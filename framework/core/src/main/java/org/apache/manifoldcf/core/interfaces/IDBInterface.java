@@ -164,6 +164,26 @@ public interface IDBInterface
   public void performDrop(String tableName, StringSet invalidateKeys)
     throws ManifoldCFException;
 
+  /** Find out whether this database supports table partitions.
+  *@return true if performCreatePartition() can be used.
+  */
+  public boolean supportsPartitions();
+
+  /** Create a partition of a table.  The partition holds the table's rows that have a specific value in a
+  * specific column.  Queries, updates, and deletes against the table see the partition's rows, but new rows must be
+  * inserted into the partition directly.  Rows already in the table that have the value are moved into the partition.
+  * The partition does not inherit the table's indexes or primary key; add them with performAddIndex().  Remove the
+  * partition with performDrop().
+  *@param tableName is the name of the table to partition.
+  *@param partitionName is the name of the partition.
+  *@param columnName is the name of the column the partition is selected by.
+  *@param value is the column value of all rows in the partition.
+  *@param invalidateKeys are the cache keys that should be invalidated, if any.
+  */
+  public void performCreatePartition(String tableName, String partitionName, String columnName, Long value,
+    StringSet invalidateKeys)
+    throws ManifoldCFException;
+
   /** Create user and database.
   *@param adminUserName is the admin user name.
   *@param adminPassword is the admin password.
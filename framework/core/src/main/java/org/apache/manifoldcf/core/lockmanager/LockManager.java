@@ -21,6 +21,8 @@ package org.apache.manifoldcf.core.lockmanager;
 import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.core.system.Logging;
 import org.apache.manifoldcf.core.system.ManifoldCF;
+import org.apache.manifoldcf.core.metrics.Histogram;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
 import java.util.*;
 import java.io.*;
 
@@ -50,6 +52,12 @@ public class LockManager implements ILockManager
   // This is the directory used for cross-JVM synchronization, or null if off
   protected File synchDirectory = null;
 
+  // Time spent obtaining locks that were not already held by this thread
+  protected final static Histogram readLockWaitTime = MetricsRegistry.getHistogram("lock.wait.time","type","read");
+  protected final static Histogram nonExWriteLockWaitTime = MetricsRegistry.getHistogram("lock.wait.time","type","nonexwrite");
+  protected final static Histogram writeLockWaitTime = MetricsRegistry.getHistogram("lock.wait.time","type","write");
+  protected final static Histogram multipleLockWaitTime = MetricsRegistry.getHistogram("lock.wait.time","type","multiple");
+
   public LockManager()
     throws ManifoldCFException
   {
@@ -320,6 +328,7 @@ public class LockManager implements ILockManager
 
     // We don't own a local non-ex write lock.  Get one.  The global lock will need
     // to know if we already have a a read lock.
+    long startTime = System.currentTimeMillis();
     while (true)
     {
       LockObject lo = myLocks.getObject(lockKey,synchDirectory);
@@ -337,6 +346,7 @@ public class LockManager implements ILockManager
         // Try again to get a valid object
       }
     }
+    nonExWriteLockWaitTime.record(System.currentTimeMillis() - startTime);
     ll.incrementNonExWriteLocks();
     Logging.lock.debug(" Successfully obtained lock!");
   }
@@ -493,6 +503,7 @@ public class LockManager implements ILockManager
     // We don't own a local write lock.  Get one.  The global lock will need
     // to know if we already have a non-exclusive lock or a read lock, which we don't because
     // it's illegal.
+    long startTime = System.currentTimeMillis();
     while (true)
     {
       LockObject lo = myLocks.getObject(lockKey,synchDirectory);
@@ -510,6 +521,7 @@ public class LockManager implements ILockManager
         // Try again
       }
     }
+    writeLockWaitTime.record(System.currentTimeMillis() - startTime);
     ll.incrementWriteLocks();
     Logging.lock.debug(" Successfully obtained lock!");
   }
@@ -653,6 +665,7 @@ public class LockManager implements ILockManager
     }
 
     // We don't own a local read lock.  Get one.
+    long startTime = System.currentTimeMillis();
     while (true)
     {
       LockObject lo = myLocks.getObject(lockKey,synchDirectory);
@@ -670,6 +683,7 @@ public class LockManager implements ILockManager
         // Try again
       }
     }
+    readLockWaitTime.record(System.currentTimeMillis() - startTime);
     ll.incrementReadLocks();
     Logging.lock.debug(" Successfully obtained lock!");
   }
@@ -845,6 +859,7 @@ public class LockManager implements ILockManager
     // contention!
     LockDescription lds[] = getSortedUniqueLocks(readLocks,nonExWriteLocks,writeLocks);
     int locksProcessed = 0;
+    long startTime = System.currentTimeMillis();
     try
     {
       while (locksProcessed < lds.length)
@@ -935,6 +950,7 @@ public class LockManager implements ILockManager
         }
         locksProcessed++;
       }
+      multipleLockWaitTime.record(System.currentTimeMillis() - startTime);
       // Got all; we are done!
       Logging.lock.debug(" Successfully obtained multiple locks!");
       return;
@@ -0,0 +1,83 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.core.metrics;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A counter is a metric that only ever goes up, e.g. the number of documents processed.
+* Rates are computed by whoever reads it, by comparing successive values.
+*/
+public class Counter extends Metric
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  protected final AtomicLong value = new AtomicLong(0L);
+
+  /** Constructor. */
+  public Counter(String name, String labelName, String labelValue)
+  {
+    super(name,labelName,labelValue);
+  }
+
+  /** Increment by one. */
+  public void increment()
+  {
+    value.incrementAndGet();
+  }
+
+  /** Increment by an amount. */
+  public void increment(long amount)
+  {
+    value.addAndGet(amount);
+  }
+
+  /** Get the current value. */
+  public long getValue()
+  {
+    return value.get();
+  }
+
+  /** Reset the value to zero. */
+  public void reset()
+  {
+    value.set(0L);
+  }
+
+  /** Get the metric type. */
+  public String getType()
+  {
+    return "counter";
+  }
+
+  /** Describe the current value of the metric in a configuration node. */
+  public void describe(ConfigurationNode node)
+  {
+    addValueNode(node,"value",Long.toString(getValue()));
+  }
+
+  /** Write the current value of the metric in Prometheus text format. */
+  public void writePrometheus(StringBuilder sb, String exportName)
+  {
+    sb.append(exportName);
+    appendLabels(sb,null,null);
+    sb.append(" ").append(getValue()).append("\n");
+  }
+
+}
@@ -0,0 +1,149 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.core.metrics;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A histogram records the distribution of a latency, in milliseconds, using a fixed set of
+* buckets.  Recording is lock-free, so it is cheap enough to use around every database query.
+*/
+public class Histogram extends Metric
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Upper bounds of the buckets, in milliseconds.  There is one more, unbounded, bucket. */
+  protected static final long[] bucketBounds = new long[]{1L,2L,5L,10L,20L,50L,100L,200L,500L,
+    1000L,2000L,5000L,10000L,30000L,60000L};
+
+  /** Count per bucket (not cumulative) */
+  protected final AtomicLongArray buckets = new AtomicLongArray(bucketBounds.length + 1);
+  /** Total count */
+  protected final AtomicLong count = new AtomicLong(0L);
+  /** Sum of all recorded times */
+  protected final AtomicLong sum = new AtomicLong(0L);
+  /** Largest recorded time */
+  protected final AtomicLong max = new AtomicLong(0L);
+
+  /** Constructor. */
+  public Histogram(String name, String labelName, String labelValue)
+  {
+    super(name,labelName,labelValue);
+  }
+
+  /** Record a time.
+  *@param elapsedTime is the time in milliseconds.
+  */
+  public void record(long elapsedTime)
+  {
+    if (elapsedTime < 0L)
+      elapsedTime = 0L;
+    int i = 0;
+    while (i < bucketBounds.length && elapsedTime > bucketBounds[i])
+      i++;
+    buckets.incrementAndGet(i);
+    count.incrementAndGet();
+    sum.addAndGet(elapsedTime);
+    while (true)
+    {
+      long currentMax = max.get();
+      if (elapsedTime <= currentMax || max.compareAndSet(currentMax,elapsedTime))
+        break;
+    }
+  }
+
+  /** Get the number of recorded times. */
+  public long getCount()
+  {
+    return count.get();
+  }
+
+  /** Get the sum of the recorded times. */
+  public long getSum()
+  {
+    return sum.get();
+  }
+
+  /** Get the largest recorded time. */
+  public long getMax()
+  {
+    return max.get();
+  }
+
+  /** Forget all recorded times.  A time recorded while this runs may be partly kept. */
+  public void reset()
+  {
+    int i = 0;
+    while (i < buckets.length())
+    {
+      buckets.set(i++,0L);
+    }
+    count.set(0L);
+    sum.set(0L);
+    max.set(0L);
+  }
+
+  /** Get the metric type. */
+  public String getType()
+  {
+    return "histogram";
+  }
+
+  /** Describe the current value of the metric in a configuration node. */
+  public void describe(ConfigurationNode node)
+  {
+    addValueNode(node,"count",Long.toString(getCount()));
+    addValueNode(node,"sum",Long.toString(getSum()));
+    addValueNode(node,"max",Long.toString(getMax()));
+    long cumulative = 0L;
+    int i = 0;
+    while (i <= bucketBounds.length)
+    {
+      cumulative += buckets.get(i);
+      ConfigurationNode bucketNode = new ConfigurationNode("bucket");
+      bucketNode.setAttribute("le",(i < bucketBounds.length)?Long.toString(bucketBounds[i]):"+Inf");
+      bucketNode.setValue(Long.toString(cumulative));
+      node.addChild(node.getChildCount(),bucketNode);
+      i++;
+    }
+  }
+
+  /** Write the current value of the metric in Prometheus text format. */
+  public void writePrometheus(StringBuilder sb, String exportName)
+  {
+    long cumulative = 0L;
+    int i = 0;
+    while (i <= bucketBounds.length)
+    {
+      cumulative += buckets.get(i);
+      sb.append(exportName).append("_bucket");
+      appendLabels(sb,"le",(i < bucketBounds.length)?Long.toString(bucketBounds[i]):"+Inf");
+      sb.append(" ").append(cumulative).append("\n");
+      i++;
+    }
+    sb.append(exportName).append("_sum");
+    appendLabels(sb,null,null);
+    sb.append(" ").append(getSum()).append("\n");
+    sb.append(exportName).append("_count");
+    appendLabels(sb,null,null);
+    sb.append(" ").append(getCount()).append("\n");
+  }
+
+}
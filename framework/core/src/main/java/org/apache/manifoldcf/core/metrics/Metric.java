@@ -0,0 +1,142 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.core.metrics;
+
+import org.apache.manifoldcf.core.interfaces.*;
+
+/** This is the base class of all metrics kept in the MetricsRegistry.  A metric has a name, and
+* optionally a single label (e.g. the connection name) that distinguishes it from other metrics
+* of the same name.
+*/
+public abstract class Metric
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** The metric name, e.g. "db.query" */
+  protected final String name;
+  /** The label name, or null */
+  protected final String labelName;
+  /** The label value, or null */
+  protected final String labelValue;
+
+  /** Constructor.
+  *@param name is the metric name.
+  *@param labelName is the label name, or null.
+  *@param labelValue is the label value, or null.
+  */
+  protected Metric(String name, String labelName, String labelValue)
+  {
+    this.name = name;
+    this.labelName = labelName;
+    this.labelValue = labelValue;
+  }
+
+  /** Get the metric name.
+  */
+  public String getName()
+  {
+    return name;
+  }
+
+  /** Get the label name.
+  *@return the label name, or null if there is no label.
+  */
+  public String getLabelName()
+  {
+    return labelName;
+  }
+
+  /** Get the label value.
+  *@return the label value, or null if there is no label.
+  */
+  public String getLabelValue()
+  {
+    return labelValue;
+  }
+
+  /** Get the metric type, as it is reported ("counter", "gauge", or "histogram").
+  */
+  public abstract String getType();
+
+  /** Set the metric back to its initial value.
+  */
+  public abstract void reset();
+
+  /** Describe the current value of the metric in a configuration node.
+  *@param node is the node to add children to.
+  */
+  public abstract void describe(ConfigurationNode node);
+
+  /** Write the current value of the metric in Prometheus text format, excluding the TYPE line.
+  *@param sb is the buffer to append to.
+  *@param exportName is the name to export the metric under.
+  */
+  public abstract void writePrometheus(StringBuilder sb, String exportName);
+
+  /** Append the Prometheus label set for this metric, plus an optional extra label.
+  */
+  protected void appendLabels(StringBuilder sb, String extraName, String extraValue)
+  {
+    if (labelName == null && extraName == null)
+      return;
+    sb.append("{");
+    if (labelName != null)
+    {
+      sb.append(labelName).append("=\"");
+      escapeLabelValue(sb,labelValue);
+      sb.append("\"");
+      if (extraName != null)
+        sb.append(",");
+    }
+    if (extraName != null)
+    {
+      sb.append(extraName).append("=\"");
+      escapeLabelValue(sb,extraValue);
+      sb.append("\"");
+    }
+    sb.append("}");
+  }
+
+  /** Escape a Prometheus label value.
+  */
+  protected static void escapeLabelValue(StringBuilder sb, String value)
+  {
+    int i = 0;
+    while (i < value.length())
+    {
+      char x = value.charAt(i++);
+      if (x == '\\' || x == '"')
+        sb.append('\\').append(x);
+      else if (x == '\n')
+        sb.append("\\n");
+      else
+        sb.append(x);
+    }
+  }
+
+  /** Add a child node with a value to a configuration node.
+  */
+  protected static void addValueNode(ConfigurationNode node, String type, String value)
+  {
+    ConfigurationNode child = new ConfigurationNode(type);
+    child.setValue(value);
+    node.addChild(node.getChildCount(),child);
+  }
+
+}
@@ -0,0 +1,226 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.core.metrics;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** This class is the process-wide registry of performance metrics.  Code that wants to be measured
+* looks up a metric by name (and optional label) once, and then updates it; the registry can be
+* dumped at any time, either as configuration nodes (for the API) or as Prometheus text.
+* All methods are static.  Nothing is shared between processes, so the API only reports metrics
+* when the agents run in the same process as it does.
+*/
+public class MetricsRegistry
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  // Node types used when describing metrics
+  public static final String NODE_METRIC = "metric";
+  public static final String NODE_NAME = "name";
+  public static final String NODE_TYPE = "type";
+  public static final String NODE_LABEL = "label";
+  
+  /** The prefix used for exported Prometheus metric names */
+  protected static final String exportPrefix = "manifoldcf_";
+
+  /** All metrics, keyed by name and label */
+  protected static final Map<String,Metric> metrics = new ConcurrentHashMap<String,Metric>();
+
+  protected MetricsRegistry()
+  {
+  }
+
+  /** Get (or create) a counter.
+  *@param name is the metric name.
+  *@return the counter.
+  */
+  public static Counter getCounter(String name)
+  {
+    return getCounter(name,null,null);
+  }
+
+  /** Get (or create) a labeled counter.
+  *@param name is the metric name.
+  *@param labelName is the label name, e.g. "connection".
+  *@param labelValue is the label value.
+  *@return the counter.
+  */
+  public static Counter getCounter(String name, String labelName, String labelValue)
+  {
+    String key = makeKey(name,labelName,labelValue);
+    Metric rval = metrics.get(key);
+    if (rval == null)
+      rval = register(key,new Counter(name,labelName,labelValue));
+    return (Counter)rval;
+  }
+
+  /** Get (or create) a gauge.
+  *@param name is the metric name.
+  *@return the gauge.
+  */
+  public static Gauge getGauge(String name)
+  {
+    return getGauge(name,null,null);
+  }
+
+  /** Get (or create) a labeled gauge.
+  *@param name is the metric name.
+  *@param labelName is the label name.
+  *@param labelValue is the label value.
+  *@return the gauge.
+  */
+  public static Gauge getGauge(String name, String labelName, String labelValue)
+  {
+    String key = makeKey(name,labelName,labelValue);
+    Metric rval = metrics.get(key);
+    if (rval == null)
+      rval = register(key,new Gauge(name,labelName,labelValue));
+    return (Gauge)rval;
+  }
+
+  /** Get (or create) a latency histogram.
+  *@param name is the metric name.
+  *@return the histogram.
+  */
+  public static Histogram getHistogram(String name)
+  {
+    return getHistogram(name,null,null);
+  }
+
+  /** Get (or create) a labeled latency histogram.
+  *@param name is the metric name.
+  *@param labelName is the label name.
+  *@param labelValue is the label value.
+  *@return the histogram.
+  */
+  public static Histogram getHistogram(String name, String labelName, String labelValue)
+  {
+    String key = makeKey(name,labelName,labelValue);
+    Metric rval = metrics.get(key);
+    if (rval == null)
+      rval = register(key,new Histogram(name,labelName,labelValue));
+    return (Histogram)rval;
+  }
+
+  /** Describe all metrics, as children of a configuration object.  Metrics are sorted by name and label.
+  *@param output is the configuration to add the metric nodes to.
+  */
+  public static void describeMetrics(Configuration output)
+  {
+    for (Metric metric : getSortedMetrics())
+    {
+      ConfigurationNode metricNode = new ConfigurationNode(NODE_METRIC);
+      Metric.addValueNode(metricNode,NODE_NAME,metric.getName());
+      Metric.addValueNode(metricNode,NODE_TYPE,metric.getType());
+      if (metric.getLabelName() != null)
+      {
+        ConfigurationNode labelNode = new ConfigurationNode(NODE_LABEL);
+        labelNode.setAttribute(NODE_NAME,metric.getLabelName());
+        labelNode.setValue(metric.getLabelValue());
+        metricNode.addChild(metricNode.getChildCount(),labelNode);
+      }
+      metric.describe(metricNode);
+      output.addChild(output.getChildCount(),metricNode);
+    }
+  }
+
+  /** Write all metrics in the Prometheus text exposition format.
+  *@return the text.
+  */
+  public static String toPrometheusText()
+  {
+    StringBuilder sb = new StringBuilder();
+    String lastName = null;
+    for (Metric metric : getSortedMetrics())
+    {
+      String exportName = makeExportName(metric);
+      if (lastName == null || !lastName.equals(exportName))
+      {
+        sb.append("# TYPE ").append(exportName).append(" ").append(metric.getType()).append("\n");
+        lastName = exportName;
+      }
+      metric.writePrometheus(sb,exportName);
+    }
+    return sb.toString();
+  }
+
+  /** Reset all metrics to zero.  The metrics themselves are kept, because code that updates them
+  * holds on to them, e.g. in static fields.  This is meant for tests and benchmarks.
+  */
+  public static void reset()
+  {
+    for (Metric metric : metrics.values())
+    {
+      metric.reset();
+    }
+  }
+
+  /** Register a new metric, unless another thread beat us to it.
+  */
+  protected static Metric register(String key, Metric metric)
+  {
+    synchronized (metrics)
+    {
+      Metric rval = metrics.get(key);
+      if (rval != null)
+        return rval;
+      metrics.put(key,metric);
+      return metric;
+    }
+  }
+
+  /** Get all the metrics, sorted by name and label value.
+  *@return a snapshot list of the metrics.
+  */
+  public static List<Metric> getSortedMetrics()
+  {
+    TreeMap<String,Metric> sorted = new TreeMap<String,Metric>(metrics);
+    return new ArrayList<Metric>(sorted.values());
+  }
+
+  /** Build the registry key for a metric.
+  */
+  protected static String makeKey(String name, String labelName, String labelValue)
+  {
+    if (labelName == null)
+      return name;
+    return name + "\u0000" + labelName + "\u0000" + labelValue;
+  }
+
+  /** Build a Prometheus-compatible metric name, e.g. "db.query" becomes "manifoldcf_db_query".
+  */
+  protected static String makeExportName(Metric metric)
+  {
+    String name = metric.getName();
+    StringBuilder sb = new StringBuilder(exportPrefix);
+    int i = 0;
+    while (i < name.length())
+    {
+      char x = name.charAt(i++);
+      if ((x >= 'a' && x <= 'z') || (x >= 'A' && x <= 'Z') || (x >= '0' && x <= '9') || x == '_')
+        sb.append(x);
+      else
+        sb.append('_');
+    }
+    return sb.toString();
+  }
+
+}
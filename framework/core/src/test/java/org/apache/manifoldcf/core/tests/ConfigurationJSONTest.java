@@ -0,0 +1,139 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.core.tests;
+
+import org.apache.manifoldcf.core.interfaces.*;
+
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Check that writing a configuration as JSON to a stream gives what toJSON() gives, and reads back
+* as the same configuration.
+*/
+public class ConfigurationJSONTest
+{
+
+  @Test
+  public void arrayRepresentation()
+    throws Exception
+  {
+    Configuration c = new Configuration();
+    // Repeated children of one type become an array
+    addRow(c,"1","a \"quoted\" value");
+    addRow(c,"2","line\nbreak");
+    ConfigurationNode next = new ConfigurationNode("next_startrow");
+    next.setValue("20");
+    c.addChild(c.getChildCount(),next);
+
+    String json = writeJSON(c);
+    assertEquals(c.toJSON(),json);
+    assertTrue(json.indexOf("\"row\":[") != -1);
+    assertRoundTrip(c,json);
+  }
+
+  @Test
+  public void alternateRepresentation()
+    throws Exception
+  {
+    Configuration c = new Configuration();
+    // Children of one type that are split up by another type can't be an array without losing order
+    addRow(c,"1","x");
+    ConfigurationNode other = new ConfigurationNode("other");
+    other.setAttribute("name","value");
+    c.addChild(c.getChildCount(),other);
+    addRow(c,"2","y");
+
+    String json = writeJSON(c);
+    assertEquals(c.toJSON(),json);
+    assertTrue(json.indexOf("\"_children_\"") != -1);
+    assertRoundTrip(c,json);
+  }
+
+  @Test
+  public void largeConfiguration()
+    throws Exception
+  {
+    Configuration c = new Configuration();
+    int i = 0;
+    while (i < 10000)
+    {
+      addRow(c,Integer.toString(i),"value "+i);
+      i++;
+    }
+    // Written through a small buffer, the way an API response is
+    StringWriter sw = new StringWriter();
+    Writer w = new BufferedWriter(sw,64);
+    c.writeJSON(w);
+    w.flush();
+    assertEquals(c.toJSON(),sw.toString());
+    assertRoundTrip(c,sw.toString());
+  }
+
+  protected static String writeJSON(Configuration c)
+    throws ManifoldCFException
+  {
+    StringWriter w = new StringWriter();
+    c.writeJSON(w);
+    return w.toString();
+  }
+
+  protected static void assertRoundTrip(Configuration c, String json)
+    throws ManifoldCFException
+  {
+    Configuration readBack = new Configuration();
+    readBack.fromJSON(json);
+    // A JSON object doesn't keep its keys in order, so only the order within each child type is kept
+    assertEquals(childrenByType(c),childrenByType(readBack));
+  }
+
+  protected static Map<String,List<ConfigurationNode>> childrenByType(Configuration c)
+  {
+    Map<String,List<ConfigurationNode>> rval = new HashMap<String,List<ConfigurationNode>>();
+    int i = 0;
+    while (i < c.getChildCount())
+    {
+      ConfigurationNode child = c.findChild(i++);
+      List<ConfigurationNode> list = rval.get(child.getType());
+      if (list == null)
+      {
+        list = new ArrayList<ConfigurationNode>();
+        rval.put(child.getType(),list);
+      }
+      list.add(child);
+    }
+    return rval;
+  }
+
+  protected static void addRow(Configuration c, String id, String value)
+  {
+    ConfigurationNode row = new ConfigurationNode("row");
+    ConfigurationNode idColumn = new ConfigurationNode("column");
+    idColumn.setAttribute("name","id");
+    idColumn.setValue(id);
+    row.addChild(row.getChildCount(),idColumn);
+    ConfigurationNode valueColumn = new ConfigurationNode("column");
+    valueColumn.setAttribute("name","value");
+    valueColumn.setValue(value);
+    row.addChild(row.getChildCount(),valueColumn);
+    c.addChild(c.getChildCount(),row);
+  }
+
+}
@@ -0,0 +1,134 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.core.tests;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.core.fuzzyml.*;
+import org.apache.manifoldcf.core.system.Logging;
+
+import java.io.*;
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FuzzyMLParserTest
+{
+
+  @BeforeClass
+  public static void setupLogging()
+  {
+    // The parser logs through the misc logger, which is normally set up along with the rest of ManifoldCF
+    if (Logging.misc == null)
+    {
+      Logging.misc = org.apache.log4j.Logger.getLogger("org.apache.manifoldcf.misc");
+      Logging.misc.setLevel(org.apache.log4j.Level.WARN);
+    }
+  }
+
+  @Test
+  public void tagsTextAndAttributes()
+    throws Exception
+  {
+    String html = "<html><body bgcolor=\"white\">Fish &amp; chips &lt;3 <a href='/x?a=1&amp;b=2' target=_blank>link</a>"+
+      "<!-- <a href=\"commented\"> --><img src=\"i.png\"/></body></html>";
+    RecordingParseState state = parse(null,html.getBytes("utf-8"));
+    assertEquals("[html, body, a, img]",state.tags.toString());
+    assertEquals("white",state.attributes.get(1).get("bgcolor"));
+    assertEquals("/x?a=1&b=2",state.attributes.get(2).get("href"));
+    assertEquals("_blank",state.attributes.get(2).get("target"));
+    assertEquals("i.png",state.attributes.get(3).get("src"));
+    assertEquals("Fish & chips <3 link",state.text.toString());
+  }
+
+  @Test
+  public void xmlEncodingDeclaration()
+    throws Exception
+  {
+    String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><p>café</p>";
+    RecordingParseState state = parse("utf-8",xml.getBytes("ISO-8859-1"));
+    assertEquals("café",state.text.toString());
+  }
+
+  @Test
+  public void byteOrderMark()
+    throws Exception
+  {
+    byte[] body = "<p>über</p>".getBytes("UTF-16LE");
+    byte[] bytes = new byte[body.length + 2];
+    bytes[0] = (byte)0xff;
+    bytes[1] = (byte)0xfe;
+    System.arraycopy(body,0,bytes,2,body.length);
+    RecordingParseState state = parse(null,bytes);
+    assertEquals("[p]",state.tags.toString());
+    assertEquals("über",state.text.toString());
+  }
+
+  @Test
+  public void documentLongerThanDetectionPrefix()
+    throws Exception
+  {
+    // Tags and multibyte characters straddle the detection prefix and the reader's buffers
+    StringBuilder sb = new StringBuilder();
+    StringBuilder expectedText = new StringBuilder();
+    for (int i = 0; i < 20000; i++)
+    {
+      sb.append("<a href=\"/page").append(i).append("\">été ").append(i).append("</a>");
+      expectedText.append("été ").append(i);
+    }
+    RecordingParseState state = parse(null,sb.toString().getBytes("utf-8"));
+    assertEquals(20000,state.tags.size());
+    assertEquals("/page0",state.attributes.get(0).get("href"));
+    assertEquals("/page19999",state.attributes.get(19999).get("href"));
+    assertEquals(expectedText.toString(),state.text.toString());
+  }
+
+  protected static RecordingParseState parse(String charset, byte[] bytes)
+    throws IOException, ManifoldCFException
+  {
+    RecordingParseState state = new RecordingParseState();
+    new Parser().parseWithCharsetDetection(charset,new ByteArrayInputStream(bytes),state);
+    return state;
+  }
+
+  /** Parse state that records what it sees */
+  protected static class RecordingParseState extends HTMLParseState
+  {
+    public final List<String> tags = new ArrayList<String>();
+    public final List<Map<String,String>> attributes = new ArrayList<Map<String,String>>();
+    public final StringBuilder text = new StringBuilder();
+
+    @Override
+    protected boolean noteTag(String tagName, Map<String,String> attributes)
+      throws ManifoldCFException
+    {
+      tags.add(tagName);
+      this.attributes.add(attributes);
+      return false;
+    }
+
+    @Override
+    protected boolean noteNormalCharacter(char thisChar)
+      throws ManifoldCFException
+    {
+      text.append(thisChar);
+      return false;
+    }
+  }
+
+}
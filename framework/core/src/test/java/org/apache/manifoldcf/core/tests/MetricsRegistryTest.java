@@ -0,0 +1,108 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.core.tests;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.core.metrics.*;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest
+{
+
+  @Test
+  public void prometheusText()
+    throws Exception
+  {
+    MetricsRegistry.getCounter("test.documents","connection","A \"quoted\" name").increment(3L);
+    MetricsRegistry.getGauge("test.depth").set(7L);
+    Histogram h = MetricsRegistry.getHistogram("test.latency");
+    h.record(1L);
+    h.record(150L);
+    h.record(100000L);
+
+    String text = MetricsRegistry.toPrometheusText();
+    assertTrue(text.indexOf("# TYPE manifoldcf_test_documents counter\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_documents{connection=\"A \\\"quoted\\\" name\"} 3\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_depth 7\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_latency_bucket{le=\"1\"} 1\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_latency_bucket{le=\"100\"} 1\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_latency_bucket{le=\"200\"} 2\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_latency_bucket{le=\"+Inf\"} 3\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_latency_sum 100151\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_latency_count 3\n") != -1);
+    assertEquals(100000L,h.getMax());
+  }
+
+  @Test
+  public void sameMetricReturned()
+    throws Exception
+  {
+    Counter c1 = MetricsRegistry.getCounter("test.same","connection","x");
+    Counter c2 = MetricsRegistry.getCounter("test.same","connection","x");
+    Counter c3 = MetricsRegistry.getCounter("test.same","connection","y");
+    assertSame(c1,c2);
+    assertNotSame(c1,c3);
+  }
+
+  @Test
+  public void describedAsConfiguration()
+    throws Exception
+  {
+    MetricsRegistry.getGauge("test.described").set(42L);
+    Configuration output = new Configuration();
+    MetricsRegistry.describeMetrics(output);
+    boolean found = false;
+    for (int i = 0; i < output.getChildCount(); i++)
+    {
+      ConfigurationNode node = output.findChild(i);
+      if (node.findChild(0).getValue().equals("test.described"))
+      {
+        assertEquals("gauge",node.findChild(1).getValue());
+        assertEquals("42",node.findChild(2).getValue());
+        found = true;
+      }
+    }
+    assertTrue(found);
+  }
+
+  @Test
+  public void resetKeepsMetrics()
+    throws Exception
+  {
+    // Code holds on to its metrics, so a reset must zero them rather than replace them
+    Counter c = MetricsRegistry.getCounter("test.reset.counter");
+    Histogram h = MetricsRegistry.getHistogram("test.reset.latency");
+    c.increment(5L);
+    h.record(150L);
+    MetricsRegistry.reset();
+    assertSame(c,MetricsRegistry.getCounter("test.reset.counter"));
+    assertSame(h,MetricsRegistry.getHistogram("test.reset.latency"));
+    assertEquals(0L,c.getValue());
+    assertEquals(0L,h.getCount());
+    assertEquals(0L,h.getMax());
+    c.increment();
+    h.record(1L);
+    String text = MetricsRegistry.toPrometheusText();
+    assertTrue(text.indexOf("manifoldcf_test_reset_counter 1\n") != -1);
+    assertTrue(text.indexOf("manifoldcf_test_reset_latency_bucket{le=\"+Inf\"} 1\n") != -1);
+  }
+
+}
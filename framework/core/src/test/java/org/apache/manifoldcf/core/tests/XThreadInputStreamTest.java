@@ -0,0 +1,273 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.core.tests;
+
+import org.apache.manifoldcf.core.common.XThreadInputStream;
+
+import java.io.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class XThreadInputStreamTest
+{
+
+  @Test
+  public void transferWithWraparound()
+    throws Exception
+  {
+    // Odd-sized reads against a small buffer force many wraparounds
+    long length = 1000003L;
+    XThreadInputStream is = new XThreadInputStream(new PatternInputStream(length,777),4096);
+    StufferThread t = new StufferThread(is);
+    t.start();
+    try
+    {
+      byte[] buffer = new byte[1531];
+      long position = 0L;
+      while (true)
+      {
+        int amt = is.read(buffer,0,buffer.length);
+        if (amt == -1)
+          break;
+        assertTrue(amt > 0);
+        for (int i = 0; i < amt; i++)
+        {
+          assertEquals("Mismatch at "+(position+i),PatternInputStream.patternByte(position+i),buffer[i]);
+        }
+        position += amt;
+      }
+      assertEquals(length,position);
+      assertEquals(-1,is.read());
+    }
+    finally
+    {
+      is.abort();
+      t.join();
+    }
+    assertNull(t.getException());
+  }
+
+  @Test
+  public void singleByteReads()
+    throws Exception
+  {
+    XThreadInputStream is = new XThreadInputStream(new PatternInputStream(10000L,13));
+    StufferThread t = new StufferThread(is);
+    t.start();
+    try
+    {
+      long position = 0L;
+      while (true)
+      {
+        int b = is.read();
+        if (b == -1)
+          break;
+        assertEquals(((int)PatternInputStream.patternByte(position)) & 0xff,b);
+        position++;
+      }
+      assertEquals(10000L,position);
+    }
+    finally
+    {
+      is.abort();
+      t.join();
+    }
+  }
+
+  @Test
+  public void failurePropagates()
+    throws Exception
+  {
+    XThreadInputStream is = new XThreadInputStream(new FailingInputStream(5000));
+    StufferThread t = new StufferThread(is);
+    t.start();
+    try
+    {
+      byte[] buffer = new byte[1024];
+      long position = 0L;
+      try
+      {
+        while (true)
+        {
+          int amt = is.read(buffer,0,buffer.length);
+          if (amt == -1)
+            fail("Should have seen exception");
+          position += amt;
+        }
+      }
+      catch (IOException e)
+      {
+        assertEquals("Injected failure",e.getMessage());
+      }
+      assertEquals(5000L,position);
+    }
+    finally
+    {
+      is.abort();
+      t.join();
+    }
+  }
+
+  @Test
+  public void abortReleasesProducer()
+    throws Exception
+  {
+    // Producer fills the buffer and blocks; abort must let it go
+    XThreadInputStream is = new XThreadInputStream(new PatternInputStream(Long.MAX_VALUE,4096),4096);
+    StufferThread t = new StufferThread(is);
+    t.start();
+    assertTrue(is.read() != -1);
+    is.close();
+    t.join(10000L);
+    assertFalse(t.isAlive());
+  }
+
+  @Test
+  public void largeBuffersAreNotPooled()
+    throws Exception
+  {
+    long before = XThreadInputStream.getPooledBytes();
+    // Several concurrent streams with the largest buffers
+    XThreadInputStream[] streams = new XThreadInputStream[2];
+    StufferThread[] threads = new StufferThread[streams.length];
+    for (int i = 0; i < streams.length; i++)
+    {
+      streams[i] = new XThreadInputStream(new PatternInputStream(100000L,4096),16777216);
+      threads[i] = new StufferThread(streams[i]);
+      threads[i].start();
+    }
+    for (int i = 0; i < streams.length; i++)
+    {
+      byte[] buffer = new byte[65536];
+      while (streams[i].read(buffer,0,buffer.length) != -1)
+        ;
+      streams[i].close();
+      threads[i].join();
+    }
+    assertEquals(before,XThreadInputStream.getPooledBytes());
+
+    // Small buffers are pooled, but never beyond the overall limit
+    for (int i = 0; i < 64; i++)
+    {
+      XThreadInputStream is = new XThreadInputStream(new PatternInputStream(10L,10),1048576);
+      StufferThread t = new StufferThread(is);
+      t.start();
+      while (is.read() != -1)
+        ;
+      is.close();
+      t.join();
+      assertTrue(XThreadInputStream.getPooledBytes() <= 4194304L);
+    }
+  }
+
+  /** Thread that runs the producer side of the stream */
+  protected static class StufferThread extends Thread
+  {
+    protected final XThreadInputStream is;
+    protected Throwable exception = null;
+
+    public StufferThread(XThreadInputStream is)
+    {
+      super();
+      setDaemon(true);
+      this.is = is;
+    }
+
+    public void run()
+    {
+      try
+      {
+        is.stuffQueue();
+      }
+      catch (Throwable e)
+      {
+        exception = e;
+      }
+    }
+
+    public Throwable getException()
+    {
+      return exception;
+    }
+  }
+
+  /** Stream that produces a predictable byte pattern, in chunks no larger than a given size */
+  protected static class PatternInputStream extends InputStream
+  {
+    protected final long length;
+    protected final int maxChunk;
+    protected long position = 0L;
+
+    public PatternInputStream(long length, int maxChunk)
+    {
+      this.length = length;
+      this.maxChunk = maxChunk;
+    }
+
+    public static byte patternByte(long position)
+    {
+      return (byte)(position % 251L);
+    }
+
+    @Override
+    public int read()
+      throws IOException
+    {
+      if (position == length)
+        return -1;
+      return ((int)patternByte(position++)) & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+      throws IOException
+    {
+      if (position == length)
+        return -1;
+      if (len > maxChunk)
+        len = maxChunk;
+      if (len > length - position)
+        len = (int)(length - position);
+      for (int i = 0; i < len; i++)
+      {
+        b[off + i] = patternByte(position++);
+      }
+      return len;
+    }
+  }
+
+  /** Stream that fails after a given number of bytes */
+  protected static class FailingInputStream extends PatternInputStream
+  {
+    public FailingInputStream(long failurePoint)
+    {
+      super(failurePoint,1000);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+      throws IOException
+    {
+      if (position == length)
+        throw new IOException("Injected failure");
+      return super.read(b,off,len);
+    }
+  }
+
+}
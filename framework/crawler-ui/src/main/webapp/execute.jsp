@@ -851,6 +851,28 @@
 					variableContext.setParameter("target","listjobs.jsp");
 %>
 					<jsp:forward page="error.jsp"/>
+<%
+				}
+			}
+			else if (op.equals("Forget"))
+			{
+				try
+				{
+					String jobID = variableContext.getParameter("jobid");
+					if (jobID == null)
+						throw new ManifoldCFException("Missing job parameter");
+					manager.forgetJob(new Long(jobID));
+%>
+					<jsp:forward page="listjobs.jsp"/>
+<%
+				}
+				catch (ManifoldCFException e)
+				{
+					e.printStackTrace();
+					variableContext.setParameter("text",e.getMessage());
+					variableContext.setParameter("target","listjobs.jsp");
+%>
+					<jsp:forward page="error.jsp"/>
 <%
 				}
 			}
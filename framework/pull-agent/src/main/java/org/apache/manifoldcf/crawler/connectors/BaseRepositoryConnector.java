@@ -70,6 +70,20 @@ public abstract class BaseRepositoryConnector extends org.apache.manifoldcf.core
     return MODEL_ALL;
   }
 
+  /** Tell the framework what model a specific seeding pass will use.
+  * By default, this is the same as getConnectorModel().
+  *@param jobID is the identifier of the job being seeded.
+  *@param spec is the document specification of the job.
+  *@param startTime is the seeding start time that will be passed to addSeedDocuments().
+  *@param jobMode is an integer describing how the job is being run, whether continuous or once-only.
+  *@return the model type value.
+  */
+  public int getConnectorModel(Long jobID, DocumentSpecification spec, long startTime, int jobMode)
+    throws ManifoldCFException
+  {
+    return getConnectorModel();
+  }
+
   /** Return the list of activities that this connector supports (i.e. writes into the log).
   *@return the list.
   */
@@ -89,4 +89,40 @@ public class CacheKeyFactory extends org.apache.manifoldcf.agents.interfaces.Cac
     return "JOBSTATUSES";
   }
 
+  /** Construct a key which represents all carrydown data.
+  *@return the cache key.
+  */
+  public static String makeCarrydownKey()
+  {
+    return "CARRYDOWN";
+  }
+
+  /** Construct a key which represents the carrydown data of an individual job.
+  *@param jobID is the job identifier.
+  *@return the cache key.
+  */
+  public static String makeCarrydownJobKey(String jobID)
+  {
+    return "CARRYDOWN_"+jobID;
+  }
+
+  /** Construct a key which represents the carrydown data of one child document within a job.
+  *@param jobID is the job identifier.
+  *@param childIDHash is the hash of the child document identifier.
+  *@return the cache key.
+  */
+  public static String makeCarrydownChildKey(String jobID, String childIDHash)
+  {
+    return "CARRYDOWN_"+jobID+"_"+childIDHash;
+  }
+
+  /** Construct a key which represents whether a partition of a crawler table exists.
+  *@param partitionName is the name of the partition.
+  *@return the cache key.
+  */
+  public static String makeJobPartitionKey(String partitionName)
+  {
+    return "JOBPARTITION_"+partitionName;
+  }
+
 }
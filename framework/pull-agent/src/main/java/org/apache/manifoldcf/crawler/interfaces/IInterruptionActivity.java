@@ -0,0 +1,47 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.interfaces;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+
+/** This interface abstracts from the activities that handle service interruptions which affect
+* only a single document.
+*
+* A connector that fetches documents one at a time can still accept a batch of documents from the
+* framework, so that the framework's per-document overhead (version comparison, status lookups, and
+* the transactions that mark documents complete) is shared across the batch.  Throwing a ServiceInterruption
+* from such a connector would requeue every document in the batch, however, so instead the connector
+* reports the interruption for the affected document here and goes on with the rest of the batch.
+*/
+public interface IInterruptionActivity
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Note a service interruption that applies to one document only.
+  * The document is requeued (or failed) according to the parameters of the service interruption, exactly as
+  * if the interruption had been thrown for a batch containing only that document.  Any version string returned
+  * for the document is disregarded, and the document is not marked as completed.
+  *@param localIdentifier is the document identifier.
+  *@param e is the service interruption describing when and how the document should be retried.
+  */
+  public void noteDocumentServiceInterruption(String localIdentifier, ServiceInterruption e)
+    throws ManifoldCFException;
+
+}
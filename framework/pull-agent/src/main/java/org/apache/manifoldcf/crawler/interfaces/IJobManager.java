@@ -90,6 +90,13 @@ public interface IJobManager
   public void deleteJob(Long id)
     throws ManifoldCFException;
 
+  /** Forget a job.
+  *@param id is the job's identifier.  This method will purge all the records belonging to the job from the database,
+  * including the records of what the job indexed, but will NOT remove the job's documents from the index.
+  */
+  public void forgetJob(Long id)
+    throws ManifoldCFException;
+
   /** Load a job for editing.
   *@param id is the job's identifier.
   *@return null if the job doesn't exist.
@@ -192,14 +199,22 @@ public interface IJobManager
   public DocumentDescription[] getNextAlreadyProcessedReprioritizationDocuments(long currentTime, int n)
     throws ManifoldCFException;
 
-  /** Get a list of not-yet-processed documents to reprioritize.  Documents in all jobs will be
-  * returned by this method.  Up to n document descriptions will be returned.
-  *@param currentTime is the current time stamp for this prioritization pass.  Avoid
-  *  picking up any documents that are labeled with this timestamp or after.
+  /** Get a list of not-yet-processed documents in active jobs that have no document priority.
+  * Documents lose their priorities when their job is paused or aborted, and need new ones once the job
+  * resumes.  Up to n document descriptions will be returned.
   *@param n is the maximum number of document descriptions desired.
   *@return the document descriptions.
   */
-  public DocumentDescription[] getNextNotYetProcessedReprioritizationDocuments(long currentTime, int n)
+  public DocumentDescription[] getNextUnprioritizedDocuments(int n)
+    throws ManifoldCFException;
+
+  /** Get the best (numerically lowest) document priority among the documents of active jobs that are
+  * currently eligible to be handed to worker threads.  This is the level at which queuing is taking place,
+  * which new priorities should not be assigned ahead of.
+  *@param currentTime is the current time in milliseconds since epoch.
+  *@return the priority, or null if there are no prioritized eligible documents.
+  */
+  public Double getBestQueuedDocumentPriority(long currentTime)
     throws ManifoldCFException;
 
   /** Save a set of document priorities.  In the case where a document was eligible to have its
@@ -877,6 +892,47 @@ public interface IJobManager
   /** Delete jobs in need of being deleted (which are marked "ready for delete").
   * This method is meant to be called periodically to perform delete processing on jobs.
   */
+  // Job purge support.  The output connection's records are forgotten in pieces split by document identifier
+  // hash, which can be done in any order, in parallel, and more than once.  The crawler's records are then
+  // removed a table at a time.
+
+  /** Get the list of jobs that are ready to be purged.
+  *@return the ids of jobs that are in the "readyforpurge" state.
+  */
+  public Long[] getJobsReadyForPurge()
+    throws ManifoldCFException;
+
+  /** Get the number of pieces a job purge is split into.
+  *@return the number of pieces.
+  */
+  public int getPurgePartitionCount();
+
+  /** Get a batch of the document identifier hashes in one piece of a job being purged, in order.
+  *@param jobID is the job identifier.
+  *@param partition is the piece number.
+  *@param afterHash is the last hash of the previous batch, or null for the first batch.
+  *@param maxCount is the largest number of hashes to return.
+  *@return the hashes.  Fewer than maxCount means the piece has been exhausted.
+  */
+  public String[] getPurgeDocumentIdentifierHashes(Long jobID, int partition, String afterHash, int maxCount)
+    throws ManifoldCFException;
+
+  /** Find out which documents of a job being purged are not also owned by another job that shares the same
+  * repository and output connections.
+  *@param jobID is the job identifier.
+  *@param documentIdentifierHashes are the document identifier hashes.
+  *@return the hashes that belong to no other such job.
+  */
+  public String[] getUnsharedDocumentIdentifierHashes(Long jobID, String[] documentIdentifierHashes)
+    throws ManifoldCFException;
+
+  /** Finish purging a job, once the output connection's records for all of its pieces have been forgotten.
+  * This removes the crawler's records for the job, table by table, and then the job itself.
+  *@param jobID is the job identifier.
+  */
+  public void finishJobPurge(Long jobID)
+    throws ManifoldCFException;
+
   public void deleteJobsReadyForDelete()
     throws ManifoldCFException;
 
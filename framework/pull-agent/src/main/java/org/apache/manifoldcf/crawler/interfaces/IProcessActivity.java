@@ -23,7 +23,7 @@ import org.apache.manifoldcf.agents.interfaces.*;
 
 /** This interface abstracts from the activities that a fetched document processor can do.
 */
-public interface IProcessActivity extends IHistoryActivity, IEventActivity, IAbortActivity, IFingerprintActivity,
+public interface IProcessActivity extends IHistoryActivity, IEventActivity, IAbortActivity, IFingerprintActivity, IInterruptionActivity,
     ICarrydownActivity
 {
   public static final String _rcsid = "@(#)$Id: IProcessActivity.java 988245 2010-08-23 18:39:35Z kwright $";
@@ -100,6 +100,14 @@ public interface IProcessActivity extends IHistoryActivity, IEventActivity, IAbo
   public void addDocumentReference(String localIdentifier)
     throws ManifoldCFException;
 
+  /** Keep the references recorded the last time a document was processed, rather than replacing them with
+  * the ones added this time.  This is for documents that the connector knows are unchanged, but has not
+  * read again; no references should be added for the document once this is called.
+  *@param localIdentifier is the document identifier.
+  */
+  public void retainDocumentReferences(String localIdentifier)
+    throws ManifoldCFException;
+
 
   /** Record a document version, but don't ingest it.
   *@param localIdentifier is the document identifier.
@@ -96,6 +96,21 @@ public interface IRepositoryConnector extends IConnector
   */
   public int getConnectorModel();
 
+  /** Tell the framework what model a specific seeding pass will use.  Connectors whose ability to
+  * report changes or deletions depends on repository state (for example, whether a change log is
+  * available from the given start time) should return the model that actually applies to the pass;
+  * the framework uses this value, rather than getConnectorModel(), to decide how to prepare and
+  * finish the pass.  The connector will be connected before this method is called, and
+  * addSeedDocuments() will be called for the same start time immediately afterwards.
+  *@param jobID is the identifier of the job being seeded.
+  *@param spec is the document specification of the job.
+  *@param startTime is the seeding start time that will be passed to addSeedDocuments().
+  *@param jobMode is an integer describing how the job is being run, whether continuous or once-only.
+  *@return the model type value.
+  */
+  public int getConnectorModel(Long jobID, DocumentSpecification spec, long startTime, int jobMode)
+    throws ManifoldCFException;
+
   /** Return the list of activities that this connector supports (i.e. writes into the log).
   * The connector does not have to be connected for this method to be called.
   *@return the list.
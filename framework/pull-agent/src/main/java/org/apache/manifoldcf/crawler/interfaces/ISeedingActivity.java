@@ -77,4 +77,10 @@ public interface ISeedingActivity extends IHistoryActivity, INamingActivity, IAb
   public void addUnqueuedSeedDocument(String documentIdentifier)
     throws ManifoldCFException;
 
+  /** Get the identifier of the job being seeded.  Connectors that keep their own per-job state between
+  * seeding passes (such as a change log position) can use this to tell jobs apart.
+  *@return the job identifier.
+  */
+  public Long getJobID();
+
 }
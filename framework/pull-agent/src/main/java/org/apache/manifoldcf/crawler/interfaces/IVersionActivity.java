@@ -24,7 +24,7 @@ import org.apache.manifoldcf.agents.interfaces.*;
 /** This interface abstracts from the activities that a versioning operation can do.
 * See IProcessActivity for a description of the event model.
 */
-public interface IVersionActivity extends IHistoryActivity, IEventActivity, IAbortActivity, IFingerprintActivity,
+public interface IVersionActivity extends IHistoryActivity, IEventActivity, IAbortActivity, IFingerprintActivity, IInterruptionActivity,
     ICarrydownActivity
 {
   public static final String _rcsid = "@(#)$Id: IVersionActivity.java 988245 2010-08-23 18:39:35Z kwright $";
@@ -25,9 +25,11 @@ import java.util.*;
 import java.util.regex.*;
 
 /** This class attempts to provide document priorities in order to acheive as much balance as possible between documents having different bins.
-* A document's priority assignment takes place at the time the document is added to the queue, and will be recalculated when a job is aborted, or
-* when the crawler daemon is started.  The document priorities are strictly obeyed when documents are chosen from the queue and handed to
-* worker threads; higher-priority documents always have precedence, except due to deliberate priority adjustment specified by the job priority.
+* A document's priority assignment takes place at the time the document is added to the queue.  Priorities are not recalculated wholesale when
+* the crawler daemon is started or a job is aborted or resumed; instead, the bin counts are discarded and brought back up to the best priority
+* remaining on the queue as each bin is next used, and only documents that have lost their priority are given a new one.  The document priorities
+* are strictly obeyed when documents are chosen from the queue and handed to worker threads; higher-priority documents always have precedence,
+* except due to deliberate priority adjustment specified by the job priority.
 *
 * The priority values themselves are logarithmic: 0.0 is the highest, and the larger the number, the lower the priority.
 *
@@ -75,9 +77,6 @@ public class QueueTracker
   * newly discovered don't wind up with high priority, but instead wind up about the same as the currently active document priority. */
   protected double currentMinimumDepth = 0.0;
 
-  /** This flag, when set, indicates that a reset is in progress, so queuetracker bincount updates are ignored. */
-  protected boolean resetInProgress = false;
-
   /** This hash table is keyed by PriorityKey objects, and contains ArrayList objects containing Doubles, in sorted order. */
   protected HashMap availablePriorities = new HashMap();
 
@@ -91,28 +90,26 @@ public class QueueTracker
   }
 
   /** Reset the queue tracker.
-  * This occurs ONLY when we are about to reprioritize all active documents.  It does not affect the portion of the queue tracker that
+  * This occurs when the crawler starts, and when jobs are aborted, paused, or resumed.  The bin counts are discarded, and the minimum
+  * depth is set from the best priority still on the queue.  Rather than recalculating the priority of every queued document, each bin's
+  * count is brought up to the minimum depth the first time the bin is next used (see calculatePriority()), so documents queued from then
+  * on do not jump ahead of the documents that are already waiting.  It does not affect the portion of the queue tracker that
   * tracks the active queue.
+  *@param bestPriority is the best document priority currently on the queue, or null if there is none.
   */
-  public void beginReset()
+  public void reset(Double bestPriority)
   {
     synchronized (binCounts)
     {
       binCounts.clear();
-      currentMinimumDepth = 0.0;
       availablePriorities.clear();
       binDependencies.clear();
-      resetInProgress = true;
-    }
-
-  }
-
-  /** Finish the reset operation */
-  public void endReset()
-  {
-    synchronized (binCounts)
-    {
-      resetInProgress = false;
+      if (bestPriority != null && bestPriority.doubleValue() != Double.POSITIVE_INFINITY)
+        currentMinimumDepth = Math.exp(bestPriority.doubleValue())-1.0;
+      else
+        currentMinimumDepth = 0.0;
+      if (Logging.scheduling.isDebugEnabled())
+        Logging.scheduling.debug("Reset bin counts; minimum depth is now "+new Double(currentMinimumDepth).toString());
     }
   }
 
@@ -284,38 +281,34 @@ public class QueueTracker
   {
     synchronized (binCounts)
     {
-      // Ignore all numbers until reset is complete
-      if (!resetInProgress)
+      //Logging.scheduling.debug("In assessMinimumDepth");
+      int j = 0;
+      double newMinPriority = Double.MAX_VALUE;
+      while (j < binNamesSet.length)
       {
-        //Logging.scheduling.debug("In assessMinimumDepth");
-        int j = 0;
-        double newMinPriority = Double.MAX_VALUE;
-        while (j < binNamesSet.length)
+        Double binValue = binNamesSet[j++];
+        if (binValue.doubleValue() < newMinPriority)
+          newMinPriority = binValue.doubleValue();
+      }
+
+      if (newMinPriority != Double.MAX_VALUE)
+      {
+        // Convert minPriority to minDepth.
+        // Note that this calculation does not take into account anything having to do with connection rates, throttling,
+        // or other adjustment factors.  It allows us only to obtain the "raw" minimum depth: the depth without any
+        // adjustments.
+        double newMinDepth = Math.exp(newMinPriority)-1.0;
+
+        if (newMinDepth > currentMinimumDepth)
         {
-          Double binValue = binNamesSet[j++];
-          if (binValue.doubleValue() < newMinPriority)
-            newMinPriority = binValue.doubleValue();
+          currentMinimumDepth = newMinDepth;
+          if (Logging.scheduling.isDebugEnabled())
+            Logging.scheduling.debug("Setting new minimum depth value to "+new Double(currentMinimumDepth).toString());
         }
-
-        if (newMinPriority != Double.MAX_VALUE)
+        else
         {
-          // Convert minPriority to minDepth.
-          // Note that this calculation does not take into account anything having to do with connection rates, throttling,
-          // or other adjustment factors.  It allows us only to obtain the "raw" minimum depth: the depth without any
-          // adjustments.
-          double newMinDepth = Math.exp(newMinPriority)-1.0;
-
-          if (newMinDepth > currentMinimumDepth)
-          {
-            currentMinimumDepth = newMinDepth;
-            if (Logging.scheduling.isDebugEnabled())
-              Logging.scheduling.debug("Setting new minimum depth value to "+new Double(currentMinimumDepth).toString());
-          }
-          else
-          {
-            if (newMinDepth < currentMinimumDepth && Logging.scheduling.isDebugEnabled())
-              Logging.scheduling.debug("Minimum depth value seems to have been set too high too early! currentMin = "+new Double(currentMinimumDepth).toString()+"; queue value = "+new Double(newMinDepth).toString());
-          }
+          if (newMinDepth < currentMinimumDepth && Logging.scheduling.isDebugEnabled())
+            Logging.scheduling.debug("Minimum depth value seems to have been set too high too early! currentMin = "+new Double(currentMinimumDepth).toString()+"; queue value = "+new Double(newMinDepth).toString());
         }
       }
     }
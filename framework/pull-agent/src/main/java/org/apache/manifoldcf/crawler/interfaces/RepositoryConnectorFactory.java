@@ -37,6 +37,15 @@ public class RepositoryConnectorFactory
   // Keyed by PoolKey; value is Pool
   protected static Map poolHash = new HashMap();
 
+  // Queue metadata connectors.
+  // Keyed by PoolKey; value is QueueMetadataConnector
+  protected static Map queueMetadataHash = new HashMap();
+
+  /** Queue metadata connectors that go unused for this long are disconnected and discarded when the
+  * connectors are next polled.  Instances for connections that were deleted, or whose configuration
+  * changed (and therefore now have a different key), go away this way. */
+  protected static final long QUEUE_METADATA_EXPIRATION_INTERVAL = 300000L;
+
   // private static HashMap checkedOutConnectors = new HashMap();
 
   private RepositoryConnectorFactory()
@@ -444,6 +453,116 @@ public class RepositoryConnectorFactory
 
   }
 
+  /** Get the maximum number of documents to amalgamate together into one batch, for a connection,
+  * without checking out a connector from the pool.
+  *@param threadContext is the current thread context.
+  *@param className is the name of the connector class.
+  *@param configInfo is the configuration of the connection.
+  *@return the maximum document count, or 1 if the connector is not installed.
+  */
+  public static int getMaxDocumentRequest(IThreadContext threadContext, String className, ConfigParams configInfo)
+    throws ManifoldCFException
+  {
+    while (true)
+    {
+      QueueMetadataConnector connector = getQueueMetadataConnector(threadContext,className,configInfo);
+      if (connector == null)
+        return 1;
+      Integer rval = connector.getMaxDocumentRequest(threadContext);
+      if (rval != null)
+        return rval.intValue();
+      // Expired while we were getting it; get a new one
+    }
+  }
+
+  /** Get the bins for a set of documents belonging to one connection, without checking out a connector
+  * from the pool.
+  *@param threadContext is the current thread context.
+  *@param className is the name of the connector class.
+  *@param configInfo is the configuration of the connection.
+  *@param documentIdentifiers are the document identifiers.
+  *@return the bin names for each document; a document gets the single bin "" if the connector is not installed.
+  */
+  public static String[][] getBinNamesMultiple(IThreadContext threadContext, String className, ConfigParams configInfo,
+    String[] documentIdentifiers)
+    throws ManifoldCFException
+  {
+    while (true)
+    {
+      QueueMetadataConnector connector = getQueueMetadataConnector(threadContext,className,configInfo);
+      if (connector == null)
+      {
+        String[][] rval = new String[documentIdentifiers.length][];
+        int i = 0;
+        while (i < rval.length)
+        {
+          rval[i++] = new String[]{""};
+        }
+        return rval;
+      }
+      String[][] rval = connector.getBinNamesMultiple(threadContext,documentIdentifiers);
+      if (rval != null)
+        return rval;
+      // Expired while we were getting it; get a new one
+    }
+  }
+
+  /** Get the connector instance used to answer queue metadata questions for a connection.
+  * getBinNames() and getMaxDocumentRequest() depend only on the connection's configuration, and have no
+  * side effects, so one connected instance per connection, kept apart from the pool, can answer them for
+  * the whole process.  The threads that stuff and prioritize the queue therefore never wait for worker
+  * threads to give back pooled instances.  Like the pooled instances, these are polled by
+  * pollAllConnectors(), which also discards the ones that have not been used for a while.
+  *@return the connector, or null if the connector is not installed.
+  */
+  protected static QueueMetadataConnector getQueueMetadataConnector(IThreadContext threadContext, String className,
+    ConfigParams configInfo)
+    throws ManifoldCFException
+  {
+    PoolKey pk = new PoolKey(className,configInfo);
+    synchronized (queueMetadataHash)
+    {
+      QueueMetadataConnector rval = (QueueMetadataConnector)queueMetadataHash.get(pk);
+      if (rval != null)
+        return rval;
+    }
+    IRepositoryConnector connector = getConnector(threadContext,className);
+    if (connector == null)
+      return null;
+    pk = new PoolKey(className,configInfo.duplicate());
+    connector.setThreadContext(threadContext);
+    try
+    {
+      connector.connect(pk.getParams());
+    }
+    finally
+    {
+      connector.clearThreadContext();
+    }
+    QueueMetadataConnector rval;
+    synchronized (queueMetadataHash)
+    {
+      rval = (QueueMetadataConnector)queueMetadataHash.get(pk);
+      if (rval == null)
+      {
+        rval = new QueueMetadataConnector(connector);
+        queueMetadataHash.put(pk,rval);
+        return rval;
+      }
+    }
+    // Another thread got there first; this instance isn't needed
+    connector.setThreadContext(threadContext);
+    try
+    {
+      connector.disconnect();
+    }
+    finally
+    {
+      connector.clearThreadContext();
+    }
+    return rval;
+  }
+
   /** Idle notification for inactive repository connector handles.
   * This method polls all inactive handles.
   */
@@ -464,6 +583,25 @@ public class RepositoryConnectorFactory
       }
     }
 
+    // Poll the queue metadata connectors too, and get rid of those nobody has used lately
+    long currentTime = System.currentTimeMillis();
+    synchronized (queueMetadataHash)
+    {
+      Iterator iter = queueMetadataHash.values().iterator();
+      while (iter.hasNext())
+      {
+        QueueMetadataConnector qmc = (QueueMetadataConnector)iter.next();
+        if (qmc.isIdle(currentTime))
+        {
+          // Out of the map first, so that a failed disconnect can't leave an unusable entry behind
+          iter.remove();
+          qmc.expire(threadContext);
+        }
+        else
+          qmc.poll(threadContext);
+      }
+    }
+
     // System.out.println("About to check if any repository connector instances have been abandoned...");
     // checkConnectors(System.currentTimeMillis());
   }
@@ -486,6 +624,18 @@ public class RepositoryConnectorFactory
         p.releaseAll(threadContext);
       }
     }
+    // Queue metadata connectors are not handed out, so these can just be dropped.  Disconnect them
+    // anyway, in case a connector holds resources from connect().
+    synchronized (queueMetadataHash)
+    {
+      Iterator iter = queueMetadataHash.values().iterator();
+      while (iter.hasNext())
+      {
+        QueueMetadataConnector qmc = (QueueMetadataConnector)iter.next();
+        iter.remove();
+        qmc.expire(threadContext);
+      }
+    }
   }
 
   /** Track connection allocation */
@@ -749,6 +899,112 @@ public class RepositoryConnectorFactory
     }
   }
 
+  /** This class holds a connector instance used to answer queue metadata questions.  Once expired, the
+  * instance is disconnected, and the methods that use it return null.
+  */
+  protected static class QueueMetadataConnector
+  {
+    protected final IRepositoryConnector connector;
+    protected long lastUsedTime;
+    protected boolean expired = false;
+
+    public QueueMetadataConnector(IRepositoryConnector connector)
+    {
+      this.connector = connector;
+      this.lastUsedTime = System.currentTimeMillis();
+    }
+
+    /** Get the maximum document request count.
+    *@return the count, or null if this instance has expired.
+    */
+    public synchronized Integer getMaxDocumentRequest(IThreadContext threadContext)
+      throws ManifoldCFException
+    {
+      if (expired)
+        return null;
+      lastUsedTime = System.currentTimeMillis();
+      connector.setThreadContext(threadContext);
+      try
+      {
+        return new Integer(connector.getMaxDocumentRequest());
+      }
+      finally
+      {
+        connector.clearThreadContext();
+      }
+    }
+
+    /** Get the bin names for a set of documents.
+    *@return the bin names, or null if this instance has expired.
+    */
+    public synchronized String[][] getBinNamesMultiple(IThreadContext threadContext, String[] documentIdentifiers)
+      throws ManifoldCFException
+    {
+      if (expired)
+        return null;
+      lastUsedTime = System.currentTimeMillis();
+      connector.setThreadContext(threadContext);
+      try
+      {
+        String[][] rval = new String[documentIdentifiers.length][];
+        int i = 0;
+        while (i < rval.length)
+        {
+          rval[i] = connector.getBinNames(documentIdentifiers[i]);
+          i++;
+        }
+        return rval;
+      }
+      finally
+      {
+        connector.clearThreadContext();
+      }
+    }
+
+    /** Check whether the instance has gone unused long enough to be discarded.
+    */
+    public synchronized boolean isIdle(long currentTime)
+    {
+      return lastUsedTime + QUEUE_METADATA_EXPIRATION_INTERVAL <= currentTime;
+    }
+
+    /** Poll the instance.
+    */
+    public synchronized void poll(IThreadContext threadContext)
+      throws ManifoldCFException
+    {
+      if (expired)
+        return;
+      connector.setThreadContext(threadContext);
+      try
+      {
+        connector.poll();
+      }
+      finally
+      {
+        connector.clearThreadContext();
+      }
+    }
+
+    /** Disconnect the instance, which can't be used after that.
+    */
+    public synchronized void expire(IThreadContext threadContext)
+      throws ManifoldCFException
+    {
+      if (expired)
+        return;
+      expired = true;
+      connector.setThreadContext(threadContext);
+      try
+      {
+        connector.disconnect();
+      }
+      finally
+      {
+        connector.clearThreadContext();
+      }
+    }
+  }
 
   protected static class ConnectorTracker
   {
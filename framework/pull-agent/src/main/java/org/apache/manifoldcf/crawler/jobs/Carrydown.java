@@ -22,6 +22,7 @@ import java.util.*;
 
 import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.CacheKeyFactory;
 import org.apache.manifoldcf.crawler.system.Logging;
 import org.apache.manifoldcf.crawler.system.ManifoldCF;
 
@@ -43,7 +44,7 @@ import org.apache.manifoldcf.crawler.system.ManifoldCF;
  * <br><br>
  * 
  */
-public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
+public class Carrydown extends JobPartitionedTable
 {
   public static final String _rcsid = "@(#)$Id: Carrydown.java 988245 2010-08-23 18:39:35Z kwright $";
 
@@ -74,13 +75,22 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
     isNewMap.put("E",new Integer(ISNEW_EXISTING));
   }
 
+  /** Maximum number of (child, data name) value sets kept in the cache.  Worker threads ask for the same
+  * values repeatedly while processing a child, so a modest number covers all the children in flight. */
+  protected static final int MAX_CACHED_VALUE_SETS = 10000;
+
+  /** Cache manager, for the data value cache */
+  protected ICacheManager cacheManager;
+
   /** Constructor.
+  *@param threadContext is the thread context.
   *@param database is the database handle.
   */
-  public Carrydown(IDBInterface database)
+  public Carrydown(IThreadContext threadContext, IDBInterface database)
     throws ManifoldCFException
   {
-    super(database,"carrydown");
+    super(database,"carrydown",jobIDField);
+    cacheManager = CacheManagerFactory.make(threadContext);
   }
 
   /** Install or upgrade.
@@ -181,10 +191,21 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
   public void deleteOwner(Long jobID)
     throws ManifoldCFException
   {
+    dropJobPartition(jobID);
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
       new UnitaryClause(jobIDField,jobID)});
-    performDelete("WHERE "+query,list,null);
+    performDelete("WHERE "+query,list,new StringSet(getCarrydownJobKey(jobID)));
+  }
+
+  /** Get the indexes each job partition needs.
+  */
+  protected IndexDescription[] getPartitionIndexes()
+  {
+    return new IndexDescription[]{
+      new IndexDescription(true,new String[]{jobIDField,parentIDHashField,childIDHashField,dataNameField,dataValueHashField}),
+      new IndexDescription(false,new String[]{jobIDField,childIDHashField,dataNameField}),
+      new IndexDescription(false,new String[]{newField})};
   }
 
   // The strategy here is to leave all rows that have a given document as a parent labelled as "BASE" at the start of the
@@ -207,7 +228,7 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
       new UnitaryClause(newField,statusToString(ISNEW_NEW))});
-    performDelete("WHERE "+query,list,null);
+    performDelete("WHERE "+query,list,new StringSet(getCarrydownKey()));
 
     // Convert "existing" rows to base
     map.put(newField,statusToString(ISNEW_BASE));
@@ -283,7 +304,7 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
             if (i == maxClause)
             {
               // Do the query and record the results
-              performExistsCheck(presentMap,sb.toString(),list);
+              performExistsCheckAndMark(jobID,presentMap,sb.toString(),list);
               i = 0;
               sb.setLength(0);
               list.clear();
@@ -307,14 +328,14 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
       }
     }
     if (i > 0)
-      performExistsCheck(presentMap,sb.toString(),list);
+      performExistsCheckAndMark(jobID,presentMap,sb.toString(),list);
 
-    // Go through the list again, and based on the results above, decide to do either an insert or
-    // an update.  Keep track of this information also, so we can build the return array when done.
+    // Go through the list again, and insert the records that the checks above did not find.  (The ones they
+    // did find have already been marked as existing.)  Keep track of this information also, so we can build the
+    // return array when done.
 
     HashMap insertHappened = new HashMap();
 
-    int j = 0;
     Iterator iter = duplicateRemoval.keySet().iterator();
     while (iter.hasNext())
     {
@@ -340,39 +361,15 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
         }
 
         map.put(newField,statusToString(ISNEW_NEW));
-        performInsert(map,null);
-        noteModifications(1,0,0);
+        performInsert(jobID,map,null);
+        noteModifications(jobID,1,0,0);
         insertHappened.put(childDocumentIDHash,new Boolean(true));
       }
-      else
-      {
-        sb = new StringBuilder();
-        sb.append("WHERE ").append(jobIDField).append("=? AND ")
-          .append(parentIDHashField).append("=? AND ")
-          .append(childIDHashField).append("=? AND ")
-          .append(dataNameField).append("=? AND ");
-
-        ArrayList updateList = new ArrayList();
-        updateList.add(jobID);
-        updateList.add(parentDocumentIDHash);
-        updateList.add(childDocumentIDHash);
-        updateList.add(dataName);
-        if (dataValueHash != null)
-        {
-          sb.append(dataValueHashField).append("=?");
-          updateList.add(dataValueHash);
-        }
-        else
-        {
-          sb.append(dataValueHashField).append(" IS NULL");
-        }
-
-        map.put(newField,statusToString(ISNEW_EXISTING));
-        performUpdate(map,sb.toString(),updateList,null);
-        noteModifications(0,1,0);
-      }
     }
 
+    // Values for a child only change when something is inserted for it
+    invalidateChildren(jobID,insertHappened.keySet());
+
     boolean[] rval = new boolean[childDocumentIDHashes.length];
     i = 0;
     while (i < rval.length)
@@ -384,8 +381,8 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
     return rval;
   }
 
-  /** Do the exists check, in batch. */
-  protected void performExistsCheck(Map presentMap, String query, ArrayList list)
+  /** Do the exists check, in batch, and mark the records that are found as existing. */
+  protected void performExistsCheckAndMark(Long jobID, Map presentMap, String query, ArrayList list)
     throws ManifoldCFException
   {
     // Note well: presentMap is only checked for the *existence* of a record, so we do not need to populate the datavalue field!
@@ -403,6 +400,15 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
 
       presentMap.put(vr,vr);
     }
+
+    // The rows are locked, so the same clause marks exactly the rows just found, in one statement.
+    if (result.getRowCount() > 0)
+    {
+      HashMap map = new HashMap();
+      map.put(newField,statusToString(ISNEW_EXISTING));
+      performUpdate(map,"WHERE "+query,list,null);
+      noteModifications(jobID,0,result.getRowCount(),0);
+    }
   }
   /** Return all records belonging to the specified parent documents to the base state,
   * and delete the old (eliminated) child records.
@@ -485,7 +491,7 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
     map.put(newField,statusToString(ISNEW_BASE));
     performUpdate(map,sb.toString(),newList,null);
     
-    noteModifications(0,list.size(),0);
+    noteModifications(jobID,0,list.size(),0);
   }
 
   /** Delete all records that mention a particular set of document identifiers.
@@ -550,6 +556,7 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
       new UnitaryClause(jobIDField,jobID),
       new MultiClause(childIDHashField,list)}));
     performDelete(sb.toString(),newList,null);
+    invalidateChildren(jobID,list);
     
     sb = new StringBuilder("WHERE ");
     newList.clear();
@@ -559,12 +566,30 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
       new MultiClause(parentIDHashField,list)}));
     performDelete(sb.toString(),newList,null);
 
-    noteModifications(0,0,list.size()*2);
+    noteModifications(jobID,0,0,list.size()*2);
   }
 
-  /** Get unique values given a document identifier, data name, an job identifier */
+  /** Get unique values given a document identifier, data name, an job identifier.
+  * Results are cached until carrydown data for the document changes.
+  */
   public String[] getDataValues(Long jobID, String documentIdentifierHash, String dataName)
     throws ManifoldCFException
+  {
+    StringSetBuffer ssb = new StringSetBuffer();
+    ssb.add(getCarrydownKey());
+    ssb.add(getCarrydownJobKey(jobID));
+    ssb.add(getCarrydownChildKey(jobID,documentIdentifierHash));
+    DataValuesDescription[] descriptions = new DataValuesDescription[]{
+      new DataValuesDescription(jobID,documentIdentifierHash,dataName,new StringSet(ssb))};
+    DataValuesExecutor exec = new DataValuesExecutor(this);
+    cacheManager.findObjectsAndExecute(descriptions,null,exec,getTransactionID());
+    // Callers may modify what they get back
+    return (String[])exec.getResult().clone();
+  }
+
+  /** Read unique values given a document identifier, data name, an job identifier, from the database */
+  protected String[] readDataValues(Long jobID, String documentIdentifierHash, String dataName)
+    throws ManifoldCFException
   {
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
@@ -614,6 +639,68 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
     return rval;
   }
 
+  /** Note that the carrydown data of some child documents has been changed by means other than the
+  * methods of this class that record or delete it, e.g. by restoring their parents' records.  Cached data values
+  * for these children are discarded when the current transaction commits.
+  *@param jobID is the job identifier.
+  *@param children are the child documents.
+  */
+  public void invalidateChildren(Long jobID, DocumentDescription[] children)
+    throws ManifoldCFException
+  {
+    ArrayList list = new ArrayList();
+    int i = 0;
+    while (i < children.length)
+    {
+      list.add(children[i++].getDocumentIdentifierHash());
+    }
+    invalidateChildren(jobID,list);
+  }
+
+  /** Discard cached data values for a set of child documents.
+  *@param jobID is the job identifier.
+  *@param childIDHashes are the child document identifier hashes.
+  */
+  protected void invalidateChildren(Long jobID, Collection childIDHashes)
+    throws ManifoldCFException
+  {
+    if (childIDHashes.size() == 0)
+      return;
+    StringSetBuffer ssb = new StringSetBuffer();
+    Iterator iter = childIDHashes.iterator();
+    while (iter.hasNext())
+    {
+      ssb.add(getCarrydownChildKey(jobID,(String)iter.next()));
+    }
+    ICacheHandle ch = cacheManager.enterCache(null,new StringSet(ssb),getTransactionID());
+    try
+    {
+      cacheManager.invalidateKeys(ch);
+    }
+    finally
+    {
+      cacheManager.leaveCache(ch);
+    }
+  }
+
+  // Cache key picture for carrydown data values.  There is one global key, one per job, and one per child
+  // document within a job.
+
+  protected static String getCarrydownKey()
+  {
+    return CacheKeyFactory.makeCarrydownKey();
+  }
+
+  protected static String getCarrydownJobKey(Long jobID)
+  {
+    return CacheKeyFactory.makeCarrydownJobKey(jobID.toString());
+  }
+
+  protected static String getCarrydownChildKey(Long jobID, String childIDHash)
+  {
+    return CacheKeyFactory.makeCarrydownChildKey(jobID.toString(),childIDHash);
+  }
+
   /** Convert string to link status. */
   public static int stringToStatus(String status)
   {
@@ -853,4 +940,131 @@ public class Carrydown extends org.apache.manifoldcf.core.database.BaseTable
     }
   }
 
+  /** Description of a cached set of data values.
+  */
+  protected static class DataValuesDescription extends org.apache.manifoldcf.core.cachemanager.BaseDescription
+  {
+    protected Long jobID;
+    protected String childIDHash;
+    protected String dataName;
+    protected String criticalSectionName;
+    protected StringSet cacheKeys;
+
+    public DataValuesDescription(Long jobID, String childIDHash, String dataName, StringSet invKeys)
+    {
+      super("carrydowndatavaluescache",MAX_CACHED_VALUE_SETS);
+      this.jobID = jobID;
+      this.childIDHash = childIDHash;
+      this.dataName = dataName;
+      criticalSectionName = getClass().getName()+"-"+jobID.toString()+"-"+childIDHash+"-"+dataName;
+      cacheKeys = invKeys;
+    }
+
+    public Long getJobID()
+    {
+      return jobID;
+    }
+
+    public String getChildIDHash()
+    {
+      return childIDHash;
+    }
+
+    public String getDataName()
+    {
+      return dataName;
+    }
+
+    public int hashCode()
+    {
+      return jobID.hashCode() + childIDHash.hashCode() + dataName.hashCode();
+    }
+
+    public boolean equals(Object o)
+    {
+      if (!(o instanceof DataValuesDescription))
+        return false;
+      DataValuesDescription d = (DataValuesDescription)o;
+      return d.jobID.equals(jobID) && d.childIDHash.equals(childIDHash) && d.dataName.equals(dataName);
+    }
+
+    public String getCriticalSectionName()
+    {
+      return criticalSectionName;
+    }
+
+    /** Get the cache keys for an object (which may or may not exist yet in
+    * the cache).  This method is called in order for cache manager to throw the correct locks.
+    * @return the object's cache keys, or null if the object should not
+    * be cached.
+    */
+    public StringSet getObjectKeys()
+    {
+      return cacheKeys;
+    }
+
+  }
+
+  /** This is the executor object for locating data values.
+  */
+  protected static class DataValuesExecutor extends org.apache.manifoldcf.core.cachemanager.ExecutorBase
+  {
+    // Member variables
+    protected Carrydown thisManager;
+    protected String[] returnValue = null;
+
+    /** Constructor.
+    *@param manager is the Carrydown manager.
+    */
+    public DataValuesExecutor(Carrydown manager)
+    {
+      super();
+      thisManager = manager;
+    }
+
+    /** Get the result.
+    *@return the looked-up or read cached values.
+    */
+    public String[] getResult()
+    {
+      return returnValue;
+    }
+
+    /** Create a set of new objects to operate on and cache.  This method is called only
+    * if the specified object(s) are NOT available in the cache.
+    * @param objectDescriptions is the set of unique identifier of the object.
+    * @return the newly created objects to cache, or null, if any object cannot be created.
+    */
+    public Object[] create(ICacheDescription[] objectDescriptions) throws ManifoldCFException
+    {
+      Object[] rval = new Object[objectDescriptions.length];
+      int i = 0;
+      while (i < rval.length)
+      {
+        DataValuesDescription desc = (DataValuesDescription)objectDescriptions[i];
+        rval[i++] = thisManager.readDataValues(desc.getJobID(),desc.getChildIDHash(),desc.getDataName());
+      }
+      return rval;
+    }
+
+    /** Notify the implementing class of the existence of a cached version of the
+    * object.
+    * @param objectDescription is the unique identifier of the object.
+    * @param cachedObject is the cached object.
+    */
+    public void exists(ICacheDescription objectDescription, Object cachedObject) throws ManifoldCFException
+    {
+      returnValue = (String[])cachedObject;
+    }
+
+    /** Perform the desired operation.  This method is called after either createGetObject()
+    * or exists() is called for every requested object.
+    */
+    public void execute() throws ManifoldCFException
+    {
+      // Does nothing; we only want to fetch objects in this cacher.
+    }
+
+  }
+
 }
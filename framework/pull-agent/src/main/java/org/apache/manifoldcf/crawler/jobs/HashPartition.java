@@ -0,0 +1,70 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.jobs;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import java.util.*;
+
+/** This class describes one piece of a job's records, chosen by identifier hash, so that bulk operations on a
+* large job can be split into set-based statements of reasonable size and run in parallel.
+* Identifier hashes are upper-case hexadecimal, so pieces are chosen by the hash's leading character.  The
+* character is matched as a prefix rather than compared as a range, so that the pieces do not depend on how the
+* database collates strings.  A hash that is not hexadecimal belongs to no piece.
+*/
+public class HashPartition
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Number of pieces a job is split into */
+  public static final int PARTITION_COUNT = 16;
+
+  protected static final String hexDigits = "0123456789ABCDEF";
+
+  /** Leading character of every hash in the piece */
+  protected final String prefix;
+
+  /** Constructor.
+  *@param partition is the piece number, from zero to PARTITION_COUNT-1.
+  */
+  public HashPartition(int partition)
+  {
+    if (partition < 0 || partition >= PARTITION_COUNT)
+      throw new IllegalArgumentException("Illegal partition number: "+partition);
+    prefix = hexDigits.substring(partition,partition+1);
+  }
+
+  /** Build the clauses that select the records of a job in this piece.
+  *@param jobIDField is the job id column name.
+  *@param jobID is the job id.
+  *@param hashField is the identifier hash column name.
+  *@return the clauses, for a conjunction.
+  */
+  public ClauseDescription[] getClauses(String jobIDField, Long jobID, String hashField)
+  {
+    return new ClauseDescription[]{
+      new UnitaryClause(jobIDField,jobID),
+      new UnitaryClause(hashField," LIKE ",prefix+"%")};
+  }
+
+  public String toString()
+  {
+    return prefix;
+  }
+
+}
@@ -43,7 +43,7 @@ import org.apache.manifoldcf.crawler.system.ManifoldCF;
 * <br><br>
 * 
 */
-public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
+public class HopCount extends JobPartitionedTable
 {
   public static final String _rcsid = "@(#)$Id: HopCount.java 988245 2010-08-23 18:39:35Z kwright $";
 
@@ -154,7 +154,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
   public HopCount(IThreadContext tc, IDBInterface database)
     throws ManifoldCFException
   {
-    super(database,"hopcount");
+    super(database,"hopcount",jobIDField);
     this.threadContext = tc;
     intrinsicLinkManager = new IntrinsicLink(database);
     deleteDepsManager = new HopDeleteDeps(database);
@@ -188,7 +188,11 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
 
       // Do child tables.
       intrinsicLinkManager.install(jobsTable,jobsColumn);
-      deleteDepsManager.install(jobsTable,jobsColumn,getTableName(),idField);
+      // Rows in partitions can't be the target of a foreign key.
+      if (isPartitioned())
+        deleteDepsManager.install(jobsTable,jobsColumn,null,null);
+      else
+        deleteDepsManager.install(jobsTable,jobsColumn,getTableName(),idField);
 
       // Do indexes
       IndexDescription jobLinktypeParentIndex = new IndexDescription(true,new String[]{jobIDField,parentIDHashField,linkTypeField});
@@ -288,17 +292,63 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
     throws ManifoldCFException
   {
     // Delete the intrinsic rows belonging to this job.
-    intrinsicLinkManager.deleteOwner(jobID);
+    deleteOwnerLinks(jobID);
 
     // Delete the deletedeps rows
-    deleteDepsManager.deleteJob(jobID);
+    deleteOwnerDeleteDependencies(jobID);
 
     // Delete our own rows.
+    deleteOwnerRows(jobID);
+  }
+
+  /** Delete the intrinsic link rows belonging to an owner.
+  */
+  public void deleteOwnerLinks(Long jobID)
+    throws ManifoldCFException
+  {
+    intrinsicLinkManager.deleteOwner(jobID);
+  }
+
+  /** Delete the delete dependency rows belonging to an owner.
+  */
+  public void deleteOwnerDeleteDependencies(Long jobID)
+    throws ManifoldCFException
+  {
+    deleteDepsManager.deleteJob(jobID);
+  }
+
+  /** Delete the hopcount rows belonging to an owner, once its delete dependencies are gone.
+  */
+  public void deleteOwnerRows(Long jobID)
+    throws ManifoldCFException
+  {
+    dropJobPartition(jobID);
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
       new UnitaryClause(jobIDField,jobID)});
     performDelete("WHERE "+query,list,null);
-    noteModifications(0,0,1);
+    noteModifications(jobID,0,0,1);
+  }
+
+  /** Get the indexes each job partition needs.
+  */
+  protected IndexDescription[] getPartitionIndexes()
+  {
+    return new IndexDescription[]{
+      new IndexDescription(true,new String[]{idField}),
+      new IndexDescription(true,new String[]{jobIDField,parentIDHashField,linkTypeField}),
+      new IndexDescription(false,new String[]{jobIDField,markForDeathField,parentIDHashField,linkTypeField})};
+  }
+
+  /** Create a job's partitions of this table, and of the intrinsic link and delete dependency tables.
+  *@param jobID is the job identifier.
+  */
+  public void createJobPartition(Long jobID)
+    throws ManifoldCFException
+  {
+    super.createJobPartition(jobID);
+    intrinsicLinkManager.createJobPartition(jobID);
+    deleteDepsManager.createJobPartition(jobID);
   }
 
   /** Reset, at startup time.
@@ -818,8 +868,8 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
           map.put(markForDeathField,markToString(MARK_NORMAL));
           if (Logging.hopcount.isDebugEnabled())
             Logging.hopcount.debug("Inserting new record for '"+documentIDHash+"' linktype '"+affectedLinkType+"' distance "+Integer.toString(newAnswerValue)+" for job "+jobID);
-          performInsert(map,null);
-          noteModifications(1,0,0);
+          performInsert(jobID,map,null);
+          noteModifications(jobID,1,0,0);
           if (hopcountMethod != IJobDescription.HOPCOUNT_NEVERDELETE)
           {
             deleteDepsManager.writeDependency(hopCountID,jobID,dd);
@@ -907,7 +957,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
     // update the distance.  It's safe to leave the old dep records, because they must only record links that furnish
     // A minimal path, not THE minimal path.
 
-    noteModifications(0,documentIDHashes.length,0);
+    noteModifications(jobID,0,documentIDHashes.length,0);
     return rval;
   }
 
@@ -1000,7 +1050,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
     map.put(distanceField,new Long(-1L));
     map.put(markForDeathField,markToString(MARK_DELETING));
     performUpdate(map,sb.toString(),list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
       
     // We do NOT do the parentID because otherwise we have the potential to delete links that we need later.  See CONNECTORS-501.
 
@@ -1018,7 +1068,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
     String query = buildConjunctionClause(queryList,new ClauseDescription[]{
       new UnitaryClause(jobIDField,jobID),
       new UnitaryClause(markForDeathField,markToString(MARK_DELETING))});
-    deleteDepsManager.removeMarkedRows(getTableName(),idField,query,queryList);
+    deleteDepsManager.removeMarkedRows(jobID,getTableName(),idField,query,queryList);
 
     // Set the hopcount rows back to just "queued".
     HashMap newMap = new HashMap();
@@ -1092,7 +1142,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
       }
       if (k > 0)
         markForDocumentDelete(jobID,list);
-      noteModifications(0,documentHashes.length,0);
+      noteModifications(jobID,0,documentHashes.length,0);
 
       if (Logging.hopcount.isDebugEnabled())
         Logging.hopcount.debug("Done setting hopcount rows for job "+jobID+" to initial distances");
@@ -1106,7 +1156,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
       String query = buildConjunctionClause(queryList,new ClauseDescription[]{
         new UnitaryClause(jobIDField,jobID),
         new UnitaryClause(markForDeathField,markToString(MARK_DELETING))});
-      deleteDepsManager.removeMarkedRows(getTableName(),idField,query,queryList);
+      deleteDepsManager.removeMarkedRows(jobID,getTableName(),idField,query,queryList);
 
       // Set the hopcount rows back to just "queued".
       HashMap newMap = new HashMap();
@@ -1223,7 +1273,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
       }
       if (k > 0)
         markForDelete(jobID,list,commonNewExpression,commonNewList);
-      noteModifications(0,sourceDocumentHashes.length,0);
+      noteModifications(jobID,0,sourceDocumentHashes.length,0);
 
       if (Logging.hopcount.isDebugEnabled())
         Logging.hopcount.debug("Done setting hopcount rows for job "+jobID+" to initial distances");
@@ -1238,7 +1288,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
       String query = buildConjunctionClause(queryList,new ClauseDescription[]{
         new UnitaryClause(jobIDField,jobID),
         new UnitaryClause(markForDeathField,markToString(MARK_DELETING))});
-      deleteDepsManager.removeMarkedRows(getTableName(),idField,query,queryList);
+      deleteDepsManager.removeMarkedRows(jobID,getTableName(),idField,query,queryList);
 
       // Set the hopcount rows back to just "queued".
       HashMap newMap = new HashMap();
@@ -1605,14 +1655,15 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
           Logging.hopcount.debug("Caching infinity for document '"+parentIDHash+"' linktype '"+linkType+"' answer="+Integer.toString(answer.getAnswer()));
 
         // Delete the old dependencies in any case.
-        deleteDepsManager.deleteOwnerRows(new Long[]{existingID});
+        deleteDepsManager.deleteOwnerRows(jobID,new Long[]{existingID});
 
         ArrayList list = new ArrayList();
         String query = buildConjunctionClause(list,new ClauseDescription[]{
-          new UnitaryClause(idField,existingID)});
+          new UnitaryClause(idField,existingID),
+          new UnitaryClause(jobIDField,jobID)});
 
         performDelete("WHERE "+query,list,null);
-        noteModifications(0,0,1);
+        noteModifications(jobID,0,0,1);
         // Since infinity is not a reduction of any kind, we're done here.
         return;
       }
@@ -1681,9 +1732,10 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
         map.put(markForDeathField,markToString(MARK_NORMAL));
         ArrayList list = new ArrayList();
         String query = buildConjunctionClause(list,new ClauseDescription[]{
-          new UnitaryClause(idField,existingID)});
+          new UnitaryClause(idField,existingID),
+          new UnitaryClause(jobIDField,jobID)});
         performUpdate(map,"WHERE "+query,list,null);
-        noteModifications(0,1,0);
+        noteModifications(jobID,0,1,0);
 
         if (hopcountMethod != IJobDescription.HOPCOUNT_NEVERDELETE)
         {
@@ -1707,7 +1759,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
 
           if (incrementalOpCount > 1 + answer.countDeleteDependencies())
           {
-            deleteDepsManager.deleteOwnerRows(new Long[]{existingID});
+            deleteDepsManager.deleteOwnerRows(jobID,new Long[]{existingID});
             existingDepsMap.clear();
           }
 
@@ -1717,7 +1769,7 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
           {
             DeleteDependency dep = (DeleteDependency)iter.next();
             if (answer.hasDependency(dep) == false)
-              deleteDepsManager.deleteDependency(existingID,dep);
+              deleteDepsManager.deleteDependency(existingID,jobID,dep);
           }
 
           // Then, inserts...
@@ -1747,9 +1799,10 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
         map.put(markForDeathField,markToString(MARK_NORMAL));
         ArrayList list = new ArrayList();
         String query = buildConjunctionClause(list,new ClauseDescription[]{
-          new UnitaryClause(idField,existingID)});
+          new UnitaryClause(idField,existingID),
+          new UnitaryClause(jobIDField,jobID)});
         performUpdate(map,"WHERE "+query,list,null);
-        noteModifications(0,1,0);
+        noteModifications(jobID,0,1,0);
       }
 
       // Done
@@ -1782,8 +1835,8 @@ public class HopCount extends org.apache.manifoldcf.core.database.BaseTable
       map.put(linkTypeField,linkType);
     map.put(parentIDHashField,parentIDHash);
     map.put(distanceField,new Long(answer.getAnswer()));
-    performInsert(map,null);
-    noteModifications(1,0,0);
+    performInsert(jobID,map,null);
+    noteModifications(jobID,1,0,0);
 
     if (hopcountMethod != IJobDescription.HOPCOUNT_NEVERDELETE)
     {
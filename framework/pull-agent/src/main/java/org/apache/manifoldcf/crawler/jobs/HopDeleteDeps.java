@@ -41,7 +41,7 @@ import java.util.*;
 * <br><br>
 * 
 */
-public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
+public class HopDeleteDeps extends JobPartitionedTable
 {
   public static final String _rcsid = "@(#)$Id: HopDeleteDeps.java 988245 2010-08-23 18:39:35Z kwright $";
 
@@ -58,7 +58,7 @@ public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
   public HopDeleteDeps(IDBInterface database)
     throws ManifoldCFException
   {
-    super(database,"hopdeletedeps");
+    super(database,"hopdeletedeps",jobIDField);
   }
 
   /** Install or upgrade.
@@ -84,6 +84,14 @@ public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
       else
       {
         // Upgrade code goes here, if needed.
+        // The owner reference goes away when the hopcount table is partitioned.
+        ColumnDescription ownerColumnDescription = (ColumnDescription)existing.get(ownerIDField);
+        if (hopCountTable == null && ownerColumnDescription != null && ownerColumnDescription.getReferenceTable() != null)
+        {
+          HashMap modifyMap = new HashMap();
+          modifyMap.put(ownerIDField,new ColumnDescription("BIGINT",false,false,null,null,false));
+          performAlter(null,modifyMap,null,null);
+        }
       }
 
       // Index management
@@ -140,17 +148,27 @@ public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
   public void deleteJob(Long jobID)
     throws ManifoldCFException
   {
+    dropJobPartition(jobID);
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
       new UnitaryClause(jobIDField,jobID)});
     performDelete("WHERE "+query,list,null);
     // Log one event - it may not be enough, but it's the best we can do without overhead
-    noteModifications(0,0,1);
+    noteModifications(jobID,0,0,1);
   }
 
-  /** Remove rows that correspond to specific hopcount records.
+  /** Get the indexes each job partition needs.
   */
-  public void removeMarkedRows(String parentTable, String parentIDHashField, String query, ArrayList queryList)
+  protected IndexDescription[] getPartitionIndexes()
+  {
+    return new IndexDescription[]{
+      new IndexDescription(true,new String[]{ownerIDField,parentIDHashField,linkTypeField,childIDHashField}),
+      new IndexDescription(false,new String[]{jobIDField,childIDHashField})};
+  }
+
+  /** Remove rows that correspond to specific hopcount records of a job.
+  */
+  public void removeMarkedRows(Long jobID, String parentTable, String parentIDHashField, String query, ArrayList queryList)
     throws ManifoldCFException
   {
     // This didn't perform very well.
@@ -159,14 +177,14 @@ public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
     performDelete("WHERE "+ownerIDField+" IN(SELECT "+parentIDHashField+" FROM "+parentTable+" WHERE "+query+")",
       queryList,null);
     // Log one event - it may not be enough, but it's the best we can do without overhead
-    noteModifications(0,0,1);
+    noteModifications(jobID,0,0,1);
   }
 
-  /** Delete rows related to specified owners.  The list of
+  /** Delete rows related to specified owners, all belonging to one job.  The list of
   * specified owners does not exceed the maximum database in-clause
   * size.
   */
-  public void deleteOwnerRows(Long[] ownerIDs)
+  public void deleteOwnerRows(Long jobID, Long[] ownerIDs)
     throws ManifoldCFException
   {
     ArrayList list = new ArrayList();
@@ -175,7 +193,7 @@ public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
       new MultiClause(ownerIDField,ownerIDs)});
       
     performDelete("WHERE "+query,list,null);
-    noteModifications(0,0,ownerIDs.length);
+    noteModifications(jobID,0,0,ownerIDs.length);
   }
 
   /** Get the delete dependencies for an owner.
@@ -204,7 +222,7 @@ public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
   }
 
   /** Delete a dependency */
-  public void deleteDependency(Long ownerID, DeleteDependency dd)
+  public void deleteDependency(Long ownerID, Long jobID, DeleteDependency dd)
     throws ManifoldCFException
   {
     ArrayList list = new ArrayList();
@@ -219,7 +237,7 @@ public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
         new NullCheckClause(childIDHashField,true)});
         
     performDelete("WHERE "+query,list,null);
-    noteModifications(0,0,1);
+    noteModifications(jobID,0,0,1);
   }
 
   /** Write a delete dependency.
@@ -237,8 +255,8 @@ public class HopDeleteDeps extends org.apache.manifoldcf.core.database.BaseTable
     {
       map.put(childIDHashField,dd.getChildIDHash());
     }
-    performInsert(map,null);
-    noteModifications(1,0,0);
+    performInsert(jobID,map,null);
+    noteModifications(jobID,1,0,0);
   }
 
 }
@@ -41,7 +41,7 @@ import org.apache.manifoldcf.crawler.system.ManifoldCF;
  * <br><br>
  * 
 */
-public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
+public class IntrinsicLink extends JobPartitionedTable
 {
   public static final String _rcsid = "@(#)$Id: IntrinsicLink.java 988245 2010-08-23 18:39:35Z kwright $";
 
@@ -78,7 +78,7 @@ public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
   public IntrinsicLink(IDBInterface database)
     throws ManifoldCFException
   {
-    super(database,"intrinsiclink");
+    super(database,"intrinsiclink",jobIDField);
   }
 
   /** Install or upgrade.
@@ -168,11 +168,22 @@ public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
   public void deleteOwner(Long jobID)
     throws ManifoldCFException
   {
+    dropJobPartition(jobID);
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
       new UnitaryClause(jobIDField,jobID)});
     performDelete("WHERE "+query,list,null);
-    noteModifications(0,0,1);
+    noteModifications(jobID,0,0,1);
+  }
+
+  /** Get the indexes each job partition needs.
+  */
+  protected IndexDescription[] getPartitionIndexes()
+  {
+    return new IndexDescription[]{
+      new IndexDescription(true,new String[]{jobIDField,parentIDHashField,linkTypeField,childIDHashField}),
+      new IndexDescription(false,new String[]{jobIDField,childIDHashField,newField}),
+      new IndexDescription(false,new String[]{newField})};
   }
 
   /** Reset, at startup time.  Since links can only be added in a transactionally safe way by processing
@@ -253,8 +264,8 @@ public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
         map.put(childIDHashField,sourceDocumentIDHash);
         map.put(linkTypeField,linkType);
         map.put(newField,statusToString(LINKSTATUS_NEW));
-        performInsert(map,null);
-        noteModifications(1,0,0);
+        performInsert(jobID,map,null);
+        noteModifications(jobID,1,0,0);
       }
       else
       {
@@ -267,7 +278,7 @@ public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
           new UnitaryClause(linkTypeField,linkType),
           new UnitaryClause(childIDHashField,sourceDocumentIDHash)});
         performUpdate(map,"WHERE "+query,updateList,null);
-        noteModifications(0,1,0);
+        noteModifications(jobID,0,1,0);
       }
     }
     return newReferences;
@@ -327,7 +338,7 @@ public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
     sb.append(")");
               
     performDelete(sb.toString(),list,null);
-    noteModifications(0,0,1);
+    noteModifications(jobID,0,0,1);
       
     // DON'T delete ParentID matches; we need to leave those around for bookkeeping to
     // be correct.  See CONNECTORS-501.
@@ -357,7 +368,7 @@ public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
 
     if (k > 0)
       performRemoveDocumentLinks(list,jobID);
-    noteModifications(0,0,documentIDHashes.length);
+    noteModifications(jobID,0,0,documentIDHashes.length);
   }
 
   protected int maxClausePerformRemoveDocumentLinks(Long jobID)
@@ -406,7 +417,7 @@ public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
 
     if (k > 0)
       performRemoveLinks(list,jobID,commonNewExpression,commonNewParams);
-    noteModifications(0,0,sourceDocumentIDHashes.length);
+    noteModifications(jobID,0,0,sourceDocumentIDHashes.length);
   }
   
   protected int maxClausePerformRemoveLinks(Long jobID)
@@ -456,7 +467,7 @@ public class IntrinsicLink extends org.apache.manifoldcf.core.database.BaseTable
 
     if (k > 0)
       performRestoreLinks(jobID,list);
-    noteModifications(0,sourceDocumentIDHashes.length,0);
+    noteModifications(jobID,0,sourceDocumentIDHashes.length,0);
   }
 
   protected int maxClausesPerformRestoreLinks(Long jobID)
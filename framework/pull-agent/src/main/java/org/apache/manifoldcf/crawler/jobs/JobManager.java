@@ -25,6 +25,7 @@ import java.util.*;
 import java.util.regex.*;
 import org.apache.manifoldcf.crawler.system.Logging;
 import org.apache.manifoldcf.crawler.system.ManifoldCF;
+import org.apache.manifoldcf.crawler.system.JobLifecycleScheduler;
 
 /** This is the main job manager.  It provides methods that support both job definition, and the threads that execute the jobs.
 */
@@ -61,7 +62,7 @@ public class JobManager implements IJobManager
     jobs = new Jobs(threadContext,database);
     jobQueue = new JobQueue(threadContext,database);
     hopCount = new HopCount(threadContext,database);
-    carryDown = new Carrydown(database);
+    carryDown = new Carrydown(threadContext,database);
     eventManager = new EventManager(database);
     outputMgr = OutputConnectionManagerFactory.make(threadContext);
     connectionMgr = RepositoryConnectionManagerFactory.make(threadContext);
@@ -79,6 +80,34 @@ public class JobManager implements IJobManager
     hopCount.install(jobs.getTableName(),jobs.idField);
     carryDown.install(jobs.getTableName(),jobs.idField);
     eventManager.install();
+    createJobPartitions();
+  }
+
+  /** If the per-job tables are partitioned by job, make sure every job has its partitions.  Jobs that were
+  * created before partitioning was turned on get their rows moved into their new partitions here.
+  */
+  protected void createJobPartitions()
+    throws ManifoldCFException
+  {
+    if (!jobQueue.isPartitioned())
+      return;
+    IResultSet set = database.performQuery("SELECT "+jobs.idField+" FROM "+jobs.getTableName(),null,null,null);
+    int i = 0;
+    while (i < set.getRowCount())
+    {
+      Long jobID = (Long)set.getRow(i++).getValue(jobs.idField);
+      createJobPartitions(jobID);
+    }
+  }
+
+  /** Create the partitions for one job, if the per-job tables are partitioned by job.
+  */
+  protected void createJobPartitions(Long jobID)
+    throws ManifoldCFException
+  {
+    jobQueue.createJobPartition(jobID);
+    hopCount.createJobPartition(jobID);
+    carryDown.createJobPartition(jobID);
   }
 
   /** Uninstall.
@@ -542,7 +571,50 @@ public class JobManager implements IJobManager
     {
       database.endTransaction();
     }
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_STARTDELETE);
+  }
 
+  /** Forget a job.  This method will purge all the records belonging to the job from the database, including the
+  * records of what the job indexed, but will NOT remove the job's documents from the index.
+  *@param id is the job's identifier.
+  */
+  public void forgetJob(Long id)
+    throws ManifoldCFException
+  {
+    database.beginTransaction();
+    try
+    {
+      // The job must be inactive, just as for a delete
+      ArrayList list = new ArrayList();
+      String query = database.buildConjunctionClause(list,new ClauseDescription[]{
+        new UnitaryClause(jobs.idField,id)});
+      IResultSet set = database.performQuery("SELECT "+jobs.statusField+" FROM "+
+        jobs.getTableName()+" WHERE "+query+" FOR UPDATE",list,null,null);
+      if (set.getRowCount() == 0)
+        throw new ManifoldCFException("Attempting to forget a job that doesn't exist: "+id);
+      IResultRow row = set.getRow(0);
+      int status = jobs.stringToStatus(row.getValue(jobs.statusField).toString());
+      if (status != jobs.STATUS_INACTIVE)
+        throw new ManifoldCFException("Job "+id+" is busy; you must wait and/or shut it down before forgetting it");
+      jobs.writeStatus(id,jobs.STATUS_READYFORPURGE);
+      if (Logging.jobs.isDebugEnabled())
+        Logging.jobs.debug("Job "+id+" marked for purge");
+    }
+    catch (ManifoldCFException e)
+    {
+      database.signalRollback();
+      throw e;
+    }
+    catch (Error e)
+    {
+      database.signalRollback();
+      throw e;
+    }
+    finally
+    {
+      database.endTransaction();
+    }
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_PURGE);
   }
 
   /** Load a job for editing.
@@ -573,7 +645,12 @@ public class JobManager implements IJobManager
     throws ManifoldCFException
   {
     ManifoldCF.noteConfigurationChange();
+    boolean isNew = jobDescription.getIsNew();
     jobs.save(jobDescription);
+    if (isNew)
+      createJobPartitions(jobDescription.getID());
+    // The schedule may have changed
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_JOBSTART);
   }
 
   /** See if there's a reference to a connection name.
@@ -987,7 +1064,7 @@ public class JobManager implements IJobManager
           rvalBoolean[i] = (allowedDocIds.get(compositeDocID) != null);
           // Set the record status to "being cleaned" and return it
           rval[i++] = dd;
-          jobQueue.setCleaningStatus(dd.getID());
+          jobQueue.setCleaningStatus(dd.getJobID(),dd.getID());
         }
         
         database.performCommit();
@@ -1232,7 +1309,7 @@ public class JobManager implements IJobManager
           if (allowedDocIds.get(compositeDocumentID) == null)
           {
             // Delete this record and do NOT return it.
-            jobQueue.deleteRecord(dd.getID());
+            jobQueue.deleteRecord(dd.getJobID(),dd.getID());
             // What should we do about hopcount here?
             // We are deleting a record which belongs to a job that is being
             // cleaned up.  The job itself will go away when this is done,
@@ -1246,7 +1323,7 @@ public class JobManager implements IJobManager
           {
             // Set the record status to "being deleted" and return it
             rval[j++] = dd;
-            jobQueue.setDeletingStatus(dd.getID());
+            jobQueue.setDeletingStatus(dd.getJobID(),dd.getID());
           }
           i++;
         }
@@ -1447,66 +1524,93 @@ public class JobManager implements IJobManager
     return rval;
   }
 
-  /** Get a list of not-yet-processed documents to reprioritize.  Documents in all jobs will be
-  * returned by this method.  Up to n document descriptions will be returned.
-  *@param currentTime is the current time stamp for this prioritization pass.  Avoid
-  *  picking up any documents that are labeled with this timestamp or after.
+  /** Get the best (numerically lowest) document priority among the documents of active jobs that are
+  * currently eligible to be handed to worker threads.  This is the level at which queuing is taking place,
+  * which new priorities should not be assigned ahead of.
+  *@param currentTime is the current time in milliseconds since epoch.
+  *@return the priority, or null if there are no prioritized eligible documents.
+  */
+  public Double getBestQueuedDocumentPriority(long currentTime)
+    throws ManifoldCFException
+  {
+    Long currentTimeValue = new Long(currentTime);
+
+    StringBuilder sb = new StringBuilder("SELECT ");
+    ArrayList list = new ArrayList();
+    
+    sb.append(jobQueue.docPriorityField).append(",").append(jobQueue.jobIDField).append(",")
+      .append(jobQueue.docHashField).append(",").append(jobQueue.docIDField)
+      .append(" FROM ").append(jobQueue.getTableName())
+      .append(" t0 ").append(jobQueue.getGetNextDocumentsIndexHint()).append(" WHERE ");
+      
+    sb.append(database.buildConjunctionClause(list,new ClauseDescription[]{
+      //new UnitaryClause(jobQueue.docPriorityField,">=",new Long(0L)),
+      new MultiClause(jobQueue.statusField,
+        new Object[]{jobQueue.statusToString(JobQueue.STATUS_PENDING),
+          jobQueue.statusToString(JobQueue.STATUS_PENDINGPURGATORY)}),
+      new UnitaryClause(jobQueue.checkActionField,"=",jobQueue.actionToString(JobQueue.ACTION_RESCAN)),
+      new UnitaryClause(jobQueue.checkTimeField,"<=",currentTimeValue)})).append(" AND ");
+
+    sb.append("EXISTS(SELECT 'x' FROM ").append(jobs.getTableName()).append(" t1 WHERE ")
+      .append(database.buildConjunctionClause(list,new ClauseDescription[]{
+        new MultiClause("t1."+jobs.statusField,new Object[]{
+          Jobs.statusToString(jobs.STATUS_ACTIVE),
+          Jobs.statusToString(jobs.STATUS_ACTIVESEEDING)}),
+        new JoinClause("t1."+jobs.idField,"t0."+jobQueue.jobIDField)}))
+      .append(") ");
+      
+    sb.append(" ").append(database.constructIndexOrderByClause(new String[]{
+      jobQueue.docPriorityField, jobQueue.statusField, jobQueue.checkActionField, jobQueue.checkTimeField},
+      true)).append(" ")
+      .append(database.constructOffsetLimitClause(0,1,true));
+
+    IResultSet set = database.performQuery(sb.toString(),list,null,null,1,null);
+    if (set.getRowCount() > 0)
+    {
+      IResultRow row = set.getRow(0);
+      Double docPriority = (Double)row.getValue(jobQueue.docPriorityField);
+      if (docPriority != null && docPriority.doubleValue() < jobQueue.noDocPriorityValue)
+        return docPriority;
+    }
+    return null;
+  }
+
+  /** Get a list of not-yet-processed documents in active jobs that have no document priority.
+  * Documents lose their priorities when their job is paused or aborted, and need new ones once the job
+  * resumes.  Up to n document descriptions will be returned.
   *@param n is the maximum number of document descriptions desired.
   *@return the document descriptions.
   */
-  public DocumentDescription[] getNextNotYetProcessedReprioritizationDocuments(long currentTime, int n)
+  public DocumentDescription[] getNextUnprioritizedDocuments(int n)
     throws ManifoldCFException
   {
     StringBuilder sb = new StringBuilder("SELECT ");
     ArrayList list = new ArrayList();
 
-    // This query MUST return only documents that are in a pending state which belong to an active job!!!
-
+    // The docpriority clause comes first so that the docpriority index can be used to find these rows
+    // directly, without visiting the prioritized ones.
     sb.append(jobQueue.idField).append(",")
       .append(jobQueue.docHashField).append(",")
       .append(jobQueue.docIDField).append(",")
       .append(jobQueue.jobIDField)
       .append(" FROM ").append(jobQueue.getTableName()).append(" t0 WHERE ")
       .append(database.buildConjunctionClause(list,new ClauseDescription[]{
+        new UnitaryClause(jobQueue.docPriorityField,">=",new Double(jobQueue.noDocPriorityValue)),
         new MultiClause(jobQueue.statusField,new Object[]{
-          JobQueue.statusToString(jobQueue.STATUS_HOPCOUNTREMOVED),
           JobQueue.statusToString(jobQueue.STATUS_PENDING),
           JobQueue.statusToString(jobQueue.STATUS_PENDINGPURGATORY)}),
-        new UnitaryClause(jobQueue.prioritySetField,"<",new Long(currentTime))})).append(" AND ")
-      .append(jobQueue.checkActionField).append("=?").append(" AND ");
-
-    list.add(jobQueue.actionToString(JobQueue.ACTION_RESCAN));
+        new UnitaryClause(jobQueue.checkActionField,jobQueue.actionToString(JobQueue.ACTION_RESCAN))})).append(" AND ");
 
-    // Per CONNECTORS-290, we need to be leaving priorities blank for jobs that aren't using them,
-    // so this will be changed to not include jobs where the priorities have been bashed to null.
-    //
-    // I've included ALL states that might have non-null doc priorities.  This includes states
-    // corresponding to uninstalled connectors, since there is no transition that cleans out the
-    // document priorities in these states.  The time during which a connector is uninstalled is
-    // expected to be short, because typically this state is the result of an installation procedure
-    // rather than willful action on the part of a user.
-        
     sb.append("EXISTS(SELECT 'x' FROM ").append(jobs.getTableName()).append(" t1 WHERE ")
       .append(database.buildConjunctionClause(list,new ClauseDescription[]{
         new MultiClause("t1."+jobs.statusField,new Object[]{
-          Jobs.statusToString(Jobs.STATUS_STARTINGUP),
           Jobs.statusToString(Jobs.STATUS_ACTIVE),
-          Jobs.statusToString(Jobs.STATUS_ACTIVESEEDING),
-          Jobs.statusToString(Jobs.STATUS_ACTIVE_UNINSTALLED),
-          Jobs.statusToString(Jobs.STATUS_ACTIVESEEDING_UNINSTALLED),
-          Jobs.statusToString(Jobs.STATUS_ACTIVE_NOOUTPUT),
-          Jobs.statusToString(Jobs.STATUS_ACTIVESEEDING_NOOUTPUT),
-          Jobs.statusToString(Jobs.STATUS_ACTIVE_NEITHER),
-          Jobs.statusToString(Jobs.STATUS_ACTIVESEEDING_NEITHER)
-          }),
+          Jobs.statusToString(Jobs.STATUS_ACTIVESEEDING)}),
         new JoinClause("t1."+jobs.idField,"t0."+jobQueue.jobIDField)}))
       .append(") ");
 
     sb.append(database.constructOffsetLimitClause(0,n));
 
-    // Analyze jobqueue tables unconditionally, since it's become much more sensitive in 8.3 than it used to be.
-    //jobQueue.unconditionallyAnalyzeTables();
-
     IResultSet set = database.performQuery(sb.toString(),list,null,null,n,null);
 
     DocumentDescription[] rval = new DocumentDescription[set.getRowCount()];
@@ -1571,7 +1675,7 @@ public class JobManager implements IJobManager
           int index = x.intValue();
           DocumentDescription dd = documentDescriptions[index];
           double priority = priorities[index];
-          jobQueue.writeDocPriority(currentTime,dd.getID(),priorities[index]);
+          jobQueue.writeDocPriority(dd.getJobID(),currentTime,dd.getID(),priorities[index]);
           if (Logging.perf.isDebugEnabled())
             Logging.perf.debug("Setting document priority for '"+dd.getDocumentIdentifier()+"' to "+new Double(priority).toString()+", set time "+new Long(currentTime).toString());
           i++;
@@ -1808,7 +1912,7 @@ public class JobManager implements IJobManager
           rvalBoolean[i] = (allowedDocIds.get(compositeDocID) != null);
           // Set the record status to "being cleaned" and return it
           rval[i++] = dd;
-          jobQueue.updateActiveRecord(dd.getID(),((Integer)statusMap.get(compositeDocID)).intValue());
+          jobQueue.updateActiveRecord(dd.getJobID(),dd.getID(),((Integer)statusMap.get(compositeDocID)).intValue());
         }
 
         database.performCommit();
@@ -2097,44 +2201,9 @@ public class JobManager implements IJobManager
     // Find the one row from a live job that has the best document priority, which is available within the current time window.
     // Note that if there is NO such document, it means we were able to queue all eligible documents, and thus prioritization is probably not even
     // germane at the moment.
-
-    StringBuilder sb = new StringBuilder("SELECT ");
-    ArrayList list = new ArrayList();
-    
-    sb.append(jobQueue.docPriorityField).append(",").append(jobQueue.jobIDField).append(",")
-      .append(jobQueue.docHashField).append(",").append(jobQueue.docIDField)
-      .append(" FROM ").append(jobQueue.getTableName())
-      .append(" t0 ").append(jobQueue.getGetNextDocumentsIndexHint()).append(" WHERE ");
-      
-    sb.append(database.buildConjunctionClause(list,new ClauseDescription[]{
-      //new UnitaryClause(jobQueue.docPriorityField,">=",new Long(0L)),
-      new MultiClause(jobQueue.statusField,
-        new Object[]{jobQueue.statusToString(JobQueue.STATUS_PENDING),
-          jobQueue.statusToString(JobQueue.STATUS_PENDINGPURGATORY)}),
-      new UnitaryClause(jobQueue.checkActionField,"=",jobQueue.actionToString(JobQueue.ACTION_RESCAN)),
-      new UnitaryClause(jobQueue.checkTimeField,"<=",currentTimeValue)})).append(" AND ");
-
-    sb.append("EXISTS(SELECT 'x' FROM ").append(jobs.getTableName()).append(" t1 WHERE ")
-      .append(database.buildConjunctionClause(list,new ClauseDescription[]{
-        new MultiClause("t1."+jobs.statusField,new Object[]{
-          Jobs.statusToString(jobs.STATUS_ACTIVE),
-          Jobs.statusToString(jobs.STATUS_ACTIVESEEDING)}),
-        new JoinClause("t1."+jobs.idField,"t0."+jobQueue.jobIDField)}))
-      .append(") ");
-      
-    sb.append(" ").append(database.constructIndexOrderByClause(new String[]{
-      jobQueue.docPriorityField, jobQueue.statusField, jobQueue.checkActionField, jobQueue.checkTimeField},
-      true)).append(" ")
-      .append(database.constructOffsetLimitClause(0,1,true));
-
-    IResultSet set = database.performQuery(sb.toString(),list,null,null,1,null);
-    if (set.getRowCount() > 0)
-    {
-      IResultRow row = set.getRow(0);
-      Double docPriority = (Double)row.getValue(jobQueue.docPriorityField);
-      if (docPriority != null && docPriority.doubleValue() < jobQueue.noDocPriorityValue)
-        scanRecord.addBins(docPriority);
-    }
+    Double docPriority = getBestQueuedDocumentPriority(currentTime);
+    if (docPriority != null)
+      scanRecord.addBins(docPriority);
     return rval;
   }
 
@@ -2310,7 +2379,7 @@ public class JobManager implements IJobManager
             int status = ((Integer)statusMap.get(docIDHash)).intValue();
 
             // Set status to "ACTIVE".
-            jobQueue.updateActiveRecord(id,status);
+            jobQueue.updateActiveRecord(dd.getJobID(),id,status);
 
             answers.add(dd);
 
@@ -2766,7 +2835,7 @@ public class JobManager implements IJobManager
           String docIDHash = docIDHashes[i];
           DocumentDescription dd = documentDescriptions[((Integer)indexMap.get(docIDHash)).intValue()];
           // Individual operations are necessary so order can be controlled.
-          jobQueue.deleteRecord(dd.getID());
+          jobQueue.deleteRecord(dd.getJobID(),dd.getID());
           docIDSimpleHashes[i] = dd.getDocumentIdentifierHash();
           i++;
         }
@@ -2776,6 +2845,7 @@ public class JobManager implements IJobManager
 
         // Finally, delete the carrydown records in question.
         carryDown.deleteRecords(jobID,docIDSimpleHashes);
+        carryDown.invalidateChildren(jobID,rval);
         if (legalLinkTypes.length > 0)
           hopCount.deleteDocumentIdentifiers(jobID,legalLinkTypes,docIDSimpleHashes,hopcountMethod);
 
@@ -2932,6 +3002,7 @@ public class JobManager implements IJobManager
   {
     String[] docIDHashes = new String[documentDescriptions.length];
     Long[] ids = new Long[documentDescriptions.length];
+    Long[] jobIDs = new Long[documentDescriptions.length];
     Long[] executeTimesNew = new Long[documentDescriptions.length];
     int[] actionsNew = new int[documentDescriptions.length];
 
@@ -2958,6 +3029,7 @@ public class JobManager implements IJobManager
         throw new ManifoldCFException("Assertion failure: duplicate document identifier jobid/hash detected!");
       int index = x.intValue();
       ids[i] = documentDescriptions[index].getID();
+      jobIDs[i] = documentDescriptions[index].getJobID();
       executeTimesNew[i] = executeTimes[index];
       actionsNew[i] = actions[index];
       i++;
@@ -2973,7 +3045,7 @@ public class JobManager implements IJobManager
         i = 0;
         while (i < ids.length)
         {
-          jobQueue.setStatus(ids[i],jobQueue.STATUS_PENDINGPURGATORY,executeTimesNew[i],actionsNew[i],-1L,-1);
+          jobQueue.setStatus(jobIDs[i],ids[i],jobQueue.STATUS_PENDINGPURGATORY,executeTimesNew[i],actionsNew[i],-1L,-1);
           i++;
         }
 
@@ -3036,6 +3108,7 @@ public class JobManager implements IJobManager
   {
     Long executeTimeLong = new Long(executeTime);
     Long[] ids = new Long[documentDescriptions.length];
+    Long[] jobIDs = new Long[documentDescriptions.length];
     String[] docIDHashes = new String[documentDescriptions.length];
     Long[] executeTimes = new Long[documentDescriptions.length];
     int[] actions = new int[documentDescriptions.length];
@@ -3065,6 +3138,7 @@ public class JobManager implements IJobManager
         throw new ManifoldCFException("Assertion failure: duplicate document identifier jobid/hash detected!");
       int index = x.intValue();
       ids[i] = documentDescriptions[index].getID();
+      jobIDs[i] = documentDescriptions[index].getJobID();
       executeTimes[i] = executeTimeLong;
       actions[i] = action;
       long oldFailTime = documentDescriptions[index].getFailTime();
@@ -3096,7 +3170,7 @@ public class JobManager implements IJobManager
         i = 0;
         while (i < ids.length)
         {
-          jobQueue.setStatus(ids[i],jobQueue.STATUS_PENDINGPURGATORY,executeTimes[i],actions[i],(failTimes==null)?-1L:failTimes[i],(failCounts==null)?-1:failCounts[i]);
+          jobQueue.setStatus(jobIDs[i],ids[i],jobQueue.STATUS_PENDINGPURGATORY,executeTimes[i],actions[i],(failTimes==null)?-1L:failTimes[i],(failCounts==null)?-1:failCounts[i]);
           i++;
         }
 
@@ -3141,6 +3215,7 @@ public class JobManager implements IJobManager
     throws ManifoldCFException
   {
     Long[] ids = new Long[documentDescriptions.length];
+    Long[] jobIDs = new Long[documentDescriptions.length];
     String[] docIDHashes = new String[documentDescriptions.length];
 
     // First loop maps document identifier back to an index.
@@ -3166,6 +3241,7 @@ public class JobManager implements IJobManager
         throw new ManifoldCFException("Assertion failure: duplicate document identifier jobid/hash detected!");
       int index = x.intValue();
       ids[i] = documentDescriptions[index].getID();
+      jobIDs[i] = documentDescriptions[index].getJobID();
       i++;
     }
 
@@ -3180,7 +3256,7 @@ public class JobManager implements IJobManager
         i = 0;
         while (i < ids.length)
         {
-          jobQueue.setUncleaningStatus(ids[i],checkTime);
+          jobQueue.setUncleaningStatus(jobIDs[i],ids[i],checkTime);
           i++;
         }
 
@@ -3236,6 +3312,7 @@ public class JobManager implements IJobManager
     throws ManifoldCFException
   {
     Long[] ids = new Long[documentDescriptions.length];
+    Long[] jobIDs = new Long[documentDescriptions.length];
     String[] docIDHashes = new String[documentDescriptions.length];
 
     // First loop maps document identifier back to an index.
@@ -3261,6 +3338,7 @@ public class JobManager implements IJobManager
         throw new ManifoldCFException("Assertion failure: duplicate document identifier jobid/hash detected!");
       int index = x.intValue();
       ids[i] = documentDescriptions[index].getID();
+      jobIDs[i] = documentDescriptions[index].getJobID();
       i++;
     }
 
@@ -3275,7 +3353,7 @@ public class JobManager implements IJobManager
         i = 0;
         while (i < ids.length)
         {
-          jobQueue.setUndeletingStatus(ids[i],checkTime);
+          jobQueue.setUndeletingStatus(jobIDs[i],ids[i],checkTime);
           i++;
         }
 
@@ -3495,7 +3573,7 @@ public class JobManager implements IJobManager
             int status = jobQueue.stringToStatus((String)row.getValue(jobQueue.statusField));
             Long checkTimeValue = (Long)row.getValue(jobQueue.checkTimeField);
 
-            priorityUsed = jobQueue.updateExistingRecordInitial(rowID,status,checkTimeValue,executeTime,currentTime,docPriority,docPrereqs);
+            priorityUsed = jobQueue.updateExistingRecordInitial(jobID,rowID,status,checkTimeValue,executeTime,currentTime,docPriority,docPrereqs);
           }
           else
           {
@@ -4132,7 +4210,7 @@ public class JobManager implements IJobManager
             // The hopcountChangesSeen array describes whether each reference is a new one.  This
             // helps us determine whether we're going to need to "flip" HOPCOUNTREMOVED documents
             // to the PENDING state.  If the new link ended in an existing record, THEN we need to flip them all!
-            reorderedRval[z] = jobQueue.updateExistingRecord(jr.getRecordID(),jr.getStatus(),jr.getCheckTimeValue(),
+            reorderedRval[z] = jobQueue.updateExistingRecord(jobID,jr.getRecordID(),jr.getStatus(),jr.getCheckTimeValue(),
               0L,currentTime,carrydownChangesSeen[z] || (hopcountChangesSeen!=null && hopcountChangesSeen[z]),
               reorderedDocumentPriorities[z],reorderedDocumentPrerequisites[z]);
             // Signal if we need to perform the flip
@@ -4248,6 +4326,7 @@ public class JobManager implements IJobManager
           // A certain set of carrydown records are going to be deleted by the ensuing restoreRecords command.  Calculate that set of records!
           rval = calculateAffectedRestoreCarrydownChildren(jobID,parentIdentifierHashes);
           carryDown.restoreRecords(jobID,parentIdentifierHashes);
+          carryDown.invalidateChildren(jobID,rval);
           database.performCommit();
           break;
         }
@@ -4297,6 +4376,7 @@ public class JobManager implements IJobManager
           rval = calculateAffectedRestoreCarrydownChildren(jobID,parentIdentifierHashes);
 
           carryDown.restoreRecords(jobID,parentIdentifierHashes);
+          carryDown.invalidateChildren(jobID,rval);
 
           if (Logging.perf.isDebugEnabled())
             Logging.perf.debug("Waited "+new Long(System.currentTimeMillis()-startTime).toString()+" ms to start finishing "+
@@ -4558,7 +4638,7 @@ public class JobManager implements IJobManager
             rval[originalIndex] = false;
           else
             // It was an existing row; do the update logic; use the 'carrydown changes' flag = true all the time.
-            rval[originalIndex] = jobQueue.updateExistingRecord(jr.getRecordID(),jr.getStatus(),jr.getCheckTimeValue(),
+            rval[originalIndex] = jobQueue.updateExistingRecord(documentDescriptions[originalIndex].getJobID(),jr.getRecordID(),jr.getStatus(),jr.getCheckTimeValue(),
             0L,currentTime,true,docPriorities[originalIndex],null);
           j++;
         }
@@ -4641,6 +4721,18 @@ public class JobManager implements IJobManager
     return carryDown.getDataValuesAsFiles(jobID,docIDHash,dataName);
   }
 
+  /** Wake up the thread that acts upon a job lifecycle event, because a job has just changed into a state
+  * that the thread handles.
+  *@param event is the event, as defined in JobLifecycleScheduler.
+  */
+  protected void signalLifecycleEvent(int event)
+  {
+    if (database.getTransactionID() == null)
+      JobLifecycleScheduler.signal(event);
+    else
+      JobLifecycleScheduler.signalUncommitted(event);
+  }
+
   // These methods support the job threads (which start jobs and end jobs)
   // There is one thread that starts jobs.  It simply looks for jobs which are ready to
   // start, and changes their state accordingly.
@@ -4679,9 +4771,11 @@ public class JobManager implements IJobManager
     // Note well: We can't combine locks across both our lock manager and the database unless we do it consistently.  The
     // consistent practice throughout CF is to do the external locks first, then the database locks.  This particular method
     // thus cannot use cached job description information, because it must throw database locks first against the jobs table.
+    boolean jobsStarted;
     while (true)
     {
       long sleepAmt = 0L;
+      jobsStarted = false;
       database.beginTransaction();
       try
       {
@@ -4732,6 +4826,9 @@ public class JobManager implements IJobManager
           String connectionName = (String)row.getValue(jobs.connectionNameField);
           ScheduleRecord[] thisSchedule = srSet[i++];
 
+          // Make sure the job start thread looks again when this job's schedule next fires
+          scheduleNextStart(thisSchedule,currentTime);
+
           // Run at specific times
 
           // We need to start with the start time as given, plus one
@@ -4810,6 +4907,10 @@ public class JobManager implements IJobManager
             windowEnd = new Long(matchTime.longValue()+duration.longValue());
           }
 
+          // The job start thread must look again when the window closes
+          if (windowEnd != null)
+            JobLifecycleScheduler.schedule(JobLifecycleScheduler.EVENT_JOBSTART,windowEnd.longValue()+1L);
+
           if (Logging.jobs.isDebugEnabled())
           {
             Logging.jobs.debug("Job '"+jobID+"' is within run window at "+new Long(currentTime).toString()+" ms. (which starts at "+
@@ -4825,6 +4926,7 @@ public class JobManager implements IJobManager
             // This does not get logged because the startup thread does the logging.
             jobs.startJob(jobID,windowEnd);
             jobQueue.clearFailTimes(jobID);
+            jobsStarted = true;
             if (Logging.jobs.isDebugEnabled())
             {
               Logging.jobs.debug("Signalled for job start for job "+jobID);
@@ -4886,7 +4988,7 @@ public class JobManager implements IJobManager
 
         }
         database.performCommit();
-        return;
+        break;
       }
       catch (ManifoldCFException e)
       {
@@ -4911,6 +5013,37 @@ public class JobManager implements IJobManager
         sleepFor(sleepAmt);
       }
     }
+    if (jobsStarted)
+      signalLifecycleEvent(JobLifecycleScheduler.EVENT_STARTUP);
+    if (unwaitList.size() > 0)
+      signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
+  }
+
+  /** Tell the lifecycle scheduler when a job's schedule next fires, if that is before the job start thread
+  * would otherwise look again.
+  *@param schedule is the job's schedule.
+  *@param currentTime is the current time.
+  */
+  protected static void scheduleNextStart(ScheduleRecord[] schedule, long currentTime)
+  {
+    long horizon = currentTime + JobLifecycleScheduler.getPollInterval();
+    int i = 0;
+    while (i < schedule.length)
+    {
+      ScheduleRecord sr = schedule[i++];
+      Long nextTime = checkTimeMatch(currentTime+1L,horizon,
+        sr.getDayOfWeek(),
+        sr.getDayOfMonth(),
+        sr.getMonthOfYear(),
+        sr.getYear(),
+        sr.getHourOfDay(),
+        sr.getMinutesOfHour(),
+        sr.getTimezone(),
+        null);
+      // startJobs() only sees a match that is strictly before the time it is called
+      if (nextTime != null)
+        JobLifecycleScheduler.schedule(JobLifecycleScheduler.EVENT_JOBSTART,nextTime.longValue()+1L);
+    }
   }
   
   /** Put active or paused jobs in wait state, if they've exceeded their window.
@@ -5033,6 +5166,8 @@ public class JobManager implements IJobManager
     {
       database.endTransaction();
     }
+    if (waitList.size() > 0)
+      signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
   }
 
   /** Reset job schedule.  This re-evaluates whether the job should be started now.  This method would typically
@@ -5306,6 +5441,7 @@ public class JobManager implements IJobManager
     {
       database.endTransaction();
     }
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_STARTUP);
   }
 
   /** Note job delete started.
@@ -5318,6 +5454,7 @@ public class JobManager implements IJobManager
     jobs.noteJobDeleteStarted(jobID,startTime);
     if (Logging.jobs.isDebugEnabled())
       Logging.jobs.debug("Job "+jobID+" delete is now started");
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_DELETE);
   }
 
   /** Note job started.
@@ -5330,6 +5467,8 @@ public class JobManager implements IJobManager
     jobs.noteJobStarted(jobID,startTime);
     if (Logging.jobs.isDebugEnabled())
       Logging.jobs.debug("Job "+jobID+" is now started");
+    // A job with nothing to do can finish right away
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_FINISH);
   }
 
   /** Note job seeded.
@@ -5342,6 +5481,9 @@ public class JobManager implements IJobManager
     jobs.noteJobSeeded(jobID,seedTime);
     if (Logging.jobs.isDebugEnabled())
       Logging.jobs.debug("Job "+jobID+" has been successfully reseeded");
+    // Stopping a job waits for seeding to end, and a job that seeded nothing may be done
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_FINISH);
   }
 
   /** Prepare for a delete scan.
@@ -5474,6 +5616,7 @@ public class JobManager implements IJobManager
     {
       Logging.jobs.debug("Job "+jobID+" abort signal successfully sent");
     }
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
   }
 
   /** Manually restart a running job.  The job will be stopped and restarted.  Any schedule affinity will be lost,
@@ -5524,6 +5667,7 @@ public class JobManager implements IJobManager
     {
       Logging.jobs.debug("Job "+jobID+" restart signal successfully sent");
     }
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
   }
 
   /** Abort a running job due to a fatal error condition.
@@ -5574,6 +5718,7 @@ public class JobManager implements IJobManager
         sleepFor(sleepAmt);
       }
     }
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
     if (rval && Logging.jobs.isDebugEnabled())
     {
       Logging.jobs.debug("Job "+jobID+" abort signal successfully sent");
@@ -5629,7 +5774,7 @@ public class JobManager implements IJobManager
     {
       Logging.jobs.debug("Job "+jobID+" successfully paused");
     }
-
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
   }
 
   /** Restart a paused job.
@@ -5681,6 +5826,7 @@ public class JobManager implements IJobManager
     {
       Logging.jobs.debug("Job "+jobID+" successfully restarted");
     }
+    signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
   }
 
   /** Get the list of jobs that are ready for seeding.
@@ -5736,6 +5882,8 @@ public class JobManager implements IJobManager
           // Mark status of job as "active/seeding".  Special status is needed so that abort
           // will not complete until seeding is completed.
           jobs.writeStatus(jobID,jobs.STATUS_ACTIVESEEDING,reseedTime);
+          if (reseedTime != null)
+            JobLifecycleScheduler.schedule(JobLifecycleScheduler.EVENT_SEEDING,reseedTime.longValue());
           if (Logging.jobs.isDebugEnabled())
           {
             Logging.jobs.debug("Marked job "+jobID+" for seeding");
@@ -6334,6 +6482,277 @@ public class JobManager implements IJobManager
   }
 
 
+  // These methods support the job purge thread.  The output connection's records are forgotten first, in pieces
+  // split by document identifier hash, which can be done in any order, in parallel, and more than once.  Then the
+  // crawler's records are removed table by table, with one set-based delete per table, each in its own transaction.
+  // Every step can be redone, so nothing needs to be reset if the agents process stops partway through.
+
+  /** The tables a job purge removes the job's rows from, in the order it does so */
+  protected final static int PURGE_INTRINSICLINK = 0;
+  protected final static int PURGE_HOPDELETEDEPS = 1;
+  protected final static int PURGE_HOPCOUNT = 2;
+  protected final static int PURGE_CARRYDOWN = 3;
+  protected final static int PURGE_PREREQEVENTS = 4;
+  protected final static int PURGE_JOBQUEUE = 5;
+  protected final static int PURGE_TABLE_COUNT = 6;
+
+  /** Get the list of jobs that are ready to be purged.
+  *@return the ids of jobs that are in the "readyforpurge" state.
+  */
+  public Long[] getJobsReadyForPurge()
+    throws ManifoldCFException
+  {
+    ArrayList list = new ArrayList();
+    String query = database.buildConjunctionClause(list,new ClauseDescription[]{
+      new UnitaryClause(jobs.statusField,jobs.statusToString(jobs.STATUS_READYFORPURGE))});
+    IResultSet set = database.performQuery("SELECT "+jobs.idField+" FROM "+jobs.getTableName()+" WHERE "+query,list,null,null);
+    Long[] rval = new Long[set.getRowCount()];
+    int i = 0;
+    while (i < rval.length)
+    {
+      IResultRow row = set.getRow(i);
+      rval[i++] = (Long)row.getValue(jobs.idField);
+    }
+    return rval;
+  }
+
+  /** Get the number of pieces a job purge is split into.
+  *@return the number of pieces.
+  */
+  public int getPurgePartitionCount()
+  {
+    return HashPartition.PARTITION_COUNT;
+  }
+
+  /** Get a batch of the document identifier hashes in one piece of a job being purged, in order.
+  *@param jobID is the job identifier.
+  *@param partition is the piece number.
+  *@param afterHash is the last hash of the previous batch, or null for the first batch.
+  *@param maxCount is the largest number of hashes to return.
+  *@return the hashes.  Fewer than maxCount means the piece has been exhausted.
+  */
+  public String[] getPurgeDocumentIdentifierHashes(Long jobID, int partition, String afterHash, int maxCount)
+    throws ManifoldCFException
+  {
+    return jobQueue.getPartitionDocumentHashes(jobID,new HashPartition(partition),afterHash,maxCount);
+  }
+
+  /** Find out which documents of a job being purged are not also owned by another job that shares the same
+  * repository and output connections.  Only those documents can be forgotten by the output connection.
+  *@param jobID is the job identifier.
+  *@param documentIdentifierHashes are the document identifier hashes.
+  *@return the hashes that belong to no other such job.
+  */
+  public String[] getUnsharedDocumentIdentifierHashes(Long jobID, String[] documentIdentifierHashes)
+    throws ManifoldCFException
+  {
+    if (documentIdentifierHashes.length == 0)
+      return documentIdentifierHashes;
+
+    IJobDescription jobDesc = load(jobID,true);
+    if (jobDesc == null)
+      return new String[0];
+
+    Set shared = new HashSet();
+    int maxClause = maxClauseFindSharedHashes(jobDesc.getConnectionName(),jobDesc.getOutputConnectionName());
+    ArrayList docList = new ArrayList();
+    int i = 0;
+    while (i < documentIdentifierHashes.length)
+    {
+      if (docList.size() == maxClause)
+      {
+        findSharedHashes(shared,jobID,jobDesc.getConnectionName(),jobDesc.getOutputConnectionName(),docList);
+        docList.clear();
+      }
+      docList.add(documentIdentifierHashes[i++]);
+    }
+    if (docList.size() > 0)
+      findSharedHashes(shared,jobID,jobDesc.getConnectionName(),jobDesc.getOutputConnectionName(),docList);
+
+    ArrayList rval = new ArrayList();
+    i = 0;
+    while (i < documentIdentifierHashes.length)
+    {
+      String hash = documentIdentifierHashes[i++];
+      if (!shared.contains(hash))
+        rval.add(hash);
+    }
+    return (String[])rval.toArray(new String[0]);
+  }
+
+  /** Get maximum count.
+  */
+  protected int maxClauseFindSharedHashes(String connectionName, String outputConnectionName)
+  {
+    return database.findConjunctionClauseMax(new ClauseDescription[]{
+      new JoinClause("t1."+jobs.idField,"t0."+jobQueue.jobIDField),
+      new UnitaryClause("t1."+jobs.connectionNameField,connectionName),
+      new UnitaryClause("t1."+jobs.outputNameField,outputConnectionName)});
+  }
+
+  /** Helper method: find which of a list of document hashes belong to another job with the same connections.
+  */
+  protected void findSharedHashes(Set shared, Long jobID, String connectionName, String outputConnectionName, ArrayList docList)
+    throws ManifoldCFException
+  {
+    // Any other job's record counts, whatever its status, since it may be about to index the document.
+    ArrayList list = new ArrayList();
+    StringBuilder sb = new StringBuilder("SELECT t0.");
+    sb.append(jobQueue.docHashField).append(" FROM ").append(jobQueue.getTableName()).append(" t0 WHERE ")
+      .append(database.buildConjunctionClause(list,new ClauseDescription[]{
+        new MultiClause("t0."+jobQueue.docHashField,docList)})).append(" AND ")
+      .append("t0.").append(jobQueue.jobIDField).append("!=? AND ");
+    list.add(jobID);
+    sb.append("EXISTS(SELECT 'x' FROM ").append(jobs.getTableName()).append(" t1 WHERE ")
+      .append(database.buildConjunctionClause(list,new ClauseDescription[]{
+        new JoinClause("t1."+jobs.idField,"t0."+jobQueue.jobIDField),
+        new UnitaryClause("t1."+jobs.connectionNameField,connectionName),
+        new UnitaryClause("t1."+jobs.outputNameField,outputConnectionName)})).append(")");
+    IResultSet set = database.performQuery(sb.toString(),list,null,null);
+    int i = 0;
+    while (i < set.getRowCount())
+    {
+      IResultRow row = set.getRow(i++);
+      shared.add(row.getValue(jobQueue.docHashField));
+    }
+  }
+
+  /** Finish purging a job, once the output connection's records for all of its pieces have been forgotten.
+  * The job's rows are removed from each of the crawler's tables in turn, and then the job itself.
+  *@param jobID is the job identifier.
+  */
+  public void finishJobPurge(Long jobID)
+    throws ManifoldCFException
+  {
+    ArrayList list = new ArrayList();
+    String query = database.buildConjunctionClause(list,new ClauseDescription[]{
+      new UnitaryClause(jobs.idField,jobID)});
+    IResultSet set = database.performQuery("SELECT "+jobs.statusField+" FROM "+
+      jobs.getTableName()+" WHERE "+query,list,null,null);
+    if (set.getRowCount() == 0 ||
+      jobs.stringToStatus((String)set.getRow(0).getValue(jobs.statusField)) != jobs.STATUS_READYFORPURGE)
+      return;
+
+    int table = 0;
+    while (table < PURGE_TABLE_COUNT)
+    {
+      purgeJobTable(jobID,table++);
+    }
+
+    while (true)
+    {
+      long sleepAmt = 0L;
+      database.beginTransaction();
+      try
+      {
+        set = database.performQuery("SELECT "+jobs.statusField+" FROM "+
+          jobs.getTableName()+" WHERE "+query+" FOR UPDATE",list,null,null);
+        if (set.getRowCount() > 0 &&
+          jobs.stringToStatus((String)set.getRow(0).getValue(jobs.statusField)) == jobs.STATUS_READYFORPURGE)
+        {
+          ManifoldCF.noteConfigurationChange();
+          jobs.delete(jobID);
+          if (Logging.jobs.isDebugEnabled())
+            Logging.jobs.debug("Purged job "+jobID);
+        }
+        database.performCommit();
+        return;
+      }
+      catch (ManifoldCFException e)
+      {
+        database.signalRollback();
+        if (e.getErrorCode() == e.DATABASE_TRANSACTION_ABORT)
+        {
+          if (Logging.perf.isDebugEnabled())
+            Logging.perf.debug("Aborted finishing purge of job "+jobID+": "+e.getMessage());
+          sleepAmt = getRandomAmount();
+          continue;
+        }
+        throw e;
+      }
+      catch (Error e)
+      {
+        database.signalRollback();
+        throw e;
+      }
+      finally
+      {
+        database.endTransaction();
+        sleepFor(sleepAmt);
+      }
+    }
+  }
+
+  /** Remove all of a job's rows from one of the crawler's tables, in a transaction of its own.
+  *@param jobID is the job identifier.
+  *@param table is the table, one of the PURGE_ constants.
+  */
+  protected void purgeJobTable(Long jobID, int table)
+    throws ManifoldCFException
+  {
+    long startTime = 0L;
+    if (Logging.perf.isDebugEnabled())
+      startTime = System.currentTimeMillis();
+    while (true)
+    {
+      long sleepAmt = 0L;
+      database.beginTransaction();
+      try
+      {
+        switch (table)
+        {
+        case PURGE_INTRINSICLINK:
+          hopCount.deleteOwnerLinks(jobID);
+          break;
+        case PURGE_HOPDELETEDEPS:
+          hopCount.deleteOwnerDeleteDependencies(jobID);
+          break;
+        case PURGE_HOPCOUNT:
+          hopCount.deleteOwnerRows(jobID);
+          break;
+        case PURGE_CARRYDOWN:
+          carryDown.deleteOwner(jobID);
+          break;
+        case PURGE_PREREQEVENTS:
+          jobQueue.deleteJobPrerequisiteEvents(jobID);
+          break;
+        case PURGE_JOBQUEUE:
+          jobQueue.deleteJobRows(jobID);
+          break;
+        default:
+          throw new ManifoldCFException("Unknown purge table: "+table);
+        }
+        database.performCommit();
+        break;
+      }
+      catch (ManifoldCFException e)
+      {
+        database.signalRollback();
+        if (e.getErrorCode() == e.DATABASE_TRANSACTION_ABORT)
+        {
+          if (Logging.perf.isDebugEnabled())
+            Logging.perf.debug("Aborted purging table "+table+" for job "+jobID+": "+e.getMessage());
+          sleepAmt = getRandomAmount();
+          continue;
+        }
+        throw e;
+      }
+      catch (Error e)
+      {
+        database.signalRollback();
+        throw e;
+      }
+      finally
+      {
+        database.endTransaction();
+        sleepFor(sleepAmt);
+      }
+    }
+    if (Logging.perf.isDebugEnabled())
+      Logging.perf.debug("Purged table "+table+" for job "+jobID+" in "+
+        new Long(System.currentTimeMillis()-startTime).toString()+" ms");
+  }
+
   /** Delete jobs in need of being deleted (which are marked "ready for delete").
   * This method is meant to be called periodically to perform delete processing on jobs.
   */
@@ -6442,9 +6861,11 @@ public class JobManager implements IJobManager
   public void finishJobs()
     throws ManifoldCFException
   {
+    boolean jobsShuttingDown;
     while (true)
     {
       long sleepAmt = 0L;
+      jobsShuttingDown = false;
       // The jobs we should transition:
       // - are active
       // - have no ACTIVE, PENDING, ACTIVEPURGATORY, or PENDINGPURGATORY records
@@ -6507,6 +6928,7 @@ public class JobManager implements IJobManager
 
           // Mark status of job as "finishing"
           jobs.writeStatus(jobID,jobs.STATUS_SHUTTINGDOWN);
+          jobsShuttingDown = true;
           if (Logging.jobs.isDebugEnabled())
           {
             Logging.jobs.debug("Marked job "+jobID+" for shutdown");
@@ -6514,7 +6936,7 @@ public class JobManager implements IJobManager
 
         }
         database.performCommit();
-        return;
+        break;
       }
       catch (ManifoldCFException e)
       {
@@ -6539,6 +6961,9 @@ public class JobManager implements IJobManager
         sleepFor(sleepAmt);
       }
     }
+    // A job with nothing to clean up can be completed right away
+    if (jobsShuttingDown)
+      signalLifecycleEvent(JobLifecycleScheduler.EVENT_RESET);
   }
 
   /** Find the list of jobs that need to have their connectors notified of job completion.
@@ -6721,6 +7146,12 @@ public class JobManager implements IJobManager
         Logging.jobs.debug("Stopped job "+jobID);
       }
     }
+    // Aborted jobs go on to notification or restart
+    if (modifiedJobs.size() > 0)
+    {
+      signalLifecycleEvent(JobLifecycleScheduler.EVENT_NOTIFY);
+      signalLifecycleEvent(JobLifecycleScheduler.EVENT_STARTUP);
+    }
   }
 
   /** Reset eligible jobs either back to the "inactive" state, or make them active again.  The
@@ -6813,6 +7244,8 @@ public class JobManager implements IJobManager
         }
       }
     }
+    if (resetJobs.size() > 0)
+      signalLifecycleEvent(JobLifecycleScheduler.EVENT_NOTIFY);
   }
 
   
@@ -7170,6 +7603,7 @@ public class JobManager implements IJobManager
       case Jobs.STATUS_READYFORDELETE:
       case Jobs.STATUS_DELETING:
       case Jobs.STATUS_DELETING_NOOUTPUT:
+      case Jobs.STATUS_READYFORPURGE:
         rstatus = JobStatus.JOBSTATUS_DESTRUCTING;
         break;
       default:
@@ -7846,6 +8280,8 @@ public class JobManager implements IJobManager
         DocumentDescription dd = (DocumentDescription)blockingDocumentArray.get(i++);
         blockingDocuments.addBlockingDocument(dd);
       }
+      if (blockingDocumentArray.size() > 0)
+        JobLifecycleScheduler.signal(JobLifecycleScheduler.EVENT_PRIORITY);
       blockingDocumentArray.clear();
     }
 
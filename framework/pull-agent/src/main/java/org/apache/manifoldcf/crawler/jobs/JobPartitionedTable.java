@@ -0,0 +1,191 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.jobs;
+
+import java.util.*;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.CacheKeyFactory;
+import org.apache.manifoldcf.crawler.system.ManifoldCF;
+
+/** This is the base class for the tables that hold per-job crawl state (jobqueue, hopcount, intrinsiclink,
+* hopdeletedeps, and carrydown).  Optionally, on databases that support it, each of these tables is split into one partition per job,
+* so that the cost of queries and maintenance for one job does not depend on the size of all other jobs.
+*
+* Partitioning is turned on by the "org.apache.manifoldcf.crawler.partitionbyjob" property, and takes effect when
+* the crawler tables are next installed.  A job's partitions are created along with the job, and are dropped when the
+* job is removed.  Rows of a job that has no partition stay in the unpartitioned table, and are handled as usual.
+* Whether a partition exists is cached through the cache manager, so that creating or dropping a partition in one
+* process is seen by all the others.
+*/
+public abstract class JobPartitionedTable extends org.apache.manifoldcf.core.database.BaseTable
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** The property that turns on partitioning by job */
+  public static final String partitionByJobProperty = "org.apache.manifoldcf.crawler.partitionbyjob";
+
+  /** True if this table is partitioned by job */
+  protected final boolean partitioned;
+  /** The name of the job id column */
+  protected final String partitionColumn;
+
+  /** Constructor.
+  *@param database is the database handle.
+  *@param tableName is the name of the table.
+  *@param partitionColumn is the name of the job id column.
+  */
+  public JobPartitionedTable(IDBInterface database, String tableName, String partitionColumn)
+    throws ManifoldCFException
+  {
+    super(database,tableName);
+    this.partitionColumn = partitionColumn;
+    this.partitioned = database.supportsPartitions() && ManifoldCF.getBooleanProperty(partitionByJobProperty,false);
+  }
+
+  /** Find out whether this table is partitioned by job.
+  *@return true if it is.
+  */
+  public boolean isPartitioned()
+  {
+    return partitioned;
+  }
+
+  /** Get the indexes each partition needs.  Partitions don't inherit the table's indexes or primary key.
+  *@return the index descriptions.
+  */
+  protected abstract IndexDescription[] getPartitionIndexes();
+
+  /** Get the name of a job's partition.
+  */
+  protected String getPartitionName(Long jobID)
+  {
+    return getTableName()+"_p"+jobID.toString();
+  }
+
+  /** See whether a job has a partition of this table.
+  */
+  protected boolean hasJobPartition(Long jobID)
+    throws ManifoldCFException
+  {
+    if (!partitioned)
+      return false;
+    String partitionName = getPartitionName(jobID);
+    return getDBInterface().getTableSchema(partitionName,getPartitionKeys(partitionName),null) != null;
+  }
+
+  /** Get the cache keys that describe whether a partition exists.
+  */
+  protected static StringSet getPartitionKeys(String partitionName)
+  {
+    StringSetBuffer ssb = new StringSetBuffer();
+    ssb.add(CacheKeyFactory.makeJobPartitionKey(partitionName));
+    return new StringSet(ssb);
+  }
+
+  /** Get the name of the table that a job's rows should be inserted into, or its modifications noted against.
+  *@param jobID is the job identifier.
+  *@return the partition name, or the table name if the job has no partition.
+  */
+  protected String getJobTableName(Long jobID)
+    throws ManifoldCFException
+  {
+    if (hasJobPartition(jobID))
+      return getPartitionName(jobID);
+    return getTableName();
+  }
+
+  /** Create a job's partition of this table, if partitioning is on and the partition does not yet exist.  Any of the
+  * job's rows already in the table are moved into the partition.
+  *@param jobID is the job identifier.
+  */
+  public void createJobPartition(Long jobID)
+    throws ManifoldCFException
+  {
+    if (!partitioned || hasJobPartition(jobID))
+      return;
+    String partitionName = getPartitionName(jobID);
+    IDBInterface database = getDBInterface();
+    database.beginTransaction();
+    try
+    {
+      // Another process may have created the partition since it was cached as missing
+      if (database.getTableSchema(partitionName,null,null) != null)
+        return;
+      database.performCreatePartition(getTableName(),partitionName,partitionColumn,jobID,getPartitionKeys(partitionName));
+      IndexDescription[] indexes = getPartitionIndexes();
+      int i = 0;
+      while (i < indexes.length)
+      {
+        database.performAddIndex(null,partitionName,indexes[i++]);
+      }
+    }
+    catch (ManifoldCFException e)
+    {
+      database.signalRollback();
+      throw e;
+    }
+    catch (Error e)
+    {
+      database.signalRollback();
+      throw e;
+    }
+    finally
+    {
+      database.endTransaction();
+    }
+  }
+
+  /** Drop a job's partition of this table, if it has one.  Dropping a partition is much cheaper than deleting
+  * its rows.
+  *@param jobID is the job identifier.
+  */
+  protected void dropJobPartition(Long jobID)
+    throws ManifoldCFException
+  {
+    if (!hasJobPartition(jobID))
+      return;
+    String partitionName = getPartitionName(jobID);
+    getDBInterface().performDrop(partitionName,getPartitionKeys(partitionName));
+  }
+
+  /** Insert a row belonging to a job.
+  *@param jobID is the job identifier.
+  *@param parameterMap is the map of column name/values to write.
+  *@param invalidateKeys are the cache keys that should be invalidated.
+  */
+  protected void performInsert(Long jobID, Map parameterMap, StringSet invalidateKeys)
+    throws ManifoldCFException
+  {
+    getDBInterface().performInsert(getJobTableName(jobID),parameterMap,invalidateKeys);
+  }
+
+  /** Note modifications to the rows of a single job, so that maintenance can be done on its partition.
+  *@param jobID is the job identifier.
+  *@param insertCount is the number of inserts.
+  *@param modifyCount is the number of updates.
+  *@param deleteCount is the number of deletions.
+  */
+  public void noteModifications(Long jobID, int insertCount, int modifyCount, int deleteCount)
+    throws ManifoldCFException
+  {
+    getDBInterface().noteModifications(getJobTableName(jobID),insertCount,modifyCount,deleteCount);
+  }
+
+}
@@ -47,7 +47,7 @@ import java.util.*;
  * <br><br>
  * 
  */
-public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
+public class JobQueue extends JobPartitionedTable
 {
   public static final String _rcsid = "@(#)$Id: JobQueue.java 988245 2010-08-23 18:39:35Z kwright $";
 
@@ -166,7 +166,7 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
   public JobQueue(IThreadContext tc, IDBInterface database)
     throws ManifoldCFException
   {
-    super(database,"jobqueue");
+    super(database,"jobqueue",jobIDField);
     this.threadContext = tc;
     prereqEventManager = new PrereqEventManager(database);
   }
@@ -207,8 +207,11 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
         performUpdate(map,"WHERE "+docPriorityField+" IS NULL",null,null);
       }
 
-      // Secondary table installation
-      prereqEventManager.install(getTableName(),idField);
+      // Secondary table installation.  Rows in partitions can't be the target of a foreign key.
+      if (isPartitioned())
+        prereqEventManager.install(null,null);
+      else
+        prereqEventManager.install(getTableName(),idField);
 
       // Handle indexes
       IndexDescription uniqueIndex = new IndexDescription(true,new String[]{docHashField,jobIDField});
@@ -275,6 +278,21 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     }
   }
 
+  /** Get the indexes each job partition needs.
+  */
+  protected IndexDescription[] getPartitionIndexes()
+  {
+    return new IndexDescription[]{
+      new IndexDescription(true,new String[]{idField}),
+      new IndexDescription(true,new String[]{docHashField,jobIDField}),
+      new IndexDescription(false,new String[]{jobIDField,statusField}),
+      new IndexDescription(false,new String[]{isSeedField,jobIDField}),
+      new IndexDescription(false,new String[]{failTimeField,jobIDField}),
+      new IndexDescription(false,new String[]{statusField,checkActionField,checkTimeField}),
+      new IndexDescription(false,new String[]{statusField,prioritySetField}),
+      new IndexDescription(false,new String[]{docPriorityField,statusField,checkActionField,checkTimeField})};
+  }
+
   /** Get the 'getNextDocuments' index hint.
   */
   public String getGetNextDocumentsIndexHint()
@@ -537,7 +555,7 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     performUpdate(map,"WHERE "+query,list,null);
 
     // Not accurate, but best we can do without overhead
-    noteModifications(0,2,0);
+    noteModifications(jobID,0,2,0);
     // Do an analyze, otherwise our plans are going to be crap right off the bat
     unconditionallyAnalyzeTables();
 
@@ -587,7 +605,7 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     performUpdate(map,"WHERE "+query,list,null);
 
     // Not accurate, but best we can do without overhead
-    noteModifications(0,2,0);
+    noteModifications(jobID,0,2,0);
     // Do an analyze, otherwise our plans are going to be crap right off the bat
     unconditionallyAnalyzeTables();
   }
@@ -616,7 +634,7 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
       new UnitaryClause(jobIDField,jobID),
       new UnitaryClause(statusField,statusToString(STATUS_COMPLETE))});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
     // Do an analyze, otherwise our plans are going to be crap right off the bat
     unconditionallyAnalyzeTables();
   }
@@ -630,14 +648,24 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     throws ManifoldCFException
   {
     ArrayList list = new ArrayList();
+    // Deletions are noted against each job's partition
+    Map<Long,Integer> jobCounts = new HashMap<Long,Integer>();
     int i = 0;
     while (i < identifiers.length)
     {
       list.add(identifiers[i].getID());
+      Long jobID = identifiers[i].getJobID();
+      Integer count = jobCounts.get(jobID);
+      jobCounts.put(jobID,new Integer((count == null)?1:count.intValue()+1));
       i++;
     }
     doDeletes(list);
-    noteModifications(0,0,identifiers.length);
+    Iterator<Long> iter = jobCounts.keySet().iterator();
+    while (iter.hasNext())
+    {
+      Long jobID = iter.next();
+      noteModifications(jobID,0,0,jobCounts.get(jobID).intValue());
+    }
   }
 
   /** Check if there are any outstanding active documents for a job */
@@ -662,20 +690,71 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
   */
   public void deleteAllJobRecords(Long jobID)
     throws ManifoldCFException
+  {
+    // Clean out prereqevents table first
+    deleteJobPrerequisiteEvents(jobID);
+    deleteJobRows(jobID);
+  }
+
+  /** Delete the prerequisite events of all of a job's records.
+  *@param jobID is the job identifier.
+  */
+  public void deleteJobPrerequisiteEvents(Long jobID)
+    throws ManifoldCFException
   {
     ArrayList list = new ArrayList();
     list.add(jobID);
-    // Clean out prereqevents table first
     prereqEventManager.deleteRows(getTableName()+" t0","t0."+idField,"t0."+jobIDField+"=?",list);
-    list.clear();
+  }
+
+  /** Delete all of a job's records, once their prerequisite events are gone.
+  *@param jobID is the job identifier.
+  */
+  public void deleteJobRows(Long jobID)
+    throws ManifoldCFException
+  {
+    // If the job has a partition, dropping it does nearly all the work
+    dropJobPartition(jobID);
+    ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
       new UnitaryClause(jobIDField,jobID)});
     performDelete("WHERE "+query,list,null);
-    noteModifications(0,0,1);
+    noteModifications(jobID,0,0,1);
+  }
+
+  /** For a job purge: Get a batch of document identifier hashes in one piece of a job, in order.
+  *@param jobID is the job identifier.
+  *@param partition is the piece of the job.
+  *@param afterHash is the hash to start after, or null to start at the beginning.
+  *@param maxCount is the maximum number of hashes to return.
+  *@return the hashes.
+  */
+  public String[] getPartitionDocumentHashes(Long jobID, HashPartition partition, String afterHash, int maxCount)
+    throws ManifoldCFException
+  {
+    ArrayList list = new ArrayList();
+    StringBuilder sb = new StringBuilder("SELECT ");
+    sb.append(docHashField).append(" FROM ").append(getTableName()).append(" WHERE ")
+      .append(buildConjunctionClause(list,partition.getClauses(jobIDField,jobID,docHashField)));
+    if (afterHash != null)
+    {
+      sb.append(" AND ").append(buildConjunctionClause(list,new ClauseDescription[]{
+        new UnitaryClause(docHashField,">",afterHash)}));
+    }
+    sb.append(" ORDER BY ").append(docHashField).append(" ASC ").append(constructOffsetLimitClause(0,maxCount));
+    IResultSet set = performQuery(sb.toString(),list,null,null,maxCount);
+    String[] rval = new String[set.getRowCount()];
+    int i = 0;
+    while (i < rval.length)
+    {
+      IResultRow row = set.getRow(i);
+      rval[i++] = (String)row.getValue(docHashField);
+    }
+    return rval;
   }
 
   /** Write out a document priority */
-  public void writeDocPriority(long currentTime, Long rowID, double priority)
+  public void writeDocPriority(Long jobID, long currentTime, Long rowID, double priority)
     throws ManifoldCFException
   {
     HashMap map = new HashMap();
@@ -683,9 +762,10 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     map.put(docPriorityField,new Double(priority));
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,rowID)});
+      new UnitaryClause(idField,rowID),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
   }
 
   /** Clear all document priorities for a job */
@@ -699,7 +779,7 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     String query = buildConjunctionClause(list,new ClauseDescription[]{
       new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
   }
   
   /** Set the "completed" status for a record.
@@ -795,10 +875,11 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
   }
 
   /** Set the status to active on a record, leaving alone priority or check time.
+  *@param jobID is the job the record belongs to.
   *@param id is the job queue id.
   *@param currentStatus is the current status
   */
-  public void updateActiveRecord(Long id, int currentStatus)
+  public void updateActiveRecord(Long jobID, Long id, int currentStatus)
     throws ManifoldCFException
   {
     int newStatus;
@@ -818,18 +899,20 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     map.put(statusField,statusToString(newStatus));
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,id)});
+      new UnitaryClause(idField,id),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
   }
 
   /** Set the status on a record, including check time and priority.
   * The status set MUST be a PENDING or PENDINGPURGATORY status.
+  *@param jobID is the job the record belongs to.
   *@param id is the job queue id.
   *@param status is the desired status
   *@param checkTime is the check time.
   */
-  public void setStatus(Long id, int status,
+  public void setStatus(Long jobID, Long id, int status,
     Long checkTime, int action, long failTime, int failCount)
     throws ManifoldCFException
   {
@@ -849,27 +932,29 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     // priority was in place from before.
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,id)});
+      new UnitaryClause(idField,id),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
   }
 
   /** Set the status of a document to "being deleted".
   */
-  public void setDeletingStatus(Long id)
+  public void setDeletingStatus(Long jobID, Long id)
     throws ManifoldCFException
   {
     HashMap map = new HashMap();
     map.put(statusField,statusToString(STATUS_BEINGDELETED));
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,id)});
+      new UnitaryClause(idField,id),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
   }
 
   /** Set the status of a document to be "no longer deleting" */
-  public void setUndeletingStatus(Long id, long checkTime)
+  public void setUndeletingStatus(Long jobID, Long id, long checkTime)
     throws ManifoldCFException
   {
     HashMap map = new HashMap();
@@ -880,27 +965,29 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     map.put(failCountField,null);
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,id)});
+      new UnitaryClause(idField,id),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
   }
 
   /** Set the status of a document to "being cleaned".
   */
-  public void setCleaningStatus(Long id)
+  public void setCleaningStatus(Long jobID, Long id)
     throws ManifoldCFException
   {
     HashMap map = new HashMap();
     map.put(statusField,statusToString(STATUS_BEINGCLEANED));
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,id)});
+      new UnitaryClause(idField,id),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
   }
 
   /** Set the status of a document to be "no longer cleaning" */
-  public void setUncleaningStatus(Long id, long checkTime)
+  public void setUncleaningStatus(Long jobID, Long id, long checkTime)
     throws ManifoldCFException
   {
     HashMap map = new HashMap();
@@ -911,15 +998,17 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     map.put(failCountField,null);
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,id)});
+      new UnitaryClause(idField,id),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
   }
 
-  /** Remove multiple records entirely.
+  /** Remove multiple records of a job entirely.
+  *@param jobID is the job identifier.
   *@param ids is the set of job queue id's
   */
-  public void deleteRecordMultiple(Long[] ids)
+  public void deleteRecordMultiple(Long jobID, Long[] ids)
     throws ManifoldCFException
   {
     // Delete in chunks
@@ -940,7 +1029,7 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     }
     if (j > 0)
       doDeletes(list);
-    noteModifications(0,0,ids.length);
+    noteModifications(jobID,0,0,ids.length);
   }
 
   /** Calculate the number of deletes we can do at once.
@@ -964,18 +1053,19 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
   }
 
   /** Remove a record entirely.
+  *@param jobID is the job identifier.
   *@param id is the job queue id.
   */
-  public void deleteRecord(Long id)
+  public void deleteRecord(Long jobID, Long id)
     throws ManifoldCFException
   {
-    deleteRecordMultiple(new Long[]{id});
+    deleteRecordMultiple(jobID,new Long[]{id});
   }
 
   /** Update an existing record (as the result of an initial add).
   * The record is presumed to exist and have been locked, via "FOR UPDATE".
   */
-  public boolean updateExistingRecordInitial(Long recordID, int currentStatus, Long checkTimeValue,
+  public boolean updateExistingRecordInitial(Long jobID, Long recordID, int currentStatus, Long checkTimeValue,
     long desiredExecuteTime, long currentTime, double desiredPriority, String[] prereqEvents)
     throws ManifoldCFException
   {
@@ -1056,11 +1146,12 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     prereqEventManager.deleteRows(recordID);
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,recordID)});
+      new UnitaryClause(idField,recordID),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
     // Insert prereqevent entries, if any
     prereqEventManager.addRows(recordID,prereqEvents);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
     return rval;
   }
 
@@ -1091,9 +1182,9 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     // Set the document priority
     map.put(docPriorityField,new Double(desiredDocPriority));
     map.put(prioritySetField,new Long(currentTime));
-    performInsert(map,null);
+    performInsert(jobID,map,null);
     prereqEventManager.addRows(recordID,prereqEvents);
-    noteModifications(1,0,0);
+    noteModifications(jobID,1,0,0);
   }
 
   /** Note the remaining documents that do NOT need to be queued.  These are noted so that the
@@ -1159,7 +1250,7 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     }
     if (k > 0)
       updateRemainingDocuments(list);
-    noteModifications(0,docIDHashes.length,0);
+    noteModifications(jobID,0,docIDHashes.length,0);
   }
 
   /** Calculate max */
@@ -1268,7 +1359,7 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
   * The record is presumed to exist and have been locked, via "FOR UPDATE".
   *@return true if the document priority slot has been retained, false if freed.
   */
-  public boolean updateExistingRecord(Long recordID, int currentStatus, Long checkTimeValue,
+  public boolean updateExistingRecord(Long jobID, Long recordID, int currentStatus, Long checkTimeValue,
     long desiredExecuteTime, long currentTime, boolean otherChangesSeen,
     double desiredPriority, String[] prereqEvents)
     throws ManifoldCFException
@@ -1388,10 +1479,11 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     prereqEventManager.deleteRows(recordID);
     ArrayList list = new ArrayList();
     String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,recordID)});
+      new UnitaryClause(idField,recordID),
+      new UnitaryClause(jobIDField,jobID)});
     performUpdate(map,"WHERE "+query,list,null);
     prereqEventManager.addRows(recordID,prereqEvents);
-    noteModifications(0,1,0);
+    noteModifications(jobID,0,1,0);
     return rval;
   }
 
@@ -1414,9 +1506,9 @@ public class JobQueue extends org.apache.manifoldcf.core.database.BaseTable
     // Be sure to set the priority also
     map.put(docPriorityField,new Double(desiredDocPriority));
     map.put(prioritySetField,new Long(currentTime));
-    performInsert(map,null);
+    performInsert(jobID,map,null);
     prereqEventManager.addRows(recordID,prereqEvents);
-    noteModifications(1,0,0);
+    noteModifications(jobID,1,0,0);
   }
 
   // Methods to convert status strings to integers and back
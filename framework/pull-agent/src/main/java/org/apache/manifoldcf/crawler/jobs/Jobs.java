@@ -120,6 +120,7 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
   public static final int STATUS_ACTIVE_NEITHER = 35;                     // Active, but neither repository connector nor output connector installed
   public static final int STATUS_ACTIVESEEDING_NEITHER = 36;          // Active and seeding, but neither repository connector nor output connector installed
   public static final int STATUS_DELETING_NOOUTPUT = 37;                // Job is being deleted but there's no output connector installed
+  public static final int STATUS_READYFORPURGE = 38;                     // Job is marked to be forgotten, without deleting its documents from the index.
 
   // Type field values
   public static final int TYPE_CONTINUOUS = IJobDescription.TYPE_CONTINUOUS;
@@ -226,6 +227,7 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
     statusMap.put("U",new Integer(STATUS_ACTIVE_NEITHER));
     statusMap.put("u",new Integer(STATUS_ACTIVESEEDING_NEITHER));
     statusMap.put("D",new Integer(STATUS_DELETING_NOOUTPUT));
+    statusMap.put("K",new Integer(STATUS_READYFORPURGE));
     
     typeMap = new HashMap();
     typeMap.put("C",new Integer(TYPE_CONTINUOUS));
@@ -496,8 +498,9 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
       list.add(statusToString(STATUS_DELETESTARTINGUP));
       list.add(statusToString(STATUS_DELETING));
       list.add(statusToString(STATUS_DELETING_NOOUTPUT));
+      list.add(statusToString(STATUS_READYFORPURGE));
       IResultSet set = performQuery("SELECT "+idField+","+descriptionField+" FROM "+
-        getTableName()+" WHERE "+statusField+"!=? AND "+statusField+"!=? AND "+statusField+"!=? AND "+statusField+"!=?"+
+        getTableName()+" WHERE "+statusField+"!=? AND "+statusField+"!=? AND "+statusField+"!=? AND "+statusField+"!=? AND "+statusField+"!=?"+
         " ORDER BY "+descriptionField+" ASC",list,cacheKeys,null);
       // Convert to an array of id's, and then load them
       Long[] ids = new Long[set.getRowCount()];
@@ -570,14 +573,7 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
   public boolean hasPriorityJobs(int priority)
     throws ManifoldCFException
   {
-    ArrayList list = new ArrayList();
-    String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new MultiClause(statusField,new Object[]{
-        statusToString(STATUS_ACTIVE),
-        statusToString(STATUS_ACTIVESEEDING)})});
-    IResultSet set = performQuery("SELECT * FROM "+getTableName()+" WHERE "+query+" AND "+priorityField+"="+Integer.toString(priority)+
-      " "+constructOffsetLimitClause(0,1),list,null,null,1);
-    return set.getRowCount() > 0;
+    return getStatusSnapshot().isActivePriorityPresent(priority);
   }
 
   /** Create a job.
@@ -1150,17 +1146,10 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
   public boolean checkJobActive(Long jobID)
     throws ManifoldCFException
   {
-    StringSet cacheKeys = new StringSet(getJobStatusKey());
-    ArrayList list = new ArrayList();
-    String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(idField,jobID)});
-    IResultSet set = performQuery("SELECT "+statusField+" FROM "+
-      getTableName()+" WHERE "+query,list,cacheKeys,null);
-    if (set.getRowCount() == 0)
+    Integer statusValue = getStatusSnapshot().getStatus(jobID);
+    if (statusValue == null)
       return false;
-    IResultRow row = set.getRow(0);
-    String statusValue = (String)row.getValue(statusField);
-    int status = stringToStatus(statusValue);
+    int status = statusValue.intValue();
     // Any active state in the lifecycle will do: seeding, active, active_seeding
     return (status == STATUS_ACTIVE || status == STATUS_ACTIVESEEDING ||
       status == STATUS_STARTINGUP);
@@ -2205,13 +2194,7 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
   public boolean deletingJobsPresent()
     throws ManifoldCFException
   {
-    ArrayList list = new ArrayList();
-    String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(statusField,statusToString(STATUS_DELETING))});
-    IResultSet set = performQuery("SELECT "+idField+" FROM "+getTableName()+" WHERE "+
-      query+" "+constructOffsetLimitClause(0,1),
-      list,new StringSet(getJobStatusKey()),null,1);
-    return set.getRowCount() > 0;
+    return getStatusSnapshot().isStatusPresent(STATUS_DELETING);
   }
 
   /** Return true if there is a job in the
@@ -2222,13 +2205,7 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
   public boolean cleaningJobsPresent()
     throws ManifoldCFException
   {
-    ArrayList list = new ArrayList();
-    String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new UnitaryClause(statusField,statusToString(STATUS_SHUTTINGDOWN))});
-    IResultSet set = performQuery("SELECT "+idField+" FROM "+getTableName()+" WHERE "+
-      query+" "+constructOffsetLimitClause(0,1),
-      list,new StringSet(getJobStatusKey()),null,1);
-    return set.getRowCount() > 0;
+    return getStatusSnapshot().isStatusPresent(STATUS_SHUTTINGDOWN);
   }
 
 
@@ -2239,16 +2216,49 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
   public boolean activeJobsPresent()
     throws ManifoldCFException
   {
-    // To improve the postgres CPU usage of the system at rest, we do a *fast* check to be
-    // sure there are ANY jobs in an active state.
-    ArrayList list = new ArrayList();
-    String query = buildConjunctionClause(list,new ClauseDescription[]{
-      new MultiClause(statusField,new Object[]{
-        statusToString(STATUS_ACTIVE),
-        statusToString(STATUS_ACTIVESEEDING)})});
-    IResultSet set = performQuery("SELECT "+idField+" FROM "+getTableName()+" WHERE "+
-      query+" "+constructOffsetLimitClause(0,1),list,new StringSet(getJobStatusKey()),null,1);
-    return set.getRowCount() > 0;
+    // To improve the postgres CPU usage of the system at rest, this is answered from the
+    // cached status snapshot, which only goes back to the database after a status change.
+    JobStatusSnapshot snapshot = getStatusSnapshot();
+    return snapshot.isStatusPresent(STATUS_ACTIVE) || snapshot.isStatusPresent(STATUS_ACTIVESEEDING);
+  }
+
+  /** Get a snapshot of the status and priority of every job.  The snapshot is cached under the job status
+  * key, which every status change invalidates, so the screening methods above only query the jobs table
+  * once per status change rather than once per call.
+  *@return the snapshot.
+  */
+  protected JobStatusSnapshot getStatusSnapshot()
+    throws ManifoldCFException
+  {
+    JobStatusSnapshotDescription objectDescription = new JobStatusSnapshotDescription(new StringSet(getJobStatusKey()));
+    JobStatusSnapshotExecutor exec = new JobStatusSnapshotExecutor(this,objectDescription);
+    cacheManager.findObjectsAndExecute(new ICacheDescription[]{objectDescription},null,exec,getTransactionID());
+    return exec.getResult();
+  }
+
+  /** Read the job status snapshot (without caching).
+  *@return the snapshot.
+  */
+  protected JobStatusSnapshot readStatusSnapshot()
+    throws ManifoldCFException
+  {
+    IResultSet set = performQuery("SELECT "+idField+","+statusField+","+priorityField+" FROM "+getTableName(),null,null,null);
+    JobStatusSnapshot rval = new JobStatusSnapshot();
+    try
+    {
+      int i = 0;
+      while (i < set.getRowCount())
+      {
+        IResultRow row = set.getRow(i++);
+        rval.addJob((Long)row.getValue(idField),stringToStatus((String)row.getValue(statusField)),
+          Integer.parseInt(row.getValue(priorityField).toString()));
+      }
+    }
+    catch (NumberFormatException e)
+    {
+      throw new ManifoldCFException("Bad number",e);
+    }
+    return rval;
   }
 
   // These functions map from status to a string and back
@@ -2335,6 +2345,8 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
       return "u";
     case STATUS_DELETING_NOOUTPUT:
       return "D";
+    case STATUS_READYFORPURGE:
+      return "K";
     
     case STATUS_ACTIVEWAITING:
       return "H";
@@ -2806,4 +2818,139 @@ public class Jobs extends org.apache.manifoldcf.core.database.BaseTable
 
   }
 
+  /** The status and priority of every job, as of the last status change.  Instances are
+  * shared through the cache, and are never modified once built.
+  */
+  protected static class JobStatusSnapshot
+  {
+    /** Status, keyed by job id */
+    protected Map<Long,Integer> jobStatuses = new HashMap<Long,Integer>();
+    /** The statuses that at least one job has */
+    protected Set<Integer> presentStatuses = new HashSet<Integer>();
+    /** The priorities that at least one active job has */
+    protected Set<Integer> activePriorities = new HashSet<Integer>();
+
+    public JobStatusSnapshot()
+    {
+    }
+
+    public void addJob(Long jobID, int status, int priority)
+    {
+      Integer statusValue = new Integer(status);
+      jobStatuses.put(jobID,statusValue);
+      presentStatuses.add(statusValue);
+      if (status == STATUS_ACTIVE || status == STATUS_ACTIVESEEDING)
+        activePriorities.add(new Integer(priority));
+    }
+
+    public Integer getStatus(Long jobID)
+    {
+      return jobStatuses.get(jobID);
+    }
+
+    public boolean isStatusPresent(int status)
+    {
+      return presentStatuses.contains(new Integer(status));
+    }
+
+    public boolean isActivePriorityPresent(int priority)
+    {
+      return activePriorities.contains(new Integer(priority));
+    }
+  }
+
+  /** Job status snapshot description class.  There is only ever one such object in the cache.
+  */
+  protected static class JobStatusSnapshotDescription extends org.apache.manifoldcf.core.cachemanager.BaseDescription
+  {
+    protected StringSet cacheKeys;
+
+    public JobStatusSnapshotDescription(StringSet invKeys)
+    {
+      super("jobstatuscache");
+      cacheKeys = invKeys;
+    }
+
+    public int hashCode()
+    {
+      return getClass().hashCode();
+    }
+
+    public boolean equals(Object o)
+    {
+      return (o instanceof JobStatusSnapshotDescription);
+    }
+
+    public String getCriticalSectionName()
+    {
+      return getClass().getName();
+    }
+
+    /** Get the cache keys for an object (which may or may not exist yet in
+    * the cache).  This method is called in order for cache manager to throw the correct locks.
+    * @return the object's cache keys, or null if the object should not
+    * be cached.
+    */
+    public StringSet getObjectKeys()
+    {
+      return cacheKeys;
+    }
+
+  }
+
+  /** This is the executor object for locating the job status snapshot.
+  */
+  protected static class JobStatusSnapshotExecutor extends org.apache.manifoldcf.core.cachemanager.ExecutorBase
+  {
+    // Member variables
+    protected Jobs thisManager;
+    protected JobStatusSnapshot returnValue = null;
+
+    /** Constructor.
+    *@param manager is the Jobs manager.
+    *@param objectDescription is the object description.
+    */
+    public JobStatusSnapshotExecutor(Jobs manager, JobStatusSnapshotDescription objectDescription)
+    {
+      super();
+      thisManager = manager;
+    }
+
+    /** Get the result.
+    *@return the looked-up or read snapshot.
+    */
+    public JobStatusSnapshot getResult()
+    {
+      return returnValue;
+    }
+
+    /** Create the snapshot.  This is called only if it isn't in the cache.
+    * @param objectDescriptions is the set of unique identifier of the object.
+    * @return the newly created objects to cache.
+    */
+    public Object[] create(ICacheDescription[] objectDescriptions) throws ManifoldCFException
+    {
+      return new Object[]{thisManager.readStatusSnapshot()};
+    }
+
+    /** Notify the implementing class of the existence of a cached version of the
+    * object.
+    * @param objectDescription is the unique identifier of the object.
+    * @param cachedObject is the cached object.
+    */
+    public void exists(ICacheDescription objectDescription, Object cachedObject) throws ManifoldCFException
+    {
+      returnValue = (JobStatusSnapshot)cachedObject;
+    }
+
+    /** Perform the desired operation.  This method is called after either createGetObject()
+    * or exists() is called for every requested object.
+    */
+    public void execute() throws ManifoldCFException
+    {
+      // Does nothing; we only want to fetch objects in this cacher.
+    }
+
+  }
+
 }
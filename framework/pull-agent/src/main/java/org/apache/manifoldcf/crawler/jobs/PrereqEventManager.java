@@ -74,6 +74,14 @@ public class PrereqEventManager extends org.apache.manifoldcf.core.database.Base
       else
       {
         // Schema upgrade goes here, when needed.
+        // The owner reference goes away when the owner table is partitioned.
+        ColumnDescription ownerColumnDescription = (ColumnDescription)existing.get(ownerField);
+        if (ownerTableName == null && ownerColumnDescription != null && ownerColumnDescription.getReferenceTable() != null)
+        {
+          HashMap modifyMap = new HashMap();
+          modifyMap.put(ownerField,new ColumnDescription("BIGINT",false,false,null,null,false));
+          performAlter(null,modifyMap,null,null);
+        }
       }
 
       // Index management
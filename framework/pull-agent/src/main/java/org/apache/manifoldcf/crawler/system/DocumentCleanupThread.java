@@ -283,6 +283,10 @@ public class DocumentCleanupThread extends Thread
               j++;
             }
           }
+
+          // When the queue runs dry, the jobs being cleaned up may be done
+          if (documentCleanupQueue.checkIfEmpty(0))
+            JobLifecycleScheduler.signal(JobLifecycleScheduler.EVENT_RESET);
         }
         catch (ManifoldCFException e)
         {
@@ -205,6 +205,10 @@ public class DocumentDeleteThread extends Thread
               }
             }
           }
+
+          // When the queue runs dry, the jobs being deleted may be done
+          if (documentDeleteQueue.checkIfEmpty(0))
+            JobLifecycleScheduler.signal(JobLifecycleScheduler.EVENT_DELETE);
         }
         catch (ManifoldCFException e)
         {
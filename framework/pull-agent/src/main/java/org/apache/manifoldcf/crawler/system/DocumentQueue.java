@@ -20,6 +20,8 @@ package org.apache.manifoldcf.crawler.system;
 
 import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.core.metrics.Gauge;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
 import java.util.*;
 
 /** This class describes a document queue, which has a "stuffer" thread and many "reader" threads.
@@ -36,6 +38,9 @@ public class DocumentQueue
   // This flag gets set to 'true' if the queue is being cleared due to a reset
   protected boolean resetFlag = false;
 
+  /** The number of document sets waiting for a worker thread */
+  protected final static Gauge queueDepth = MetricsRegistry.getGauge("crawler.queue.depth");
+
   /** Constructor.
   */
   public DocumentQueue()
@@ -61,6 +66,7 @@ public class DocumentQueue
     {
       queue.clear();
       resetFlag = false;
+      queueDepth.set(0L);
     }
   }
 
@@ -86,6 +92,7 @@ public class DocumentQueue
     synchronized (queue)
     {
       queue.add(dd);
+      queueDepth.set(queue.size());
       queue.notify();
     }
   }
@@ -132,6 +139,7 @@ public class DocumentQueue
       }
       // Pull off the best one.  DON'T REORDER!!
       QueuedDocumentSet rval = (QueuedDocumentSet)queue.remove(bestIndex);
+      queueDepth.set(queue.size());
       return rval;
     }
   }
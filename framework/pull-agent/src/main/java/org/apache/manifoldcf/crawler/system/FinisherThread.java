@@ -63,7 +63,7 @@ public class FinisherThread extends Thread
           // See if there are any completed jobs
           jobManager.finishJobs();
           Logging.threads.debug("Done cleaning up completed jobs");
-          ManifoldCF.sleep(10000L);
+          JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_FINISH);
         }
         catch (ManifoldCFException e)
         {
@@ -62,9 +62,9 @@ public class JobDeleteThread extends Thread
         try
         {
           // Accumulate the wait before doing the next check.
-          // We start with 10 seconds, which is the maximum.  If there's a service request
+          // We start with the lifecycle poll interval, which is the maximum.  If there's a service request
           // that's faster than that, we'll adjust the time downward.
-          long waitTime = 10000L;
+          long waitTime = JobLifecycleScheduler.getPollInterval();
 
           // See if there are any starting jobs.
           // Note: Since this following call changes the job state, we must be careful to reset it on any kind of failure.
@@ -72,7 +72,7 @@ public class JobDeleteThread extends Thread
           jobManager.deleteJobsReadyForDelete();
 
           // Sleep for the retry interval.
-          ManifoldCF.sleep(waitTime);
+          JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_DELETE,waitTime);
         }
         catch (ManifoldCFException e)
         {
@@ -0,0 +1,222 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.system;
+
+import java.util.*;
+
+/** This class decides when the threads that move jobs through their lifecycle (starting, seeding, finishing,
+* notifying, stopping and resuming, deleting, and purging) should next look at the jobs table.
+*
+* Each of these threads waits here for its own kind of event.  An event is signalled when a job changes into
+* a state that the thread must act upon, and is scheduled for a future time when a transition is known ahead of
+* time (a schedule window opening or closing, or a continuous job's reseed time).  Each event is acted upon as
+* soon as it becomes due, rather than on the thread's next polling cycle.
+*
+* A thread that hears nothing still wakes up after the poll interval.  This is a safety net for changes that
+* cannot be signalled, such as those made by a crawler UI or API service running in a different process from the
+* agents, so it is kept as short as the fixed polling cycle it replaces.
+*/
+public class JobLifecycleScheduler
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  // Events.  Each is waited for by one thread.
+
+  /** Job schedules should be evaluated (job start thread) */
+  public final static int EVENT_JOBSTART = 0;
+  /** Jobs may be ready for startup (startup thread) */
+  public final static int EVENT_STARTUP = 1;
+  /** Jobs may be ready for reseeding (seeding thread) */
+  public final static int EVENT_SEEDING = 2;
+  /** Jobs may have run out of documents to process (finisher thread) */
+  public final static int EVENT_FINISH = 3;
+  /** Jobs may be ready for completion notification (job notification thread) */
+  public final static int EVENT_NOTIFY = 4;
+  /** Jobs may be ready to complete a stop, resume, or shutdown (job reset thread) */
+  public final static int EVENT_RESET = 5;
+  /** Jobs may be ready for deletion to begin (start delete thread) */
+  public final static int EVENT_STARTDELETE = 6;
+  /** Jobs being deleted may have run out of documents to delete (job delete thread) */
+  public final static int EVENT_DELETE = 7;
+  /** Documents are waiting to be prioritized (set priority thread) */
+  public final static int EVENT_PRIORITY = 8;
+  /** Jobs may be ready to be purged (job purge thread) */
+  public final static int EVENT_PURGE = 9;
+
+  protected final static int EVENT_COUNT = 10;
+
+  /** Default poll interval, in milliseconds */
+  public final static long DEFAULT_POLL_INTERVAL = 10000L;
+
+  /** A change made inside a transaction may not be visible yet when the waiting thread first looks, so the
+  * thread looks again after this long, and then after twice as long each time, until polling takes over */
+  protected final static long COMMIT_RECHECK_TIME = 1000L;
+
+  /** Signals that arrive faster than this, in milliseconds, are combined, so that a thread does not spend all
+  * its time re-examining the jobs table while, for example, worker threads keep running out of documents */
+  protected final static long MIN_WAKE_INTERVAL = 1000L;
+
+  /** Maximum number of future times remembered for one event.  Those beyond are covered by polling. */
+  protected final static int MAX_SCHEDULED_TIMES = 1000;
+
+  /** The poll interval */
+  protected static volatile long pollInterval = DEFAULT_POLL_INTERVAL;
+
+  /** One queue per event */
+  protected final static EventQueue[] queues;
+
+  static
+  {
+    queues = new EventQueue[EVENT_COUNT];
+    int i = 0;
+    while (i < EVENT_COUNT)
+    {
+      queues[i++] = new EventQueue();
+    }
+  }
+
+  /** Set the poll interval.
+  *@param interval is the longest time, in milliseconds, that a waiting thread sleeps without being signalled.
+  */
+  public static void setPollInterval(long interval)
+  {
+    pollInterval = interval;
+  }
+
+  /** Get the poll interval.
+  *@return the poll interval, in milliseconds.
+  */
+  public static long getPollInterval()
+  {
+    return pollInterval;
+  }
+
+  /** Signal that an event should be acted upon now.
+  *@param event is the event.
+  */
+  public static void signal(int event)
+  {
+    queues[event].schedule(System.currentTimeMillis());
+  }
+
+  /** Signal that an event should be acted upon now, where the change that caused it belongs to a transaction that
+  * has not been committed yet.
+  *@param event is the event.
+  */
+  public static void signalUncommitted(int event)
+  {
+    long currentTime = System.currentTimeMillis();
+    queues[event].schedule(currentTime);
+    // We can't know when the transaction commits, so keep looking until the poll interval would cover it anyway
+    long interval = pollInterval;
+    long recheckTime = COMMIT_RECHECK_TIME;
+    while (recheckTime < interval)
+    {
+      queues[event].schedule(currentTime + recheckTime);
+      recheckTime *= 2L;
+    }
+  }
+
+  /** Schedule an event for a future time.
+  *@param event is the event.
+  *@param time is the time, in milliseconds since epoch, at which the event should be acted upon.
+  */
+  public static void schedule(int event, long time)
+  {
+    queues[event].schedule(time);
+  }
+
+  /** Wait until an event is due, or until the poll interval has passed.
+  *@param event is the event.
+  */
+  public static void waitForEvent(int event)
+    throws InterruptedException
+  {
+    queues[event].waitForEvent(pollInterval);
+  }
+
+  /** Wait until an event is due, or until a given time has passed.
+  *@param event is the event.
+  *@param maxWaitTime is the longest time to wait, in milliseconds.  The poll interval applies if it is shorter.
+  */
+  public static void waitForEvent(int event, long maxWaitTime)
+    throws InterruptedException
+  {
+    long interval = pollInterval;
+    queues[event].waitForEvent((maxWaitTime < interval)?maxWaitTime:interval);
+  }
+
+  /** The times at which one event is due.
+  */
+  protected static class EventQueue
+  {
+    /** Due times, earliest first */
+    protected final TreeSet<Long> times = new TreeSet<Long>();
+    /** When the waiting thread last woke up */
+    protected long lastWakeTime = 0L;
+
+    public EventQueue()
+    {
+    }
+
+    /** Add a due time, and wake up the waiting thread so it can reconsider how long to wait.
+    */
+    public synchronized void schedule(long time)
+    {
+      times.add(new Long(time));
+      if (times.size() > MAX_SCHEDULED_TIMES)
+        times.remove(times.last());
+      notifyAll();
+    }
+
+    /** Wait until a due time is reached, or the wait time runs out.  All due times that have been reached
+    * are consumed, since one pass by the waiting thread takes care of all of them.
+    */
+    public synchronized void waitForEvent(long maxWaitTime)
+      throws InterruptedException
+    {
+      long deadline = System.currentTimeMillis() + maxWaitTime;
+      while (true)
+      {
+        long currentTime = System.currentTimeMillis();
+        if (currentTime >= deadline)
+          break;
+        long waitTime = deadline - currentTime;
+        if (times.size() > 0)
+        {
+          long nextTime = times.first().longValue();
+          if (nextTime < lastWakeTime + MIN_WAKE_INTERVAL)
+            nextTime = lastWakeTime + MIN_WAKE_INTERVAL;
+          if (nextTime <= currentTime)
+            break;
+          if (nextTime - currentTime < waitTime)
+            waitTime = nextTime - currentTime;
+        }
+        wait(waitTime);
+      }
+      long currentTime = System.currentTimeMillis();
+      while (times.size() > 0 && times.first().longValue() <= currentTime)
+      {
+        times.remove(times.first());
+      }
+      lastWakeTime = currentTime;
+    }
+  }
+
+}
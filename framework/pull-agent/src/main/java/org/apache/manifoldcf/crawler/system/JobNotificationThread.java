@@ -188,7 +188,7 @@ public class JobNotificationThread extends Thread
               throw exception;
           }
 
-          ManifoldCF.sleep(10000L);
+          JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_NOTIFY);
         }
         catch (ManifoldCFException e)
         {
@@ -0,0 +1,325 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.system;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.system.Logging;
+import java.util.*;
+
+/** This class represents the job purge thread.  This thread's job is to find jobs that have been marked to be
+* forgotten, and to remove all of their records - the output connection's records of what was indexed, as well as
+* the crawler's own records - without asking the output connection to delete any documents.
+* The output connection's records are forgotten one piece at a time, where a piece is a range of document identifier
+* hashes, and the pieces are handed out to a set of purge worker threads so that they are done in parallel.  Once
+* every piece is done, the crawler's records for the job are removed with one set-based delete per table.  Since
+* every step may be done more than once, nothing needs to be cleaned up if the agents process stops partway through.
+*/
+public class JobPurgeThread extends Thread
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** The number of document identifier hashes handled at once by a purge worker */
+  protected final static int BATCH_SIZE = 1000;
+
+  // Local data
+  /** The number of purge workers to use for each job */
+  protected int workerCount;
+
+  /** Constructor.
+  *@param workerCount is the number of purge worker threads to use for each job.
+  */
+  public JobPurgeThread(int workerCount)
+    throws ManifoldCFException
+  {
+    super();
+    this.workerCount = workerCount;
+    setName("Job purge thread");
+    setDaemon(true);
+  }
+
+  public void run()
+  {
+    try
+    {
+      // Create a thread context object.
+      IThreadContext threadContext = ThreadContextFactory.make();
+      IJobManager jobManager = JobManagerFactory.make(threadContext);
+
+      // Loop
+      while (true)
+      {
+        // Do another try/catch around everything in the loop
+        try
+        {
+          Logging.threads.debug("Purging jobs that are ready to be forgotten");
+          Long[] jobIDs = jobManager.getJobsReadyForPurge();
+          int i = 0;
+          while (i < jobIDs.length)
+          {
+            purgeJob(jobManager,jobIDs[i++]);
+          }
+
+          // Sleep for the retry interval.
+          JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_PURGE);
+        }
+        catch (ManifoldCFException e)
+        {
+          if (e.getErrorCode() == ManifoldCFException.INTERRUPTED)
+            break;
+
+          if (e.getErrorCode() == ManifoldCFException.DATABASE_CONNECTION_ERROR)
+          {
+            Logging.threads.error("Job purge thread aborting and restarting due to database connection reset: "+e.getMessage(),e);
+            try
+            {
+              // Give the database a chance to catch up/wake up
+              ManifoldCF.sleep(10000L);
+            }
+            catch (InterruptedException se)
+            {
+              break;
+            }
+            continue;
+          }
+
+          // Log it, but keep the thread alive
+          Logging.threads.error("Exception tossed: "+e.getMessage(),e);
+
+          if (e.getErrorCode() == ManifoldCFException.SETUP_ERROR)
+          {
+            // Shut the whole system down!
+            System.exit(1);
+          }
+
+          // Don't spin on a job that keeps failing
+          try
+          {
+            JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_PURGE);
+          }
+          catch (InterruptedException se)
+          {
+            break;
+          }
+        }
+        catch (InterruptedException e)
+        {
+          // We're supposed to quit
+          break;
+        }
+        catch (OutOfMemoryError e)
+        {
+          System.err.println("agents process ran out of memory - shutting down");
+          e.printStackTrace(System.err);
+          System.exit(-200);
+        }
+        catch (Throwable e)
+        {
+          // A more severe error - but stay alive
+          Logging.threads.fatal("Error tossed: "+e.getMessage(),e);
+        }
+      }
+    }
+    catch (Throwable e)
+    {
+      // Severe error on initialization
+      System.err.println("agents process could not start - shutting down");
+      Logging.threads.fatal("JobPurgeThread initialization error tossed: "+e.getMessage(),e);
+      System.exit(-300);
+    }
+  }
+
+  /** Purge one job, using the purge workers.  If any piece fails, the job is left for the next pass.
+  */
+  protected void purgeJob(IJobManager jobManager, Long jobID)
+    throws ManifoldCFException, InterruptedException
+  {
+    IJobDescription jobDesc = jobManager.load(jobID,true);
+    if (jobDesc == null)
+      return;
+
+    Logging.threads.info("Purging job "+jobID);
+    PurgeTasks tasks = new PurgeTasks(jobManager.getPurgePartitionCount());
+    PurgeWorkerThread[] workers = new PurgeWorkerThread[workerCount];
+    int i = 0;
+    while (i < workers.length)
+    {
+      workers[i] = new PurgeWorkerThread(i,tasks,jobID,jobDesc.getConnectionName(),jobDesc.getOutputConnectionName());
+      workers[i].start();
+      i++;
+    }
+    try
+    {
+      i = 0;
+      while (i < workers.length)
+      {
+        workers[i++].join();
+      }
+    }
+    catch (InterruptedException e)
+    {
+      i = 0;
+      while (i < workers.length)
+      {
+        workers[i++].interrupt();
+      }
+      throw e;
+    }
+
+    Throwable error = tasks.getError();
+    if (error != null)
+    {
+      if (error instanceof ManifoldCFException)
+        throw (ManifoldCFException)error;
+      if (error instanceof Error)
+        throw (Error)error;
+      if (error instanceof RuntimeException)
+        throw (RuntimeException)error;
+      throw new ManifoldCFException("Purge of job "+jobID+" failed: "+error.getMessage(),error);
+    }
+
+    jobManager.finishJobPurge(jobID);
+    Logging.threads.info("Finished purging job "+jobID);
+  }
+
+  /** The pieces of one job that still need purging, shared by its purge workers.
+  */
+  protected static class PurgeTasks
+  {
+    protected int nextPartition = 0;
+    protected int partitionCount;
+    protected Throwable error = null;
+
+    public PurgeTasks(int partitionCount)
+    {
+      this.partitionCount = partitionCount;
+    }
+
+    /** Get the next piece to purge.
+    *@return the piece number, or -1 if there are no more, or if a worker has failed.
+    */
+    public synchronized int getNextPartition()
+    {
+      if (error != null || nextPartition == partitionCount)
+        return -1;
+      return nextPartition++;
+    }
+
+    /** Note that a worker has failed.
+    */
+    public synchronized void noteError(Throwable e)
+    {
+      if (error == null)
+        error = e;
+    }
+
+    public synchronized Throwable getError()
+    {
+      return error;
+    }
+  }
+
+  /** A purge worker.  It takes pieces of the job and purges them until there are none left.
+  */
+  protected static class PurgeWorkerThread extends Thread
+  {
+    protected PurgeTasks tasks;
+    protected Long jobID;
+    protected String connectionName;
+    protected String outputConnectionName;
+
+    public PurgeWorkerThread(int workerID, PurgeTasks tasks, Long jobID, String connectionName, String outputConnectionName)
+    {
+      super();
+      this.tasks = tasks;
+      this.jobID = jobID;
+      this.connectionName = connectionName;
+      this.outputConnectionName = outputConnectionName;
+      setName("Purge worker thread '"+Integer.toString(workerID)+"'");
+      setDaemon(true);
+    }
+
+    public void run()
+    {
+      try
+      {
+        // Create a thread context object.
+        IThreadContext threadContext = ThreadContextFactory.make();
+        IJobManager jobManager = JobManagerFactory.make(threadContext);
+        IIncrementalIngester ingester = IncrementalIngesterFactory.make(threadContext);
+
+        while (true)
+        {
+          if (Thread.currentThread().isInterrupted())
+            throw new ManifoldCFException("Interrupted",ManifoldCFException.INTERRUPTED);
+
+          int partition = tasks.getNextPartition();
+          if (partition == -1)
+            break;
+
+          // Have the output connection forget the documents that no other job owns.  The crawler's
+          // records stay until every piece is done, since they are what identifies the documents.
+          String afterHash = null;
+          while (true)
+          {
+            if (Thread.currentThread().isInterrupted())
+              throw new ManifoldCFException("Interrupted",ManifoldCFException.INTERRUPTED);
+
+            String[] hashes = jobManager.getPurgeDocumentIdentifierHashes(jobID,partition,afterHash,BATCH_SIZE);
+            if (hashes.length == 0)
+              break;
+            String[] unsharedHashes = jobManager.getUnsharedDocumentIdentifierHashes(jobID,hashes);
+            if (unsharedHashes.length > 0)
+            {
+              String[] classes = new String[unsharedHashes.length];
+              int i = 0;
+              while (i < classes.length)
+              {
+                classes[i++] = connectionName;
+              }
+              ingester.documentForgetMultiple(outputConnectionName,classes,unsharedHashes);
+            }
+            if (hashes.length < BATCH_SIZE)
+              break;
+            afterHash = hashes[hashes.length-1];
+          }
+        }
+      }
+      catch (ManifoldCFException e)
+      {
+        if (e.getErrorCode() != ManifoldCFException.INTERRUPTED)
+          Logging.threads.error("Purge worker failed for job "+jobID+": "+e.getMessage(),e);
+        tasks.noteError(e);
+      }
+      catch (OutOfMemoryError e)
+      {
+        System.err.println("agents process ran out of memory - shutting down");
+        e.printStackTrace(System.err);
+        System.exit(-200);
+      }
+      catch (Throwable e)
+      {
+        Logging.threads.fatal("Purge worker error tossed for job "+jobID+": "+e.getMessage(),e);
+        tasks.noteError(e);
+      }
+    }
+  }
+
+}
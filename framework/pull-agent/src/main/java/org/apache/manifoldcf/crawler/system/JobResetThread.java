@@ -97,9 +97,9 @@ public class JobResetThread extends Thread
               desc.getID().toString()+"("+desc.getDescription()+")",null,null,null);
           }
           
-          // If there were any job aborts, we must reprioritize all active documents, since we've done something
-          // not predicted by the algorithm that assigned those priorities.  This is, of course, quite expensive,
-          // but it cannot be helped (at least, I cannot find a way to avoid it).
+          // If there were any job aborts or resumes, we must reset document prioritization, since we've done something
+          // not predicted by the algorithm that assigned those priorities.  This resets the queue tracker's bins to the
+          // current level of the queue; the resumed jobs' documents get new priorities from the set priority thread.
           //
           if (jobStops.size() > 0 || jobResumes.size() > 0)
           {
@@ -111,7 +111,7 @@ public class JobResetThread extends Thread
 
           }
           else
-            ManifoldCF.sleep(10000L);
+            JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_RESET);
         }
         catch (ManifoldCFException e)
         {
@@ -89,7 +89,7 @@ public class JobStartThread extends Thread
               desc.getID().toString()+"("+desc.getDescription()+")",null,null,null);
           }
           // Loop around again, after resting a while
-          ManifoldCF.sleep(10000L);
+          JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_JOBSTART);
         }
         catch (ManifoldCFException e)
         {
@@ -22,6 +22,7 @@ import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.authorities.interfaces.*;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
 
 import java.io.*;
 import java.security.GeneralSecurityException;
@@ -62,6 +63,7 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
   protected static StartupThread startupThread = null;
   protected static StartDeleteThread startDeleteThread = null;
   protected static JobDeleteThread jobDeleteThread = null;
+  protected static JobPurgeThread jobPurgeThread = null;
   protected static WorkerThread[] workerThreads = null;
   protected static ExpireStufferThread expireStufferThread = null;
   protected static ExpireThread[] expireThreads = null;
@@ -96,15 +98,17 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
   protected static float stuffAmtFactor = 0.5f;
 
   // Properties
-  protected static final String workerThreadCountProperty = "org.apache.manifoldcf.crawler.threads";
+  public static final String workerThreadCountProperty = "org.apache.manifoldcf.crawler.threads";
   protected static final String deleteThreadCountProperty = "org.apache.manifoldcf.crawler.deletethreads";
   protected static final String cleanupThreadCountProperty = "org.apache.manifoldcf.crawler.cleanupthreads";
   protected static final String expireThreadCountProperty = "org.apache.manifoldcf.crawler.expirethreads";
   protected static final String lowWaterFactorProperty = "org.apache.manifoldcf.crawler.lowwaterfactor";
   protected static final String stuffAmtFactorProperty = "org.apache.manifoldcf.crawler.stuffamountfactor";
+  protected static final String jobPollIntervalProperty = "org.apache.manifoldcf.crawler.jobpollinterval";
   protected static final String connectorsConfigurationFileProperty = "org.apache.manifoldcf.connectorsconfigurationfile";
   protected static final String databaseSuperuserNameProperty = "org.apache.manifoldcf.dbsuperusername";
   protected static final String databaseSuperuserPasswordProperty = "org.apache.manifoldcf.dbsuperuserpassword";
+  protected static final String apiMaxRowCountProperty = "org.apache.manifoldcf.api.maxrowcount";
   protected static final String salt = "org.apache.manifoldcf.salt";
 
   /** This object is used to make sure the initialization sequence is atomic.  Shutdown cannot occur until the system is in a known state. */
@@ -571,6 +575,10 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
       stuffAmtFactor = new Float(stuffAmtFactorString).floatValue();
       if (stuffAmtFactor < 0.1 || stuffAmtFactor > 1000.0)
         throw new ManifoldCFException("Illegal value for the stuffing amount factor");
+      int jobPollInterval = getIntProperty(jobPollIntervalProperty,(int)(JobLifecycleScheduler.DEFAULT_POLL_INTERVAL/1000L));
+      if (jobPollInterval < 1)
+        throw new ManifoldCFException("Illegal value for the job poll interval");
+      JobLifecycleScheduler.setPollInterval(((long)jobPollInterval) * 1000L);
 
 
       // Create the threads and objects.  This MUST be completed before there is any chance of "shutdownSystem" getting called.
@@ -595,6 +603,7 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
       finisherThread = new FinisherThread();
       notificationThread = new JobNotificationThread();
       jobDeleteThread = new JobDeleteThread();
+      jobPurgeThread = new JobPurgeThread(numDeleteThreads);
       stufferThread = new StufferThread(documentQueue,numWorkerThreads,workerResetManager,queueTracker,blockingDocuments,lowWaterFactor,stuffAmtFactor);
       expireStufferThread = new ExpireStufferThread(expireQueue,numExpireThreads,workerResetManager);
       setPriorityThread = new SetPriorityThread(queueTracker,numWorkerThreads,blockingDocuments);
@@ -665,38 +674,17 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
 
         // First, get a job manager
         IJobManager jobManager = JobManagerFactory.make(threadContext);
-        IRepositoryConnectionManager mgr = RepositoryConnectionManagerFactory.make(threadContext);
 
         Logging.threads.debug("Agents process starting initialization...");
 
         // Call the database to get it ready
         jobManager.prepareForStart();
 
-        Logging.threads.debug("Agents process reprioritizing documents...");
+        Logging.threads.debug("Agents process resetting document priorities...");
 
-        HashMap connectionMap = new HashMap();
-        HashMap jobDescriptionMap = new HashMap();
-        // Reprioritize all documents in the jobqueue, 1000 at a time
-        long currentTime = System.currentTimeMillis();
-
-        // Do the 'not yet processed' documents only.  Documents that are queued for reprocessing will be assigned
-        // new priorities.  Already processed documents won't.  This guarantees that our bins are appropriate for current thread
-        // activity.
-        // In order for this to be the correct functionality, ALL reseeding and requeuing operations MUST reset the associated document
-        // priorities.
-        while (true)
-        {
-          long startTime = System.currentTimeMillis();
-
-          DocumentDescription[] docs = jobManager.getNextNotYetProcessedReprioritizationDocuments(currentTime, 10000);
-          if (docs.length == 0)
-            break;
-
-          // Calculate new priorities for all these documents
-          writeDocumentPriorities(threadContext,mgr,jobManager,docs,connectionMap,jobDescriptionMap,queueTracker,currentTime);
-
-          Logging.threads.debug("Reprioritized "+Integer.toString(docs.length)+" not-yet-processed documents in "+new Long(System.currentTimeMillis()-startTime)+" ms");
-        }
+        // Queued documents keep the priorities they already have; the queue tracker just needs to know
+        // where the queue currently stands.
+        resetAllDocumentPriorities(threadContext,queueTracker,System.currentTimeMillis());
 
         Logging.threads.debug("Agents process initialization complete!");
 
@@ -707,6 +695,7 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
         finisherThread.start();
         notificationThread.start();
         jobDeleteThread.start();
+        jobPurgeThread.start();
         stufferThread.start();
         expireStufferThread.start();
         setPriorityThread.start();
@@ -770,7 +759,7 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
     Logging.root.info("Shutting down pull-agent...");
     synchronized (startupLock)
     {
-      while (initializationThread != null || jobDeleteThread != null || startupThread != null || startDeleteThread != null ||
+      while (initializationThread != null || jobDeleteThread != null || jobPurgeThread != null || startupThread != null || startDeleteThread != null ||
         jobStartThread != null || stufferThread != null ||
         finisherThread != null || notificationThread != null || workerThreads != null || expireStufferThread != null || expireThreads != null ||
         deleteStufferThread != null || deleteThreads != null ||
@@ -796,6 +785,10 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
         {
           jobDeleteThread.interrupt();
         }
+        if (jobPurgeThread != null)
+        {
+          jobPurgeThread.interrupt();
+        }
         if (startupThread != null)
         {
           startupThread.interrupt();
@@ -906,6 +899,11 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
           if (!jobDeleteThread.isAlive())
             jobDeleteThread = null;
         }
+        if (jobPurgeThread != null)
+        {
+          if (!jobPurgeThread.isAlive())
+            jobPurgeThread = null;
+        }
         if (startupThread != null)
         {
           if (!startupThread.isAlive())
@@ -1406,50 +1404,25 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
   }
 
   /** Reset all (active) document priorities.  This operation may occur due to various externally-triggered
-  * events, such a job abort, pause, resume, wait, or unwait.
+  * events, such a job abort, pause, resume, wait, or unwait, and also happens when the agents process starts.
+  * The cost does not depend on the size of the queue: documents that still have priorities keep them, and the queue
+  * tracker's bins are reset to the level of the best priority on the queue, so that bins are brought up to that level
+  * lazily as they are next used.  Documents that have no priority (e.g. those of a job that has just been resumed) are
+  * picked up by the set priority thread in the background.
   */
   public static void resetAllDocumentPriorities(IThreadContext threadContext, QueueTracker queueTracker, long currentTime)
     throws ManifoldCFException
   {
     IJobManager jobManager = JobManagerFactory.make(threadContext);
-    IRepositoryConnectionManager connectionManager = RepositoryConnectionManagerFactory.make(threadContext);
-    
-    // Reset the queue tracker
-    queueTracker.beginReset();
-    // Perform the reprioritization, for all active documents in active jobs.  During this time,
-    // it is safe to have other threads assign new priorities to documents, but it is NOT safe
-    // for other threads to attempt to change the minimum priority level.  The queuetracker object
-    // will therefore block that from occurring, until the reset is complete.
-    try
-    {
-      // Reprioritize all documents in the jobqueue, 1000 at a time
-
-      HashMap connectionMap = new HashMap();
-      HashMap jobDescriptionMap = new HashMap();
-
-      // Do the 'not yet processed' documents only.  Documents that are queued for reprocessing will be assigned
-      // new priorities.  Already processed documents won't.  This guarantees that our bins are appropriate for current thread
-      // activity.
-      // In order for this to be the correct functionality, ALL reseeding and requeuing operations MUST reset the associated document
-      // priorities.
-      while (true)
-      {
-        long startTime = System.currentTimeMillis();
 
-        DocumentDescription[] docs = jobManager.getNextNotYetProcessedReprioritizationDocuments(currentTime, 10000);
-        if (docs.length == 0)
-          break;
+    Double bestPriority = jobManager.getBestQueuedDocumentPriority(currentTime);
+    queueTracker.reset(bestPriority);
 
-        // Calculate new priorities for all these documents
-        writeDocumentPriorities(threadContext,connectionManager,jobManager,docs,connectionMap,jobDescriptionMap,queueTracker,currentTime);
+    if (Logging.threads.isDebugEnabled())
+      Logging.threads.debug("Reset document priorities; best queued priority is "+((bestPriority==null)?"none":bestPriority.toString()));
 
-        Logging.threads.debug("Reprioritized "+Integer.toString(docs.length)+" not-yet-processed documents in "+new Long(System.currentTimeMillis()-startTime)+" ms");
-      }
-    }
-    finally
-    {
-      queueTracker.endReset();
-    }
+    // Let the set priority thread look for documents that need a priority
+    JobLifecycleScheduler.signal(JobLifecycleScheduler.EVENT_PRIORITY);
   }
   
   /** Write a set of document priorities, based on the current queue tracker.
@@ -1463,7 +1436,9 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
 
     double[] priorities = new double[descs.length];
 
-    // Go through the documents and calculate the priorities
+    // Look up the connection for each document, and group the documents by connection
+    IRepositoryConnection[] connections = new IRepositoryConnection[descs.length];
+    Map<String,List<Integer>> connectionDocuments = new HashMap<String,List<Integer>>();
     int i = 0;
     while (i < descs.length)
     {
@@ -1481,31 +1456,39 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
         connection = mgr.load(connectionName);
         connectionMap.put(connectionName,connection);
       }
+      connections[i] = connection;
+      List<Integer> indexes = connectionDocuments.get(connectionName);
+      if (indexes == null)
+      {
+        indexes = new ArrayList<Integer>();
+        connectionDocuments.put(connectionName,indexes);
+      }
+      indexes.add(new Integer(i));
+      i++;
+    }
 
-      String[] binNames;
-      // Grab a connector handle
-      IRepositoryConnector connector = RepositoryConnectorFactory.grab(threadContext,
-        connection.getClassName(),
-        connection.getConfigParams(),
-        connection.getMaxConnections());
-      try
+    // Get the bins a connection at a time, without checking out pooled connectors, and calculate the priorities
+    for (List<Integer> indexes : connectionDocuments.values())
+    {
+      IRepositoryConnection connection = connections[indexes.get(0).intValue()];
+      String[] documentIdentifiers = new String[indexes.size()];
+      int j = 0;
+      while (j < documentIdentifiers.length)
       {
-        if (connector == null)
-          binNames = new String[]{""};
-        else
-          // Get the bins for the document identifier
-          binNames = connector.getBinNames(descs[i].getDocumentIdentifier());
+        documentIdentifiers[j] = descs[indexes.get(j).intValue()].getDocumentIdentifier();
+        j++;
       }
-      finally
+      String[][] binNames = RepositoryConnectorFactory.getBinNamesMultiple(threadContext,
+        connection.getClassName(),connection.getConfigParams(),documentIdentifiers);
+      j = 0;
+      while (j < documentIdentifiers.length)
       {
-        RepositoryConnectorFactory.release(connector);
+        int index = indexes.get(j).intValue();
+        priorities[index] = queueTracker.calculatePriority(binNames[j],connection);
+        if (Logging.scheduling.isDebugEnabled())
+          Logging.scheduling.debug("Document '"+documentIdentifiers[j]+"' given priority "+new Double(priorities[index]).toString());
+        j++;
       }
-
-      priorities[i] = queueTracker.calculatePriority(binNames,connection);
-      if (Logging.scheduling.isDebugEnabled())
-        Logging.scheduling.debug("Document '"+dd.getDocumentIdentifier()+"' given priority "+new Double(priorities[i]).toString());
-
-      i++;
     }
 
     // Now, write all the priorities we can.
@@ -1651,6 +1634,10 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
   protected final static String API_ROWNODE = "row";
   protected final static String API_COLUMNNODE = "column";
   protected final static String API_ACTIVITYNODE = "activity";
+  protected final static String API_NEXTSTARTROWNODE = "next_startrow";
+  
+  /** The default maximum number of rows a single report call returns */
+  protected final static int DEFAULT_API_MAXROWCOUNT = 10000;
   
   // Connector nodes
   protected static final String CONNECTORNODE_DESCRIPTION = "description";
@@ -1694,6 +1681,24 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
   public static final int READRESULT_FOUND = 1;
   public static final int READRESULT_BADARGS = 2;
 
+  /** The error returned for metrics requests when the agents run in another process */
+  public static final String METRICS_UNAVAILABLE = "Metrics are only available when the agents run in the same process as the API";
+
+  /** Read performance metrics.  Metrics are kept per process, so they are only available when the
+  * agents run in the process serving the API, i.e. in a single-process deployment.
+  */
+  protected static int apiReadMetrics(IThreadContext tc, Configuration output)
+    throws ManifoldCFException
+  {
+    if (!agentsRunning())
+    {
+      createErrorNode(output,METRICS_UNAVAILABLE);
+      return READRESULT_NOTFOUND;
+    }
+    MetricsRegistry.describeMetrics(output);
+    return READRESULT_FOUND;
+  }
+
   /** Read jobs */
   protected static int apiReadJobs(IThreadContext tc, Configuration output)
     throws ManifoldCFException
@@ -2446,6 +2451,10 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
       }
       else
         rowCount = new Integer(rowCountList.get(0)).intValue();
+      // Large reports must be fetched a page at a time, using the next_startrow cursor
+      int limitedRowCount = limitRowCount(rowCount,getIntProperty(apiMaxRowCountProperty,DEFAULT_API_MAXROWCOUNT));
+      boolean rowCountLimited = (limitedRowCount != rowCount);
+      rowCount = limitedRowCount;
 
       List<String> reportTypeList = queryParameters.get("report");
       String reportType;
@@ -2508,6 +2517,8 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
       }
 
       createResultsetNode(output,result,resultColumns);
+      if (rowCountLimited)
+        createNextStartRowNode(output,result,startRow,rowCount);
     }
     catch (ManifoldCFException e)
     {
@@ -2701,6 +2712,10 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
       }
       else
         rowCount = new Integer(rowCountList.get(0)).intValue();
+      // Large reports must be fetched a page at a time, using the next_startrow cursor
+      int limitedRowCount = limitRowCount(rowCount,getIntProperty(apiMaxRowCountProperty,DEFAULT_API_MAXROWCOUNT));
+      boolean rowCountLimited = (limitedRowCount != rowCount);
+      rowCount = limitedRowCount;
 
       List<String> reportTypeList = queryParameters.get("report");
       String reportType;
@@ -2890,6 +2905,8 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
       }
 
       createResultsetNode(output,result,resultColumns);
+      if (rowCountLimited)
+        createNextStartRowNode(output,result,startRow,rowCount);
     }
     catch (ManifoldCFException e)
     {
@@ -2923,6 +2940,30 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
     }
   }
   
+  /** Cap the row count a report call asks for at the configured maximum.
+  *@param rowCount is the requested row count; a negative value asks for all rows.
+  *@param maxRowCount is the configured maximum; zero or less means no maximum.
+  *@return the row count to use.
+  */
+  protected static int limitRowCount(int rowCount, int maxRowCount)
+  {
+    if (maxRowCount > 0 && (rowCount < 0 || rowCount > maxRowCount))
+      return maxRowCount;
+    return rowCount;
+  }
+  
+  /** If a report whose row count was limited came back with as many rows as the limit, there may be more;
+  * tell the client where the next page starts.
+  */
+  protected static void createNextStartRowNode(Configuration output, IResultSet result, int startRow, int rowCount)
+  {
+    if (result.getRowCount() < rowCount)
+      return;
+    ConfigurationNode node = new ConfigurationNode(API_NEXTSTARTROWNODE);
+    node.setValue(Integer.toString(startRow + rowCount));
+    output.addChild(output.getChildCount(),node);
+  }
+  
   /** Read the activity list for a given connection name. */
   protected static int apiReadRepositoryConnectionActivities(IThreadContext tc, Configuration output, String connectionName)
     throws ManifoldCFException
@@ -2962,6 +3003,10 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
     {
       return apiReadJobs(tc,output);
     }
+    else if (path.equals("metrics"))
+    {
+      return apiReadMetrics(tc,output);
+    }
     else if (path.startsWith("jobs/"))
     {
       Long jobID = new Long(path.substring("jobs/".length()));
@@ -3254,6 +3299,20 @@ public class ManifoldCF extends org.apache.manifoldcf.agents.system.ManifoldCF
         createErrorNode(output,e);
       }
     }
+    else if (path.startsWith("forget/"))
+    {
+      Long jobID = new Long(path.substring("forget/".length()));
+      try
+      {
+        IJobManager jobManager = JobManagerFactory.make(tc);
+        jobManager.forgetJob(jobID);
+        return WRITERESULT_CREATED;
+      }
+      catch (ManifoldCFException e)
+      {
+        createErrorNode(output,e);
+      }
+    }
     else if (path.startsWith("jobs/"))
     {
       Long jobID = new Long(path.substring("jobs/".length()));
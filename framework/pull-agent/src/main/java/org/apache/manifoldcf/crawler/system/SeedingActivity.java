@@ -258,6 +258,14 @@ public class SeedingActivity implements ISeedingActivity
       throw new ServiceInterruption("Job no longer active",System.currentTimeMillis());
   }
 
+  /** Get the identifier of the job being seeded.
+  *@return the job identifier.
+  */
+  public Long getJobID()
+  {
+    return jobID;
+  }
+
   /** Create a global string from a simple string.
   *@param simpleString is the simple string.
   *@return a global string.
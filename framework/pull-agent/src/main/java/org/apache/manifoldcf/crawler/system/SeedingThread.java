@@ -102,7 +102,7 @@ public class SeedingThread extends Thread
             if (seedJobs.length == 0)
             {
               Logging.threads.debug("Seeding thread found nothing to do");
-              ManifoldCF.sleep(waitTime);
+              JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_SEEDING,waitTime);
               continue;
             }
 
@@ -138,7 +138,7 @@ public class SeedingThread extends Thread
                   // Get the number of link types.
                   String[] legalLinkTypes = connector.getRelationshipTypes();
 
-                  int model = connector.getConnectorModel();
+                  int model = connector.getConnectorModel(jobID,jobDescription.getSpecification(),lastJobTime,jobType);
 
                   try
                   {
@@ -225,7 +225,7 @@ public class SeedingThread extends Thread
           }
 
           // Sleep for the retry interval.
-          ManifoldCF.sleep(waitTime);
+          JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_SEEDING,waitTime);
         }
         catch (ManifoldCFException e)
         {
@@ -28,15 +28,19 @@ import java.lang.reflect.*;
 /** This class describes a thread whose job it is to continuously reset document priorities, based on recent
 * queuing activity.  The goal is to evenly distribute queued documents across jobs and within classes of documents
 * inside jobs.
-* The way it works is for the thread to do some number of pending documents at a time.  The documents are fetched in such
-* a way as to get the ones that have been least recently assessed preferentially.  The assessment process involves
-* getting hold of a connector for the job that owns the document, and calculating the priority based on the recent
-* history as maintained in the queueTracker object.
+* The way it works is for the thread to do some number of pending documents at a time.  Documents the stuffer thread
+* has identified as blocking are done first, followed by documents in active jobs that have no priority at all (which is
+* the case for a job that has just been resumed).  The assessment process involves
+* finding the bins for the document using the connection of the job that owns it, and calculating the priority based
+* on the recent history as maintained in the queueTracker object.
 */
 public class SetPriorityThread extends Thread
 {
   public static final String _rcsid = "@(#)$Id: SetPriorityThread.java 988245 2010-08-23 18:39:35Z kwright $";
 
+  /** Maximum number of documents to reprioritize in one go */
+  protected final static int MAX_BATCH_SIZE = 100;
+
   // Local data
   // This is the queue tracker object.
   protected QueueTracker queueTracker;
@@ -123,11 +127,28 @@ public class SetPriorityThread extends Thread
 
             // Cycle through the current list of stuffer-identified documents until we come to the end.  Reprioritize these
             // first.
-            DocumentDescription desc = blockingDocuments.getBlockingDocument();
-            if (desc != null)
+            // Take as many as are waiting, up to a limit, so that the bins and priorities get calculated in bulk.
+            List<DocumentDescription> descList = new ArrayList<DocumentDescription>();
+            while (descList.size() < MAX_BATCH_SIZE && processedCount + descList.size() < cycleCount)
+            {
+              DocumentDescription desc = blockingDocuments.getBlockingDocument();
+              if (desc == null)
+                break;
+              descList.add(desc);
+            }
+            if (descList.size() > 0)
+            {
+              ManifoldCF.writeDocumentPriorities(threadContext,mgr,jobManager,descList.toArray(new DocumentDescription[0]),connectionMap,jobDescriptionMap,queueTracker,currentTime);
+              processedCount += descList.size();
+              continue;
+            }
+            // Next, documents in active jobs that have lost their priorities.  These are found through the docpriority
+            // index, so the cost is proportional to the number of such documents, not to the size of the queue.
+            DocumentDescription[] descs = jobManager.getNextUnprioritizedDocuments(Math.min(MAX_BATCH_SIZE,cycleCount - processedCount));
+            if (descs.length > 0)
             {
-              ManifoldCF.writeDocumentPriorities(threadContext,mgr,jobManager,new DocumentDescription[]{desc},connectionMap,jobDescriptionMap,queueTracker,currentTime);
-              processedCount++;
+              ManifoldCF.writeDocumentPriorities(threadContext,mgr,jobManager,descs,connectionMap,jobDescriptionMap,queueTracker,currentTime);
+              processedCount += descs.length;
               continue;
             }
             /* no longer useful given current architecture; only need to reprioritize blocking documents
@@ -145,7 +166,7 @@ public class SetPriorityThread extends Thread
             }
             */
             Logging.threads.debug("Done reprioritizing because no more documents to reprioritize");
-            ManifoldCF.sleep(30000L);
+            JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_PRIORITY);
             break;
 
           }
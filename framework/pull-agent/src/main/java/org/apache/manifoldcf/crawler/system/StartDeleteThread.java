@@ -71,9 +71,9 @@ public class StartDeleteThread extends Thread
           resetManager.waitForReset(threadContext);
 
           // Accumulate the wait before doing the next check.
-          // We start with 10 seconds, which is the maximum.  If there's a service request
+          // We start with the lifecycle poll interval, which is the maximum.  If there's a service request
           // that's faster than that, we'll adjust the time downward.
-          long waitTime = 10000L;
+          long waitTime = JobLifecycleScheduler.getPollInterval();
 
           if (Logging.threads.isDebugEnabled())
             Logging.threads.debug("Checking for deleting jobs");
@@ -86,7 +86,7 @@ public class StartDeleteThread extends Thread
 
             if (deleteJobs.length == 0)
             {
-              ManifoldCF.sleep(waitTime);
+              JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_STARTDELETE,waitTime);
               continue;
             }
 
@@ -147,7 +147,7 @@ public class StartDeleteThread extends Thread
           }
 
           // Sleep for the retry interval.
-          ManifoldCF.sleep(waitTime);
+          JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_STARTDELETE,waitTime);
         }
         catch (ManifoldCFException e)
         {
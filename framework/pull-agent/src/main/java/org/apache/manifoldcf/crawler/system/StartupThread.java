@@ -75,9 +75,9 @@ public class StartupThread extends Thread
           resetManager.waitForReset(threadContext);
 
           // Accumulate the wait before doing the next check.
-          // We start with 10 seconds, which is the maximum.  If there's a service request
+          // We start with the lifecycle poll interval, which is the maximum.  If there's a service request
           // that's faster than that, we'll adjust the time downward.
-          long waitTime = 10000L;
+          long waitTime = JobLifecycleScheduler.getPollInterval();
 
           if (Logging.threads.isDebugEnabled())
             Logging.threads.debug("Checking for starting jobs");
@@ -90,7 +90,7 @@ public class StartupThread extends Thread
 
             if (startupJobs.length == 0)
             {
-              ManifoldCF.sleep(waitTime);
+              JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_STARTUP,waitTime);
               continue;
             }
 
@@ -131,7 +131,7 @@ public class StartupThread extends Thread
 
                 try
                 {
-                  int model = connector.getConnectorModel();
+                  int model = connector.getConnectorModel(jobID,jobDescription.getSpecification(),lastJobTime,jobType);
                   // Get the number of link types.
                   String[] legalLinkTypes = connector.getRelationshipTypes();
 
@@ -241,7 +241,7 @@ public class StartupThread extends Thread
           }
 
           // Sleep for the retry interval.
-          ManifoldCF.sleep(waitTime);
+          JobLifecycleScheduler.waitForEvent(JobLifecycleScheduler.EVENT_STARTUP,waitTime);
         }
         catch (ManifoldCFException e)
         {
@@ -22,6 +22,7 @@ import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.crawler.system.Logging;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
 import java.util.*;
 import java.lang.reflect.*;
 
@@ -157,6 +158,7 @@ public class StufferThread extends Thread
           DocumentDescription[] descs = jobManager.getNextDocuments(stuffAmt,currentTime,currentTime-lastTime,
             blockingDocuments,queueTracker.getCurrentStatistics(),depthStatistics);
           lastQueueEnd = System.currentTimeMillis();
+          MetricsRegistry.getHistogram("crawler.stuffer.query.time").record(lastQueueEnd - lastQueueStart);
           lastQueueFullResults = (descs.length == stuffAmt);
 
           if (Thread.currentThread().isInterrupted())
@@ -226,48 +228,43 @@ public class StufferThread extends Thread
 
           // Now, do the incremental ingestion version request.
 
-          // We need to go through the list, and segregate them by job, so the individual
-          // connectors can work in batch.
-          documentSets.clear();
+          // Figure out the bins and batch size for every document, one connection at a time.  This is done
+          // without checking out pooled connectors, so we never wait for the worker threads to give one back.
+          String[][] binNamesArray = new String[descs.length][];
+          Map<String,Integer> maxDocumentsMap = new HashMap<String,Integer>();
+          Map<String,List<Integer>> connectionDocuments = new HashMap<String,List<Integer>>();
           i = 0;
           while (i < descs.length)
           {
-            Long jobID = jobs[i].getID();
-
-            // We have to see how we are doing with respect to the limit for this connector.
-            // We also need to log the queuing activity to the queue tracker, so that
-            // the priority setter thread can do its thing properly.
-
-            // Get a repository connection appropriate for this document.
-            IRepositoryConnection connection = connections[i];
+            String connectionName = connections[i].getName();
+            List<Integer> indexes = connectionDocuments.get(connectionName);
+            if (indexes == null)
+            {
+              indexes = new ArrayList<Integer>();
+              connectionDocuments.put(connectionName,indexes);
+            }
+            indexes.add(new Integer(i));
+            i++;
+          }
+          for (String connectionName : connectionDocuments.keySet())
+          {
+            List<Integer> indexes = connectionDocuments.get(connectionName);
+            IRepositoryConnection connection = connections[indexes.get(0).intValue()];
+            String[] documentIdentifiers = new String[indexes.size()];
+            int j = 0;
+            while (j < documentIdentifiers.length)
+            {
+              documentIdentifiers[j] = descs[indexes.get(j).intValue()].getDocumentIdentifier();
+              j++;
+            }
             int maxDocuments;
-            String[] binNames;
+            String[][] binNames;
             try
             {
-              // Grab a connector handle
-              IRepositoryConnector connector = RepositoryConnectorFactory.grab(threadContext,
-                connection.getClassName(),
-                connection.getConfigParams(),
-                connection.getMaxConnections());
-              if (connector == null)
-              {
-                maxDocuments = 1;
-                binNames = new String[]{""};
-              }
-              else
-              {
-                try
-                {
-                  // Convert the document identifier to a URI
-                  maxDocuments = connector.getMaxDocumentRequest();
-                  // Get the bins for the document identifier
-                  binNames = connector.getBinNames(descs[i].getDocumentIdentifier());
-                }
-                finally
-                {
-                  RepositoryConnectorFactory.release(connector);
-                }
-              }
+              maxDocuments = RepositoryConnectorFactory.getMaxDocumentRequest(threadContext,
+                connection.getClassName(),connection.getConfigParams());
+              binNames = RepositoryConnectorFactory.getBinNamesMultiple(threadContext,
+                connection.getClassName(),connection.getConfigParams(),documentIdentifiers);
             }
             catch (ManifoldCFException e)
             {
@@ -280,7 +277,7 @@ public class StufferThread extends Thread
               Logging.threads.error("Stuffer thread ManifoldCF Exception thrown: "+e.getMessage()+" - continuing",
                 e);
               maxDocuments = 1;
-              binNames = new String[]{""};
+              binNames = null;
             }
             catch (OutOfMemoryError e)
             {
@@ -289,7 +286,7 @@ public class StufferThread extends Thread
               System.exit(-200);
               // These are needed because the compiler doesn't know System.exit ends the thread.
               maxDocuments = 1;
-              binNames = new String[]{""};
+              binNames = null;
             }
             catch (Throwable e)
             {
@@ -298,8 +295,30 @@ public class StufferThread extends Thread
               Logging.threads.fatal("Stuffer thread Throwable thrown: "+e.getMessage()+" - continuing",
                 e);
               maxDocuments = 1;
-              binNames = new String[]{""};
+              binNames = null;
             }
+            maxDocumentsMap.put(connectionName,new Integer(maxDocuments));
+            j = 0;
+            while (j < documentIdentifiers.length)
+            {
+              binNamesArray[indexes.get(j).intValue()] = (binNames == null)?new String[]{""}:binNames[j];
+              j++;
+            }
+          }
+
+          // We need to go through the list, and segregate them by job, so the individual
+          // connectors can work in batch.
+          documentSets.clear();
+          i = 0;
+          while (i < descs.length)
+          {
+            Long jobID = jobs[i].getID();
+
+            // We have to see how we are doing with respect to the limit for this connector.
+            // We also need to log the queuing activity to the queue tracker, so that
+            // the priority setter thread can do its thing properly.
+            int maxDocuments = maxDocumentsMap.get(connections[i].getName()).intValue();
+            String[] binNames = binNamesArray[i];
 
             QueuedDocument qd = new QueuedDocument(descs[i],versions[i],binNames);
 
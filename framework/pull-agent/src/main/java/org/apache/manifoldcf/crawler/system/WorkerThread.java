@@ -22,6 +22,7 @@ import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.crawler.system.Logging;
+import org.apache.manifoldcf.core.metrics.MetricsRegistry;
 import java.util.*;
 import java.io.*;
 import java.lang.reflect.*;
@@ -306,7 +307,9 @@ public class WorkerThread extends Thread
                     String outputVersion = ingester.getOutputDescription(outputName,outputSpec);
                       
                     HashMap abortSet = new HashMap();
-                    VersionActivity versionActivity = new VersionActivity(connectionName,connMgr,jobManager,job,ingester,abortSet,outputVersion);
+                    // Per-document service interruptions, keyed by document identifier
+                    Map<String,ServiceInterruption> interruptionSet = new HashMap<String,ServiceInterruption>();
+                    VersionActivity versionActivity = new VersionActivity(connectionName,connMgr,jobManager,job,ingester,abortSet,interruptionSet,outputVersion);
 
                     String aclAuthority = connection.getACLAuthority();
                     boolean isDefaultAuthority = (aclAuthority == null || aclAuthority.length() == 0);
@@ -319,8 +322,11 @@ public class WorkerThread extends Thread
                     String[] newVersionStringArray = null;
                     try
                     {
+                      long versionStartTime = System.currentTimeMillis();
                       newVersionStringArray = connector.getDocumentVersions(currentDocIDArray,oldVersionStringArray,
                         versionActivity,spec,jobType,isDefaultAuthority);
+                      MetricsRegistry.getHistogram("crawler.worker.version.time","connection",connectionName)
+                        .record(System.currentTimeMillis() - versionStartTime);
 
                       if (Logging.threads.isDebugEnabled())
                         Logging.threads.debug("Worker thread done getting versions for "+Integer.toString(currentDocIDArray.length)+" documents");
@@ -399,8 +405,34 @@ public class WorkerThread extends Thread
                         {
                           QueuedDocument qd = activeDocuments.get(i);
                           DocumentDescription dd = qd.getDocumentDescription();
+                          ServiceInterruption documentInterruption = interruptionSet.get(dd.getDocumentIdentifier());
+                          if (documentInterruption != null)
+                          {
+                            // The connector could not get this document's version, but went on with the rest of the set.
+                            // Dispose of it just as a pre-ingest service interruption would have.
+                            Logging.jobs.warn("Pre-ingest service interruption reported for document '"+dd.getDocumentIdentifier()+"' in job "+
+                              job.getID()+" connection '"+job.getConnectionName()+"': "+documentInterruption.getMessage());
+                            if (dd.getFailTime() != -1L && dd.getFailTime() < documentInterruption.getRetryTime() ||
+                              dd.getFailRetryCount() == 0)
+                            {
+                              // Treat this as a hard failure.
+                              if (documentInterruption.isAbortOnFail())
+                              {
+                                rescanList.add(qd);
+                                abortOnFail = new ManifoldCFException("Repeated service interruptions - failure getting document version"+((documentInterruption.getCause()!=null)?": "+documentInterruption.getCause().getMessage():""),documentInterruption.getCause());
+                              }
+                              else
+                                deleteList.add(qd);
+                            }
+                            else
+                            {
+                              jobManager.resetDocument(dd,documentInterruption.getRetryTime(),
+                                IJobManager.ACTION_RESCAN,documentInterruption.getFailTime(),documentInterruption.getFailRetryCount());
+                              qd.setProcessed();
+                            }
+                          }
                           // If this document was aborted, then treat it specially; we never go on to fetch it, for one thing.
-                          if (abortSet.get(dd.getDocumentIdentifier()) != null)
+                          else if (abortSet.get(dd.getDocumentIdentifier()) != null)
                           {
                             // Special treatment for aborted documents.
                             // We ignore the returned version string completely, since it's presumed that processing was not completed for this doc.
@@ -523,7 +555,7 @@ public class WorkerThread extends Thread
 
                         // First, make the things we will need for all subsequent steps.
                         ProcessActivity activity = new ProcessActivity(threadContext,queueTracker,jobManager,ingester,
-                          currentTime,job,connection,connector,connMgr,legalLinkTypes,ingestLogger,abortSet,outputVersion,newParameterVersion);
+                          currentTime,job,connection,connector,connMgr,legalLinkTypes,ingestLogger,abortSet,interruptionSet,outputVersion,newParameterVersion);
                         try
                         {
 
@@ -556,13 +588,66 @@ public class WorkerThread extends Thread
                             try
                             {
 
+                              long processStartTime = System.currentTimeMillis();
                               connector.processDocuments(processIDs,versions,activity,job.getSpecification(),scanOnly,jobType);
+                              MetricsRegistry.getHistogram("crawler.worker.process.time","connection",connectionName)
+                                .record(System.currentTimeMillis() - processStartTime);
 
                               // Flush remaining references into the database!
                               activity.flush();
 
+                              // Documents the connector reported individual service interruptions for are requeued
+                              // instead of finished, while the rest of the set goes on normally.  Documents whose old
+                              // references are retained are not finished either, so that those references are not removed.
+                              String[] finishIDHashes = processIDHashes;
+                              if (interruptionSet.size() > 0 || activity.hasRetainedReferences())
+                              {
+                                List<String> finishIDHashList = new ArrayList<String>(processIDHashes.length);
+                                for (int i = 0; i < processIDs.length; i++)
+                                {
+                                  if (interruptionSet.get(processIDs[i]) == null && !activity.areReferencesRetained(processIDs[i]))
+                                    finishIDHashList.add(processIDHashes[i]);
+                                }
+                                finishIDHashes = finishIDHashList.toArray(new String[0]);
+
+                                List<QueuedDocument> newFinishList = new ArrayList<QueuedDocument>(finishList.size());
+                                for (int i = 0; i < finishList.size(); i++)
+                                {
+                                  QueuedDocument qd = finishList.get(i);
+                                  DocumentDescription dd = qd.getDocumentDescription();
+                                  ServiceInterruption documentInterruption = interruptionSet.get(dd.getDocumentIdentifier());
+                                  if (documentInterruption == null)
+                                  {
+                                    newFinishList.add(qd);
+                                    continue;
+                                  }
+                                  Logging.jobs.warn("Service interruption reported for document '"+dd.getDocumentIdentifier()+"' in job "+
+                                    job.getID()+" connection '"+job.getConnectionName()+"': "+documentInterruption.getMessage());
+                                  if (dd.getFailTime() != -1L && dd.getFailTime() < documentInterruption.getRetryTime() ||
+                                    dd.getFailRetryCount() == 0)
+                                  {
+                                    // Treat this as a hard failure.
+                                    if (documentInterruption.isAbortOnFail())
+                                    {
+                                      rescanList.add(qd);
+                                      abortOnFail = new ManifoldCFException("Repeated service interruptions - failure processing document"+((documentInterruption.getCause()!=null)?": "+documentInterruption.getCause().getMessage():""),documentInterruption.getCause());
+                                    }
+                                    else
+                                      deleteList.add(qd);
+                                  }
+                                  else
+                                  {
+                                    List<QueuedDocument> requeueList = new ArrayList<QueuedDocument>(1);
+                                    requeueList.add(qd);
+                                    requeueDocuments(jobManager,requeueList,documentInterruption.getRetryTime(),documentInterruption.getFailTime(),
+                                      documentInterruption.getFailRetryCount());
+                                  }
+                                }
+                                finishList = newFinishList;
+                              }
+
                               // "Finish" the documents (removing unneeded carrydown info, etc.)
-                              DocumentDescription[] requeueCandidates = jobManager.finishDocuments(job.getID(),legalLinkTypes,processIDHashes,job.getHopcountMode());
+                              DocumentDescription[] requeueCandidates = jobManager.finishDocuments(job.getID(),legalLinkTypes,finishIDHashes,job.getHopcountMode());
 
                               ManifoldCF.requeueDocumentsDueToCarrydown(jobManager,requeueCandidates,connector,connection,queueTracker,currentTime);
 
@@ -797,6 +882,7 @@ public class WorkerThread extends Thread
                         // We count 'get version' time in the average, so even if we decide not to process a doc
                         // it still counts.
                         queueTracker.noteConnectionPerformance(qds.getCount(),connectionName,System.currentTimeMillis() - processingStartTime);
+                        MetricsRegistry.getCounter("crawler.documents.processed","connection",connectionName).increment(qds.getCount());
 
                       }
                       finally
@@ -876,6 +962,10 @@ public class WorkerThread extends Thread
               }
             }
           }
+
+          // When the queue runs dry, the jobs being crawled may be done
+          if (documentQueue.checkIfEmpty(0))
+            JobLifecycleScheduler.signal(JobLifecycleScheduler.EVENT_FINISH);
         }
         catch (ManifoldCFException e)
         {
@@ -1231,13 +1321,14 @@ public class WorkerThread extends Thread
     protected IJobDescription job;
     protected IIncrementalIngester ingester;
     protected HashMap abortSet;
+    protected Map<String,ServiceInterruption> interruptionSet;
     protected String outputVersion;
 
     /** Constructor.
     */
     public VersionActivity(String connectionName, IRepositoryConnectionManager connMgr,
       IJobManager jobManager, IJobDescription job, IIncrementalIngester ingester, HashMap abortSet,
-      String outputVersion)
+      Map<String,ServiceInterruption> interruptionSet, String outputVersion)
     {
       this.connectionName = connectionName;
       this.connMgr = connMgr;
@@ -1245,6 +1336,7 @@ public class WorkerThread extends Thread
       this.job = job;
       this.ingester = ingester;
       this.abortSet = abortSet;
+      this.interruptionSet = interruptionSet;
       this.outputVersion = outputVersion;
     }
 
@@ -1386,6 +1478,18 @@ public class WorkerThread extends Thread
       abortSet.put(localIdentifier,localIdentifier);
     }
 
+    /** Note a service interruption that applies to one document only.
+    * The document is requeued (or failed) according to the parameters of the service interruption, exactly as
+    * if the interruption had been thrown for a batch containing only that document.
+    *@param localIdentifier is the document identifier.
+    *@param e is the service interruption describing when and how the document should be retried.
+    */
+    public void noteDocumentServiceInterruption(String localIdentifier, ServiceInterruption e)
+      throws ManifoldCFException
+    {
+      interruptionSet.put(localIdentifier,e);
+    }
+
     /** Create a global string from a simple string.
     *@param simpleString is the simple string.
     *@return a global string.
@@ -1432,6 +1536,7 @@ public class WorkerThread extends Thread
     protected final OutputActivity ingestLogger;
     protected final QueueTracker queueTracker;
     protected final HashMap abortSet;
+    protected final Map<String,ServiceInterruption> interruptionSet;
     protected final String outputVersion;
     protected final String parameterVersion;
     
@@ -1447,13 +1552,17 @@ public class WorkerThread extends Thread
     // Origination times
     protected HashMap originationTimes = new HashMap();
 
+    // Documents whose references from the last time they were processed are kept
+    protected Set<String> retainedReferences = new HashSet<String>();
+
     /** Constructor.
     *@param jobManager is the job manager
     *@param ingester is the ingester
     */
     public ProcessActivity(IThreadContext threadContext, QueueTracker queueTracker, IJobManager jobManager, IIncrementalIngester ingester,
       long currentTime, IJobDescription job, IRepositoryConnection connection, IRepositoryConnector connector, IRepositoryConnectionManager connMgr,
-      String[] legalLinkTypes, OutputActivity ingestLogger, HashMap abortSet, String outputVersion, String parameterVersion)
+      String[] legalLinkTypes, OutputActivity ingestLogger, HashMap abortSet, Map<String,ServiceInterruption> interruptionSet,
+      String outputVersion, String parameterVersion)
     {
       this.threadContext = threadContext;
       this.queueTracker = queueTracker;
@@ -1467,6 +1576,7 @@ public class WorkerThread extends Thread
       this.legalLinkTypes = legalLinkTypes;
       this.ingestLogger = ingestLogger;
       this.abortSet = abortSet;
+      this.interruptionSet = interruptionSet;
       this.outputVersion = outputVersion;
       this.parameterVersion = parameterVersion;
     }
@@ -1652,6 +1762,32 @@ public class WorkerThread extends Thread
       addDocumentReference(localIdentifier,null,null,null,null);
     }
 
+    /** Keep the references recorded the last time a document was processed, rather than replacing them with
+    * the ones added this time.
+    *@param localIdentifier is the document identifier.
+    */
+    @Override
+    public void retainDocumentReferences(String localIdentifier)
+      throws ManifoldCFException
+    {
+      retainedReferences.add(localIdentifier);
+    }
+
+    /** Check whether a document's references from the last time it was processed are being kept.
+    *@param localIdentifier is the document identifier.
+    *@return true if the document should not be finished.
+    */
+    public boolean areReferencesRetained(String localIdentifier)
+    {
+      return retainedReferences.contains(localIdentifier);
+    }
+
+    /** Check whether any document's references are being kept. */
+    public boolean hasRetainedReferences()
+    {
+      return retainedReferences.size() > 0;
+    }
+
     /** Retrieve data passed from parents to a specified child document.
     *@param localIdentifier is the document identifier of the document we want the recorded data for.
     *@param dataName is the name of the data items to retrieve.
@@ -2086,6 +2222,19 @@ public class WorkerThread extends Thread
       abortSet.put(localIdentifier,localIdentifier);
     }
 
+    /** Note a service interruption that applies to one document only.
+    * The document is requeued (or failed) according to the parameters of the service interruption, exactly as
+    * if the interruption had been thrown for a batch containing only that document.
+    *@param localIdentifier is the document identifier.
+    *@param e is the service interruption describing when and how the document should be retried.
+    */
+    @Override
+    public void noteDocumentServiceInterruption(String localIdentifier, ServiceInterruption e)
+      throws ManifoldCFException
+    {
+      interruptionSet.put(localIdentifier,e);
+    }
+
     /** Check whether a mime type is indexable by the currently specified output connector.
     *@param mimeType is the mime type to check, not including any character set specification.
     *@return true if the mime type is indexable.
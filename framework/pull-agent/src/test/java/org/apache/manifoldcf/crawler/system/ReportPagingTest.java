@@ -0,0 +1,137 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.system;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.core.database.RSet;
+import org.apache.manifoldcf.core.database.RRow;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Check the next_startrow contract of the report API calls: a report cut short by the row limit
+* says where the next page starts, and following it visits every row exactly once.
+*/
+public class ReportPagingTest
+{
+
+  @Test
+  public void rowCountLimit()
+    throws Exception
+  {
+    assertEquals(20,ManifoldCF.limitRowCount(20,ManifoldCF.DEFAULT_API_MAXROWCOUNT));
+    assertEquals(ManifoldCF.DEFAULT_API_MAXROWCOUNT,ManifoldCF.limitRowCount(ManifoldCF.DEFAULT_API_MAXROWCOUNT+1,ManifoldCF.DEFAULT_API_MAXROWCOUNT));
+    // Asking for everything is limited too
+    assertEquals(ManifoldCF.DEFAULT_API_MAXROWCOUNT,ManifoldCF.limitRowCount(-1,ManifoldCF.DEFAULT_API_MAXROWCOUNT));
+    // A maximum of zero or less turns the limit off
+    assertEquals(-1,ManifoldCF.limitRowCount(-1,0));
+    assertEquals(50000,ManifoldCF.limitRowCount(50000,-1));
+  }
+
+  @Test
+  public void pagesCoverAllRows()
+    throws Exception
+  {
+    int totalRows = 25;
+    int maxRowCount = 10;
+    boolean[] seen = new boolean[totalRows];
+    int pageCount = 0;
+    Integer startRow = new Integer(0);
+    while (startRow != null)
+    {
+      Configuration output = new Configuration();
+      startRow = readPage(output,totalRows,startRow.intValue(),-1,maxRowCount);
+      int i = 0;
+      while (i < output.getChildCount())
+      {
+        ConfigurationNode node = output.findChild(i++);
+        if (node.getType().equals(ManifoldCF.API_ROWNODE))
+        {
+          int row = Integer.parseInt(node.findChild(0).getValue());
+          assertFalse(seen[row]);
+          seen[row] = true;
+        }
+      }
+      pageCount++;
+    }
+    assertEquals(3,pageCount);
+    int i = 0;
+    while (i < totalRows)
+    {
+      assertTrue(seen[i++]);
+    }
+  }
+
+  @Test
+  public void unlimitedReportHasNoCursor()
+    throws Exception
+  {
+    // A call that asks for fewer rows than the limit gets what it asked for, and no cursor,
+    // even when there are more rows
+    Configuration output = new Configuration();
+    assertNull(readPage(output,25,0,20,100));
+    assertEquals(20,output.getChildCount());
+  }
+
+  @Test
+  public void exactLastPage()
+    throws Exception
+  {
+    // A page that is exactly full may have more behind it; the following page comes back empty,
+    // without a cursor
+    Configuration output = new Configuration();
+    assertEquals(new Integer(10),readPage(output,10,0,-1,10));
+    output = new Configuration();
+    assertNull(readPage(output,10,10,-1,10));
+    assertEquals(0,output.getChildCount());
+  }
+
+  /** Build one page of a report with the given number of rows, the way the report calls do.
+  *@return the next_startrow value, or null if there was none.
+  */
+  protected static Integer readPage(Configuration output, int totalRows, int startRow, int requestedRowCount, int maxRowCount)
+    throws ManifoldCFException
+  {
+    int rowCount = ManifoldCF.limitRowCount(requestedRowCount,maxRowCount);
+    boolean rowCountLimited = (rowCount != requestedRowCount);
+    RSet result = new RSet();
+    int i = startRow;
+    while (i < totalRows && (rowCount < 0 || i < startRow + rowCount))
+    {
+      RRow row = new RRow();
+      row.put("row",Integer.toString(i));
+      result.addRow(row);
+      i++;
+    }
+    ManifoldCF.createResultsetNode(output,result,new String[]{"row"});
+    if (rowCountLimited)
+      ManifoldCF.createNextStartRowNode(output,result,startRow,rowCount);
+
+    Integer rval = null;
+    i = 0;
+    while (i < output.getChildCount())
+    {
+      ConfigurationNode node = output.findChild(i++);
+      if (node.getType().equals(ManifoldCF.API_NEXTSTARTROWNODE))
+        rval = new Integer(node.getValue());
+    }
+    return rval;
+  }
+
+}
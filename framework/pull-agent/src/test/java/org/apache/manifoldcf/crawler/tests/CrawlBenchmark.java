@@ -0,0 +1,323 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.tests;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.core.metrics.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.system.ManifoldCF;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/** This class runs a job as a benchmark crawl.  While the job runs, it periodically samples the
+* job's progress, the crawler's metrics and the JVM's heap; when the job is done it writes a JSON
+* report to the benchmark report directory, named after the benchmark and the database implementation,
+* so that runs of the same benchmark can be compared.
+*
+* Benchmark parameters are read from system properties prefixed with "org.apache.manifoldcf.benchmark.",
+* and are recorded in the report.
+*/
+public class CrawlBenchmark
+{
+  public static final String _rcsid = "@(#)$Id$";
+
+  /** Prefix for benchmark parameter system properties */
+  public static final String parameterPrefix = "org.apache.manifoldcf.benchmark.";
+  /** The directory reports are written to */
+  public static final String reportDirectoryProperty = parameterPrefix + "reportdir";
+  /** The sampling interval, in milliseconds */
+  public static final String sampleIntervalProperty = parameterPrefix + "sampleinterval";
+
+  protected final String benchmarkName;
+  protected final Map<String,String> parameters = new TreeMap<String,String>();
+  protected final List<Sample> samples = new ArrayList<Sample>();
+  protected final long sampleInterval;
+
+  protected long documentsProcessed = 0L;
+
+  public CrawlBenchmark(String benchmarkName)
+  {
+    this.benchmarkName = benchmarkName;
+    this.sampleInterval = Long.getLong(sampleIntervalProperty,5000L).longValue();
+  }
+
+  /** Read an integer benchmark parameter.
+  *@param name is the parameter name, without the system property prefix.
+  *@param defaultValue is the value to use if the property is not set.
+  *@return the value.
+  */
+  public static int getIntParameter(String name, int defaultValue)
+  {
+    return Integer.getInteger(parameterPrefix + name,defaultValue).intValue();
+  }
+
+  /** Record a parameter of this run in the report.
+  */
+  public void setParameter(String name, String value)
+  {
+    parameters.put(name,value);
+  }
+
+  /** Record a parameter of this run in the report.
+  */
+  public void setParameter(String name, long value)
+  {
+    parameters.put(name,Long.toString(value));
+  }
+
+  /** Start a job, and sample the crawl until the job is inactive.
+  *@param jobManager is the job manager.
+  *@param jobID is the job to run.
+  *@param maxTime is the maximum time to wait, in milliseconds.
+  */
+  public void runJob(IJobManager jobManager, Long jobID, long maxTime)
+    throws ManifoldCFException, InterruptedException
+  {
+    samples.clear();
+    long startTime = System.currentTimeMillis();
+    samples.add(takeSample(startTime,0L));
+    jobManager.manualStart(jobID);
+    long lastSampleTime = startTime;
+    while (true)
+    {
+      long currentTime = System.currentTimeMillis();
+      if (currentTime >= startTime + maxTime)
+        throw new ManifoldCFException("ManifoldCF did not terminate in the allotted time of "+new Long(maxTime).toString()+" milliseconds");
+      JobStatus status = jobManager.getStatus(jobID);
+      if (status == null)
+        throw new ManifoldCFException("No such job: '"+jobID+"'");
+      documentsProcessed = status.getDocumentsProcessed();
+      int statusValue = status.getStatus();
+      if (statusValue == JobStatus.JOBSTATUS_ERROR)
+        throw new ManifoldCFException("Job reports error status: "+status.getErrorText());
+      if (statusValue == JobStatus.JOBSTATUS_COMPLETED)
+      {
+        samples.add(takeSample(startTime,documentsProcessed));
+        break;
+      }
+      if (currentTime >= lastSampleTime + sampleInterval)
+      {
+        samples.add(takeSample(startTime,documentsProcessed));
+        lastSampleTime = currentTime;
+      }
+      ManifoldCF.sleep(1000L);
+    }
+  }
+
+  /** Get the number of documents processed by the job, as of the end of the run.
+  */
+  public long getDocumentsProcessed()
+  {
+    return documentsProcessed;
+  }
+
+  /** Write the report for the last run.
+  *@return the report file.
+  */
+  public File writeReport()
+    throws Exception
+  {
+    Sample first = samples.get(0);
+    Sample last = samples.get(samples.size()-1);
+    String databaseName = getDatabaseName();
+    int workerThreadCount = getWorkerThreadCount();
+    Runtime runtime = Runtime.getRuntime();
+
+    JSONObject report = new JSONObject();
+    report.put("benchmark",benchmarkName);
+    report.put("database",databaseName);
+    report.put("timestamp",first.time);
+
+    JSONObject environment = new JSONObject();
+    environment.put("java.version",System.getProperty("java.version"));
+    environment.put("java.vm.name",System.getProperty("java.vm.name"));
+    environment.put("os.name",System.getProperty("os.name"));
+    environment.put("os.arch",System.getProperty("os.arch"));
+    environment.put("processors",runtime.availableProcessors());
+    environment.put("maxheap",runtime.maxMemory());
+    environment.put("workerthreads",workerThreadCount);
+    report.put("environment",environment);
+
+    JSONObject parameterObject = new JSONObject();
+    for (String name : parameters.keySet())
+    {
+      parameterObject.put(name,parameters.get(name));
+    }
+    report.put("parameters",parameterObject);
+
+    long elapsed = last.elapsed;
+    long peakHeap = 0L;
+    double peakRate = 0.0;
+    JSONArray series = new JSONArray();
+    for (int i = 1; i < samples.size(); i++)
+    {
+      Sample previous = samples.get(i-1);
+      Sample current = samples.get(i);
+      long interval = current.elapsed - previous.elapsed;
+      double rate = perSecond(current.documents - previous.documents,interval);
+      if (rate > peakRate)
+        peakRate = rate;
+      if (current.heapUsed > peakHeap)
+        peakHeap = current.heapUsed;
+      JSONObject point = new JSONObject();
+      point.put("elapsed",current.elapsed);
+      point.put("documents",current.documents);
+      point.put("docspersecond",rate);
+      point.put("queuedepth",current.queueDepth);
+      point.put("stufferutilization",ratio(current.stufferTime - previous.stufferTime,interval));
+      point.put("workerutilization",ratio(current.workerTime - previous.workerTime,interval * (long)workerThreadCount));
+      point.put("dbqueries",current.dbQueries - previous.dbQueries);
+      point.put("heapused",current.heapUsed);
+      point.put("heapcommitted",current.heapCommitted);
+      point.put("gccount",current.gcCount - previous.gcCount);
+      point.put("gctime",current.gcTime - previous.gcTime);
+      series.put(point);
+    }
+
+    long dbQueries = last.dbQueries - first.dbQueries;
+    JSONObject summary = new JSONObject();
+    summary.put("elapsed",elapsed);
+    summary.put("documents",last.documents);
+    summary.put("docspersecond",perSecond(last.documents,elapsed));
+    summary.put("peakdocspersecond",peakRate);
+    summary.put("stufferutilization",ratio(last.stufferTime - first.stufferTime,elapsed));
+    summary.put("workerutilization",ratio(last.workerTime - first.workerTime,elapsed * (long)workerThreadCount));
+    summary.put("dbqueries",dbQueries);
+    summary.put("dbquerytime",last.dbQueryTime - first.dbQueryTime);
+    summary.put("dbqueriesperdocument",(last.documents == 0L)?0.0:(double)dbQueries / (double)last.documents);
+    summary.put("peakheapused",peakHeap);
+    summary.put("gccount",last.gcCount - first.gcCount);
+    summary.put("gctime",last.gcTime - first.gcTime);
+    report.put("summary",summary);
+    report.put("samples",series);
+
+    File reportDirectory = new File(System.getProperty(reportDirectoryProperty,"benchmark-reports")).getAbsoluteFile();
+    reportDirectory.mkdirs();
+    File reportFile = new File(reportDirectory,benchmarkName+"-"+databaseName+".json");
+    Writer w = new OutputStreamWriter(new FileOutputStream(reportFile),"UTF-8");
+    try
+    {
+      w.write(report.toString(2));
+    }
+    finally
+    {
+      w.close();
+    }
+    System.err.println("Benchmark "+benchmarkName+" on "+databaseName+": "+last.documents+" documents in "+elapsed+" ms ("+
+      (long)perSecond(last.documents,elapsed)+" docs/sec, "+dbQueries+" queries); report written to "+reportFile);
+    return reportFile;
+  }
+
+  /** Sample the crawler's state.
+  */
+  protected static Sample takeSample(long startTime, long documents)
+  {
+    Sample rval = new Sample();
+    rval.time = System.currentTimeMillis();
+    rval.elapsed = rval.time - startTime;
+    rval.documents = documents;
+    for (Metric metric : MetricsRegistry.getSortedMetrics())
+    {
+      String name = metric.getName();
+      if (name.equals("crawler.queue.depth"))
+        rval.queueDepth = ((Gauge)metric).getValue();
+      else if (name.equals("crawler.stuffer.query.time"))
+        rval.stufferTime += ((Histogram)metric).getSum();
+      else if (name.equals("crawler.worker.version.time") || name.equals("crawler.worker.process.time"))
+        rval.workerTime += ((Histogram)metric).getSum();
+      else if (name.equals("db.query.time"))
+      {
+        rval.dbQueries += ((Histogram)metric).getCount();
+        rval.dbQueryTime += ((Histogram)metric).getSum();
+      }
+    }
+    MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    rval.heapUsed = heap.getUsed();
+    rval.heapCommitted = heap.getCommitted();
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+    {
+      if (gc.getCollectionCount() > 0L)
+        rval.gcCount += gc.getCollectionCount();
+      if (gc.getCollectionTime() > 0L)
+        rval.gcTime += gc.getCollectionTime();
+    }
+    return rval;
+  }
+
+  /** Get a short name for the database implementation in use.
+  */
+  protected static String getDatabaseName()
+  {
+    String className = ManifoldCF.getProperty(ManifoldCF.databaseImplementation);
+    if (className == null)
+      className = "org.apache.manifoldcf.core.database.DBInterfacePostgreSQL";
+    String name = className.substring(className.lastIndexOf(".")+1);
+    if (name.startsWith("DBInterface"))
+      name = name.substring("DBInterface".length());
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /** Get the number of worker threads the crawler was configured with.
+  */
+  protected static int getWorkerThreadCount()
+  {
+    String value = ManifoldCF.getProperty(ManifoldCF.workerThreadCountProperty);
+    if (value == null)
+      return 100;
+    return Integer.parseInt(value);
+  }
+
+  protected static double perSecond(long count, long elapsed)
+  {
+    if (elapsed <= 0L)
+      return 0.0;
+    return (double)count * 1000.0 / (double)elapsed;
+  }
+
+  protected static double ratio(long numerator, long denominator)
+  {
+    if (denominator <= 0L)
+      return 0.0;
+    return (double)numerator / (double)denominator;
+  }
+
+  /** One sample of the crawler's state.  Timing and count values are cumulative since the JVM started.
+  */
+  protected static class Sample
+  {
+    public long time = 0L;
+    public long elapsed = 0L;
+    public long documents = 0L;
+    public long queueDepth = 0L;
+    public long stufferTime = 0L;
+    public long workerTime = 0L;
+    public long dbQueries = 0L;
+    public long dbQueryTime = 0L;
+    public long heapUsed = 0L;
+    public long heapCommitted = 0L;
+    public long gcCount = 0L;
+    public long gcTime = 0L;
+  }
+
+}
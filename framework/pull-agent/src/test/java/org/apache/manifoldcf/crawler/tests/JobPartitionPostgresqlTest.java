@@ -0,0 +1,118 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.tests;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.system.ManifoldCF;
+
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Check per-job partitioning of the crawler tables */
+public class JobPartitionPostgresqlTest extends BasePostgresql
+{
+  protected static final String[] tableNames = new String[]{"jobqueue","hopcount","intrinsiclink","hopdeletedeps","carrydown"};
+  /** The tables that get rows from a simple crawl */
+  protected static final String[] rowTableNames = new String[]{"jobqueue","hopcount","intrinsiclink","carrydown"};
+  protected static final String[] linkTypes = new String[]{"link"};
+
+  protected void writeProperties(StringBuilder output)
+    throws Exception
+  {
+    super.writeProperties(output);
+    output.append(
+      "  <property name=\"org.apache.manifoldcf.crawler.partitionbyjob\" value=\"true\"/>\n"
+    );
+  }
+
+  @Test
+  public void partitionLifecycle()
+    throws Exception
+  {
+    IThreadContext tc = ThreadContextFactory.make();
+    IDBInterface database = getDatabase(tc);
+    IJobManager jobManager = JobManagerFactory.make(tc);
+    Long jobID = PurgeDerbyTest.createJob(tc);
+
+    // The job's partitions come with it
+    int i = 0;
+    while (i < tableNames.length)
+    {
+      String partitionName = tableNames[i++]+"_p"+jobID;
+      assertNotNull("Missing partition "+partitionName,
+        database.getTableSchema(partitionName,getPartitionKeys(partitionName),null));
+    }
+
+    // Rows go into the partitions, not the tables
+    long currentTime = System.currentTimeMillis();
+    jobManager.addDocumentsInitial(jobID,linkTypes,new String[]{ManifoldCF.hash("seed")},new String[]{"seed"},false,
+      IJobDescription.HOPCOUNT_ACCURATE,currentTime,new double[]{1.0},null);
+    jobManager.addDocument(jobID,linkTypes,ManifoldCF.hash("child"),"child",ManifoldCF.hash("seed"),"link",
+      IJobDescription.HOPCOUNT_ACCURATE,new String[]{"data"},new Object[][]{new Object[]{"value"}},
+      currentTime,1.0,null);
+    i = 0;
+    while (i < rowTableNames.length)
+    {
+      String tableName = rowTableNames[i++];
+      assertEquals(0L,countRows(database,"ONLY "+tableName,jobID));
+      assertTrue(countRows(database,tableName+"_p"+jobID,jobID) > 0);
+      assertEquals(countRows(database,tableName+"_p"+jobID,jobID),countRows(database,tableName,jobID));
+    }
+
+    // Forgetting the job drops its partitions, and every process that cached them as existing is told
+    jobManager.forgetJob(jobID);
+    jobManager.finishJobPurge(jobID);
+    i = 0;
+    while (i < tableNames.length)
+    {
+      String partitionName = tableNames[i++]+"_p"+jobID;
+      assertNull("Partition "+partitionName+" was not dropped",
+        database.getTableSchema(partitionName,getPartitionKeys(partitionName),null));
+    }
+  }
+
+  protected static StringSet getPartitionKeys(String partitionName)
+  {
+    StringSetBuffer ssb = new StringSetBuffer();
+    ssb.add(org.apache.manifoldcf.crawler.interfaces.CacheKeyFactory.makeJobPartitionKey(partitionName));
+    return new StringSet(ssb);
+  }
+
+  protected static IDBInterface getDatabase(IThreadContext tc)
+    throws ManifoldCFException
+  {
+    return DBInterfaceFactory.make(tc,
+      ManifoldCF.getMasterDatabaseName(),
+      ManifoldCF.getMasterDatabaseUsername(),
+      ManifoldCF.getMasterDatabasePassword());
+  }
+
+  protected static long countRows(IDBInterface database, String tableName, Long jobID)
+    throws ManifoldCFException
+  {
+    ArrayList list = new ArrayList();
+    list.add(jobID);
+    IResultSet set = database.performQuery("SELECT COUNT(*) AS countvar FROM "+tableName+" WHERE jobid=?",list,null,null);
+    return ((Number)set.getRow(0).getValue("countvar")).longValue();
+  }
+
+}
@@ -0,0 +1,152 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.tests;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.system.ManifoldCF;
+
+import java.util.*;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Check that a job purge visits every document exactly once, and then removes all of the job's records */
+public class PurgeDerbyTest extends BaseDerby
+{
+  protected static final String[] linkTypes = new String[]{"link"};
+
+  @Test
+  public void purgeByPiece()
+    throws Exception
+  {
+    IThreadContext tc = ThreadContextFactory.make();
+    IJobManager jobManager = JobManagerFactory.make(tc);
+    Long jobID = createJob(tc);
+
+    // Seeds, each with a child, so that there are links, hopcounts and carrydown data to remove
+    long currentTime = System.currentTimeMillis();
+    int seedCount = 100;
+    String[] seedIDs = new String[seedCount];
+    String[] seedHashes = new String[seedCount];
+    double[] seedPriorities = new double[seedCount];
+    int i = 0;
+    while (i < seedCount)
+    {
+      seedIDs[i] = "seed"+i;
+      seedHashes[i] = ManifoldCF.hash(seedIDs[i]);
+      seedPriorities[i] = 1.0;
+      i++;
+    }
+    jobManager.addDocumentsInitial(jobID,linkTypes,seedHashes,seedIDs,false,
+      IJobDescription.HOPCOUNT_ACCURATE,currentTime,seedPriorities,null);
+    Set<String> allHashes = new HashSet<String>();
+    i = 0;
+    while (i < seedCount)
+    {
+      allHashes.add(seedHashes[i]);
+      String childID = "child"+i;
+      String childHash = ManifoldCF.hash(childID);
+      allHashes.add(childHash);
+      jobManager.addDocument(jobID,linkTypes,childHash,childID,seedHashes[i],"link",
+        IJobDescription.HOPCOUNT_ACCURATE,new String[]{"data"},new Object[][]{new Object[]{"value"+i}},
+        currentTime,1.0,null);
+      i++;
+    }
+    assertTrue(countRows(tc,"intrinsiclink",jobID) > 0);
+    assertTrue(countRows(tc,"hopcount",jobID) > 0);
+    assertTrue(countRows(tc,"carrydown",jobID) > 0);
+    jobManager.forgetJob(jobID);
+
+    // Every document lands in exactly one piece, the one named by its leading hex digit
+    Set<String> seen = new HashSet<String>();
+    int partitionCount = jobManager.getPurgePartitionCount();
+    int partition = 0;
+    while (partition < partitionCount)
+    {
+      String afterHash = null;
+      while (true)
+      {
+        // Small batches, to exercise the paging
+        String[] hashes = jobManager.getPurgeDocumentIdentifierHashes(jobID,partition,afterHash,5);
+        int j = 0;
+        while (j < hashes.length)
+        {
+          String hash = hashes[j++];
+          assertEquals(partition,Integer.parseInt(hash.substring(0,1),16));
+          assertTrue("Hash seen twice: "+hash,seen.add(hash));
+        }
+        if (hashes.length < 5)
+          break;
+        afterHash = hashes[hashes.length-1];
+      }
+      partition++;
+    }
+    assertEquals(allHashes,seen);
+
+    // Then every table is cleared for the job, and the job goes away
+    jobManager.finishJobPurge(jobID);
+    assertEquals(0L,countRows(tc,"jobqueue",jobID));
+    assertEquals(0L,countRows(tc,"intrinsiclink",jobID));
+    assertEquals(0L,countRows(tc,"hopcount",jobID));
+    assertEquals(0L,countRows(tc,"carrydown",jobID));
+    assertNull(jobManager.load(jobID));
+  }
+
+  protected static Long createJob(IThreadContext tc)
+    throws ManifoldCFException
+  {
+    IRepositoryConnectionManager repositoryManager = RepositoryConnectionManagerFactory.make(tc);
+    IRepositoryConnection repositoryConnection = repositoryManager.create();
+    repositoryConnection.setName("Test Repository");
+    repositoryConnection.setClassName("org.apache.manifoldcf.crawler.connectors.BaseRepositoryConnector");
+    repositoryManager.save(repositoryConnection);
+
+    IOutputConnectionManager outputManager = OutputConnectionManagerFactory.make(tc);
+    IOutputConnection outputConnection = outputManager.create();
+    outputConnection.setName("Test Output");
+    outputConnection.setClassName("org.apache.manifoldcf.agents.output.BaseOutputConnector");
+    outputManager.save(outputConnection);
+
+    IJobManager jobManager = JobManagerFactory.make(tc);
+    IJobDescription job = jobManager.createJob();
+    job.setDescription("Test Job");
+    job.setConnectionName("Test Repository");
+    job.setOutputConnectionName("Test Output");
+    job.setType(IJobDescription.TYPE_SPECIFIED);
+    job.setStartMethod(IJobDescription.START_DISABLE);
+    job.setHopcountMode(IJobDescription.HOPCOUNT_ACCURATE);
+    jobManager.save(job);
+    return job.getID();
+  }
+
+  protected static long countRows(IThreadContext tc, String tableName, Long jobID)
+    throws ManifoldCFException
+  {
+    IDBInterface database = DBInterfaceFactory.make(tc,
+      ManifoldCF.getMasterDatabaseName(),
+      ManifoldCF.getMasterDatabaseUsername(),
+      ManifoldCF.getMasterDatabasePassword());
+    ArrayList list = new ArrayList();
+    list.add(jobID);
+    IResultSet set = database.performQuery("SELECT COUNT(*) AS countvar FROM "+tableName+" WHERE jobid=?",list,null,null);
+    return ((Number)set.getRow(0).getValue("countvar")).longValue();
+  }
+
+}
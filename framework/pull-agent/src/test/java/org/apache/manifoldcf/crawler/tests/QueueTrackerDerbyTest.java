@@ -0,0 +1,87 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.crawler.tests;
+
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.repository.RepositoryConnection;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/** Check that resetting the queue tracker doesn't let new documents jump ahead of the queue.
+* This needs the crawler environment only for its loggers.
+*/
+public class QueueTrackerDerbyTest extends BaseDerby
+{
+
+  @Test
+  public void resetKeepsQueueFloor()
+    throws Exception
+  {
+    QueueTracker queueTracker = new QueueTracker();
+    IRepositoryConnection connection = new RepositoryConnection();
+    String[] oldBin = new String[]{"old"};
+    String[] newBin = new String[]{"new"};
+
+    // Build up a bin, as a long-running crawl would
+    int i = 0;
+    while (i < 100)
+    {
+      queueTracker.calculatePriority(oldBin,connection);
+      i++;
+    }
+    // A priority handed back before the reset must not be reused afterwards
+    queueTracker.notePriorityNotUsed(newBin,connection,0.0);
+
+    // The queue is being worked at the 50th document of a bin
+    double floor = Math.log(1.0 + 50.0);
+    queueTracker.reset(new Double(floor));
+
+    // Neither a bin the tracker knew nor one it has never seen gets a priority ahead of the floor
+    double priority = queueTracker.calculatePriority(newBin,connection);
+    assertEquals(floor,priority,1.0e-9);
+    priority = queueTracker.calculatePriority(oldBin,connection);
+    assertEquals(floor,priority,1.0e-9);
+
+    // ... and each bin carries on from there
+    double nextPriority = queueTracker.calculatePriority(newBin,connection);
+    assertTrue(nextPriority > floor);
+    assertEquals(Math.log(1.0 + 51.0),nextPriority,1.0e-9);
+  }
+
+  @Test
+  public void resetOfEmptyQueue()
+    throws Exception
+  {
+    QueueTracker queueTracker = new QueueTracker();
+    IRepositoryConnection connection = new RepositoryConnection();
+    String[] bin = new String[]{"bin"};
+    int i = 0;
+    while (i < 10)
+    {
+      queueTracker.calculatePriority(bin,connection);
+      i++;
+    }
+
+    // Nothing is queued, so counting starts over
+    queueTracker.reset(null);
+    assertEquals(0.0,queueTracker.calculatePriority(bin,connection),0.0);
+  }
+
+}
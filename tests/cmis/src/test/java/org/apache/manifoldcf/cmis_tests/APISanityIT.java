@@ -59,6 +59,12 @@ public class APISanityIT extends BaseDerby
     
   private Session cmisClientSession = null;
   
+  /** Value of the connection's change log parameter, or null to leave it at its default */
+  protected String getChangeLogSetting()
+  {
+    return null;
+  }
+  
   private Session getCmisClientSession(){
     // default factory implementation
     SessionFactory factory = SessionFactoryImpl.newInstance();
@@ -267,6 +273,16 @@ public class APISanityIT extends BaseDerby
       cmisPathNode.setValue(CmisConfig.PATH_DEFAULT_VALUE);
       child.addChild(child.getChildCount(), cmisPathNode);
       
+      //change log
+      String changeLogSetting = getChangeLogSetting();
+      if (changeLogSetting != null)
+      {
+        ConfigurationNode cmisChangeLogNode = new ConfigurationNode("_PARAMETER_");
+        cmisChangeLogNode.setAttribute("name", CmisConfig.CHANGE_LOG_PARAM);
+        cmisChangeLogNode.setValue(changeLogSetting);
+        child.addChild(child.getChildCount(), cmisChangeLogNode);
+      }
+      
       connectionObject.addChild(connectionObject.getChildCount(),child);
 
       requestObject = new Configuration();
@@ -420,7 +436,7 @@ public class APISanityIT extends BaseDerby
       // The test data area has 3 documents and one directory, and we have to count the root directory too.
       count = getJobDocumentsProcessed(jobIDString);
       if (count != 4)
-        throw new ManifoldCFException("Wrong number of documents processed after delete - expected 5, saw "+new Long(count).toString());
+        throw new ManifoldCFException("Wrong number of documents processed after delete - expected 4, saw "+new Long(count).toString());
 
       // Now, delete the job.
       deleteJob(jobIDString);
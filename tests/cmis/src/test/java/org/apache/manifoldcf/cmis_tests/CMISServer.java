@@ -60,6 +60,7 @@ public class CMISServer
   public void stop()
     throws Exception
   {
+    cmisServer.stop();
   }
 
 }
@@ -22,14 +22,21 @@ import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.crawler.system.ManifoldCF;
+import org.apache.manifoldcf.crawler.tests.CrawlBenchmark;
 
 import java.io.*;
 import java.util.*;
 
-/** This is a 100000 document crawl */
+/** This is a 100000 document crawl, by default.  The shape of the generated tree can be changed
+* with the benchmark parameters "depth" (directory levels), "fanout" (subdirectories per directory)
+* and "files" (files per leaf directory).
+*/
 public class BigCrawlTester
 {
   protected org.apache.manifoldcf.crawler.tests.ManifoldCFInstance instance;
+  protected final int depth = CrawlBenchmark.getIntParameter("depth",4);
+  protected final int fanOut = CrawlBenchmark.getIntParameter("fanout",10);
+  protected final int filesPerDirectory = CrawlBenchmark.getIntParameter("files",10);
   
   public BigCrawlTester(org.apache.manifoldcf.crawler.tests.ManifoldCFInstance instance)
   {
@@ -43,43 +50,44 @@ public class BigCrawlTester
     FileHelper.removeDirectory(f);
     FileHelper.createDirectory(f);
     // Create the test data files.
-    String baseFileName = "testdata/";
-    int i0 = 0;
-    while (i0 < 10)
+    createTree("testdata",0);
+    System.err.println("Done generating files");
+  }
+  
+  protected void createTree(String baseFileName, int level)
+    throws Exception
+  {
+    if (level == depth)
     {
-      String fileName0 = baseFileName + "/dir-" + i0;
-      FileHelper.createDirectory(new File(fileName0));
-      int i1 = 0;
-      while (i1 < 10)
+      for (int i = 0; i < filesPerDirectory; i++)
       {
-        String fileName1 = fileName0 + "/dir-" + i1;
-        FileHelper.createDirectory(new File(fileName1));
-        int i2 = 0;
-        while (i2 < 10)
-        {
-          String fileName2 = fileName1 + "/dir-" + i2;
-          FileHelper.createDirectory(new File(fileName2));
-          int i3 = 0;
-          while (i3 < 10)
-          {
-            String fileName3 = fileName2 + "/dir-" + i3;
-            FileHelper.createDirectory(new File(fileName3));
-            int i4 = 0;
-            while (i4 < 10)
-            {
-              String fileName4 = fileName3 + "/file-"+i4;
-              FileHelper.createFile(new File(fileName4),"Test file "+i0+":"+i1+":"+i2+":"+i3+":"+i4);
-              i4++;
-            }
-            i3++;
-          }
-          i2++;
-        }
-        i1++;
+        String fileName = baseFileName + "/file-" + i;
+        FileHelper.createFile(new File(fileName),"Test file "+fileName);
       }
-      i0++;
+      return;
     }
-    System.err.println("Done generating files");
+    for (int i = 0; i < fanOut; i++)
+    {
+      String fileName = baseFileName + "/dir-" + i;
+      FileHelper.createDirectory(new File(fileName));
+      createTree(fileName,level+1);
+    }
+  }
+  
+  /** Calculate the number of documents the crawl should see: every directory, including
+  * the root, plus the files in the leaf directories.
+  */
+  protected long getExpectedDocumentCount()
+  {
+    long rval = 0L;
+    long directories = 1L;
+    for (int level = 0; level <= depth; level++)
+    {
+      rval += directories;
+      if (level < depth)
+        directories *= (long)fanOut;
+    }
+    return rval + directories * (long)filesPerDirectory;
   }
   
   public void teardownTestArea()
@@ -155,16 +163,17 @@ public class BigCrawlTester
     jobManager.save(job);
 
     // Now, start the job, and wait until it completes.
-    long startTime = System.currentTimeMillis();
-    jobManager.manualStart(job.getID());
-    instance.waitJobInactiveNative(jobManager,job.getID(),18000000L);
-    System.err.println("Crawl required "+new Long(System.currentTimeMillis()-startTime).toString()+" milliseconds");
+    CrawlBenchmark benchmark = new CrawlBenchmark("filesystem");
+    benchmark.setParameter("depth",depth);
+    benchmark.setParameter("fanout",fanOut);
+    benchmark.setParameter("files",filesPerDirectory);
+    benchmark.runJob(jobManager,job.getID(),18000000L);
+    benchmark.writeReport();
 
     // Check to be sure we actually processed the right number of documents.
-    JobStatus status = jobManager.getStatus(job.getID());
-    // The test data area has 3 documents and one directory, and we have to count the root directory too.
-    if (status.getDocumentsProcessed() != 111111)
-      throw new ManifoldCFException("Wrong number of documents processed - expected 111111, saw "+new Long(status.getDocumentsProcessed()).toString());
+    long expectedCount = getExpectedDocumentCount();
+    if (benchmark.getDocumentsProcessed() != expectedCount)
+      throw new ManifoldCFException("Wrong number of documents processed - expected "+new Long(expectedCount).toString()+", saw "+new Long(benchmark.getDocumentsProcessed()).toString());
       
     // Now, delete the job.
     jobManager.deleteJob(job.getID());
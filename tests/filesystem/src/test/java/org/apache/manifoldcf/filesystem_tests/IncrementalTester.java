@@ -0,0 +1,170 @@
+/* $Id$ */
+
+/**
+* Licensed to the Apache Software Foundation (ASF) under one or more
+* contributor license agreements. See the NOTICE file distributed with
+* this work for additional information regarding copyright ownership.
+* The ASF licenses this file to You under the Apache License, Version 2.0
+* (the "License"); you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.apache.manifoldcf.filesystem_tests;
+
+import org.apache.manifoldcf.core.interfaces.*;
+import org.apache.manifoldcf.agents.interfaces.*;
+import org.apache.manifoldcf.crawler.interfaces.*;
+import org.apache.manifoldcf.crawler.system.ManifoldCF;
+
+import java.io.*;
+import java.util.*;
+
+/** Crawls with incremental seeding turned on, and checks that removed subtrees go away */
+public class IncrementalTester
+{
+  protected org.apache.manifoldcf.crawler.tests.ManifoldCFInstance instance;
+  
+  public IncrementalTester(org.apache.manifoldcf.crawler.tests.ManifoldCFInstance instance)
+  {
+    this.instance = instance;
+  }
+  
+  public void setupTestArea()
+    throws Exception
+  {
+    File f = new File("testdata");
+    FileHelper.removeDirectory(f);
+    FileHelper.createDirectory(f);
+  }
+  
+  public void teardownTestArea()
+    throws Exception
+  {
+    File f = new File("testdata");
+    FileHelper.removeDirectory(f);
+  }
+  
+  public void executeTest()
+    throws Exception
+  {
+    IThreadContext tc = ThreadContextFactory.make();
+      
+    // Create a file system connection that seeds incrementally, and save it.
+    IRepositoryConnectionManager mgr = RepositoryConnectionManagerFactory.make(tc);
+    IRepositoryConnection conn = mgr.create();
+    conn.setName("File Connection");
+    conn.setDescription("File Connection");
+    conn.setClassName("org.apache.manifoldcf.crawler.connectors.filesystem.FileConnector");
+    conn.setMaxConnections(100);
+    conn.getConfigParams().setParameter("incremental","true");
+    // Now, save
+    mgr.save(conn);
+      
+    // Create a basic null output connection, and save it.
+    IOutputConnectionManager outputMgr = OutputConnectionManagerFactory.make(tc);
+    IOutputConnection outputConn = outputMgr.create();
+    outputConn.setName("Null Connection");
+    outputConn.setDescription("Null Connection");
+    outputConn.setClassName("org.apache.manifoldcf.agents.output.nullconnector.NullConnector");
+    outputConn.setMaxConnections(100);
+    // Now, save
+    outputMgr.save(outputConn);
+
+    // Create a job.
+    IJobManager jobManager = JobManagerFactory.make(tc);
+    IJobDescription job = jobManager.createJob();
+    job.setDescription("Test Job");
+    job.setConnectionName("File Connection");
+    job.setOutputConnectionName("Null Connection");
+    job.setType(job.TYPE_SPECIFIED);
+    job.setStartMethod(job.START_DISABLE);
+    job.setHopcountMode(job.HOPCOUNT_ACCURATE);
+      
+    // Now, set up the document specification.
+    DocumentSpecification ds = job.getSpecification();
+    // Crawl everything underneath the 'testdata' area
+    File testDataFile = new File("testdata").getCanonicalFile();
+    SpecificationNode sn = new SpecificationNode("startpoint");
+    sn.setAttribute("path",testDataFile.toString());
+    SpecificationNode n = new SpecificationNode("include");
+    n.setAttribute("type","file");
+    n.setAttribute("match","*");
+    sn.addChild(sn.getChildCount(),n);
+    n = new SpecificationNode("include");
+    n.setAttribute("type","directory");
+    n.setAttribute("match","*");
+    sn.addChild(sn.getChildCount(),n);
+    ds.addChild(ds.getChildCount(),sn);
+      
+    // Save the job.
+    jobManager.save(job);
+
+    // Create the test data files, and make them look long unchanged, so that only what the test
+    // touches later counts as modified.
+    FileHelper.createFile(new File("testdata/test1.txt"),"This is a test file");
+    FileHelper.createFile(new File("testdata/test2.txt"),"This is another test file");
+    FileHelper.createDirectory(new File("testdata/testdir"));
+    FileHelper.createFile(new File("testdata/testdir/test3.txt"),"This is yet another test file");
+    FileHelper.createDirectory(new File("testdata/testdir/subdir"));
+    FileHelper.createFile(new File("testdata/testdir/subdir/test4.txt"),"This is a nested test file");
+    setModified(testDataFile,System.currentTimeMillis() - 3600000L);
+      
+    // Now, start the job, and wait until it completes.
+    jobManager.manualStart(job.getID());
+    instance.waitJobInactiveNative(jobManager,job.getID(),120000L);
+
+    // The test data area has 4 documents and two directories, and we have to count the root directory too.
+    JobStatus status = jobManager.getStatus(job.getID());
+    if (status.getDocumentsProcessed() != 7)
+      throw new ManifoldCFException("Wrong number of documents processed - expected 7, saw "+new Long(status.getDocumentsProcessed()).toString());
+      
+    // Change a file in place, which leaves every directory alone, and recrawl
+    FileHelper.createFile(new File("testdata/testdir/subdir/test4.txt"),"Modified contents");
+
+    jobManager.manualStart(job.getID());
+    instance.waitJobInactiveNative(jobManager,job.getID(),120000L);
+
+    status = jobManager.getStatus(job.getID());
+    if (status.getDocumentsProcessed() != 7)
+      throw new ManifoldCFException("Wrong number of documents processed after change - expected 7, saw "+new Long(status.getDocumentsProcessed()).toString());
+
+    // Remove a whole subtree, and recrawl
+    FileHelper.removeDirectory(new File("testdata/testdir"));
+
+    jobManager.manualStart(job.getID());
+    instance.waitJobInactiveNative(jobManager,job.getID(),120000L);
+
+    // Everything underneath the removed directory must be gone too.
+    status = jobManager.getStatus(job.getID());
+    if (status.getDocumentsProcessed() != 3)
+      throw new ManifoldCFException("Wrong number of documents processed after subtree removal - expected 3, saw "+new Long(status.getDocumentsProcessed()).toString());
+
+    // Now, delete the job.
+    jobManager.deleteJob(job.getID());
+    instance.waitJobDeletedNative(jobManager,job.getID(),120000L);
+      
+    // Cleanup is automatic by the base class, so we can feel free to leave jobs and connections lying around.
+  }
+
+  protected static void setModified(File f, long time)
+  {
+    File[] files = f.listFiles();
+    if (files != null)
+    {
+      int i = 0;
+      while (i < files.length)
+      {
+        setModified(files[i++],time);
+      }
+    }
+    f.setLastModified(time);
+  }
+  
+}
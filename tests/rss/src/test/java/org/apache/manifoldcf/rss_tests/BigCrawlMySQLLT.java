@@ -40,7 +40,7 @@ public class BigCrawlMySQLLT extends BaseMySQL
   public void createRSSService()
     throws Exception
   {
-    rssService = new MockRSSService(10);
+    rssService = new MockRSSService(tester.itemsPerFeed,tester.latency);
     rssService.start();
   }
   
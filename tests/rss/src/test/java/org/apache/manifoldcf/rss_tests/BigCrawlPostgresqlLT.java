@@ -40,7 +40,7 @@ public class BigCrawlPostgresqlLT extends BasePostgresql
   public void createRSSService()
     throws Exception
   {
-    rssService = new MockRSSService(10);
+    rssService = new MockRSSService(tester.itemsPerFeed,tester.latency);
     rssService.start();
   }
   
@@ -22,16 +22,23 @@ import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.crawler.system.ManifoldCF;
+import org.apache.manifoldcf.crawler.tests.CrawlBenchmark;
 
 import org.apache.manifoldcf.crawler.connectors.rss.RSSConfig;
 
 import java.io.*;
 import java.util.*;
 
-/** This is a 100000-document crawl */
+/** This is a 100000-document crawl, by default.  Its size and speed can be changed with the benchmark
+* parameters "feeds" (number of feed seeds), "items" (documents per feed) and "latency" (milliseconds
+* per response).
+*/
 public class BigCrawlTester
 {
   protected org.apache.manifoldcf.crawler.tests.ManifoldCFInstance instance;
+  protected final int feedCount = CrawlBenchmark.getIntParameter("feeds",10000);
+  protected final int itemsPerFeed = CrawlBenchmark.getIntParameter("items",10);
+  protected final int latency = CrawlBenchmark.getIntParameter("latency",0);
   
   public BigCrawlTester(org.apache.manifoldcf.crawler.tests.ManifoldCFInstance instance)
   {
@@ -83,8 +90,8 @@ public class BigCrawlTester
       
     // Now, set up the document specification.
     DocumentSpecification ds = job.getSpecification();
-    // For 100000 documents, set up 10000 seeds
-    for (int i = 0 ; i < 10000 ; i++)
+    // One seed per feed
+    for (int i = 0 ; i < feedCount ; i++)
     {
       SpecificationNode sn = new SpecificationNode("feed");
       sn.setAttribute("url","http://localhost:8189/rss/gen.php?type=feed&feed="+i);
@@ -99,16 +106,18 @@ public class BigCrawlTester
     jobManager.save(job);
 
     // Now, start the job, and wait until it completes.
-    long startTime = System.currentTimeMillis();
-    jobManager.manualStart(job.getID());
-    instance.waitJobInactiveNative(jobManager,job.getID(),22000000L);
-    System.err.println("Crawl required "+new Long(System.currentTimeMillis()-startTime).toString()+" milliseconds");
+    CrawlBenchmark benchmark = new CrawlBenchmark("rss");
+    benchmark.setParameter("feeds",feedCount);
+    benchmark.setParameter("items",itemsPerFeed);
+    benchmark.setParameter("latency",latency);
+    benchmark.runJob(jobManager,job.getID(),22000000L);
+    benchmark.writeReport();
 
     // Check to be sure we actually processed the right number of documents.
-    JobStatus status = jobManager.getStatus(job.getID());
-    // The test data area has 3 documents and one directory, and we have to count the root directory too.
-    if (status.getDocumentsProcessed() != 110000)
-      throw new ManifoldCFException("Wrong number of documents processed - expected 110000, saw "+new Long(status.getDocumentsProcessed()).toString());
+    // Each feed counts as a document, along with each of its items.
+    long expectedCount = (long)feedCount * (long)(itemsPerFeed + 1);
+    if (benchmark.getDocumentsProcessed() != expectedCount)
+      throw new ManifoldCFException("Wrong number of documents processed - expected "+new Long(expectedCount).toString()+", saw "+new Long(benchmark.getDocumentsProcessed()).toString());
       
     // Now, delete the job.
     jobManager.deleteJob(job.getID());
@@ -38,10 +38,19 @@ public class MockRSSService
   RSSServlet servlet;
     
   public MockRSSService(int docsPerFeed)
+  {
+    this(docsPerFeed,0L);
+  }
+  
+  /** Constructor.
+  *@param docsPerFeed is the number of items in each feed.
+  *@param latency is the time each response is delayed by, in milliseconds.
+  */
+  public MockRSSService(int docsPerFeed, long latency)
   {
     server = new Server(8189);
     server.setThreadPool(new QueuedThreadPool(35));
-    servlet = new RSSServlet(docsPerFeed);
+    servlet = new RSSServlet(docsPerFeed,latency);
     ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
     context.setContextPath("/rss");
     server.setHandler(context);
@@ -62,10 +71,12 @@ public class MockRSSService
   public static class RSSServlet extends HttpServlet
   {
     int docsPerFeed;
+    long latency;
     
-    public RSSServlet(int docsPerFeed)
+    public RSSServlet(int docsPerFeed, long latency)
     {
       this.docsPerFeed = docsPerFeed;
+      this.latency = latency;
     }
     
     @Override
@@ -87,6 +98,19 @@ public class MockRSSService
       {
         throw new IOException("Feed number must be a number: "+feednum);
       }
+      // Simulate a slow server
+      if (latency > 0L)
+      {
+        try
+        {
+          Thread.sleep(latency);
+        }
+        catch (InterruptedException e)
+        {
+          throw new IOException("Interrupted");
+        }
+      }
+
       // Now that we parsed it, we don't actually need it (yet)
       
       if (type != null && type.equals("feed"))
@@ -40,7 +40,7 @@ public class BigCrawlMySQLLT extends BaseMySQL
   public void createWebService()
     throws Exception
   {
-    webService = new MockWebService(10);
+    webService = new MockWebService(tester.fanOut,tester.latency);
     webService.start();
   }
   
@@ -40,7 +40,7 @@ public class BigCrawlPostgresqlIT extends BasePostgresql
   public void createWebService()
     throws Exception
   {
-    webService = new MockWebService(10);
+    webService = new MockWebService(tester.fanOut,tester.latency);
     webService.start();
   }
   
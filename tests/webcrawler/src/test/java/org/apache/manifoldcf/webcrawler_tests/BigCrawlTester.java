@@ -22,6 +22,7 @@ import org.apache.manifoldcf.core.interfaces.*;
 import org.apache.manifoldcf.agents.interfaces.*;
 import org.apache.manifoldcf.crawler.interfaces.*;
 import org.apache.manifoldcf.crawler.system.ManifoldCF;
+import org.apache.manifoldcf.crawler.tests.CrawlBenchmark;
 
 import org.apache.manifoldcf.crawler.connectors.webcrawler.WebcrawlerConnector;
 import org.apache.manifoldcf.crawler.connectors.webcrawler.WebcrawlerConfig;
@@ -29,10 +30,17 @@ import org.apache.manifoldcf.crawler.connectors.webcrawler.WebcrawlerConfig;
 import java.io.*;
 import java.util.*;
 
-/** This is a 100000-document crawl */
+/** This is a crawl of a generated web site.  Its size and speed can be changed with the benchmark
+* parameters "sites" (number of seeds), "fanout" (child links per page), "hops" (link hop count limit)
+* and "latency" (milliseconds per response).
+*/
 public class BigCrawlTester
 {
   protected org.apache.manifoldcf.crawler.tests.ManifoldCFInstance instance;
+  protected final int siteCount = CrawlBenchmark.getIntParameter("sites",10);
+  protected final int fanOut = CrawlBenchmark.getIntParameter("fanout",10);
+  protected final int hopCount = CrawlBenchmark.getIntParameter("hops",2);
+  protected final int latency = CrawlBenchmark.getIntParameter("latency",0);
   
   public BigCrawlTester(org.apache.manifoldcf.crawler.tests.ManifoldCFInstance instance)
   {
@@ -80,16 +88,16 @@ public class BigCrawlTester
     job.setType(job.TYPE_SPECIFIED);
     job.setStartMethod(job.START_DISABLE);
     job.setHopcountMode(job.HOPCOUNT_ACCURATE);
-    job.addHopCountFilter("link",new Long(2));
+    job.addHopCountFilter("link",new Long(hopCount));
     //job.addHopCountFilter("redirect",new Long(2));
 
     // Now, set up the document specification.
     DocumentSpecification ds = job.getSpecification();
     
-    // For 100000 documents, set up 10 seeds
+    // One seed per site
     SpecificationNode sn = new SpecificationNode(WebcrawlerConfig.NODE_SEEDS);
     StringBuilder sb = new StringBuilder();
-    for (int i = 0 ; i < 10 ; i++)
+    for (int i = 0 ; i < siteCount ; i++)
     {
       sb.append("http://localhost:8191/web/gen.php?site="+i+"&level=0&item=0\n");
     }
@@ -112,25 +120,19 @@ public class BigCrawlTester
     jobManager.save(job);
 
     // Now, start the job, and wait until it completes.
-    long startTime = System.currentTimeMillis();
-    jobManager.manualStart(job.getID());
-    instance.waitJobInactiveNative(jobManager,job.getID(),220000000L);
-    System.err.println("Crawl required "+new Long(System.currentTimeMillis()-startTime).toString()+" milliseconds");
+    CrawlBenchmark benchmark = new CrawlBenchmark("webcrawler");
+    benchmark.setParameter("sites",siteCount);
+    benchmark.setParameter("fanout",fanOut);
+    benchmark.setParameter("hops",hopCount);
+    benchmark.setParameter("latency",latency);
+    benchmark.runJob(jobManager,job.getID(),220000000L);
+    benchmark.writeReport();
 
     // Check to be sure we actually processed the right number of documents.
-    JobStatus status = jobManager.getStatus(job.getID());
-    // Four levels deep from 10 site seeds: Each site seed has 1 + 10 + 100 + 1000 = 1111 documents, so 10 has 11110.
-    if (status.getDocumentsProcessed() != 1110)
-    {
-      System.err.println("Sleeping for database inspection");
-      while (true)
-      {
-        if (1 < 0)
-          break;
-        Thread.sleep(10000L);
-      }
-      throw new ManifoldCFException("Wrong number of documents processed - expected 1110, saw "+new Long(status.getDocumentsProcessed()).toString());
-    }
+    // Each site has one page at level 0, fanout pages at level 1, and so on, down to the hop count limit.
+    long expectedCount = getExpectedDocumentCount();
+    if (benchmark.getDocumentsProcessed() != expectedCount)
+      throw new ManifoldCFException("Wrong number of documents processed - expected "+new Long(expectedCount).toString()+", saw "+new Long(benchmark.getDocumentsProcessed()).toString());
     
     // Now, delete the job.
     jobManager.deleteJob(job.getID());
@@ -139,4 +141,16 @@ public class BigCrawlTester
     // Cleanup is automatic by the base class, so we can feel free to leave jobs and connections lying around.
   }
   
+  protected long getExpectedDocumentCount()
+  {
+    long perSite = 0L;
+    long pages = 1L;
+    for (int level = 0; level <= hopCount; level++)
+    {
+      perSite += pages;
+      pages *= (long)fanOut;
+    }
+    return perSite * (long)siteCount;
+  }
+  
 }
@@ -38,10 +38,19 @@ public class MockWebService
   WebServlet servlet;
     
   public MockWebService(int docsPerLevel)
+  {
+    this(docsPerLevel,0L);
+  }
+  
+  /** Constructor.
+  *@param docsPerLevel is the number of child links on each page.
+  *@param latency is the time each response is delayed by, in milliseconds.
+  */
+  public MockWebService(int docsPerLevel, long latency)
   {
     server = new Server(8191);
     server.setThreadPool(new QueuedThreadPool(100));
-    servlet = new WebServlet(docsPerLevel);
+    servlet = new WebServlet(docsPerLevel,latency);
     ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
     context.setContextPath("/web");
     server.setHandler(context);
@@ -62,10 +71,12 @@ public class MockWebService
   public static class WebServlet extends HttpServlet
   {
     int docsPerLevel;
+    long latency;
     
-    public WebServlet(int docsPerLevel)
+    public WebServlet(int docsPerLevel, long latency)
     {
       this.docsPerLevel = docsPerLevel;
+      this.latency = latency;
     }
     
     @Override
@@ -118,6 +129,19 @@ public class MockWebService
           // Not legal
           throw new IOException("Doc number too big: "+theItem+" ; level "+theLevel+" ; docsPerLevel "+docsPerLevel);
 
+        // Simulate a slow server
+        if (latency > 0L)
+        {
+          try
+          {
+            Thread.sleep(latency);
+          }
+          catch (InterruptedException e)
+          {
+            throw new IOException("Interrupted");
+          }
+        }
+
         // Generate the page
         res.setStatus(HttpServletResponse.SC_OK);
         res.setContentType("text/html; charset=utf-8");
@@ -64,7 +64,22 @@ public class MockWikiService
     Map<String,String> docInfoQueryResources,
     String namespaceResource)
   {
-    servlet.setResources(checkResources,listResources,timestampQueryResources,urlQueryResources,docInfoQueryResources,namespaceResource);
+    setResources(checkResources,listResources,timestampQueryResources,urlQueryResources,docInfoQueryResources,namespaceResource,
+      null,null,null);
+  }
+
+  public void setResources(Map<String,String> checkResources,
+    Map<String,String> listResources,
+    Map<String,String> timestampQueryResources,
+    Map<String,String> urlQueryResources,
+    Map<String,String> docInfoQueryResources,
+    String namespaceResource,
+    String recentChangesCheckResource,
+    Map<String,String> recentChangesResources,
+    String deletionLogResource)
+  {
+    servlet.setResources(checkResources,listResources,timestampQueryResources,urlQueryResources,docInfoQueryResources,namespaceResource,
+      recentChangesCheckResource,recentChangesResources,deletionLogResource);
   }
   
   protected static String sortStuff(String input)
@@ -91,6 +106,9 @@ public class MockWikiService
     protected Map<String,String> urlQueryResources = null;
     protected Map<String,String> docInfoQueryResources = null;
     protected String namespaceResource = null;
+    protected String recentChangesCheckResource = null;
+    protected Map<String,String> recentChangesResources = null;
+    protected String deletionLogResource = null;
     
     public WikiAPIServlet(Class theResourceClass)
     {
@@ -102,7 +120,10 @@ public class MockWikiService
       Map<String,String> timestampQueryResources,
       Map<String,String> urlQueryResources,
       Map<String,String> docInfoQueryResources,
-      String namespaceResource)
+      String namespaceResource,
+      String recentChangesCheckResource,
+      Map<String,String> recentChangesResources,
+      String deletionLogResource)
     {
       this.checkResources = checkResources;
       this.listResources = listResources;
@@ -110,6 +131,9 @@ public class MockWikiService
       this.urlQueryResources = urlQueryResources;
       this.docInfoQueryResources = docInfoQueryResources;
       this.namespaceResource = namespaceResource;
+      this.recentChangesCheckResource = recentChangesCheckResource;
+      this.recentChangesResources = recentChangesResources;
+      this.deletionLogResource = deletionLogResource;
     }
     
     @Override
@@ -151,8 +175,8 @@ public class MockWikiService
             // Doc info query
             if (pageIds == null)
               throw new IOException("missing pageids parameter, required for docinfo query");
-            if (pageIds.indexOf("|") != -1)
-              throw new IOException("cannot do more than one docinfo request at once");
+            // Sort the pageIds
+            pageIds = sortStuff(pageIds);
             resourceName = docInfoQueryResources.get(pageIds);
             if (resourceName == null)
               throw new IOException("Could not find a matching resource for the user|comment|content|timestamp parameters; pageids = '"+pageIds+"'");
@@ -181,22 +205,60 @@ public class MockWikiService
       {
 	if (prop != null || siprop != null)
 	  throw new IOException("Cannot have both list and prop or siprop");
-        if (!list.equals("allpages"))
-          throw new IOException("List parameter incorrect: "+list);
-        String apfrom = req.getParameter("apfrom");
-        if (apfrom == null)
-          apfrom = "";
-        String aplimit = req.getParameter("aplimit");
-        // Only two legal values for aplimit here: 1 and 500.
-        if (aplimit.equals("1"))
-          resourceName = checkResources.get(apfrom);
-        else if (aplimit.equals("500"))
-          resourceName = listResources.get(apfrom);
+        if (list.equals("recentchanges"))
+        {
+          String rcdir = req.getParameter("rcdir");
+          if (rcdir == null || !rcdir.equals("newer"))
+            throw new IOException("rcdir parameter missing or incorrect: "+rcdir);
+          String rclimit = req.getParameter("rclimit");
+          // Only two legal values for rclimit here: 1 and 500.
+          if (rclimit.equals("1"))
+            resourceName = recentChangesCheckResource;
+          else if (rclimit.equals("500"))
+          {
+            if (recentChangesResources == null)
+              throw new IOException("Not expecting a recent changes request");
+            // The first request starts at the time of the previous run, which we can't predict; it maps to ""
+            String rcstart = req.getParameter("rcstart");
+            resourceName = recentChangesResources.get(rcstart);
+            if (resourceName == null)
+              resourceName = recentChangesResources.get("");
+          }
+          else
+            throw new IOException("rclimit parameter incorrect: "+rclimit);
+          if (resourceName == null)
+            throw new IOException("Could not find a matching resource for the recent changes parameters");
+        }
+        else if (list.equals("logevents"))
+        {
+          String letype = req.getParameter("letype");
+          if (letype == null || !letype.equals("delete"))
+            throw new IOException("letype parameter missing or incorrect: "+letype);
+          String lelimit = req.getParameter("lelimit");
+          if (lelimit == null || !lelimit.equals("1"))
+            throw new IOException("lelimit parameter missing or incorrect: "+lelimit);
+          if (deletionLogResource == null)
+            throw new IOException("Not expecting a deletion log request");
+          resourceName = deletionLogResource;
+        }
+        else if (list.equals("allpages"))
+        {
+          String apfrom = req.getParameter("apfrom");
+          if (apfrom == null)
+            apfrom = "";
+          String aplimit = req.getParameter("aplimit");
+          // Only two legal values for aplimit here: 1 and 500.
+          if (aplimit.equals("1"))
+            resourceName = checkResources.get(apfrom);
+          else if (aplimit.equals("500"))
+            resourceName = listResources.get(apfrom);
+          else
+            throw new IOException("aplimit parameter incorrect: "+aplimit);
+          if (resourceName == null)
+            throw new IOException("Could not find a matching resource for the list parameters; apfrom = '"+apfrom+"'");
+        }
         else
-          throw new IOException("aplimit parameter incorrect: "+aplimit);
-        if (resourceName == null)
-          throw new IOException("Could not find a matching resource for the list parameters; apfrom = '"+apfrom+"'");
-
+          throw new IOException("List parameter incorrect: "+list);
       }
       else if (siprop != null)
       {
@@ -38,6 +38,11 @@ public class SanityDerbyIT extends BaseDerby
   protected static Map<String,String> initialURLQueryResources;
   protected static Map<String,String> initialDocInfoQueryResources;
   protected static final String namespaceResource = "get_namespaces.xml";
+  protected static final String recentChangesCheckResource = "rc_oldest.xml";
+  protected static Map<String,String> recentChangesResources;
+  protected static final String noDeletionLogResource = "log_none.xml";
+  protected static final String deletionLogResource = "log_deletion.xml";
+  protected static Map<String,String> deletedListResources;
   static
   {
     initialCheckResources = new HashMap<String,String>();
@@ -58,11 +63,15 @@ public class SanityDerbyIT extends BaseDerby
     // MHL
     
     initialDocInfoQueryResources = new HashMap<String,String>();
-    initialDocInfoQueryResources.put("14773725","14773725.xml");
-    initialDocInfoQueryResources.put("19219017","19219017.xml");
-    initialDocInfoQueryResources.put("19319577","19319577.xml");
-    initialDocInfoQueryResources.put("19839654","19839654.xml");
-    initialDocInfoQueryResources.put("30955295","30955295.xml");
+    addCombinations(initialDocInfoQueryResources,new String[]{"14773725","19219017","19319577","19839654","30955295"},"get_docinfo.xml");
+    
+    recentChangesResources = new HashMap<String,String>();
+    recentChangesResources.put("","rc_list.xml");
+    recentChangesResources.put("2011-09-06T12:22:51Z","rc_list_last.xml");
+
+    deletedListResources = new HashMap<String,String>();
+    deletedListResources.put("","list_deleted.xml");
+    deletedListResources.put("Kre M'Baye","list_deleted_last.xml");
     
   }
 
@@ -197,6 +206,44 @@ public class SanityDerbyIT extends BaseDerby
       if (status.getDocumentsProcessed() != 5)
         throw new ManifoldCFException("Wrong number of documents processed - expected 5, saw "+new Long(status.getDocumentsProcessed()).toString());
       
+      // Run again.  This time the pages are seeded from the recent changes, so listing all pages is an error.
+      wikiService.setResources(new HashMap<String,String>(),
+        new HashMap<String,String>(),
+        initialTimestampQueryResources,
+        initialURLQueryResources,
+        initialDocInfoQueryResources,
+	namespaceResource,
+        recentChangesCheckResource,
+        recentChangesResources,
+        noDeletionLogResource);
+
+      jobManager.manualStart(job.getID());
+      waitJobInactiveNative(jobManager,job.getID(),120000L);
+
+      // Pages that weren't seeded this time must not have been deleted.
+      status = jobManager.getStatus(job.getID());
+      if (status.getDocumentsProcessed() != 5)
+        throw new ManifoldCFException("Wrong number of documents processed after incremental run - expected 5, saw "+new Long(status.getDocumentsProcessed()).toString());
+
+      // Run again after a page has been deleted.  The deletion log forces all pages to be listed, and the page that
+      // is no longer listed is removed.
+      wikiService.setResources(initialCheckResources,
+        deletedListResources,
+        initialTimestampQueryResources,
+        initialURLQueryResources,
+        initialDocInfoQueryResources,
+	namespaceResource,
+        recentChangesCheckResource,
+        new HashMap<String,String>(),
+        deletionLogResource);
+
+      jobManager.manualStart(job.getID());
+      waitJobInactiveNative(jobManager,job.getID(),120000L);
+
+      status = jobManager.getStatus(job.getID());
+      if (status.getDocumentsProcessed() != 4)
+        throw new ManifoldCFException("Wrong number of documents processed after deletion - expected 4, saw "+new Long(status.getDocumentsProcessed()).toString());
+
       /*
       // Add a file and recrawl
       createFile(new File("testdata/testdir/test4.txt"),"Added file");